@@ -15,6 +15,7 @@ import com.zendesk.maxwell.util.Logging;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.net.URISyntaxException;
 import java.sql.Connection;
 import java.sql.SQLException;
@@ -183,13 +184,20 @@ public class Maxwell implements Runnable {
 		AbstractBootstrapper bootstrapper = this.context.getBootstrapper();
 
 		Position initPosition = getInitialPosition();
+		if ( context.isSource() )
+			initPosition = initPosition.withSource(config.clientID);
 		logBanner(producer, initPosition);
 		this.context.setPosition(initPosition);
 
 		MysqlSchemaStore mysqlSchemaStore = new MysqlSchemaStore(this.context, initPosition);
 		mysqlSchemaStore.getSchema(); // trigger schema to load / capture before we start the replicator.
 
-		this.replicator = new BinlogConnectorReplicator(mysqlSchemaStore, producer, bootstrapper, this.context, initPosition);
+		if ( config.replayBinlogDir != null ) {
+			LOGGER.info("replaying binlog files from " + config.replayBinlogDir);
+			this.replicator = new BinlogConnectorReplicator(mysqlSchemaStore, producer, bootstrapper, this.context, initPosition, new File(config.replayBinlogDir));
+		} else {
+			this.replicator = new BinlogConnectorReplicator(mysqlSchemaStore, producer, bootstrapper, this.context, initPosition);
+		}
 
 		bootstrapper.resume(producer, replicator);
 
@@ -210,6 +218,21 @@ public class Maxwell implements Runnable {
 			if ( config.log_level != null )
 				Logging.setLevel(config.log_level);
 
+			if ( !config.sources.isEmpty() ) {
+				final MultiSourceMaxwell maxwell = new MultiSourceMaxwell(config);
+
+				Runtime.getRuntime().addShutdownHook(new Thread() {
+					@Override
+					public void run() {
+						maxwell.terminate();
+						StaticShutdownCallbackRegistry.invoke();
+					}
+				});
+
+				maxwell.start();
+				return;
+			}
+
 			final Maxwell maxwell = new Maxwell(config);
 
 			Runtime.getRuntime().addShutdownHook(new Thread() {
@@ -7,9 +7,15 @@ import com.zendesk.maxwell.producer.EncryptionMode;
 import com.zendesk.maxwell.monitoring.MaxwellDiagnosticContext;
 import com.zendesk.maxwell.producer.MaxwellOutputConfig;
 import com.zendesk.maxwell.producer.ProducerFactory;
+import com.zendesk.maxwell.replication.BinlogConnectorReplicator;
 import com.zendesk.maxwell.replication.BinlogPosition;
 import com.zendesk.maxwell.replication.Position;
+import com.zendesk.maxwell.row.avro.AvroSchemaRegistry;
+import com.zendesk.maxwell.row.avro.LocalAvroSchemaRegistry;
+import com.zendesk.maxwell.row.protobuf.LocalProtobufSchemaRegistry;
+import com.zendesk.maxwell.row.protobuf.ProtobufSchemaRegistry;
 import com.zendesk.maxwell.util.AbstractConfig;
+import com.zendesk.maxwell.util.ByteBoundedRingBuffer;
 import joptsimple.BuiltinHelpFormatter;
 import joptsimple.OptionDescriptor;
 import joptsimple.OptionParser;
@@ -18,13 +24,17 @@ import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.regex.Pattern;
 
-public class MaxwellConfig extends AbstractConfig {
+public class MaxwellConfig extends AbstractConfig implements Cloneable {
 	static final Logger LOGGER = LoggerFactory.getLogger(MaxwellConfig.class);
 
 	public static final String GTID_MODE_ENV = "GTID_MODE";
@@ -38,7 +48,7 @@ public class MaxwellConfig extends AbstractConfig {
 
 	public String databaseName;
 
-	public String includeDatabases, excludeDatabases, includeTables, excludeTables, excludeColumns, blacklistDatabases, blacklistTables, includeColumnValues;
+	public String includeDatabases, excludeDatabases, includeTables, excludeTables, excludeColumns, blacklistDatabases, blacklistTables, includeColumnValues, includeRowTypes, excludeRowTypes;
 
 	public ProducerFactory producerFactory; // producerFactory has precedence over producerType
 	public final Properties customProducerProperties;
@@ -58,6 +68,8 @@ public class MaxwellConfig extends AbstractConfig {
 	public String producerPartitionKey;
 	public String producerPartitionColumns;
 	public String producerPartitionFallback;
+	public int producerLanes;
+	public String producerLaneKey;
 
 	public String kinesisStream;
 	public boolean kinesisMd5Keys;
@@ -72,6 +84,10 @@ public class MaxwellConfig extends AbstractConfig {
 
 	public String outputFile;
 	public MaxwellOutputConfig outputConfig;
+	public String outputFormat;
+	public AvroSchemaRegistry avroSchemaRegistry;
+	public ProtobufSchemaRegistry protobufSchemaRegistry;
+	public boolean protobufInlineSchema;
 	public String log_level;
 
 	public MetricRegistry metricRegistry;
@@ -94,12 +110,27 @@ public class MaxwellConfig extends AbstractConfig {
 
 	public String clientID;
 	public Long replicaServerID;
+	public List<MaxwellSourceConfig> sources;
+	// replication_host candidates to fail over between, in order; empty with a single host
+	public List<MaxwellMysqlConfig> replicationCandidates = new ArrayList<>();
 
 	public Position initPosition;
 	public boolean replayMode;
 	public boolean masterRecovery;
 	public boolean ignoreProducerError;
 
+	public boolean replicationPipeline;
+	public int replicationPipelineSize;
+	public int producerBatchRows;
+	public long replicationQueueBytes;
+	public ByteBoundedRingBuffer.WaitStrategy replicationQueueWaitStrategy;
+	public int binlogDecoderThreads;
+	public long transactionStreamRows;
+	public long transactionStreamBytes;
+	public String replayBinlogDir;
+	public int catchupFiles;
+	public BinlogPosition replayStopPosition;
+
 	public String rabbitmqUser;
 	public String rabbitmqPass;
 	public String rabbitmqHost;
@@ -161,7 +192,7 @@ public class MaxwellConfig extends AbstractConfig {
 
 		parser.accepts("__separator_2");
 
-		parser.accepts( "replication_host", "mysql host to replicate from (if using separate schema and replication servers)" ).withRequiredArg();
+		parser.accepts( "replication_host", "mysql host to replicate from (if using separate schema and replication servers).  A comma-separated list of host[:port] fails over to the freshest reachable one" ).withRequiredArg();
 		parser.accepts( "replication_user", "username for replication_host" ).withRequiredArg();
 		parser.accepts( "replication_password", "password for replication_host" ).withRequiredArg();
 		parser.accepts( "replication_port", "port for replication_host" ).withRequiredArg();
@@ -183,6 +214,8 @@ public class MaxwellConfig extends AbstractConfig {
 		    "with producer_partition_by=column, partition by the value of these columns.  "
 			+ "comma separated.").withRequiredArg();
 		parser.accepts( "producer_partition_by_fallback", "database|table|primary_key, fallback to this value when using 'column' partitioning and the columns are not present in the row").withRequiredArg();
+		parser.accepts( "producer_lanes", "send rows over this many parallel producer lanes (kafka/kinesis/sqs only). default: 1" ).withRequiredArg();
+		parser.accepts( "producer_lane_by", "table|primary_key, with producer_lanes > 1 rows are assigned to a lane by this value. default: table" ).withRequiredArg();
 
 		parser.accepts( "kafka_version", "kafka client library version: 0.8.2.2|0.9.0.1|0.10.0.1|0.10.2.1|0.11.0.1").withRequiredArg();
 		parser.accepts( "kafka_partition_by", "[deprecated]").withRequiredArg();
@@ -209,10 +242,15 @@ public class MaxwellConfig extends AbstractConfig {
 		parser.accepts( "output_server_id", "produced records include server_id; [true|false]. default: false" ).withOptionalArg();
 		parser.accepts( "output_thread_id", "produced records include thread_id; [true|false]. default: false" ).withOptionalArg();
 		parser.accepts( "output_row_query", "produced records include query, binlog option \"binlog_rows_query_log_events\" must be enabled; [true|false]. default: false" ).withOptionalArg();
+		parser.accepts( "output_table_serializers", "write JSON rows with serializers built per table definition instead of the generic row writer; [true|false]. default: false" ).withOptionalArg();
 		parser.accepts( "output_ddl", "produce DDL records to ddl_kafka_topic [true|false]. default: false" ).withOptionalArg();
 		parser.accepts( "ddl_kafka_topic", "optionally provide an alternate topic to push DDL records to. default: kafka_topic" ).withRequiredArg();
 		parser.accepts("secret_key", "The secret key for the AES encryption" ).withRequiredArg();
 		parser.accepts("encrypt", "encryption mode: [none|data|all]. default: none" ).withRequiredArg();
+		parser.accepts( "output_format", "format of produced records: [json|avro|protobuf]. avro and protobuf are only supported by the kafka and pubsub producers. default: json" ).withRequiredArg();
+		parser.accepts( "avro_schema_registry", "class implementing com.zendesk.maxwell.row.avro.AvroSchemaRegistry to register avro schemas with. default: in-process" ).withRequiredArg();
+		parser.accepts( "protobuf_schema_registry", "class implementing com.zendesk.maxwell.row.protobuf.ProtobufSchemaRegistry to publish protobuf descriptors with. default: in-process" ).withRequiredArg();
+		parser.accepts( "protobuf_inline_schema", "also send each table's protobuf descriptor with every row. default: false" ).withOptionalArg();
 
 		parser.accepts( "__separator_5" );
 
@@ -224,11 +262,23 @@ public class MaxwellConfig extends AbstractConfig {
 		parser.accepts( "client_id", "unique identifier for this maxwell replicator" ).withRequiredArg();
 		parser.accepts( "schema_database", "database name for maxwell state (schema and binlog position)" ).withRequiredArg();
 		parser.accepts( "max_schemas", "deprecated." ).withRequiredArg();
+		parser.accepts( "sources", "replicate several servers in one process, formatted as sources=name1,name2.  Configure each one with source.NAME.* settings in config.properties" ).withRequiredArg();
 		parser.accepts( "init_position", "initial binlog position, given as BINLOG_FILE:POSITION:HEARTBEAT" ).withRequiredArg();
 		parser.accepts( "replay", "replay mode, don't store any information to the server" ).withOptionalArg();
 		parser.accepts( "master_recovery", "(experimental) enable master position recovery code" ).withOptionalArg();
 		parser.accepts( "gtid_mode", "(experimental) enable gtid mode" ).withOptionalArg();
 		parser.accepts( "ignore_producer_error", "Maxwell will be terminated on kafka/kinesis errors when false. Otherwise, those producer errors are only logged. Default to true" ).withOptionalArg();
+		parser.accepts( "replication_pipeline", "build rows and push to the producer on separate threads; [true|false]. default: false" ).withOptionalArg();
+		parser.accepts( "producer_batch_rows", "hand rows to the producer up to this many at a time, from the same transaction where possible. default: 0 (one at a time)" ).withRequiredArg();
+		parser.accepts( "replication_pipeline_size", "number of rows buffered between row building and the producer when replication_pipeline=true. default: 1000" ).withRequiredArg();
+		parser.accepts( "replication_queue_bytes", "maximum size, in bytes, of binlog events buffered ahead of the replicator. default: 16777216" ).withRequiredArg();
+		parser.accepts( "replication_queue_wait_strategy", "how the binlog reader and replicator wait on the event queue: blocking|yielding|busy_spin. default: blocking" ).withRequiredArg();
+		parser.accepts( "binlog_decoder_threads", "decode row events on this many worker threads instead of the binlog reader thread; 0 disables. default: 0" ).withRequiredArg();
+		parser.accepts( "transaction_stream_rows", "stream a transaction's rows to the producer once it grows past this many rows, instead of buffering it until commit; 0 disables. default: 0" ).withRequiredArg();
+		parser.accepts( "transaction_stream_bytes", "stream a transaction's rows to the producer once it grows past this many bytes, instead of buffering it until commit; 0 disables. default: 0" ).withRequiredArg();
+		parser.accepts( "catchup_files", "when starting two or more binlogs behind, read this many binlogs at once until caught up; 0 disables. default: 0" ).withRequiredArg();
+		parser.accepts( "replay_binlog_dir", "read binlog files from this local directory instead of streaming them from the server, then exit" ).withRequiredArg();
+		parser.accepts( "replay_stop_position", "with replay_binlog_dir, stop at the first transaction boundary at or after BINLOG_FILE:POSITION" ).withRequiredArg();
 
 		parser.accepts( "__separator_7" );
 
@@ -240,6 +290,8 @@ public class MaxwellConfig extends AbstractConfig {
 		parser.accepts( "blacklist_dbs", "ignore data AND schema changes to these databases, formatted as blacklist_dbs=db1,db2. See the docs for details before setting this!" ).withRequiredArg();
 		parser.accepts( "blacklist_tables", "ignore data AND schema changes to these tables, formatted as blacklist_tables=tb1,tb2. See the docs for details before setting this!" ).withRequiredArg();
 		parser.accepts( "include_column_values", "include only rows with these values formatted as include_column_values=C=x,D=y" ).withRequiredArg();
+		parser.accepts( "include_row_types", "include only these row types, optionally per table, formatted as include_row_types=insert,tbl1:delete" ).withRequiredArg();
+		parser.accepts( "exclude_row_types", "exclude these row types, optionally per table, formatted as exclude_row_types=tbl1:update,/audit_.*/:update" ).withRequiredArg();
 
 		parser.accepts( "__separator_8" );
 
@@ -341,6 +393,37 @@ public class MaxwellConfig extends AbstractConfig {
 		this.bootstrapperType   = fetchOption("bootstrapper", options, properties, "async");
 		this.clientID           = fetchOption("client_id", options, properties, "maxwell");
 		this.replicaServerID    = fetchLongOption("replica_server_id", options, properties, 6379L);
+		this.sources            = parseSources(fetchOption("sources", options, properties, null), properties);
+		this.replicationPipeline     = fetchBooleanOption("replication_pipeline", options, properties, false);
+		this.producerBatchRows       = Integer.parseInt(fetchOption("producer_batch_rows", options, properties, "0"));
+		this.replicationPipelineSize = Integer.parseInt(fetchOption("replication_pipeline_size", options, properties, "1000"));
+		this.replicationQueueBytes   = fetchLongOption("replication_queue_bytes", options, properties, BinlogConnectorReplicator.DEFAULT_EVENT_QUEUE_BYTES);
+
+		this.binlogDecoderThreads    = Integer.parseInt(fetchOption("binlog_decoder_threads", options, properties, "0"));
+		this.transactionStreamRows   = fetchLongOption("transaction_stream_rows", options, properties, 0L);
+		this.transactionStreamBytes  = fetchLongOption("transaction_stream_bytes", options, properties, 0L);
+		this.catchupFiles            = Integer.parseInt(fetchOption("catchup_files", options, properties, "0"));
+		this.replayBinlogDir         = fetchOption("replay_binlog_dir", options, properties, null);
+
+		String stopPosition = fetchOption("replay_stop_position", options, properties, null);
+		if ( stopPosition != null ) {
+			String[] stopPositionSplit = stopPosition.split(":");
+			if ( stopPositionSplit.length != 2 )
+				usageForOptions("Invalid replay_stop_position: " + stopPosition, "--replay_stop_position");
+
+			try {
+				this.replayStopPosition = new BinlogPosition(Long.valueOf(stopPositionSplit[1]), stopPositionSplit[0]);
+			} catch (NumberFormatException e) {
+				usageForOptions("Invalid replay_stop_position: " + stopPosition, "--replay_stop_position");
+			}
+		}
+
+		String waitStrategy = fetchOption("replication_queue_wait_strategy", options, properties, "blocking");
+		try {
+			this.replicationQueueWaitStrategy = ByteBoundedRingBuffer.WaitStrategy.fromString(waitStrategy);
+		} catch ( IllegalArgumentException e ) {
+			usageForOptions("please specify --replication_queue_wait_strategy=blocking|yielding|busy_spin", "--replication_queue_wait_strategy");
+		}
 
 		this.kafkaTopic         	= fetchOption("kafka_topic", options, properties, "maxwell");
 		this.kafkaKeyFormat     	= fetchOption("kafka_key_format", options, properties, "hash");
@@ -399,6 +482,8 @@ public class MaxwellConfig extends AbstractConfig {
 		this.producerPartitionKey = fetchOption("producer_partition_by", options, properties, "database");
 		this.producerPartitionColumns = fetchOption("producer_partition_columns", options, properties, null);
 		this.producerPartitionFallback = fetchOption("producer_partition_by_fallback", options, properties, null);
+		this.producerLanes = Integer.parseInt(fetchOption("producer_lanes", options, properties, "1"));
+		this.producerLaneKey = fetchOption("producer_lane_by", options, properties, "table");
 
 		if(this.kafkaPartitionKey != null && !this.kafkaPartitionKey.equals("database")) {
 			LOGGER.warn("kafka_partition_by is deprecated, please use producer_partition_by");
@@ -456,6 +541,8 @@ public class MaxwellConfig extends AbstractConfig {
 		this.blacklistDatabases  = fetchOption("blacklist_dbs", options, properties, null);
 		this.blacklistTables     = fetchOption("blacklist_tables", options, properties, null);
 		this.includeColumnValues = fetchOption("include_column_values", options, properties, null);
+		this.includeRowTypes     = fetchOption("include_row_types", options, properties, null);
+		this.excludeRowTypes     = fetchOption("exclude_row_types", options, properties, null);
 
 		if ( options != null && options.has("init_position")) {
 			String initPosition = (String) options.valueOf("init_position");
@@ -494,6 +581,7 @@ public class MaxwellConfig extends AbstractConfig {
 		outputConfig.includesThreadId = fetchBooleanOption("output_thread_id", options, properties, false);
 		outputConfig.includesRowQuery = fetchBooleanOption("output_row_query", options, properties, false);
 		outputConfig.outputDDL	= fetchBooleanOption("output_ddl", options, properties, false);
+		outputConfig.tableSerializers = fetchBooleanOption("output_table_serializers", options, properties, false);
 		this.excludeColumns     = fetchOption("exclude_columns", options, properties, null);
 
 		String encryptionMode = fetchOption("encrypt", options, properties, "none");
@@ -519,6 +607,11 @@ public class MaxwellConfig extends AbstractConfig {
 			}
 		}
 
+		this.outputFormat = fetchOption("output_format", options, properties, "json");
+		this.avroSchemaRegistry = fetchSchemaRegistry("avro_schema_registry", AvroSchemaRegistry.class, new LocalAvroSchemaRegistry(), options, properties);
+		this.protobufSchemaRegistry = fetchSchemaRegistry("protobuf_schema_registry", ProtobufSchemaRegistry.class, new LocalProtobufSchemaRegistry(), options, properties);
+		this.protobufInlineSchema = fetchBooleanOption("protobuf_inline_schema", options, properties, false);
+
 		if ( this.excludeColumns != null ) {
 			for ( String s : this.excludeColumns.split(",") ) {
 				try {
@@ -539,6 +632,80 @@ public class MaxwellConfig extends AbstractConfig {
 		return p;
 	}
 
+	private List<MaxwellSourceConfig> parseSources(String names, Properties properties) {
+		ArrayList<MaxwellSourceConfig> sources = new ArrayList<>();
+		if ( names == null )
+			return sources;
+
+		for ( String name : names.split(",") ) {
+			name = name.trim();
+			if ( name.isEmpty() )
+				continue;
+
+			String prefix = "source." + name + ".";
+			MaxwellSourceConfig source = new MaxwellSourceConfig(name);
+			source.replicationMysql = parseMysqlConfig(prefix, null, properties);
+			source.clientID = fetchOption(prefix + "client_id", null, properties, name);
+			source.replicaServerID = fetchLongOption(prefix + "replica_server_id", null, properties, null);
+			sources.add(source);
+		}
+		return sources;
+	}
+
+	private List<MaxwellMysqlConfig> parseReplicationCandidates(MaxwellMysqlConfig replication) {
+		ArrayList<MaxwellMysqlConfig> candidates = new ArrayList<>();
+		for ( String hostPort : replication.host.split(",") ) {
+			hostPort = hostPort.trim();
+			if ( hostPort.isEmpty() )
+				continue;
+
+			String host = hostPort;
+			Integer port = replication.port;
+			int colon = hostPort.lastIndexOf(':');
+			if ( colon > 0 ) {
+				host = hostPort.substring(0, colon);
+				try {
+					port = Integer.valueOf(hostPort.substring(colon + 1));
+				} catch ( NumberFormatException e ) {
+					usageForOptions("Invalid port in replication_host: " + hostPort, "--replication_host");
+				}
+			}
+
+			MaxwellMysqlConfig candidate = new MaxwellMysqlConfig(host, port, replication.database, replication.user, replication.password, replication.sslMode);
+			candidate.jdbcOptions = new HashMap<>(replication.jdbcOptions);
+			candidates.add(candidate);
+		}
+		return candidates;
+	}
+
+	/**
+	 * The configuration for one source of a multi-source process.
+	 *
+	 * Everything but the replication server, client_id and replica_server_id is
+	 * shared with this config.  Sources keep their schema and positions in this
+	 * config's maxwell database, under their own client_id and server_id.
+	 */
+	public MaxwellConfig forSource(MaxwellSourceConfig source) {
+		MaxwellConfig config;
+		try {
+			config = (MaxwellConfig) this.clone();
+		} catch ( CloneNotSupportedException e ) {
+			throw new RuntimeException(e);
+		}
+
+		config.replicationMysql = source.replicationMysql;
+		config.schemaMysql = new MaxwellMysqlConfig();
+		config.clientID = source.clientID;
+		if ( source.replicaServerID != null )
+			config.replicaServerID = source.replicaServerID;
+
+		// bootstrapping isn't available when replicating from a server other than maxwell's own
+		config.bootstrapperType = "none";
+		config.sources = new ArrayList<>();
+		config.replicationCandidates = new ArrayList<>();
+		return config;
+	}
+
 	public void validate() {
 		if ( this.producerType.equals("kafka") ) {
 			if ( !this.kafkaProperties.containsKey("bootstrap.servers") ) {
@@ -577,12 +744,71 @@ public class MaxwellConfig extends AbstractConfig {
 			usageForOptions("please specify a queue uri for sqs", "sqs_queue_uri");
 		}
 
+		if ( this.producerLanes < 1 ) {
+			usageForOptions("producer_lanes must be at least 1", "--producer_lanes");
+		} else if ( this.producerLanes > 1 ) {
+			if ( !this.producerType.equals("kafka")
+					&& !this.producerType.equals("kinesis")
+					&& !this.producerType.equals("sqs") )
+				usageForOptions("producer_lanes is only supported by the kafka, kinesis and sqs producers", "--producer_lanes", "--producer");
+
+			if ( !this.producerLaneKey.equals("table") && !this.producerLaneKey.equals("primary_key") )
+				usageForOptions("please specify --producer_lane_by=table|primary_key", "--producer_lane_by");
+		}
+
+		if ( !this.outputFormat.equals("json")
+				&& !this.outputFormat.equals("avro")
+				&& !this.outputFormat.equals("protobuf") ) {
+			usageForOptions("please specify --output_format=json|avro|protobuf", "--output_format");
+		} else if ( !this.outputFormat.equals("json") ) {
+			if ( this.producerFactory == null && !this.producerType.equals("kafka") && !this.producerType.equals("pubsub") )
+				usageForOptions("output_format=" + this.outputFormat + " is only supported by the kafka and pubsub producers", "--output_format", "--producer");
+
+			if ( outputConfig.encryptionEnabled() )
+				usageForOptions("output_format=" + this.outputFormat + " can't be combined with encryption", "--output_format", "--encrypt");
+		}
+
 		if ( !this.bootstrapperType.equals("async")
 				&& !this.bootstrapperType.equals("sync")
 				&& !this.bootstrapperType.equals("none") ) {
 			usageForOptions("please specify --bootstrapper=async|sync|none", "--bootstrapper");
 		}
 
+		if ( this.replicationQueueBytes <= 0 )
+			usageForOptions("replication_queue_bytes must be greater than 0", "--replication_queue_bytes");
+
+		if ( this.binlogDecoderThreads < 0 )
+			usageForOptions("binlog_decoder_threads must not be negative", "--binlog_decoder_threads");
+
+		if ( this.transactionStreamRows < 0 )
+			usageForOptions("transaction_stream_rows must not be negative", "--transaction_stream_rows");
+
+		if ( this.transactionStreamBytes < 0 )
+			usageForOptions("transaction_stream_bytes must not be negative", "--transaction_stream_bytes");
+
+		if ( this.catchupFiles < 0 )
+			usageForOptions("catchup_files must not be negative", "--catchup_files");
+
+		if ( this.catchupFiles > 0 && this.replayBinlogDir != null )
+			usageForOptions("catchup_files can't be used with replay_binlog_dir", "--catchup_files", "--replay_binlog_dir");
+
+		if ( this.replayBinlogDir != null && !new File(this.replayBinlogDir).isDirectory() )
+			usageForOptions("replay_binlog_dir " + this.replayBinlogDir + " is not a directory", "--replay_binlog_dir");
+
+		if ( this.replayStopPosition != null && this.replayBinlogDir == null )
+			usageForOptions("replay_stop_position requires replay_binlog_dir", "--replay_stop_position", "--replay_binlog_dir");
+
+		if ( this.producerBatchRows < 0 )
+			usageForOptions("producer_batch_rows must not be negative", "--producer_batch_rows");
+
+		if ( this.replicationPipeline ) {
+			if ( this.replicationPipelineSize <= 0 )
+				usageForOptions("replication_pipeline_size must be greater than 0", "--replication_pipeline_size");
+
+			if ( this.bootstrapperType.equals("sync") )
+				usageForOptions("replication_pipeline is not supported with the sync bootstrapper", "--replication_pipeline", "--bootstrapper");
+		}
+
 		if ( this.maxwellMysql.host == null ) {
 			LOGGER.warn("maxwell mysql host not specified, defaulting to localhost");
 			this.maxwellMysql.host = "localhost";
@@ -618,6 +844,37 @@ public class MaxwellConfig extends AbstractConfig {
 			this.replicationMysql.sslMode = this.maxwellMysql.sslMode;
 		}
 
+		if ( this.replicationMysql.host.contains(",") ) {
+			this.replicationCandidates = parseReplicationCandidates(this.replicationMysql);
+			// connect to the first candidate until there's a reason not to
+			this.replicationMysql = this.replicationCandidates.get(0);
+		}
+
+		if ( !this.sources.isEmpty() ) {
+			HashSet<String> clientIDs = new HashSet<>();
+			for ( MaxwellSourceConfig source : this.sources ) {
+				if ( source.replicationMysql.host == null )
+					usageForOptions("please specify source." + source.name + ".host", "--sources");
+
+				if ( !clientIDs.add(source.clientID) )
+					usageForOptions("sources must have distinct client_ids, " + source.clientID + " is used twice", "--sources");
+
+				if ( source.replicationMysql.user == null ) {
+					source.replicationMysql.user = this.replicationMysql.user;
+					source.replicationMysql.password = this.replicationMysql.password;
+				}
+
+				if ( source.replicationMysql.sslMode == null )
+					source.replicationMysql.sslMode = this.replicationMysql.sslMode;
+			}
+
+			if ( this.initPosition != null )
+				usageForOptions("init_position can't be used with sources", "--init_position", "--sources");
+
+			if ( this.replayBinlogDir != null )
+				usageForOptions("replay_binlog_dir can't be used with sources", "--replay_binlog_dir", "--sources");
+		}
+
 		if (gtidMode && masterRecovery) {
 			usageForOptions("There is no need to perform master_recovery under gtid_mode", "--gtid_mode");
 		}
@@ -648,7 +905,9 @@ public class MaxwellConfig extends AbstractConfig {
 					excludeTables,
 					blacklistDatabases,
 					blacklistTables,
-					includeColumnValues
+					includeColumnValues,
+					includeRowTypes,
+					excludeRowTypes
 			);
 		} catch (MaxwellInvalidFilterException e) {
 			usage("Invalid filter options: " + e.getLocalizedMessage());
@@ -692,4 +951,20 @@ public class MaxwellConfig extends AbstractConfig {
 			return null;
 		}
 	}
+
+	protected <T> T fetchSchemaRegistry(String name, Class<T> registryClass, T defaultRegistry, OptionSet options, Properties properties) {
+		String strOption = fetchOption(name, options, properties, null);
+		if ( strOption == null )
+			return defaultRegistry;
+
+		try {
+			Class<?> clazz = Class.forName(strOption);
+			return registryClass.cast(clazz.newInstance());
+		} catch ( ClassNotFoundException e ) {
+			usageForOptions("Invalid value for " + name + ", class not found", "--" + name);
+		} catch ( IllegalAccessException | InstantiationException | ClassCastException e ) {
+			usageForOptions("Invalid value for " + name + ", class instantiation error", "--" + name);
+		}
+		return null; // unreached
+	}
 }
@@ -24,8 +24,9 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class MaxwellContext {
@@ -36,7 +37,7 @@ public class MaxwellContext {
 	private final ConnectionPool rawMaxwellConnectionPool;
 	private final ConnectionPool schemaConnectionPool;
 	private final MaxwellConfig config;
-	private final MaxwellMetrics metrics;
+	private final Metrics metrics;
 	private final MysqlPositionStore positionStore;
 	private PositionStoreThread positionStoreThread;
 	private Long serverID;
@@ -53,8 +54,13 @@ public class MaxwellContext {
 	private final HeartbeatNotifier heartbeatNotifier;
 	private final MaxwellDiagnosticContext diagnosticContext;
 
+	// in multi-source mode, the process-wide context and the contexts of its sources, by client_id
+	private final MaxwellContext parent;
+	private final Map<String, MaxwellContext> sources = new LinkedHashMap<>();
+
 	public MaxwellContext(MaxwellConfig config) throws SQLException, URISyntaxException {
 		this.config = config;
+		this.parent = null;
 		this.taskManager = new TaskManager();
 		this.metrics = new MaxwellMetrics(config);
 
@@ -84,15 +90,58 @@ public class MaxwellContext {
 		if ( this.config.initPosition != null )
 			this.initialPosition = this.config.initPosition;
 
+		this.positionStore = buildPositionStore();
+
+		this.heartbeatNotifier = new HeartbeatNotifier();
+		List<MaxwellDiagnostic> diagnostics = new ArrayList<>();
+		// with several sources, each one adds its own
+		if ( config.sources.isEmpty() )
+			diagnostics.add(new BinlogConnectorDiagnostic(this));
+		this.diagnosticContext = new MaxwellDiagnosticContext(config.diagnosticConfig, diagnostics);
+	}
+
+	/**
+	 * The context of one source of a multi-source process.
+	 *
+	 * The source gets its own replication pool, position store and heartbeats; the
+	 * maxwell connection pools, producer, metrics registry, diagnostics and tasks
+	 * are shared with `parent`.
+	 */
+	public MaxwellContext(MaxwellConfig config, MaxwellContext parent) throws SQLException, URISyntaxException {
+		this.config = config;
+		this.parent = parent;
+		this.taskManager = parent.taskManager;
+		this.metrics = new SourceMetrics(parent.metrics, config.clientID);
+
+		// a source needs a connection for schema capture and the odd query; keep its pool small
+		this.replicationConnectionPool = new ConnectionPool("ReplicationConnectionPool-" + config.clientID, 1, 4, 10,
+				config.replicationMysql.getConnectionURI(false), config.replicationMysql.user, config.replicationMysql.password);
+		this.schemaConnectionPool = null;
+		this.rawMaxwellConnectionPool = parent.rawMaxwellConnectionPool;
+		this.maxwellConnectionPool = parent.maxwellConnectionPool;
+
+		this.positionStore = buildPositionStore();
+
+		this.heartbeatNotifier = new HeartbeatNotifier();
+		this.diagnosticContext = parent.diagnosticContext;
+		this.diagnosticContext.diagnostics.add(new BinlogConnectorDiagnostic(this));
+
+		parent.sources.put(config.clientID, this);
+	}
+
+	private MysqlPositionStore buildPositionStore() throws SQLException {
 		if ( this.config.replayMode ) {
-			this.positionStore = new ReadOnlyMysqlPositionStore(this.getMaxwellConnectionPool(), this.getServerID(), this.config.clientID, config.gtidMode);
+			return new ReadOnlyMysqlPositionStore(this.getMaxwellConnectionPool(), this.getServerID(), this.config.clientID, config.gtidMode);
 		} else {
-			this.positionStore = new MysqlPositionStore(this.getMaxwellConnectionPool(), this.getServerID(), this.config.clientID, config.gtidMode);
+			return new MysqlPositionStore(this.getMaxwellConnectionPool(), this.getServerID(), this.config.clientID, config.gtidMode);
 		}
+	}
 
-		this.heartbeatNotifier = new HeartbeatNotifier();
-		List<MaxwellDiagnostic> diagnostics = new ArrayList<>(Collections.singletonList(new BinlogConnectorDiagnostic(this)));
-		this.diagnosticContext = new MaxwellDiagnosticContext(config.diagnosticConfig, diagnostics);
+	/**
+	 * Is this the context of one source of a multi-source process?
+	 */
+	public boolean isSource() {
+		return parent != null;
 	}
 
 	public MaxwellConfig getConfig() {
@@ -123,8 +172,12 @@ public class MaxwellContext {
 	}
 
 	public void start() throws IOException {
-		MaxwellHTTPServer.startIfRequired(this);
-		getPositionStoreThread(); // boot up thread explicitly.
+		if ( parent == null )
+			MaxwellHTTPServer.startIfRequired(this);
+
+		// sources store their own positions
+		if ( sources.isEmpty() )
+			getPositionStoreThread(); // boot up thread explicitly.
 	}
 
 	public long heartbeat() throws Exception {
@@ -158,9 +211,24 @@ public class MaxwellContext {
 		}
 	}
 
+	private void sendFinalHeartbeats() {
+		if ( sources.isEmpty() ) {
+			if ( this.replicator != null )
+				sendFinalHeartbeat();
+			return;
+		}
+
+		for ( MaxwellContext source : sources.values() ) {
+			if ( source.replicator != null )
+				source.sendFinalHeartbeat();
+		}
+	}
+
 	private void shutdown(AtomicBoolean complete) {
 		try {
 			taskManager.stop(this.error);
+			for ( MaxwellContext source : sources.values() )
+				source.replicationConnectionPool.release();
 			this.replicationConnectionPool.release();
 			this.maxwellConnectionPool.release();
 			this.rawMaxwellConnectionPool.release();
@@ -211,13 +279,16 @@ public class MaxwellContext {
 	}
 
 	public Thread terminate(Exception error) {
+		if ( parent != null )
+			return parent.terminate(error);
+
 		if (this.error == null) {
 			this.error = error;
 		}
 
 		if (taskManager.requestStop()) {
-			if (this.error == null && this.replicator != null) {
-				sendFinalHeartbeat();
+			if (this.error == null) {
+				sendFinalHeartbeats();
 			}
 			this.terminationThread = spawnTerminateThread();
 		}
@@ -225,6 +296,8 @@ public class MaxwellContext {
 	}
 
 	public Exception getError() {
+		if ( parent != null )
+			return parent.getError();
 		return error;
 	}
 
@@ -260,6 +333,13 @@ public class MaxwellContext {
 	}
 
 	public void setPosition(Position position) {
+		// the shared producer acks every source's rows here; hand each position to its own source
+		MaxwellContext source = position.getSource() == null ? null : sources.get(position.getSource());
+		if ( source != null ) {
+			source.setPosition(position);
+			return;
+		}
+
 		this.getPositionStoreThread().setPosition(position);
 	}
 
@@ -326,6 +406,9 @@ public class MaxwellContext {
 	}
 
 	public AbstractProducer getProducer() throws IOException {
+		if ( parent != null )
+			return parent.getProducer();
+
 		if ( this.producer != null )
 			return this.producer;
 
@@ -337,13 +420,25 @@ public class MaxwellContext {
 				this.producer = new FileProducer(this, this.config.outputFile);
 				break;
 			case "kafka":
-				this.producer = new MaxwellKafkaProducer(this, this.config.getKafkaProperties(), this.config.kafkaTopic);
+				if ( this.config.producerLanes > 1 )
+					this.producer = new ShardedProducer(this, this.config.producerLanes, this.config.producerLaneKey,
+						() -> MaxwellKafkaProducer.newLane(this, this.config.getKafkaProperties(), this.config.kafkaTopic));
+				else
+					this.producer = new MaxwellKafkaProducer(this, this.config.getKafkaProperties(), this.config.kafkaTopic);
 				break;
 			case "kinesis":
-				this.producer = new MaxwellKinesisProducer(this, this.config.kinesisStream);
+				if ( this.config.producerLanes > 1 )
+					this.producer = new ShardedProducer(this, this.config.producerLanes, this.config.producerLaneKey,
+						() -> new MaxwellKinesisProducer(this, this.config.kinesisStream));
+				else
+					this.producer = new MaxwellKinesisProducer(this, this.config.kinesisStream);
 				break;
 			case "sqs":
-				this.producer = new MaxwellSQSProducer(this, this.config.sqsQueueUri);
+				if ( this.config.producerLanes > 1 )
+					this.producer = new ShardedProducer(this, this.config.producerLanes, this.config.producerLaneKey,
+						() -> new MaxwellSQSProducer(this, this.config.sqsQueueUri));
+				else
+					this.producer = new MaxwellSQSProducer(this, this.config.sqsQueueUri);
 				break;
 			case "pubsub":
 				this.producer = new MaxwellPubsubProducer(this, this.config.pubsubProjectId, this.config.pubsubTopic, this.config.ddlPubsubTopic);
@@ -371,6 +466,10 @@ public class MaxwellContext {
 			}
 		}
 
+		// every source's replicator thread pushes to this one producer
+		if ( this.producer != null && !this.config.sources.isEmpty() )
+			this.producer = new SynchronizedProducer(this, this.producer);
+
 		if (this.producer != null && this.producer.getDiagnostic() != null) {
 			diagnosticContext.diagnostics.add(producer.getDiagnostic());
 		}
@@ -1,5 +1,6 @@
 package com.zendesk.maxwell;
 
+import com.zendesk.maxwell.row.RowMap;
 import org.apache.commons.lang.StringUtils;
 
 import java.util.*;
@@ -11,6 +12,25 @@ import java.util.regex.Pattern;
  */
 public class MaxwellFilter {
 	private static final List<Pattern> emptyList = Collections.unmodifiableList(new ArrayList<Pattern>());
+	private static final List<String> ROW_TYPES = Arrays.asList("insert", "update", "delete");
+
+	/*
+		a row type, optionally restricted to tables named like a pattern.
+	 */
+	private static class RowTypeRule {
+		final Pattern table;
+		final String rowType;
+
+		RowTypeRule(Pattern table, String rowType) {
+			this.table = table;
+			this.rowType = rowType;
+		}
+
+		boolean appliesTo(String tableName) {
+			return table == null || table.matcher(tableName).find();
+		}
+	}
+
 	private final ArrayList<Pattern> includeDatabases = new ArrayList<>();
 	private final ArrayList<Pattern> excludeDatabases = new ArrayList<>();
 	private final ArrayList<Pattern> includeTables = new ArrayList<>();
@@ -18,9 +38,35 @@ public class MaxwellFilter {
 	private final ArrayList<Pattern> blacklistDatabases = new ArrayList<>();
 	private final ArrayList<Pattern> blacklistTables = new ArrayList<>();
 	private final Map<String, String> includeColumnValues = new HashMap<>();
+	private final ArrayList<RowTypeRule> includeRowTypes = new ArrayList<>();
+	private final ArrayList<RowTypeRule> excludeRowTypes = new ArrayList<>();
 
 	public MaxwellFilter() { }
 
+	public MaxwellFilter(
+		String includeDatabases,
+		String excludeDatabases,
+		String includeTables,
+		String excludeTables,
+		String blacklistDatabases,
+		String blacklistTables,
+		String includeColumnValues,
+		String includeRowTypes,
+		String excludeRowTypes
+	) throws MaxwellInvalidFilterException {
+		this(includeDatabases, excludeDatabases, includeTables, excludeTables, blacklistDatabases, blacklistTables, includeColumnValues);
+
+		if ( includeRowTypes != null ) {
+			for ( String s : includeRowTypes.split(",") )
+				includeRowType(s);
+		}
+
+		if ( excludeRowTypes != null ) {
+			for ( String s : excludeRowTypes.split(",") )
+				excludeRowType(s);
+		}
+	}
+
 	public MaxwellFilter(
 		String includeDatabases,
 		String excludeDatabases,
@@ -107,6 +153,29 @@ public class MaxwellFilter {
 		includeColumnValues.put(column, value);
 	}
 
+	/**
+	 * @param spec a row type (insert, update, delete), optionally prefixed by a table PATTERN and a colon
+	 */
+	public void includeRowType(String spec) throws MaxwellInvalidFilterException {
+		includeRowTypes.add(compileRowType(spec));
+	}
+
+	public void excludeRowType(String spec) throws MaxwellInvalidFilterException {
+		excludeRowTypes.add(compileRowType(spec));
+	}
+
+	private RowTypeRule compileRowType(String spec) throws MaxwellInvalidFilterException {
+		spec = spec.trim();
+		int colon = spec.lastIndexOf(':');
+		String rowType = spec.substring(colon + 1).trim().toLowerCase();
+
+		if ( !ROW_TYPES.contains(rowType) )
+			throw new MaxwellInvalidFilterException("Invalid row type: " + spec);
+
+		Pattern table = colon < 0 ? null : compile(spec.substring(0, colon));
+		return new RowTypeRule(table, rowType);
+	}
+
 	public boolean isDatabaseWhitelist() {
 		return !includeDatabases.isEmpty();
 	}
@@ -155,23 +224,57 @@ public class MaxwellFilter {
 		return matchesDatabase(database) && matchesTable(table);
 	}
 
+	/*
+		rows of a table are accepted if they're of a type some include rule for the table
+		names (or if no include rule applies to the table), and no exclude rule for it names.
+	 */
+	public boolean matchesRowType(String tableName, String rowType) {
+		boolean included = true;
+		for ( RowTypeRule rule : includeRowTypes ) {
+			if ( rule.appliesTo(tableName) ) {
+				if ( rule.rowType.equals(rowType) ) {
+					included = true;
+					break;
+				}
+				included = false;
+			}
+		}
+		if ( !included )
+			return false;
+
+		for ( RowTypeRule rule : excludeRowTypes ) {
+			if ( rule.appliesTo(tableName) && rule.rowType.equals(rowType) )
+				return false;
+		}
+
+		return true;
+	}
+
 	private boolean matchesValues(Map<String, Object> data) {
 		for (Map.Entry<String, String> entry : includeColumnValues.entrySet()) {
 			String column = entry.getKey();
 
 			if (data.containsKey(column)) {
-				String expectedColumnValue = entry.getValue();
-				Object value = data.get(column);
-
-				if ("NULL".equals(expectedColumnValue)) {
-					// null or "null" (string) or "NULL" (string) is expected
-					if (value != null && !"null".equals(value) && !"NULL".equals(value)) {
-						return false;
-					}
-				} else {
-					if (value == null || !expectedColumnValue.equals(value.toString())) {
-						return false;
-					}
+				if (!matchesValue(entry.getValue(), data.get(column))) {
+					return false;
+				}
+			}
+		}
+
+		return true;
+	}
+
+	/*
+		reads only the filtered columns, so a lazily built row doesn't have to convert
+		every column just to be checked against the filter.
+	 */
+	private boolean matchesValues(RowMap row) {
+		for (Map.Entry<String, String> entry : includeColumnValues.entrySet()) {
+			String column = entry.getKey();
+
+			if (row.hasData(column)) {
+				if (!matchesValue(entry.getValue(), row.getData(column))) {
+					return false;
 				}
 			}
 		}
@@ -179,6 +282,15 @@ public class MaxwellFilter {
 		return true;
 	}
 
+	private static boolean matchesValue(String expectedColumnValue, Object value) {
+		if ("NULL".equals(expectedColumnValue)) {
+			// null or "null" (string) or "NULL" (string) is expected
+			return value == null || "null".equals(value) || "NULL".equals(value);
+		} else {
+			return value != null && expectedColumnValue.equals(value.toString());
+		}
+	}
+
 	public boolean isDatabaseBlacklisted(String databaseName) {
 		return ! filterListsInclude(emptyList, blacklistDatabases, databaseName);
 	}
@@ -202,6 +314,14 @@ public class MaxwellFilter {
 		}
 	}
 
+	public static boolean matchesRowType(MaxwellFilter filter, String table, String rowType) {
+		if (filter == null) {
+			return true;
+		} else {
+			return filter.matchesRowType(table, rowType);
+		}
+	}
+
 	public static boolean matchesValues(MaxwellFilter filter, String database, String table, Map<String, Object> data) {
 		if (filter == null) {
 			return true;
@@ -209,4 +329,12 @@ public class MaxwellFilter {
 			return filter.matchesValues(data);
 		}
 	}
+
+	public static boolean matchesValues(MaxwellFilter filter, String database, String table, RowMap row) {
+		if (filter == null) {
+			return true;
+		} else {
+			return filter.matchesValues(row);
+		}
+	}
 }
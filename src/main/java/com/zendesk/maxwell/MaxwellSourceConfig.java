@@ -0,0 +1,19 @@
+package com.zendesk.maxwell;
+
+/**
+ * One of the servers replicated by a multi-source maxwell process.
+ *
+ * Configured in config.properties as `source.NAME.host`, `source.NAME.port`, `source.NAME.user`,
+ * `source.NAME.password`, `source.NAME.client_id` and `source.NAME.replica_server_id`;
+ * see {@link MaxwellConfig#forSource}.
+ */
+public class MaxwellSourceConfig {
+	public final String name;
+	public MaxwellMysqlConfig replicationMysql;
+	public String clientID;
+	public Long replicaServerID;
+
+	public MaxwellSourceConfig(String name) {
+		this.name = name;
+	}
+}
@@ -0,0 +1,83 @@
+package com.zendesk.maxwell;
+
+import com.zendesk.maxwell.schema.SchemaStoreSchema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URISyntaxException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replicates several servers in one process.
+ *
+ * Each configured source runs its own replicator with its own schema and position
+ * store (kept in the shared maxwell database under the source's client_id), while
+ * the producer, metrics, http server and maxwell connection pools are shared.
+ * If any source stops, they all do.
+ */
+public class MultiSourceMaxwell {
+	static final Logger LOGGER = LoggerFactory.getLogger(MultiSourceMaxwell.class);
+
+	private final MaxwellConfig config;
+	private final MaxwellContext context;
+	private final List<Maxwell> sources = new ArrayList<>();
+
+	public MultiSourceMaxwell(MaxwellConfig config) throws SQLException, URISyntaxException {
+		this.config = config;
+		this.context = new MaxwellContext(config);
+		this.context.probeConnections();
+
+		for ( MaxwellSourceConfig source : config.sources )
+			sources.add(new Maxwell(new MaxwellContext(config.forSource(source), context)));
+	}
+
+	public void terminate() {
+		Thread terminationThread = this.context.terminate();
+		if (terminationThread != null) {
+			try {
+				terminationThread.join();
+			} catch (InterruptedException e) {
+				// ignore
+			}
+		}
+	}
+
+	public void start() throws Exception {
+		ArrayList<Thread> threads = new ArrayList<>();
+		try {
+			// set up everything the sources share before they race to do it themselves
+			try ( Connection rawConnection = context.getRawMaxwellConnection() ) {
+				MaxwellMysqlStatus.ensureMaxwellMysqlState(rawConnection);
+				SchemaStoreSchema.ensureMaxwellSchema(rawConnection, config.databaseName);
+
+				try ( Connection schemaConnection = context.getMaxwellConnection() ) {
+					SchemaStoreSchema.upgradeSchemaStoreSchema(schemaConnection);
+				}
+			}
+
+			context.getProducer();
+			context.start();
+
+			for ( Maxwell maxwell : sources ) {
+				Thread thread = new Thread(maxwell, "maxwell-source-" + maxwell.config.clientID);
+				thread.start();
+				threads.add(thread);
+			}
+
+			LOGGER.info("replicating " + sources.size() + " sources");
+			for ( Thread thread : threads )
+				thread.join();
+		} catch ( Exception e ) {
+			context.terminate(e);
+		} finally {
+			this.terminate();
+		}
+
+		Exception error = context.getError();
+		if ( error != null )
+			throw error;
+	}
+}
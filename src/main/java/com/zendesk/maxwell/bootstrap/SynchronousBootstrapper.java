@@ -16,8 +16,11 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.sql.*;
+import java.util.BitSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.regex.Pattern;
 
 public class SynchronousBootstrapper extends AbstractBootstrapper {
 	static final Logger LOGGER = LoggerFactory.getLogger(SynchronousBootstrapper.class);
@@ -230,10 +233,25 @@ public class SynchronousBootstrapper extends AbstractBootstrapper {
 	}
 
 	private void setRowValues(RowMap row, ResultSet resultSet, Table table) throws SQLException, IOException {
+		List<Pattern> excludeColumns = context.getConfig().outputConfig.excludeColumns;
+		BitSet excludedColumns = table.getExcludedColumns(excludeColumns);
+		List<String> pkColumns = table.getPKList();
+		boolean keptExcludedColumns = false;
+
 		Iterator<ColumnDef> columnDefinitions = table.getColumnList().iterator();
 		int columnIndex = 1;
 		while ( columnDefinitions.hasNext() ) {
 			ColumnDef columnDefinition = columnDefinitions.next();
+			if ( excludedColumns.get(columnIndex - 1) ) {
+				/* primary key columns stay in the row for its key and partitioning;
+				   they're left out when the row is written instead. */
+				if ( !pkColumns.contains(columnDefinition.getName()) ) {
+					++columnIndex;
+					continue;
+				}
+				keptExcludedColumns = true;
+			}
+
 			Object columnValue = resultSet.getObject(columnIndex);
 
 			row.putData(
@@ -243,6 +261,9 @@ public class SynchronousBootstrapper extends AbstractBootstrapper {
 
 			++columnIndex;
 		}
+
+		if ( !keptExcludedColumns )
+			row.setExcludedColumnPatterns(excludeColumns);
 	}
 
 }
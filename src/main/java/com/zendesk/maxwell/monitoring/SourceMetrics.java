@@ -0,0 +1,36 @@
+package com.zendesk.maxwell.monitoring;
+
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * The metrics of one source of a multi-source process, kept in the process-wide
+ * registry under `sources.CLIENT_ID.*`.
+ */
+public class SourceMetrics implements Metrics {
+	private final Metrics parent;
+	private final String clientID;
+
+	public SourceMetrics(Metrics parent, String clientID) {
+		this.parent = parent;
+		this.clientID = clientID;
+	}
+
+	public String metricName(String... names) {
+		String[] prefixed = new String[names.length + 2];
+		prefixed[0] = "sources";
+		prefixed[1] = clientID;
+		System.arraycopy(names, 0, prefixed, 2, names.length);
+		return parent.metricName(prefixed);
+	}
+
+	@Override
+	public MetricRegistry getRegistry() {
+		return parent.getRegistry();
+	}
+
+	@Override
+	public <T extends Metric> void register(String name, T metric) throws IllegalArgumentException {
+		parent.register(name, metric);
+	}
+}
@@ -35,16 +35,18 @@ public abstract class AbstractAsyncProducer extends AbstractProducer {
 		}
 	}
 
-	private InflightMessageList inflightMessages;
+	private final InflightMessagesBySource inflightMessages;
 
 	public AbstractAsyncProducer(MaxwellContext context) {
 		super(context);
 
-		this.inflightMessages = new InflightMessageList(context);
+		this.inflightMessages = new InflightMessagesBySource(context);
 
 		Metrics metrics = context.getMetrics();
 		String gaugeName = metrics.metricName("inflightmessages", "count");
-		metrics.register(gaugeName, (Gauge<Long>) () -> (long) inflightMessages.size());
+		// a ShardedProducer runs several of us and registers the gauge for all of them
+		if ( !metrics.getRegistry().getGauges().containsKey(gaugeName) )
+			metrics.register(gaugeName, (Gauge<Long>) inflightMessages::size);
 	}
 
 	public abstract void sendAsync(RowMap r, CallbackCompleter cc) throws Exception;
@@ -52,12 +54,13 @@ public abstract class AbstractAsyncProducer extends AbstractProducer {
 	@Override
 	public final void push(RowMap r) throws Exception {
 		Position position = r.getPosition();
+		InflightMessageList inflight = inflightMessages.forPosition(position);
 		// Rows that do not get sent to a target will be automatically marked as complete.
 		// We will attempt to commit a checkpoint up to the current row.
 		if(!r.shouldOutput(outputConfig)) {
-			inflightMessages.addMessage(position);
+			inflight.addMessage(position);
 
-			InflightMessageList.InflightMessage completed = inflightMessages.completeMessage(position);
+			InflightMessageList.InflightMessage completed = inflight.completeMessage(position);
 			if(completed != null) {
 				context.setPosition(completed.position);
 			}
@@ -65,10 +68,10 @@ public abstract class AbstractAsyncProducer extends AbstractProducer {
 		}
 
 		if(r.isTXCommit()) {
-			inflightMessages.addMessage(position);
+			inflight.addMessage(position);
 		}
 
-		CallbackCompleter cc = new CallbackCompleter(inflightMessages, position, r.isTXCommit(), context);
+		CallbackCompleter cc = new CallbackCompleter(inflight, position, r.isTXCommit(), context);
 
 		sendAsync(r, cc);
 	}
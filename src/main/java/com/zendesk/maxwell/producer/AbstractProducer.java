@@ -7,9 +7,14 @@ import com.codahale.metrics.Timer;
 import com.zendesk.maxwell.MaxwellContext;
 import com.zendesk.maxwell.monitoring.MaxwellDiagnostic;
 import com.zendesk.maxwell.monitoring.Metrics;
+import com.zendesk.maxwell.row.RowEncoder;
 import com.zendesk.maxwell.row.RowMap;
+import com.zendesk.maxwell.row.avro.AvroRowEncoder;
+import com.zendesk.maxwell.row.protobuf.ProtobufRowEncoder;
 import com.zendesk.maxwell.util.StoppableTask;
 
+import java.util.List;
+
 public abstract class AbstractProducer {
 	protected final MaxwellContext context;
 	protected final MaxwellOutputConfig outputConfig;
@@ -35,6 +40,35 @@ public abstract class AbstractProducer {
 
 	abstract public void push(RowMap r) throws Exception;
 
+	/**
+	 * Push several rows at once, in binlog order.
+	 *
+	 * The replicator calls this with up to `producer_batch_rows` rows, usually a slice of
+	 * a single transaction.  Producers that can send many messages in one round trip
+	 * should override it; the rules for acknowledging positions are the same as for
+	 * {@link #push(RowMap)}.
+	 */
+	public void pushBatch(List<RowMap> rows) throws Exception {
+		for ( RowMap r : rows )
+			push(r);
+	}
+
+	/**
+	 * Build an encoder for the configured `output_format`.
+	 *
+	 * @return null for JSON, which rows write themselves
+	 */
+	protected RowEncoder buildRowEncoder() {
+		switch ( context.getConfig().outputFormat ) {
+			case "avro":
+				return new AvroRowEncoder(context.getConfig().avroSchemaRegistry, outputConfig);
+			case "protobuf":
+				return new ProtobufRowEncoder(context.getConfig().protobufSchemaRegistry, outputConfig, context.getConfig().protobufInlineSchema);
+			default:
+				return null;
+		}
+	}
+
 	public StoppableTask getStoppableTask() {
 		return null;
 	}
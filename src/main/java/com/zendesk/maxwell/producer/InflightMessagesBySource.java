@@ -0,0 +1,36 @@
+package com.zendesk.maxwell.producer;
+
+import com.zendesk.maxwell.MaxwellContext;
+import com.zendesk.maxwell.replication.Position;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/* one InflightMessageList for each source a producer sends rows for (see Position.getSource).
+
+   An InflightMessageList collapses a completed run of messages into its newest position;
+   if sources shared one, a source's position could be swallowed by another's that completed
+   after it, and never reach its own position store.  Without multiple sources this is just
+   the one list.
+   */
+public class InflightMessagesBySource {
+	private static final String NO_SOURCE = "";
+
+	private final MaxwellContext context;
+	private final ConcurrentHashMap<String, InflightMessageList> lists = new ConcurrentHashMap<>();
+
+	public InflightMessagesBySource(MaxwellContext context) {
+		this.context = context;
+	}
+
+	public InflightMessageList forPosition(Position p) {
+		String source = p.getSource() == null ? NO_SOURCE : p.getSource();
+		return lists.computeIfAbsent(source, s -> new InflightMessageList(context));
+	}
+
+	public long size() {
+		long size = 0;
+		for ( InflightMessageList list : lists.values() )
+			size += list.size();
+		return size;
+	}
+}
@@ -5,6 +5,7 @@ import com.codahale.metrics.Meter;
 import com.zendesk.maxwell.MaxwellContext;
 import com.zendesk.maxwell.producer.partitioners.MaxwellKafkaPartitioner;
 import com.zendesk.maxwell.replication.Position;
+import com.zendesk.maxwell.row.RowEncoder;
 import com.zendesk.maxwell.row.RowMap;
 import com.zendesk.maxwell.row.RowMap.KeyFormat;
 import com.zendesk.maxwell.schema.ddl.DDLMap;
@@ -16,10 +17,12 @@ import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.clients.producer.RecordMetadata;
 import org.apache.kafka.common.KafkaException;
 import org.apache.kafka.common.errors.RecordTooLargeException;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Properties;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.TimeoutException;
@@ -94,6 +97,14 @@ public class MaxwellKafkaProducer extends AbstractProducer {
 		thread.start();
 	}
 
+	/**
+	 * Build a kafka producer to run as one lane of a {@link ShardedProducer}; it has no
+	 * thread or queue of its own.
+	 */
+	public static AbstractAsyncProducer newLane(MaxwellContext context, Properties kafkaProperties, String kafkaTopic) {
+		return new MaxwellKafkaProducerWorker(context, kafkaProperties, kafkaTopic, null);
+	}
+
 	@Override
 	public void push(RowMap r) throws Exception {
 		this.queue.put(r);
@@ -113,7 +124,8 @@ public class MaxwellKafkaProducer extends AbstractProducer {
 class MaxwellKafkaProducerWorker extends AbstractAsyncProducer implements Runnable, StoppableTask {
 	static final Logger LOGGER = LoggerFactory.getLogger(MaxwellKafkaProducer.class);
 
-	private final KafkaProducer<String, String> kafka;
+	private final KafkaProducer<String, byte[]> kafka;
+	private final RowEncoder rowEncoder;
 	private String topic;
 	private final String ddlTopic;
 	private final MaxwellKafkaPartitioner partitioner;
@@ -141,7 +153,9 @@ class MaxwellKafkaProducerWorker extends AbstractAsyncProducer implements Runnab
 		}
 
 		this.interpolateTopic = this.topic.contains("%{");
-		this.kafka = new KafkaProducer<>(kafkaProperties, new StringSerializer(), new StringSerializer());
+		this.kafka = new KafkaProducer<>(kafkaProperties, new StringSerializer(), new ByteArraySerializer());
+
+		this.rowEncoder = buildRowEncoder();
 
 		String hash = context.getConfig().kafkaPartitionHash;
 		String partitionKey = context.getConfig().producerPartitionKey;
@@ -198,10 +212,12 @@ class MaxwellKafkaProducerWorker extends AbstractAsyncProducer implements Runnab
 
 	@Override
 	public void sendAsync(RowMap r, AbstractAsyncProducer.CallbackCompleter cc) throws Exception {
-		ProducerRecord<String, String> record = makeProducerRecord(r);
+		ProducerRecord<String, byte[]> record = makeProducerRecord(r);
 
 		/* if debug logging isn't enabled, release the reference to `value`, which can ease memory pressure somewhat */
-		String value = KafkaCallback.LOGGER.isDebugEnabled() ? record.value() : null;
+		String value = null;
+		if ( KafkaCallback.LOGGER.isDebugEnabled() )
+			value = isEncoded(r) || record.value() == null ? r.toJSON(outputConfig) : new String(record.value(), StandardCharsets.UTF_8);
 
 		KafkaCallback callback = new KafkaCallback(cc, r.getPosition(), record.key(), value,
 				this.succeededMessageCount, this.failedMessageCount, this.succeededMessageMeter, this.failedMessageMeter, this.context);
@@ -209,14 +225,19 @@ class MaxwellKafkaProducerWorker extends AbstractAsyncProducer implements Runnab
 		sendAsync(record, callback);
 	}
 
-	void sendAsync(ProducerRecord<String, String> record, Callback callback) throws Exception {
+	void sendAsync(ProducerRecord<String, byte[]> record, Callback callback) throws Exception {
 		kafka.send(record, callback);
 	}
 
-	ProducerRecord<String, String> makeProducerRecord(final RowMap r) throws Exception {
+	// DDL is always JSON; there's no table to derive a schema from.
+	private boolean isEncoded(RowMap r) {
+		return rowEncoder != null && !(r instanceof DDLMap);
+	}
+
+	ProducerRecord<String, byte[]> makeProducerRecord(final RowMap r) throws Exception {
 		String key = r.pkToJson(keyFormat);
-		String value = r.toJSON(outputConfig);
-		ProducerRecord<String, String> record;
+		byte[] value = isEncoded(r) ? rowEncoder.encode(r) : r.toJSONBytes(outputConfig);
+		ProducerRecord<String, byte[]> record;
 		if (r instanceof DDLMap) {
 			record = new ProducerRecord<>(this.ddlTopic, this.ddlPartitioner.kafkaPartition(r, getNumPartitions(this.ddlTopic)), key, value);
 		} else {
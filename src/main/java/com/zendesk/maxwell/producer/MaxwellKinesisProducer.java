@@ -119,15 +119,11 @@ public class MaxwellKinesisProducer extends AbstractAsyncProducer {
 	@Override
 	public void sendAsync(RowMap r, AbstractAsyncProducer.CallbackCompleter cc) throws Exception {
 		String key = this.partitioner.getKinesisKey(r);
-		String value = r.toJSON(outputConfig);
-
-		ByteBuffer encodedValue = ByteBuffer.wrap(value.getBytes("UTF-8"));
+		ByteBuffer encodedValue = ByteBuffer.wrap(r.toJSONBytes(outputConfig));
 		ListenableFuture<UserRecordResult> future = kinesisProducer.addUserRecord(kinesisStream, key, encodedValue);
 
-		// release the reference to ease memory pressure
-		if(!KinesisCallback.logger.isDebugEnabled()) {
-			value = null;
-		}
+		// only keep a string copy around for debug logging
+		String value = KinesisCallback.logger.isDebugEnabled() ? r.toJSON(outputConfig) : null;
 
 		FutureCallback<UserRecordResult> callback = new KinesisCallback(cc, r.getPosition(), key, value,
 				this.succeededMessageCount, this.failedMessageCount, this.succeededMessageMeter, this.failedMessageMeter, this.context);
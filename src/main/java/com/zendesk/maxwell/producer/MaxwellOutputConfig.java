@@ -18,6 +18,7 @@ public class MaxwellOutputConfig {
 	public EncryptionMode encryptionMode;
 	public String secretKey;
 	public String keyCase;
+	public boolean tableSerializers;
 
 	public MaxwellOutputConfig() {
 		this.includesBinlogPosition = false;
@@ -32,6 +33,7 @@ public class MaxwellOutputConfig {
 		this.encryptionMode = EncryptionMode.ENCRYPT_NONE;
 		this.secretKey = null;
 		this.keyCase = "original";
+		this.tableSerializers = false;
 	}
 
 	public boolean encryptionEnabled() {
@@ -7,11 +7,13 @@ import com.google.api.core.ApiFutureCallback;
 import com.google.api.core.ApiFutures;
 import com.google.cloud.pubsub.v1.Publisher;
 import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
 import com.google.pubsub.v1.PubsubMessage;
 import com.google.pubsub.v1.TopicName;
 import com.zendesk.maxwell.MaxwellContext;
 import com.zendesk.maxwell.monitoring.Metrics;
 import com.zendesk.maxwell.replication.Position;
+import com.zendesk.maxwell.row.RowEncoder;
 import com.zendesk.maxwell.row.RowMap;
 import com.zendesk.maxwell.schema.ddl.DDLMap;
 import com.zendesk.maxwell.util.Logging;
@@ -125,6 +127,7 @@ class MaxwellPubsubProducerWorker
   private final TopicName ddlTopic;
   private Publisher ddlPubsub;
   private final ArrayBlockingQueue<RowMap> queue;
+  private final RowEncoder rowEncoder;
   private Thread thread;
   private StoppableTaskState taskState;
 
@@ -151,6 +154,7 @@ class MaxwellPubsubProducerWorker
     Metrics metrics = context.getMetrics();
 
     this.queue = queue;
+    this.rowEncoder = buildRowEncoder();
     this.taskState = new StoppableTaskState("MaxwellPubsubProducerWorker");
   }
 
@@ -176,8 +180,10 @@ class MaxwellPubsubProducerWorker
   @Override
   public void sendAsync(RowMap r, AbstractAsyncProducer.CallbackCompleter cc)
       throws Exception {
-    String message = r.toJSON(outputConfig);
-    ByteString data = ByteString.copyFromUtf8(message);
+    // the encoded bytes are never touched again, so there's no need to copy them
+    byte[] bytes = rowEncoder != null && !(r instanceof DDLMap) ? rowEncoder.encode(r) : r.toJSONBytes(outputConfig);
+    ByteString data = UnsafeByteOperations.unsafeWrap(bytes);
+    String message = PubsubCallback.LOGGER.isDebugEnabled() ? r.toJSON(outputConfig) : null;
     PubsubMessage pubsubMessage = PubsubMessage.newBuilder().setData(data).build();
 
     if ( r instanceof DDLMap ) {
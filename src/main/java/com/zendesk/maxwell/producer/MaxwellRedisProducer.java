@@ -1,11 +1,16 @@
 package com.zendesk.maxwell.producer;
 
 import com.zendesk.maxwell.MaxwellContext;
+import com.zendesk.maxwell.replication.Position;
 import com.zendesk.maxwell.row.RowMap;
 import com.zendesk.maxwell.util.StoppableTask;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
 
 public class MaxwellRedisProducer extends AbstractProducer implements StoppableTask {
 	private static final Logger logger = LoggerFactory.getLogger(MaxwellRedisProducer.class);
@@ -40,14 +45,17 @@ public class MaxwellRedisProducer extends AbstractProducer implements StoppableT
 
 		String msg = r.toJSON(outputConfig);
 		try {
-			switch (redistype){
-				case "lpush":
-					jedis.lpush(this.listkey, msg);
-					break;
-				case "pubsub":
-				default:
-					jedis.publish(this.channel, msg);
-					break;
+			// one connection; a pipelined batch from another thread mustn't be cut into
+			synchronized ( jedis ) {
+				switch (redistype){
+					case "lpush":
+						jedis.lpush(this.listkey, msg);
+						break;
+					case "pubsub":
+					default:
+						jedis.publish(this.channel, msg);
+						break;
+				}
 			}
 			this.succeededMessageCount.inc();
 			this.succeededMessageMeter.mark();
@@ -78,9 +86,68 @@ public class MaxwellRedisProducer extends AbstractProducer implements StoppableT
 		}
 	}
 
+	/**
+	 * Send a batch of rows in one redis pipeline, acknowledging once it's been synced.
+	 */
+	@Override
+	public void pushBatch(List<RowMap> rows) throws Exception {
+		List<String> messages = new ArrayList<>(rows.size());
+		Position ack = null;
+
+		for ( RowMap r : rows ) {
+			if ( r.shouldOutput(outputConfig) ) {
+				messages.add(r.toJSON(outputConfig));
+
+				if ( !r.isTXCommit() )
+					continue;
+			}
+			ack = r.getPosition();
+		}
+
+		int sent = messages.size();
+		try {
+			// the whole pipeline goes out on the connection before anything else can use it
+			synchronized ( jedis ) {
+				Pipeline pipeline = jedis.pipelined();
+				for ( String msg : messages ) {
+					switch (redistype){
+						case "lpush":
+							pipeline.lpush(this.listkey, msg);
+							break;
+						case "pubsub":
+						default:
+							pipeline.publish(this.channel, msg);
+							break;
+					}
+				}
+				pipeline.sync();
+			}
+			this.succeededMessageCount.inc(sent);
+			this.succeededMessageMeter.mark(sent);
+		} catch (Exception e) {
+			this.failedMessageCount.inc(sent);
+			this.failedMessageMeter.mark(sent);
+			logger.error("Exception during pipelined put", e);
+
+			if (!context.getConfig().ignoreProducerError) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		if ( ack != null ) {
+			context.setPosition(ack);
+		}
+
+		if ( logger.isDebugEnabled() ) {
+			logger.debug("->  pipelined " + sent + " messages to " + (redistype.equals("lpush") ? "queue:" + listkey : "channel:" + channel));
+		}
+	}
+
 	@Override
 	public void requestStop() {
-		jedis.close();
+		synchronized ( jedis ) {
+			jedis.close();
+		}
 	}
 
 	@Override
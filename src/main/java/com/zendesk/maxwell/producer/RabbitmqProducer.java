@@ -10,6 +10,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.concurrent.TimeoutException;
 
 public class RabbitmqProducer extends AbstractProducer {
@@ -44,15 +45,15 @@ public class RabbitmqProducer extends AbstractProducer {
 			return;
 		}
 
-		String value = r.toJSON(outputConfig);
+		byte[] value = r.toJSONBytes(outputConfig);
 		String routingKey = getRoutingKeyFromTemplate(r);
 
-		channel.basicPublish(exchangeName, routingKey, props, value.getBytes());
+		channel.basicPublish(exchangeName, routingKey, props, value);
 		if ( r.isTXCommit() ) {
 			context.setPosition(r.getPosition());
 		}
 		if ( LOGGER.isDebugEnabled()) {
-			LOGGER.debug("->  routing key:" + routingKey + ", partition:" + value);
+			LOGGER.debug("->  routing key:" + routingKey + ", partition:" + new String(value, StandardCharsets.UTF_8));
 		}
 	}
 
@@ -0,0 +1,251 @@
+package com.zendesk.maxwell.producer;
+
+import com.codahale.metrics.Gauge;
+import com.zendesk.maxwell.MaxwellContext;
+import com.zendesk.maxwell.monitoring.Metrics;
+import com.zendesk.maxwell.producer.partitioners.MaxwellLanePartitioner;
+import com.zendesk.maxwell.replication.Position;
+import com.zendesk.maxwell.row.RowMap;
+import com.zendesk.maxwell.schema.ddl.DDLMap;
+import com.zendesk.maxwell.util.StoppableTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Sends rows over several independent "lanes", each with its own thread and its own
+ * instance of an async producer, so that serializing and sending rows isn't bound to
+ * a single core.
+ *
+ * Rows are assigned to a lane by table or by primary key, so rows for the same table
+ * (or the same row) are still sent in binlog order.  DDL is sent only after every row
+ * before it, on every lane, has been acknowledged, and nothing is sent past it until
+ * it has gone out.
+ *
+ * Acknowledgements come back from the lanes in any order; maxwell's position is only
+ * advanced past a transaction once every row of it, and of every transaction before it
+ * from the same source, has been acknowledged.
+ */
+public class ShardedProducer extends AbstractProducer implements StoppableTask {
+	static final Logger LOGGER = LoggerFactory.getLogger(ShardedProducer.class);
+	private static final int LANE_QUEUE_SIZE = 100;
+
+	private final Lane[] lanes;
+	private final MaxwellLanePartitioner partitioner;
+	private final InflightMessagesBySource inflightMessages;
+	private volatile boolean running = true;
+	// the open transaction of each source, keyed like InflightMessagesBySource; guarded by push()
+	private final HashMap<String, PendingTransaction> currentTransactions = new HashMap<>();
+
+	/*
+	   the rows pushed since their source's last commit.  We hold one count per unacknowledged
+	   row, plus one that's released when the transaction's commit row is pushed,
+	   so the count can only reach zero once the whole transaction is acknowledged.
+	 */
+	private class PendingTransaction {
+		private final AtomicInteger outstanding = new AtomicInteger(1);
+		private Position commitPosition;
+
+		void addRow() {
+			outstanding.incrementAndGet();
+		}
+
+		void commit(Position position) {
+			this.commitPosition = position;
+			rowCompleted();
+		}
+
+		void rowCompleted() {
+			if ( outstanding.decrementAndGet() == 0 )
+				transactionCompleted(commitPosition);
+		}
+	}
+
+	private static class LaneMessage {
+		final RowMap row;
+		final PendingTransaction transaction;
+
+		LaneMessage(RowMap row, PendingTransaction transaction) {
+			this.row = row;
+			this.transaction = transaction;
+		}
+	}
+
+	private class Lane implements Runnable {
+		private final AbstractAsyncProducer producer;
+		private final ArrayBlockingQueue<LaneMessage> queue = new ArrayBlockingQueue<>(LANE_QUEUE_SIZE);
+		private final AtomicLong queued = new AtomicLong(0);
+		private final AtomicLong sent = new AtomicLong(0);
+		// rows handed to the producer whose callbacks haven't yet fired
+		private final AtomicLong unacknowledged = new AtomicLong(0);
+		private final Thread thread;
+
+		Lane(int index, AbstractAsyncProducer producer) {
+			this.producer = producer;
+			this.thread = new Thread(this, "maxwell-producer-lane-" + index);
+			this.thread.setDaemon(true);
+		}
+
+		void put(LaneMessage m) throws InterruptedException {
+			queued.incrementAndGet();
+			queue.put(m);
+		}
+
+		boolean isIdle() {
+			return sent.get() == queued.get() && unacknowledged.get() == 0;
+		}
+
+		void send(LaneMessage m) throws Exception {
+			AbstractAsyncProducer.CallbackCompleter cc =
+				producer.new CallbackCompleter(null, m.row.getPosition(), false, context) {
+					@Override
+					public void markCompleted() {
+						unacknowledged.decrementAndGet();
+						m.transaction.rowCompleted();
+					}
+				};
+
+			unacknowledged.incrementAndGet();
+			producer.sendAsync(m.row, cc);
+		}
+
+		@Override
+		public void run() {
+			try {
+				while ( running ) {
+					LaneMessage m = queue.poll(100, TimeUnit.MILLISECONDS);
+					if ( m == null )
+						continue;
+
+					send(m);
+					sent.incrementAndGet();
+				}
+			} catch ( InterruptedException e ) {
+				return;
+			} catch ( Exception e ) {
+				LOGGER.error("producer lane " + thread.getName() + " failed", e);
+				context.terminate(e);
+			}
+		}
+	}
+
+	/**
+	 * @param context the maxwell context
+	 * @param numLanes number of lanes to send on
+	 * @param laneKey "table" or "primary_key"
+	 * @param laneProducerFactory builds the producer behind each lane
+	 */
+	public ShardedProducer(MaxwellContext context, int numLanes, String laneKey, Supplier<AbstractAsyncProducer> laneProducerFactory) {
+		super(context);
+
+		this.partitioner = new MaxwellLanePartitioner(laneKey);
+		this.inflightMessages = new InflightMessagesBySource(context);
+
+		// registered before the lane producers are built, which then leave it alone
+		Metrics metrics = context.getMetrics();
+		metrics.register(metrics.metricName("inflightmessages", "count"), (Gauge<Long>) inflightMessages::size);
+
+		this.lanes = new Lane[numLanes];
+		for ( int i = 0; i < numLanes; i++ )
+			lanes[i] = new Lane(i, laneProducerFactory.get());
+
+		for ( Lane lane : lanes )
+			lane.thread.start();
+	}
+
+	private void transactionCompleted(Position commitPosition) {
+		InflightMessageList.InflightMessage message = inflightMessages.forPosition(commitPosition).completeMessage(commitPosition);
+
+		if ( message != null ) {
+			context.setPosition(message.position);
+			metricsTimer.update(message.timeSinceSendMS(), TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private void awaitLanesIdle() throws InterruptedException {
+		for ( Lane lane : lanes ) {
+			while ( running && !lane.isIdle() )
+				Thread.sleep(1);
+		}
+	}
+
+	/*
+	   sources interleave their transactions, so a commit only closes the transaction
+	   of the source it came from.
+	 */
+	private static String sourceOf(Position position) {
+		return position == null || position.getSource() == null ? "" : position.getSource();
+	}
+
+	@Override
+	public synchronized void push(RowMap r) throws Exception {
+		Position position = r.getPosition();
+		String source = sourceOf(position);
+		PendingTransaction transaction = currentTransactions.computeIfAbsent(source, s -> new PendingTransaction());
+
+		if ( r.isTXCommit() ) {
+			inflightMessages.forPosition(position).addMessage(position);
+			currentTransactions.put(source, new PendingTransaction());
+		}
+
+		if ( r.shouldOutput(outputConfig) ) {
+			transaction.addRow();
+			LaneMessage message = new LaneMessage(r, transaction);
+
+			if ( r instanceof DDLMap ) {
+				// lanes are only ordered amongst themselves; a schema change must not overtake
+				// (or be overtaken by) rows for its table on any other lane.
+				awaitLanesIdle();
+				lanes[0].send(message);
+			} else {
+				lanes[partitioner.lane(r, lanes.length)].put(message);
+			}
+		}
+
+		if ( r.isTXCommit() )
+			transaction.commit(position);
+	}
+
+	@Override
+	public StoppableTask getStoppableTask() {
+		return this;
+	}
+
+	@Override
+	public void requestStop() {
+		running = false;
+	}
+
+	@Override
+	public void awaitStop(Long timeout) throws TimeoutException {
+		long deadline = System.currentTimeMillis() + timeout;
+		for ( Lane lane : lanes ) {
+			try {
+				lane.thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+			} catch ( InterruptedException e ) { }
+
+			if ( lane.thread.isAlive() )
+				throw new TimeoutException("Timed out waiting for " + lane.thread.getName() + " to stop");
+		}
+
+		// the lane producers are driven by our threads rather than their own, so once
+		// those are gone all that's left is to release their clients.
+		for ( Lane lane : lanes ) {
+			StoppableTask task = lane.producer.getStoppableTask();
+			if ( task != null ) {
+				try {
+					task.requestStop();
+				} catch ( Exception e ) {
+					LOGGER.error("error stopping producer lane", e);
+				}
+			}
+		}
+	}
+}
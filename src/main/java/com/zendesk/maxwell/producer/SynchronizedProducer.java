@@ -0,0 +1,50 @@
+package com.zendesk.maxwell.producer;
+
+import com.codahale.metrics.Meter;
+import com.zendesk.maxwell.MaxwellContext;
+import com.zendesk.maxwell.monitoring.MaxwellDiagnostic;
+import com.zendesk.maxwell.row.RowMap;
+import com.zendesk.maxwell.util.StoppableTask;
+
+import java.util.List;
+
+/**
+ * Serializes pushes to a producer shared by several replicator threads.
+ *
+ * With `sources`, every source's replicator pushes to the one producer; most producers
+ * expect a single caller (a file written in two parts per row, a single jedis
+ * connection), so each push or batch goes through whole before the next one starts.
+ */
+public class SynchronizedProducer extends AbstractProducer {
+	private final AbstractProducer producer;
+
+	public SynchronizedProducer(MaxwellContext context, AbstractProducer producer) {
+		super(context);
+		this.producer = producer;
+	}
+
+	@Override
+	public synchronized void push(RowMap r) throws Exception {
+		producer.push(r);
+	}
+
+	@Override
+	public synchronized void pushBatch(List<RowMap> rows) throws Exception {
+		producer.pushBatch(rows);
+	}
+
+	@Override
+	public StoppableTask getStoppableTask() {
+		return producer.getStoppableTask();
+	}
+
+	@Override
+	public Meter getFailedMessageMeter() {
+		return producer.getFailedMessageMeter();
+	}
+
+	@Override
+	public MaxwellDiagnostic getDiagnostic() {
+		return producer.getDiagnostic();
+	}
+}
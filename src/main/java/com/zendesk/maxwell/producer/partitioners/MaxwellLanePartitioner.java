@@ -0,0 +1,19 @@
+package com.zendesk.maxwell.producer.partitioners;
+
+import com.zendesk.maxwell.row.RowMap;
+
+/**
+ * Picks which of a {@link com.zendesk.maxwell.producer.ShardedProducer}'s lanes a row is sent on.
+ */
+public class MaxwellLanePartitioner extends AbstractMaxwellPartitioner {
+	private final HashFunction hashFunc = new HashFunctionDefault();
+
+	public MaxwellLanePartitioner(String partitionKey) {
+		super(partitionKey, null, null);
+	}
+
+	public int lane(RowMap r, int numLanes) {
+		String s = getDatabase(r) + "." + getHashString(r);
+		return Math.abs(hashFunc.hashCode(s) % numLanes);
+	}
+}
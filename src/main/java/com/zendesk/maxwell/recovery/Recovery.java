@@ -11,6 +11,7 @@ import com.zendesk.maxwell.replication.Position;
 import com.zendesk.maxwell.replication.Replicator;
 import com.zendesk.maxwell.row.HeartbeatRowMap;
 import com.zendesk.maxwell.row.RowMap;
+import com.zendesk.maxwell.util.ByteBoundedRingBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import snaq.db.ConnectionPool;
@@ -68,7 +69,11 @@ public class Recovery {
 					position,
 					true,
 					recoveryInfo.clientID,
-					new HeartbeatNotifier()
+					new HeartbeatNotifier(),
+					BinlogConnectorReplicator.DEFAULT_EVENT_QUEUE_BYTES,
+					ByteBoundedRingBuffer.WaitStrategy.BLOCKING,
+					0,
+					new ArrayList<>()
 			);
 
 			replicator.setFilter(new RecoveryFilter(this.maxwellDatabaseName));
@@ -9,6 +9,7 @@ import com.zendesk.maxwell.monitoring.Metrics;
 import com.zendesk.maxwell.producer.AbstractProducer;
 import com.zendesk.maxwell.row.HeartbeatRowMap;
 import com.zendesk.maxwell.row.RowMap;
+import com.zendesk.maxwell.row.TransactionCommitRowMap;
 import com.zendesk.maxwell.schema.SchemaStore;
 import com.zendesk.maxwell.schema.ddl.DDLMap;
 import com.zendesk.maxwell.schema.ddl.ResolvedSchemaChange;
@@ -17,8 +18,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 public abstract class AbstractReplicator extends RunLoopProcess implements Replicator {
 	private static Logger LOGGER = LoggerFactory.getLogger(AbstractReplicator.class);
@@ -26,15 +30,18 @@ public abstract class AbstractReplicator extends RunLoopProcess implements Repli
 	protected final AbstractProducer producer;
 	protected final AbstractBootstrapper bootstrapper;
 	protected final String maxwellSchemaDatabaseName;
-	protected final TableCache tableCache = new TableCache();
-	protected Position lastHeartbeatPosition;
+	protected final TableCache tableCache;
+	protected volatile Position lastHeartbeatPosition;
 	protected final HeartbeatNotifier heartbeatNotifier;
 	protected Long stopAtHeartbeat;
-	protected MaxwellFilter filter;
+	protected volatile MaxwellFilter filter;
 
 	private final Counter rowCounter;
 	private final Meter rowMeter;
 
+	private ReplicationPipeline pipeline;
+	private int batchRows = 0;
+
 	public AbstractReplicator(
 		String clientID,
 		AbstractBootstrapper bootstrapper,
@@ -47,6 +54,7 @@ public abstract class AbstractReplicator extends RunLoopProcess implements Repli
 		this.clientID = clientID;
 		this.bootstrapper = bootstrapper;
 		this.maxwellSchemaDatabaseName = maxwellSchemaDatabaseName;
+		this.tableCache = new TableCache(maxwellSchemaDatabaseName, metrics);
 		this.producer = producer;
 		this.lastHeartbeatPosition = initialPosition;
 		this.heartbeatNotifier = heartbeatNotifier;
@@ -96,11 +104,14 @@ public abstract class AbstractReplicator extends RunLoopProcess implements Repli
 		for (ResolvedSchemaChange change : changes) {
 			if (change.shouldOutput(filter)) {
 				DDLMap ddl = new DDLMap(change, timestamp, sql, position);
-				producer.push(ddl);
+				if ( pipeline != null )
+					pipeline.put(ddl);
+				else
+					producer.push(ddl);
 			}
 		}
 
-		tableCache.clear();
+		tableCache.invalidate(changes);
 	}
 
 	/**
@@ -117,20 +128,12 @@ public abstract class AbstractReplicator extends RunLoopProcess implements Repli
 	 * @return Whether we should write the event to the producer
 	 */
 	protected boolean shouldOutputEvent(String database, String table, MaxwellFilter filter) {
-		Boolean isSystemWhitelisted = this.maxwellSchemaDatabaseName.equals(database)
-			&& "bootstrap".equals(table);
-
-		if ( MaxwellFilter.isSystemBlacklisted(database, table) )
-			return false;
-		else if ( isSystemWhitelisted)
-			return true;
-		else
-			return MaxwellFilter.matches(filter, database, table);
+		return TableCache.FilterDecision.resolve(maxwellSchemaDatabaseName, database, table, filter).shouldOutput();
 	}
 
 
 	protected boolean shouldOutputRowMap(String database, String table, RowMap rowMap, MaxwellFilter filter) {
-		return MaxwellFilter.matchesValues(filter, database, table, rowMap.getData());
+		return MaxwellFilter.matchesValues(filter, database, table, rowMap);
 	}
 
 	/**
@@ -150,10 +153,32 @@ public abstract class AbstractReplicator extends RunLoopProcess implements Repli
 	 * This is the top-level function in the run-loop.
 	 */
 	public void work() throws Exception {
-		RowMap row = getRow();
+		RowMap row;
+		// checked before we look for a row, so that a null row below means there's truly nothing left
+		boolean finished = isFinished();
+
+		if ( batchRows > 0 ) {
+			workBatch(finished);
+			return;
+		}
+
+		if ( pipeline != null ) {
+			row = pipeline.poll(100, TimeUnit.MILLISECONDS);
+			if ( row instanceof DDLMap ) {
+				producer.push(row);
+				return;
+			}
+		} else {
+			row = getRow();
+		}
 
-		if ( row == null )
+		if ( row == null ) {
+			if ( finished ) {
+				LOGGER.info("replicator reached the end of its input; stopping");
+				this.taskState.requestStop();
+			}
 			return;
+		}
 
 		rowCounter.inc();
 		rowMeter.mark();
@@ -161,6 +186,77 @@ public abstract class AbstractReplicator extends RunLoopProcess implements Repli
 		processRow(row);
 	}
 
+	/**
+	 * get up to `batchRows` rows and pass them on, handing plain rows to the producer
+	 * in as few {@link AbstractProducer#pushBatch} calls as possible.
+	 */
+	private void workBatch(boolean finished) throws Exception {
+		List<RowMap> rows = pipeline != null ? pipeline.poll(batchRows, 100, TimeUnit.MILLISECONDS) : getRows(batchRows);
+
+		if ( rows.isEmpty() ) {
+			if ( finished ) {
+				LOGGER.info("replicator reached the end of its input; stopping");
+				this.taskState.requestStop();
+			}
+			return;
+		}
+
+		ArrayList<RowMap> batch = new ArrayList<>(rows.size());
+		for ( RowMap row : rows ) {
+			if ( row instanceof DDLMap ) {
+				flushBatch(batch);
+				producer.push(row);
+				continue;
+			}
+
+			rowCounter.inc();
+			rowMeter.mark();
+
+			if ( !(row instanceof HeartbeatRowMap) && isProducerRow(row) ) {
+				batch.add(row);
+				continue;
+			}
+
+			// heartbeats and bootstrap rows keep their one-at-a-time handling, in order
+			flushBatch(batch);
+			processRow(row);
+			if ( !taskState.isRunning() )
+				return;
+		}
+		flushBatch(batch);
+	}
+
+	private void flushBatch(List<RowMap> batch) throws Exception {
+		if ( batch.isEmpty() )
+			return;
+
+		producer.pushBatch(batch);
+		batch.clear();
+	}
+
+	/**
+	 * Get up to `maxRows` rows at once.
+	 *
+	 * Replicators that buffer whole transactions can hand back more than one row
+	 * per call; by default this is just {@link #getRow()}.
+	 *
+	 * @return rows in binlog order; empty if none are ready
+	 */
+	protected List<RowMap> getRows(int maxRows) throws Exception {
+		RowMap row = getRow();
+		return row == null ? Collections.emptyList() : Collections.singletonList(row);
+	}
+
+	/**
+	 * Has the replicator read the last event it's ever going to see?
+	 *
+	 * Once this returns true and no rows are left, the run-loop stops by itself.
+	 * Replicators that follow a live server never finish.
+	 */
+	protected boolean isFinished() {
+		return false;
+	}
+
 	public void stopAtHeartbeat(long heartbeat) {
 		stopAtHeartbeat = heartbeat;
 	}
@@ -176,12 +272,23 @@ public abstract class AbstractReplicator extends RunLoopProcess implements Repli
 					this.taskState.stopped();
 				}
 			}
-		} else if (!bootstrapper.shouldSkip(row) && !isMaxwellRow(row))
+		} else if (isProducerRow(row))
 			producer.push(row);
 		else
 			bootstrapper.work(row, producer, this);
 	}
 
+	/*
+	   does this row go to the producer rather than the bootstrapper?  The commit marker
+	   of a streamed transaction always does, even when the table it names (the last one
+	   the transaction wrote to) is maxwell's own or being bootstrapped: it carries no data,
+	   and it's the only row that moves the stored position past the transaction.
+	 */
+	private boolean isProducerRow(RowMap row) throws Exception {
+		return row instanceof TransactionCommitRowMap
+			|| (!bootstrapper.shouldSkip(row) && !isMaxwellRow(row));
+	}
+
 	/**
 	 * Is this RowMap an update to one of maxwell's own tables?
 	 *
@@ -206,6 +313,38 @@ public abstract class AbstractReplicator extends RunLoopProcess implements Repli
 	 */
 	public abstract RowMap getRow() throws Exception;
 
+	/**
+	 * Run row building on a separate thread from the producer hand-off.
+	 *
+	 * Must be called before the run-loop starts.  Rows are passed between the
+	 * stages through a queue of at most `queueSize` rows.
+	 *
+	 * @param queueSize capacity of the queue between row building and output
+	 */
+	public void enablePipeline(int queueSize) {
+		this.pipeline = new ReplicationPipeline(this, queueSize);
+	}
+
+	/**
+	 * Hand rows to the producer up to `maxRows` at a time, through
+	 * {@link AbstractProducer#pushBatch}, rather than one by one.
+	 *
+	 * Must be called before the run-loop starts.
+	 */
+	public void enableBatching(int maxRows) {
+		this.batchRows = maxRows;
+	}
+
+	protected void startPipeline() {
+		if ( pipeline != null )
+			pipeline.start();
+	}
+
+	protected void stopPipeline() throws InterruptedException {
+		if ( pipeline != null )
+			pipeline.stop();
+	}
+
 	public void setFilter(MaxwellFilter filter) {
 		this.filter = filter;
 	}
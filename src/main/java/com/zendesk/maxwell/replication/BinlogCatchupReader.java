@@ -0,0 +1,367 @@
+package com.zendesk.maxwell.replication;
+
+import com.github.shyiko.mysql.binlog.BinaryLogClient;
+import com.github.shyiko.mysql.binlog.event.Event;
+import com.github.shyiko.mysql.binlog.event.EventHeaderV4;
+import com.github.shyiko.mysql.binlog.event.EventType;
+import com.github.shyiko.mysql.binlog.event.QueryEventData;
+import com.github.shyiko.mysql.binlog.event.RotateEventData;
+import com.github.shyiko.mysql.binlog.event.deserialization.EventDeserializer;
+import com.zendesk.maxwell.MaxwellMysqlConfig;
+import com.zendesk.maxwell.util.ByteBoundedRingBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import snaq.db.ConnectionPool;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Catches up on a backlog of binlog files by reading several of them at once.
+ *
+ * Each of the next `parallelFiles` complete binlogs (as listed by `SHOW BINARY LOGS`)
+ * gets its own connection and is decoded into a bounded buffer on that connection's
+ * thread.  Events are handed to the listener strictly in file order, so the replicator
+ * sees exactly the stream a single connection would have given it.  A file that isn't
+ * next in line stops reading ahead at its first schema change until every file before
+ * it has been passed on.
+ *
+ * Once the only file left is the one the server is writing to, the reader finishes;
+ * the caller picks up from {@link #getHandoffPosition()} with a normal streaming client.
+ */
+class BinlogCatchupReader implements Runnable {
+	static final Logger LOGGER = LoggerFactory.getLogger(BinlogCatchupReader.class);
+	private static final int BUFFER_SLOTS = 4096;
+
+	private final MaxwellMysqlConfig mysqlConfig;
+	private final ConnectionPool connectionPool;
+	private final BinlogPosition start;
+	private final int parallelFiles;
+	private final long bufferBytes;
+	private final Supplier<EventDeserializer> eventDeserializers;
+	private final List<String> files = new ArrayList<>();
+	private BinaryLogClient.EventListener listener;
+	private Thread thread;
+
+	private volatile String currentFilename;
+	private volatile int headIndex = 0;
+	private volatile BinlogPosition handoffPosition;
+	private volatile boolean mustStop = false;
+	private volatile boolean finished = false;
+	private volatile Exception error;
+
+	/**
+	 * @param start position to start catching up from
+	 * @param parallelFiles number of files to read at once
+	 * @param bufferBytes size of each file's read-ahead buffer
+	 * @param eventDeserializers builds a deserializer for each connection
+	 */
+	BinlogCatchupReader(
+		MaxwellMysqlConfig mysqlConfig,
+		ConnectionPool connectionPool,
+		BinlogPosition start,
+		int parallelFiles,
+		long bufferBytes,
+		Supplier<EventDeserializer> eventDeserializers
+	) {
+		this.mysqlConfig = mysqlConfig;
+		this.connectionPool = connectionPool;
+		this.start = start;
+		this.parallelFiles = parallelFiles;
+		this.bufferBytes = bufferBytes;
+		this.eventDeserializers = eventDeserializers;
+		this.currentFilename = start.getFile();
+	}
+
+	/**
+	 * Start catching up, if we're far enough behind to bother.
+	 *
+	 * @return false if there's less than two complete binlogs to read, in which
+	 *         case the caller should just stream from `start`.
+	 */
+	boolean start(BinaryLogClient.EventListener listener) throws SQLException {
+		if ( start.getFile() == null )
+			return false;
+
+		refreshFiles();
+		if ( files.size() < 2 ) {
+			LOGGER.info("replication is " + files.size() + " complete binlog(s) behind, not running catch-up");
+			return false;
+		}
+
+		LOGGER.info("replication is " + files.size() + " complete binlogs behind, catching up "
+			+ parallelFiles + " files at a time from " + start.getFile() + ":" + start.getOffset());
+
+		this.listener = listener;
+		this.thread = new Thread(this, "maxwell-binlog-catchup");
+		this.thread.setDaemon(true);
+		this.thread.start();
+		return true;
+	}
+
+	/**
+	 * Append any completed binlogs we haven't seen yet.
+	 *
+	 * @return whether there were any
+	 */
+	private boolean refreshFiles() throws SQLException {
+		ArrayList<String> logs = new ArrayList<>();
+		try ( Connection c = connectionPool.getConnection() ) {
+			ResultSet rs = c.createStatement().executeQuery("SHOW BINARY LOGS");
+			while ( rs.next() )
+				logs.add(rs.getString("Log_name"));
+		}
+
+		String last = files.isEmpty() ? null : files.get(files.size() - 1);
+		boolean added = false;
+		// the last binlog is still being written to; leave it to the streaming client
+		for ( int i = 0; i < logs.size() - 1; i++ ) {
+			String name = logs.get(i);
+			if ( name.compareTo(start.getFile()) < 0 || (last != null && name.compareTo(last) <= 0) )
+				continue;
+
+			files.add(name);
+			added = true;
+		}
+		return added;
+	}
+
+	String getCurrentFilename() {
+		return currentFilename;
+	}
+
+	/**
+	 * Has every event of every file we meant to read been passed on (or have we given up)?
+	 */
+	boolean isFinished() {
+		return finished;
+	}
+
+	/**
+	 * Where a streaming client should pick up once we've finished.
+	 */
+	BinlogPosition getHandoffPosition() {
+		return handoffPosition;
+	}
+
+	void checkError() throws Exception {
+		if ( error != null )
+			throw error;
+	}
+
+	void stop() {
+		mustStop = true;
+		if ( thread != null )
+			thread.interrupt();
+	}
+
+	@Override
+	public void run() {
+		ArrayDeque<FileReader> window = new ArrayDeque<>();
+		int nextToOpen = 0;
+
+		try {
+			while ( !mustStop ) {
+				while ( window.size() < parallelFiles && nextToOpen < files.size() ) {
+					String file = files.get(nextToOpen);
+					long offset = nextToOpen == 0 ? start.getOffset() : 4L;
+					FileReader reader = new FileReader(nextToOpen, file, offset);
+					window.add(reader);
+					reader.connect();
+					nextToOpen++;
+				}
+
+				if ( window.isEmpty() ) {
+					// new binlogs may have been completed while we were catching up
+					if ( refreshFiles() )
+						continue;
+					break;
+				}
+
+				FileReader head = window.peek();
+				setHead(head.index);
+				currentFilename = head.filename;
+				passOn(head);
+				head.close();
+				window.poll();
+
+				if ( head.rotate != null )
+					handoffPosition = BinlogPosition.at(head.rotate.getBinlogPosition(), head.rotate.getBinlogFilename());
+
+				LOGGER.info("caught up through " + head.filename);
+			}
+		} catch ( Exception e ) {
+			LOGGER.error("binlog catch-up failed at " + currentFilename, e);
+			error = e;
+		} finally {
+			for ( FileReader reader : window )
+				reader.close();
+			finished = true;
+		}
+	}
+
+	private synchronized void setHead(int index) {
+		headIndex = index;
+		notifyAll();
+	}
+
+	private synchronized void awaitHead(int index) throws InterruptedException {
+		while ( headIndex < index && !mustStop )
+			wait(100);
+	}
+
+	/**
+	 * Hand every event of a file to the listener, as it arrives.
+	 */
+	private void passOn(FileReader reader) throws Exception {
+		while ( !mustStop ) {
+			// checked before polling, so that an empty poll afterwards means there's truly nothing left
+			boolean done = reader.done;
+			reader.checkError();
+
+			Event event = reader.buffer.poll(100, TimeUnit.MILLISECONDS);
+			if ( event == null ) {
+				if ( done )
+					return;
+				continue;
+			}
+
+			listener.onEvent(event);
+		}
+	}
+
+	/*
+	   one connection reading one binlog, from `offset` up to the ROTATE at its end.
+	 */
+	private class FileReader implements BinaryLogClient.EventListener {
+		final int index;
+		final String filename;
+		final ByteBoundedRingBuffer<Event> buffer;
+		private final BinaryLogClient client;
+		private boolean inTransaction = false;
+		private boolean disconnected = false;
+		private volatile boolean disconnecting = false;
+		volatile boolean done = false;
+		volatile RotateEventData rotate;
+		private volatile Exception error;
+
+		FileReader(int index, String filename, long offset) {
+			this.index = index;
+			this.filename = filename;
+			this.buffer = new ByteBoundedRingBuffer<>(BUFFER_SLOTS, bufferBytes, ByteBoundedRingBuffer.WaitStrategy.BLOCKING);
+
+			this.client = new BinaryLogClient(mysqlConfig.host, mysqlConfig.port, mysqlConfig.user, mysqlConfig.password);
+			this.client.setSSLMode(mysqlConfig.sslMode);
+			// server-id 0 lets several of these run side by side without the server kicking any of them off
+			this.client.setServerId(0);
+			this.client.setBlocking(false);
+			this.client.setBinlogFilename(filename);
+			this.client.setBinlogPosition(offset);
+			this.client.setEventDeserializer(eventDeserializers.get());
+			this.client.registerEventListener(this);
+			this.client.registerLifecycleListener(new BinaryLogClient.AbstractLifecycleListener() {
+				@Override
+				public void onCommunicationFailure(BinaryLogClient client, Exception ex) {
+					error = ex;
+				}
+
+				@Override
+				public void onEventDeserializationFailure(BinaryLogClient client, Exception ex) {
+					error = ex;
+				}
+
+				@Override
+				public void onDisconnect(BinaryLogClient client) {
+					// we hang up ourselves once the file's been read; anything else is a dropped connection
+					if ( !disconnecting )
+						onConnectionLost();
+				}
+			});
+		}
+
+		private void onConnectionLost() {
+			if ( !done && error == null )
+				error = new IOException("lost the connection before the end of " + filename);
+		}
+
+		void connect() throws Exception {
+			client.connect(5000);
+		}
+
+		void checkError() throws Exception {
+			if ( error != null && !done )
+				throw error;
+		}
+
+		void close() {
+			done = true;
+			disconnect();
+		}
+
+		private synchronized void disconnect() {
+			if ( disconnected )
+				return;
+
+			disconnecting = true;
+			try {
+				client.disconnect();
+			} catch ( IOException e ) {
+				LOGGER.warn("failed to disconnect from " + filename, e);
+			}
+			disconnected = true;
+		}
+
+		@Override
+		public void onEvent(Event event) {
+			if ( done )
+				return;
+
+			EventType type = event.getHeader().getEventType();
+			boolean schemaChange = false;
+			if ( type == EventType.QUERY ) {
+				String sql = ((QueryEventData) event.getData()).getSql();
+				if ( BinlogConnectorEvent.BEGIN.equals(sql) )
+					inTransaction = true;
+				else if ( BinlogConnectorEvent.COMMIT.equals(sql) )
+					inTransaction = false;
+				else
+					schemaChange = !inTransaction;
+			} else if ( type == EventType.XID ) {
+				inTransaction = false;
+			}
+
+			try {
+				if ( schemaChange )
+					awaitHead(index);
+
+				long length = ((EventHeaderV4) event.getHeader()).getEventLength();
+				while ( !mustStop && !done ) {
+					if ( buffer.offer(event, length, 100, TimeUnit.MILLISECONDS) )
+						break;
+				}
+			} catch ( InterruptedException e ) {
+				return;
+			}
+
+			// the server sends a ROTATE with no position when we connect; a real one ends the file
+			if ( type == EventType.ROTATE && ((EventHeaderV4) event.getHeader()).getNextPosition() > 0 ) {
+				rotate = event.getData();
+				disconnecting = true;
+				done = true;
+
+				// otherwise the dump carries straight on into the next file.  disconnect() waits for
+				// the client's reading thread -- this one -- to let go, so hang up from another.
+				Thread disconnector = new Thread(this::disconnect, "maxwell-binlog-catchup-disconnect");
+				disconnector.setDaemon(true);
+				disconnector.start();
+			}
+		}
+	}
+}
@@ -1,30 +1,45 @@
 package com.zendesk.maxwell.replication;
 
 import com.github.shyiko.mysql.binlog.event.*;
+import com.zendesk.maxwell.row.LazyRowMap;
 import com.zendesk.maxwell.row.RowMap;
 import com.zendesk.maxwell.schema.Table;
-import com.zendesk.maxwell.schema.columndef.ColumnDef;
 
 import java.io.Serializable;
 import java.util.*;
+import java.util.regex.Pattern;
 
 public class BinlogConnectorEvent {
 	public static final String BEGIN = "BEGIN";
 	public static final String COMMIT = "COMMIT";
 	public static final String SAVEPOINT = "SAVEPOINT";
-	private BinlogPosition position;
-	private BinlogPosition nextPosition;
 	private final Event event;
-	private final String gtidSetStr;
+	private final String filename;
+	private final GtidSetSnapshot gtidSet;
 	private final String gtid;
+	// built on first use; most events never need them
+	private BinlogPosition position;
+	private BinlogPosition nextPosition;
 
-	public BinlogConnectorEvent(Event event, String filename, String gtidSetStr, String gtid) {
+	BinlogConnectorEvent(Event event, String filename, GtidSetSnapshot gtidSet, String gtid) {
 		this.event = event;
-		this.gtidSetStr = gtidSetStr;
+		this.filename = filename;
+		this.gtidSet = gtidSet;
 		this.gtid = gtid;
-		EventHeaderV4 hV4 = (EventHeaderV4) event.getHeader();
-		this.nextPosition = new BinlogPosition(gtidSetStr, gtid, hV4.getNextPosition(), filename);
-		this.position = new BinlogPosition(gtidSetStr, gtid, hV4.getPosition(), filename);
+	}
+
+	public BinlogConnectorEvent(Event event, String filename, String gtidSetStr, String gtid) {
+		this(event, filename, GtidSetSnapshot.of(gtidSetStr), gtid);
+	}
+
+	/**
+	 * @return a copy of this event, at the same position, carrying different event data.
+	 */
+	BinlogConnectorEvent withData(EventData data) {
+		BinlogConnectorEvent copy = new BinlogConnectorEvent(new Event(event.getHeader(), data), filename, gtidSet, gtid);
+		copy.position = position;
+		copy.nextPosition = nextPosition;
+		return copy;
 	}
 
 	public Event getEvent() {
@@ -55,15 +70,34 @@ public class BinlogConnectorEvent {
 		return (TableMapEventData) event.getData();
 	}
 
+	private String getGtidSetStr() {
+		return gtidSet == null ? null : gtidSet.getGtidSetStr();
+	}
+
 	public BinlogPosition getPosition() {
+		if ( position == null ) {
+			EventHeaderV4 hV4 = (EventHeaderV4) event.getHeader();
+			position = new BinlogPosition(getGtidSetStr(), gtid, hV4.getPosition(), filename);
+		}
 		return position;
 	}
 
+	public BinlogPosition getNextPosition() {
+		if ( nextPosition == null ) {
+			EventHeaderV4 hV4 = (EventHeaderV4) event.getHeader();
+			nextPosition = new BinlogPosition(getGtidSetStr(), gtid, hV4.getNextPosition(), filename);
+		}
+		return nextPosition;
+	}
+
 	public EventType getType() {
 		return event.getHeader().getEventType();
 	}
 
-	public Long getTableID() {
+	/**
+	 * @return the table id of a rows or TABLE_MAP event, or -1 for any other event
+	 */
+	public long getTableID() {
 		EventData data = event.getData();
 		switch ( event.getHeader().getEventType() ) {
 			case EXT_WRITE_ROWS:
@@ -78,7 +112,26 @@ public class BinlogConnectorEvent {
 			case TABLE_MAP:
 				return ((TableMapEventData) data).getTableId();
 		}
-		return null;
+		return -1L;
+	}
+
+	/**
+	 * @return "insert", "update" or "delete" for a rows event type, or null for any other type
+	 */
+	public static String rowType(EventType eventType) {
+		switch ( eventType ) {
+			case WRITE_ROWS:
+			case EXT_WRITE_ROWS:
+				return "insert";
+			case UPDATE_ROWS:
+			case EXT_UPDATE_ROWS:
+				return "update";
+			case DELETE_ROWS:
+			case EXT_DELETE_ROWS:
+				return "delete";
+			default:
+				return null;
+		}
 	}
 
 	public boolean isCommitEvent() {
@@ -94,96 +147,89 @@ public class BinlogConnectorEvent {
 		return false;
 	}
 
-	private void writeData(Table table, RowMap row, Serializable[] data, BitSet includedColumns) {
-		int dataIdx = 0, colIdx = 0;
-
-		for ( ColumnDef cd : table.getColumnList() ) {
-			if ( includedColumns.get(colIdx) ) {
-				Object json = null;
-				if ( data[dataIdx] != null ) {
-					json = cd.asJSON(data[dataIdx]);
-				}
-				row.putData(cd.getName(), json);
-				dataIdx++;
-			}
-			colIdx++;
-		}
-	}
-
-	private void writeOldData(Table table, RowMap row, Serializable[] oldData, BitSet oldIncludedColumns) {
-		int dataIdx = 0, colIdx = 0;
-
-		for ( ColumnDef cd : table.getColumnList() ) {
-			if ( oldIncludedColumns.get(colIdx) ) {
-				Object json = null;
-				if ( oldData[dataIdx] != null ) {
-					json = cd.asJSON(oldData[dataIdx]);
-				}
-
-				if (!row.hasData(cd.getName())) {
-					/*
-					   If we find a column in the BEFORE image that's *not* present in the AFTER image,
-					   we're running in binlog_row_image = MINIMAL.  In this case, the BEFORE image acts
-					   as a sort of WHERE clause to update rows with the new values (present in the AFTER image),
-					   In this case we should put what's in the "before" image into the "data" section, not the "old".
-					 */
-					row.putData(cd.getName(), json);
-				} else {
-					if (!Objects.equals(row.getData(cd.getName()), json)) {
-						row.putOldData(cd.getName(), json);
-					}
-				}
-				dataIdx++;
-			}
-			colIdx++;
+	private LazyRowMap buildRowMap(String type, Position position, Serializable[] data, Table table, BitSet includedColumns, String rowQuery, List<Pattern> excludeColumns) {
+		BitSet excludedColumns = null;
+		if ( !excludeColumns.isEmpty() ) {
+			excludedColumns = table.getExcludedColumns(excludeColumns);
 		}
-	}
 
-	private RowMap buildRowMap(String type, Position position, Serializable[] data, Table table, BitSet includedColumns, String rowQuery) {
-		RowMap map = new RowMap(
+		LazyRowMap row = new LazyRowMap(
 			type,
-			table.getDatabase(),
-			table.getName(),
+			table,
 			event.getHeader().getTimestamp(),
-			table.getPKList(),
 			position,
-			rowQuery
+			rowQuery,
+			data,
+			includedColumns,
+			excludedColumns
 		);
-
-		writeData(table, map, data, includedColumns);
-		return map;
-	}
-
-	public List<RowMap> jsonMaps(Table table, Position lastHeartbeatPosition, String rowQuery) {
-		ArrayList<RowMap> list = new ArrayList<>();
-
-		Position nextPosition = lastHeartbeatPosition.withBinlogPosition(this.nextPosition);
+		row.setExcludedColumnPatterns(excludeColumns);
+		return row;
+	}
+
+	/**
+	 * Build the RowMaps for a rows event.
+	 *
+	 * Rows are built one at a time as the iterator is advanced, so that a huge
+	 * multi-row event can be spilled by a RowMapBuffer as it's read instead of
+	 * sitting on the heap all at once.
+	 *
+	 * @param excludeColumns `exclude_columns` patterns; matching columns are left out of the rows
+	 */
+	public Iterator<RowMap> jsonMaps(Table table, Position lastHeartbeatPosition, String rowQuery, List<Pattern> excludeColumns) {
+		Position nextPosition = lastHeartbeatPosition.withBinlogPosition(getNextPosition());
 		switch ( getType() ) {
 			case WRITE_ROWS:
 			case EXT_WRITE_ROWS:
-				for ( Serializable[] data : writeRowsData().getRows() ) {
-					list.add(buildRowMap("insert", nextPosition, data, table, writeRowsData().getIncludedColumns(), rowQuery));
-				}
-				break;
+				return new RowMapIterator<Serializable[]>(writeRowsData().getRows()) {
+					@Override
+					protected RowMap build(Serializable[] data) {
+						return buildRowMap("insert", nextPosition, data, table, writeRowsData().getIncludedColumns(), rowQuery, excludeColumns);
+					}
+				};
 			case DELETE_ROWS:
 			case EXT_DELETE_ROWS:
-				for ( Serializable[] data : deleteRowsData().getRows() ) {
-					list.add(buildRowMap("delete", nextPosition, data, table, deleteRowsData().getIncludedColumns(), rowQuery));
-				}
-				break;
+				return new RowMapIterator<Serializable[]>(deleteRowsData().getRows()) {
+					@Override
+					protected RowMap build(Serializable[] data) {
+						return buildRowMap("delete", nextPosition, data, table, deleteRowsData().getIncludedColumns(), rowQuery, excludeColumns);
+					}
+				};
 			case UPDATE_ROWS:
 			case EXT_UPDATE_ROWS:
-				for ( Map.Entry<Serializable[], Serializable[]> e : updateRowsData().getRows() ) {
-					Serializable[] data = e.getValue();
-					Serializable[] oldData = e.getKey();
-
-					RowMap r = buildRowMap("update", nextPosition, data, table, updateRowsData().getIncludedColumns(), rowQuery);
-					writeOldData(table, r, oldData, updateRowsData().getIncludedColumnsBeforeUpdate());
-					list.add(r);
-				}
-				break;
+				return new RowMapIterator<Map.Entry<Serializable[], Serializable[]>>(updateRowsData().getRows()) {
+					@Override
+					protected RowMap build(Map.Entry<Serializable[], Serializable[]> e) {
+						Serializable[] data = e.getValue();
+						Serializable[] oldData = e.getKey();
+
+						LazyRowMap r = buildRowMap("update", nextPosition, data, table, updateRowsData().getIncludedColumns(), rowQuery, excludeColumns);
+						r.setOldImage(oldData, updateRowsData().getIncludedColumnsBeforeUpdate());
+						return r;
+					}
+				};
 		}
 
-		return list;
+		return Collections.emptyIterator();
+	}
+
+	private static abstract class RowMapIterator<T> implements Iterator<RowMap> {
+		private final Iterator<T> rows;
+
+		RowMapIterator(List<T> rows) {
+			this.rows = rows.iterator();
+		}
+
+		protected abstract RowMap build(T row);
+
+		@Override
+		public boolean hasNext() {
+			return rows.hasNext();
+		}
+
+		@Override
+		public RowMap next() {
+			return build(rows.next());
+		}
 	}
 }
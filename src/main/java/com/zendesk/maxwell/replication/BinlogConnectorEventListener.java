@@ -4,40 +4,84 @@ import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Timer;
 import com.github.shyiko.mysql.binlog.BinaryLogClient;
 import com.github.shyiko.mysql.binlog.event.Event;
+import com.github.shyiko.mysql.binlog.event.EventHeaderV4;
 import com.github.shyiko.mysql.binlog.event.EventType;
 import com.github.shyiko.mysql.binlog.event.GtidEventData;
 import com.zendesk.maxwell.monitoring.Metrics;
+import com.zendesk.maxwell.util.ByteBoundedRingBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 
 class BinlogConnectorEventListener implements BinaryLogClient.EventListener {
 	private static final Logger LOGGER = LoggerFactory.getLogger(BinlogConnectorEventListener.class);
 
-	private final BlockingQueue<BinlogConnectorEvent> queue;
+	private final ByteBoundedRingBuffer<BinlogConnectorEvent> queue;
 	private final Timer queueTimer;
 	protected final AtomicBoolean mustStop = new AtomicBoolean(false);
-	private final BinaryLogClient client;
+	private final Supplier<String> binlogFilename;
+	private final ParallelRowsDecoder rowsDecoder;
 	private long replicationLag;
 	private String gtid;
+	private GtidSetSnapshot gtidSet;
 
+	/**
+	 * @param binlogFilename the name of the binlog file the current event was read from
+	 * @param gtidSetStr the GTID set before the first event, or null outside of GTID mode
+	 */
 	public BinlogConnectorEventListener(
-		BinaryLogClient client,
-		BlockingQueue<BinlogConnectorEvent> q,
-		Metrics metrics) {
-		this.client = client;
+		Supplier<String> binlogFilename,
+		String gtidSetStr,
+		ByteBoundedRingBuffer<BinlogConnectorEvent> q,
+		Metrics metrics,
+		int rowsDecoderThreads) {
+		this.binlogFilename = binlogFilename;
 		this.queue = q;
+		this.gtidSet = GtidSetSnapshot.of(gtidSetStr);
+		this.rowsDecoder = rowsDecoderThreads > 0 ? new ParallelRowsDecoder(rowsDecoderThreads, q, mustStop) : null;
 		this.queueTimer =  metrics.getRegistry().timer(metrics.metricName("replication", "queue", "time"));
 
 		final BinlogConnectorEventListener self = this;
 		metrics.register(metrics.metricName("replication", "lag"), (Gauge<Long>) () -> self.replicationLag);
+		metrics.register(metrics.metricName("replication", "queue", "bytes"), (Gauge<Long>) q::getBytes);
+		metrics.register(metrics.metricName("replication", "queue", "events"), (Gauge<Integer>) q::size);
+		metrics.register(
+			metrics.metricName("replication", "queue", "blocked_time"),
+			(Gauge<Long>) () -> TimeUnit.NANOSECONDS.toMillis(q.getOfferBlockedNanos())
+		);
 	}
 
 	public void stop() {
 		mustStop.set(true);
+		if ( rowsDecoder != null )
+			rowsDecoder.stop();
+	}
+
+	/**
+	 * Rethrow any failure from the parallel rows decoder, if it's in use.
+	 */
+	public void checkError() throws Exception {
+		if ( rowsDecoder != null )
+			rowsDecoder.checkError();
+	}
+
+	/**
+	 * The GTID set as of the last event we were handed, or null outside of GTID mode.
+	 *
+	 * Only safe to call once events have stopped arriving.
+	 */
+	public String getGtidSetStr() {
+		return gtidSet == null ? null : gtidSet.getGtidSetStr();
+	}
+
+	/**
+	 * Has every event we've been handed made it to the queue?
+	 */
+	public boolean isDrained() {
+		return rowsDecoder == null || rowsDecoder.isIdle();
 	}
 
 	@Override
@@ -47,9 +91,12 @@ class BinlogConnectorEventListener implements BinaryLogClient.EventListener {
 
 		if (event.getHeader().getEventType() == EventType.GTID) {
 			gtid = ((GtidEventData)event.getData()).getGtid();
+			// mirror BinaryLogClient, which adds a GTID to its set as soon as it reads the GTID event
+			if ( gtidSet != null )
+				gtidSet = gtidSet.add(gtid);
 		}
 
-		BinlogConnectorEvent ep = new BinlogConnectorEvent(event, client.getBinlogFilename(), client.getGtidSet(), gtid);
+		BinlogConnectorEvent ep = new BinlogConnectorEvent(event, binlogFilename.get(), gtidSet, gtid);
 
 		if (ep.isCommitEvent()) {
 			trackMetrics = true;
@@ -57,14 +104,19 @@ class BinlogConnectorEventListener implements BinaryLogClient.EventListener {
 			replicationLag = eventSeenAt - event.getHeader().getTimestamp();
 		}
 
-		while (mustStop.get() != true) {
-			try {
-				if ( queue.offer(ep, 100, TimeUnit.MILLISECONDS ) ) {
-					break;
+		long eventLength = ((EventHeaderV4) event.getHeader()).getEventLength();
+		try {
+			if ( rowsDecoder != null ) {
+				rowsDecoder.submit(ep, eventLength);
+			} else {
+				while (mustStop.get() != true) {
+					if ( queue.offer(ep, eventLength, 100, TimeUnit.MILLISECONDS ) ) {
+						break;
+					}
 				}
-			} catch (InterruptedException e) {
-				return;
 			}
+		} catch (InterruptedException e) {
+			return;
 		}
 
 		if (trackMetrics) {
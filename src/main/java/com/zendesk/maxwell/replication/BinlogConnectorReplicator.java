@@ -1,45 +1,72 @@
 package com.zendesk.maxwell.replication;
 
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Histogram;
 import com.github.shyiko.mysql.binlog.BinaryLogClient;
 import com.github.shyiko.mysql.binlog.event.*;
+import com.github.shyiko.mysql.binlog.event.deserialization.EventDataDeserializer;
 import com.github.shyiko.mysql.binlog.event.deserialization.EventDeserializer;
 import com.github.shyiko.mysql.binlog.network.SSLMode;
+import com.zendesk.maxwell.CaseSensitivity;
+import com.zendesk.maxwell.MaxwellConfig;
 import com.zendesk.maxwell.MaxwellContext;
+import com.zendesk.maxwell.MaxwellFilter;
 import com.zendesk.maxwell.MaxwellMysqlConfig;
 import com.zendesk.maxwell.bootstrap.AbstractBootstrapper;
 import com.zendesk.maxwell.monitoring.Metrics;
 import com.zendesk.maxwell.producer.AbstractProducer;
 import com.zendesk.maxwell.row.RowMap;
 import com.zendesk.maxwell.row.RowMapBuffer;
+import com.zendesk.maxwell.row.TransactionCommitRowMap;
 import com.zendesk.maxwell.schema.Schema;
 import com.zendesk.maxwell.schema.SchemaStore;
 import com.zendesk.maxwell.schema.SchemaStoreException;
 import com.zendesk.maxwell.schema.Table;
+import com.zendesk.maxwell.util.ByteBoundedRingBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import snaq.db.ConnectionPool;
 
+import java.io.File;
+import java.io.IOException;
 import java.sql.SQLException;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 
 public class BinlogConnectorReplicator extends AbstractReplicator implements Replicator {
 	private final long MAX_TX_ELEMENTS = 10000;
+	public static final int EVENT_QUEUE_SLOTS = 4096;
+	public static final long DEFAULT_EVENT_QUEUE_BYTES = 16 * 1024 * 1024;
 	protected SchemaStore schemaStore;
 
-	private final LinkedBlockingDeque<BinlogConnectorEvent> queue = new LinkedBlockingDeque<>(20);
+	private final ByteBoundedRingBuffer<BinlogConnectorEvent> queue;
+	private BinlogConnectorEvent pushedBackEvent;
 
 	private BinlogConnectorEventListener binlogEventListener;
 	private BinlogConnectorLifecycleListener binlogLifecycleListener;
 
-	private final BinaryLogClient client;
+	private volatile BinaryLogClient client;
+	private final LocalBinlogReader fileReader;
+	private EventDeserializer clientEventDeserializer;
+	private EventDeserializer fileEventDeserializer;
+	private volatile BinlogCatchupReader catchup;
+	private ReplicationFailover failover;
 
 	static final Logger LOGGER = LoggerFactory.getLogger(BinlogConnectorReplicator.class);
 	private final boolean stopOnEOF;
-	private boolean hitEOF = false;
+	private volatile boolean hitEOF = false;
 	private Histogram transactionRowCount;
+	// estimated size of transaction rows held in memory, across this replicator's buffers
+	private final AtomicLong bufferedRowBytes = new AtomicLong();
 	private Histogram transactionExecutionTime;
+	private final List<Pattern> excludeColumns;
+	private long streamRowThreshold = 0;
+	private long streamByteThreshold = 0;
 
 	public BinlogConnectorReplicator(
 		SchemaStore schemaStore,
@@ -52,40 +79,127 @@ public class BinlogConnectorReplicator extends AbstractReplicator implements Rep
 		Position start,
 		boolean stopOnEOF,
 		String clientID,
-		HeartbeatNotifier heartbeatNotifier
+		HeartbeatNotifier heartbeatNotifier,
+		long eventQueueBytes,
+		ByteBoundedRingBuffer.WaitStrategy eventQueueWaitStrategy,
+		int rowsDecoderThreads,
+		List<Pattern> excludeColumns
+	) {
+		this(
+			schemaStore,
+			producer,
+			bootstrapper,
+			buildClient(mysqlConfig, replicaServerID, start),
+			null,
+			maxwellSchemaDatabaseName,
+			metrics,
+			start,
+			stopOnEOF,
+			clientID,
+			heartbeatNotifier,
+			eventQueueBytes,
+			eventQueueWaitStrategy,
+			rowsDecoderThreads,
+			excludeColumns
+		);
+	}
+
+	/**
+	 * Replay binlog files from a local directory instead of streaming them from a server.
+	 *
+	 * Reading starts at `start` and ends at the first transaction boundary at or after
+	 * `stop` (or at the end of the last file in the directory), at which point the
+	 * run-loop stops.  The schema store should hold the schema as of `start`.
+	 *
+	 * @param binlogDirectory directory holding the binlog files
+	 * @param stop position to stop replaying at, or null
+	 */
+	public BinlogConnectorReplicator(
+		SchemaStore schemaStore,
+		AbstractProducer producer,
+		AbstractBootstrapper bootstrapper,
+		File binlogDirectory,
+		String maxwellSchemaDatabaseName,
+		Metrics metrics,
+		Position start,
+		BinlogPosition stop,
+		String clientID,
+		HeartbeatNotifier heartbeatNotifier,
+		long eventQueueBytes,
+		ByteBoundedRingBuffer.WaitStrategy eventQueueWaitStrategy,
+		int rowsDecoderThreads,
+		List<Pattern> excludeColumns
+	) throws IOException {
+		this(
+			schemaStore,
+			producer,
+			bootstrapper,
+			null,
+			new LocalBinlogReader(binlogDirectory, start.getBinlogPosition(), stop),
+			maxwellSchemaDatabaseName,
+			metrics,
+			start,
+			true,
+			clientID,
+			heartbeatNotifier,
+			eventQueueBytes,
+			eventQueueWaitStrategy,
+			rowsDecoderThreads,
+			excludeColumns
+		);
+	}
+
+	private BinlogConnectorReplicator(
+		SchemaStore schemaStore,
+		AbstractProducer producer,
+		AbstractBootstrapper bootstrapper,
+		BinaryLogClient client,
+		LocalBinlogReader fileReader,
+		String maxwellSchemaDatabaseName,
+		Metrics metrics,
+		Position start,
+		boolean stopOnEOF,
+		String clientID,
+		HeartbeatNotifier heartbeatNotifier,
+		long eventQueueBytes,
+		ByteBoundedRingBuffer.WaitStrategy eventQueueWaitStrategy,
+		int rowsDecoderThreads,
+		List<Pattern> excludeColumns
 	) {
 		super(clientID, bootstrapper, maxwellSchemaDatabaseName, producer, metrics, start, heartbeatNotifier);
 		this.schemaStore = schemaStore;
+		this.excludeColumns = excludeColumns;
+		this.queue = new ByteBoundedRingBuffer<>(EVENT_QUEUE_SLOTS, eventQueueBytes, eventQueueWaitStrategy);
 		transactionExecutionTime = metrics.getRegistry().histogram(metrics.metricName("transaction", "execution_time"));
 		transactionRowCount = metrics.getRegistry().histogram(metrics.metricName("transaction", "row_count"));
+		metrics.register(metrics.metricName("replication", "buffer", "bytes"), (Gauge<Long>) bufferedRowBytes::get);
 
-		this.client = new BinaryLogClient(mysqlConfig.host, mysqlConfig.port, mysqlConfig.user, mysqlConfig.password);
-		this.client.setSSLMode(mysqlConfig.sslMode);
+		this.fileReader = fileReader;
+		this.stopOnEOF = stopOnEOF;
 
-		BinlogPosition startBinlog = start.getBinlogPosition();
-		if (startBinlog.getGtidSetStr() != null) {
-			String gtidStr = startBinlog.getGtidSetStr();
-			LOGGER.info("Setting initial gtid to: " + gtidStr);
-			this.client.setGtidSet(gtidStr);
+		EventDeserializer eventDeserializer = buildEventDeserializer(rowsDecoderThreads);
+
+		if ( client != null ) {
+			this.clientEventDeserializer = eventDeserializer;
+			this.binlogEventListener = new BinlogConnectorEventListener(
+				this::getBinlogFilename,
+				client.getGtidSet(),
+				queue,
+				metrics,
+				rowsDecoderThreads
+			);
+			this.binlogLifecycleListener = new BinlogConnectorLifecycleListener();
+			attachClient(client);
 		} else {
-			LOGGER.info("Setting initial binlog pos to: " + startBinlog.getFile() + ":" + startBinlog.getOffset());
-			this.client.setBinlogFilename(startBinlog.getFile());
-			this.client.setBinlogPosition(startBinlog.getOffset());
+			this.fileEventDeserializer = eventDeserializer;
+			this.binlogEventListener = new BinlogConnectorEventListener(
+				fileReader::getCurrentFilename,
+				start.getBinlogPosition().getGtidSetStr(),
+				queue,
+				metrics,
+				rowsDecoderThreads
+			);
 		}
-
-		EventDeserializer eventDeserializer = new EventDeserializer();
-		eventDeserializer.setCompatibilityMode(EventDeserializer.CompatibilityMode.DATE_AND_TIME_AS_LONG_MICRO,
-			EventDeserializer.CompatibilityMode.CHAR_AND_BINARY_AS_BYTE_ARRAY);
-		this.client.setEventDeserializer(eventDeserializer);
-		this.binlogEventListener = new BinlogConnectorEventListener(client, queue, metrics);
-		this.binlogLifecycleListener = new BinlogConnectorLifecycleListener();
-
-		this.client.setBlocking(!stopOnEOF);
-		this.client.registerEventListener(binlogEventListener);
-		this.client.registerLifecycleListener(binlogLifecycleListener);
-		this.client.setServerId(replicaServerID.intValue());
-
-		this.stopOnEOF = stopOnEOF;
 	}
 
 	public BinlogConnectorReplicator(SchemaStore schemaStore, AbstractProducer producer, AbstractBootstrapper bootstrapper, MaxwellContext ctx, Position start) throws SQLException {
@@ -100,38 +214,373 @@ public class BinlogConnectorReplicator extends AbstractReplicator implements Rep
 			start,
 			false,
 			ctx.getConfig().clientID,
-			ctx.getHeartbeatNotifier()
+			ctx.getHeartbeatNotifier(),
+			ctx.getConfig().replicationQueueBytes,
+			ctx.getConfig().replicationQueueWaitStrategy,
+			ctx.getConfig().binlogDecoderThreads,
+			ctx.getConfig().outputConfig.excludeColumns
+		);
+
+		configure(ctx.getConfig());
+
+		if ( ctx.getConfig().catchupFiles > 0 )
+			enableCatchup(ctx.getConfig().replicationMysql, ctx.getReplicationConnectionPool(), ctx.getConfig().catchupFiles);
+
+		if ( ctx.getConfig().replicationCandidates.size() > 1 )
+			enableFailover(ctx.getConfig().replicationCandidates, ctx.getConfig().gtidMode, ctx.getCaseSensitivity(), ctx.getMetrics());
+	}
+
+	/**
+	 * Replay the binlog files in `replay_binlog_dir`, from `start` to `replay_stop_position`.
+	 */
+	public BinlogConnectorReplicator(SchemaStore schemaStore, AbstractProducer producer, AbstractBootstrapper bootstrapper, MaxwellContext ctx, Position start, File binlogDirectory) throws IOException {
+		this(
+			schemaStore,
+			producer,
+			bootstrapper,
+			binlogDirectory,
+			ctx.getConfig().databaseName,
+			ctx.getMetrics(),
+			start,
+			ctx.getConfig().replayStopPosition,
+			ctx.getConfig().clientID,
+			ctx.getHeartbeatNotifier(),
+			ctx.getConfig().replicationQueueBytes,
+			ctx.getConfig().replicationQueueWaitStrategy,
+			ctx.getConfig().binlogDecoderThreads,
+			ctx.getConfig().outputConfig.excludeColumns
+		);
+
+		configure(ctx.getConfig());
+	}
+
+	private void configure(MaxwellConfig config) {
+		if ( config.replicationPipeline )
+			enablePipeline(config.replicationPipelineSize);
+
+		enableTransactionStreaming(config.transactionStreamRows, config.transactionStreamBytes);
+
+		if ( config.producerBatchRows > 0 )
+			enableBatching(config.producerBatchRows);
+	}
+
+	/**
+	 * Catch up on a backlog of complete binlogs by reading several at once before streaming.
+	 *
+	 * Must be called before the replicator starts.  If we start out less than two complete
+	 * binlogs behind, this has no effect.
+	 *
+	 * @param mysqlConfig server to read the binlogs from
+	 * @param connectionPool connections to that server, for `SHOW BINARY LOGS`
+	 * @param parallelFiles number of binlogs to read at once
+	 */
+	public void enableCatchup(MaxwellMysqlConfig mysqlConfig, ConnectionPool connectionPool, int parallelFiles) {
+		if ( client == null )
+			throw new IllegalStateException("catch-up mode is only available when streaming from a server");
+
+		this.catchup = new BinlogCatchupReader(
+			mysqlConfig,
+			connectionPool,
+			lastHeartbeatPosition.getBinlogPosition(),
+			parallelFiles,
+			queue.getMaxBytes(),
+			() -> buildEventDeserializer(0) // rows are decoded on each file's own connection thread
 		);
 	}
 
+	/**
+	 * Fail over to the freshest of `candidates` whenever the replication connection drops,
+	 * instead of reconnecting to the same server.
+	 *
+	 * @param candidates servers to replicate from, starting with the one we're configured with
+	 */
+	public void enableFailover(List<MaxwellMysqlConfig> candidates, boolean gtidMode, CaseSensitivity caseSensitivity, Metrics metrics) {
+		if ( client == null )
+			throw new IllegalStateException("failover is only available when streaming from a server");
+
+		this.failover = new ReplicationFailover(candidates, maxwellSchemaDatabaseName, clientID, gtidMode, caseSensitivity, metrics);
+		// a keep-alive thread would quietly reconnect the client to the server we're failing over from
+		client.setKeepAlive(false);
+	}
+
+	private void attachClient(BinaryLogClient client) {
+		client.setEventDeserializer(clientEventDeserializer);
+		client.setBlocking(!stopOnEOF);
+		client.registerEventListener(binlogEventListener);
+		client.registerLifecycleListener(binlogLifecycleListener);
+		this.client = client;
+	}
+
+	/**
+	 * Take our listeners off a client we're done with, and make sure it's disconnected.
+	 */
+	private void detachClient(BinaryLogClient client) {
+		client.unregisterEventListener(binlogEventListener);
+		client.unregisterLifecycleListener(binlogLifecycleListener);
+		try {
+			client.disconnect();
+		} catch ( IOException e ) {
+			LOGGER.warn("failed to disconnect replication client", e);
+		}
+	}
+
+	BinaryLogClient getClient() {
+		return client;
+	}
+
+	private String getBinlogFilename() {
+		BinlogCatchupReader c = catchup;
+		return c != null ? c.getCurrentFilename() : client.getBinlogFilename();
+	}
+
+	private static BinaryLogClient buildClient(MaxwellMysqlConfig mysqlConfig, Long replicaServerID, Position start) {
+		BinaryLogClient client = new BinaryLogClient(mysqlConfig.host, mysqlConfig.port, mysqlConfig.user, mysqlConfig.password);
+		client.setSSLMode(mysqlConfig.sslMode);
+
+		BinlogPosition startBinlog = start.getBinlogPosition();
+		if (startBinlog.getGtidSetStr() != null) {
+			String gtidStr = startBinlog.getGtidSetStr();
+			LOGGER.info("Setting initial gtid to: " + gtidStr);
+			client.setGtidSet(gtidStr);
+		} else {
+			LOGGER.info("Setting initial binlog pos to: " + startBinlog.getFile() + ":" + startBinlog.getOffset());
+			client.setBinlogFilename(startBinlog.getFile());
+			client.setBinlogPosition(startBinlog.getOffset());
+		}
+
+		client.setServerId(replicaServerID.intValue());
+		return client;
+	}
+
+	private EventDeserializer buildEventDeserializer(int rowsDecoderThreads) {
+		EventDeserializer eventDeserializer = new EventDeserializer();
+		setCompatibilityMode(eventDeserializer);
+
+		FilteringTableMapEventDataDeserializer tableMapDeserializer = new FilteringTableMapEventDataDeserializer(this::shouldDecodeRows, this::shouldDecodeRowType);
+		eventDeserializer.setEventDataDeserializer(EventType.TABLE_MAP, tableMapDeserializer);
+
+		RawRowsEventDataDeserializer rawDeserializer = new RawRowsEventDataDeserializer();
+		for ( EventType type : ROWS_EVENT_TYPES ) {
+			// with decoder threads, rows events are only framed here; their bodies are decoded by a ParallelRowsDecoder
+			EventDataDeserializer rowsDeserializer = rowsDecoderThreads > 0 ? rawDeserializer : eventDeserializer.getEventDataDeserializer(type);
+			eventDeserializer.setEventDataDeserializer(type, new FilteringRowsEventDataDeserializer(type, rowsDeserializer, tableMapDeserializer));
+		}
+		return eventDeserializer;
+	}
+
+	private static final EventType[] ROWS_EVENT_TYPES = {
+		EventType.WRITE_ROWS, EventType.UPDATE_ROWS, EventType.DELETE_ROWS,
+		EventType.EXT_WRITE_ROWS, EventType.EXT_UPDATE_ROWS, EventType.EXT_DELETE_ROWS
+	};
+
+	static void setCompatibilityMode(EventDeserializer eventDeserializer) {
+		eventDeserializer.setCompatibilityMode(EventDeserializer.CompatibilityMode.DATE_AND_TIME_AS_LONG_MICRO,
+			EventDeserializer.CompatibilityMode.CHAR_AND_BINARY_AS_BYTE_ARRAY);
+	}
+
 	private void ensureReplicatorThread() throws Exception {
+		if ( catchup != null ) {
+			catchup.checkError();
+			if ( catchup.isFinished() )
+				finishCatchup();
+			return;
+		}
+
+		if ( fileReader != null ) {
+			if ( isReplayExhausted() )
+				throw new IOException("binlog files ended in the middle of a transaction, in " + fileReader.getCurrentFilename());
+			return;
+		}
+
 		if ( !client.isConnected() && !stopOnEOF ) {
 			String gtidStr = client.getGtidSet();
 			String binlogPos = client.getBinlogFilename() + ":" + client.getBinlogPosition();
 			String position = gtidStr == null ? binlogPos : gtidStr;
 			LOGGER.warn("replicator stopped at position: " + position + " -- restarting");
-			client.connect(5000);
+			if ( failover != null )
+				failover();
+			else
+				client.connect(5000);
 		}
 	}
 
+	/**
+	 * Reconnect to the freshest reachable candidate, trying the others in turn.
+	 */
+	private void failover() throws Exception {
+		long startedAt = System.nanoTime();
+		BinaryLogClient last = client;
+
+		for ( ReplicationFailover.Candidate candidate : failover.probe() ) {
+			MaxwellMysqlConfig config = candidate.config;
+			BinaryLogClient next = new BinaryLogClient(config.host, config.port, config.user, config.password);
+			next.setSSLMode(config.sslMode);
+			next.setServerId(last.getServerId());
+			next.setKeepAlive(false);
+
+			if ( last.getGtidSet() != null ) {
+				// GTIDs mean the same thing on every server
+				next.setGtidSet(last.getGtidSet());
+			} else if ( failover.isCurrent(candidate) ) {
+				next.setBinlogFilename(last.getBinlogFilename());
+				next.setBinlogPosition(last.getBinlogPosition());
+			} else {
+				Position recovered = failover.recoverPosition(candidate, lastHeartbeatPosition);
+				if ( recovered == null ) {
+					LOGGER.warn("couldn't find heartbeat " + lastHeartbeatPosition.getLastHeartbeatRead() + " on " + candidate + ", skipping it");
+					continue;
+				}
+				next.setBinlogFilename(recovered.getBinlogPosition().getFile());
+				next.setBinlogPosition(recovered.getBinlogPosition().getOffset());
+			}
+
+			failover.attempted();
+			try {
+				attachClient(next);
+				next.connect(5000);
+			} catch ( Exception e ) {
+				LOGGER.warn("couldn't replicate from " + candidate + ": " + e.getMessage());
+				detachClient(next);
+				continue;
+			}
+
+			detachClient(last);
+			failover.connected(candidate, startedAt);
+			return;
+		}
+
+		this.client = last;
+		throw new IOException("no replication candidate could be reached");
+	}
+
+	/**
+	 * Called from the binlog client thread for each TABLE_MAP; rows events for
+	 * tables we answer "false" for are never decoded.
+	 */
+	private boolean shouldDecodeRows(String database, String table) {
+		if ( filter != null && filter.isTableBlacklisted(database, table) )
+			return false;
+
+		return shouldOutputEvent(database, table, filter);
+	}
+
+	private boolean shouldDecodeRowType(String database, String table, String rowType) {
+		// maxwell's own tables (heartbeats, bootstrap) aren't subject to row-type filters
+		if ( maxwellSchemaDatabaseName.equals(database) )
+			return true;
+
+		return MaxwellFilter.matchesRowType(filter, table, rowType);
+	}
+
+	/**
+	 * Switch from the catch-up readers to a streaming client at the live binlog.
+	 */
+	private void finishCatchup() throws Exception {
+		BinlogPosition handoff = catchup.getHandoffPosition();
+		LOGGER.info("caught up to " + handoff.getFile() + ":" + handoff.getOffset() + ", switching to streaming replication");
+
+		client.setBinlogFilename(handoff.getFile());
+		client.setBinlogPosition(handoff.getOffset());
+		// the catch-up readers have moved the GTID set along; the client's is still the one we started with
+		String gtidSetStr = binlogEventListener.getGtidSetStr();
+		if ( gtidSetStr != null )
+			client.setGtidSet(gtidSetStr);
+
+		catchup = null;
+		client.connect(5000);
+	}
+
+	/**
+	 * When replaying files: has every event been read, decoded and taken off the queue?
+	 */
+	private boolean isReplayExhausted() {
+		// in this order: once the reader is done nothing new reaches the decoder, and so on down the line
+		return fileReader.isFinished() && binlogEventListener.isDrained() && queue.isEmpty();
+	}
+
+	@Override
+	protected boolean isFinished() {
+		return fileReader != null && hitEOF;
+	}
+
 	public void startReplicator() throws Exception {
-		this.client.connect(5000);
+		if ( fileReader != null ) {
+			fileReader.start(fileEventDeserializer, binlogEventListener);
+		} else if ( catchup != null && catchup.start(binlogEventListener) ) {
+			// the streaming client connects once catch-up is done, see ensureReplicatorThread
+		} else {
+			catchup = null;
+			this.client.connect(5000);
+		}
 	}
 
 	@Override
 	protected void beforeStart() throws Exception {
 		startReplicator();
+		startPipeline();
 	}
 
 	@Override
 	protected void beforeStop() throws Exception {
+		stopPipeline();
 		this.binlogEventListener.stop();
-		this.client.disconnect();
+		if ( catchup != null )
+			catchup.stop();
+
+		if ( fileReader != null )
+			fileReader.stop();
+		else
+			this.client.disconnect();
 	}
 
 	private static Pattern createTablePattern =
 			Pattern.compile("^CREATE\\s+TABLE", Pattern.CASE_INSENSITIVE);
 
+	/*
+	   the state of a transaction being read; kept across calls to getTransactionRows
+	   once we start streaming a transaction's rows out before its commit.
+	 */
+	private static class TransactionState {
+		final BinlogConnectorEvent beginEvent;
+		final Long serverId;
+		final Long threadId;
+		String currentQuery;
+		long rowCount;
+		long byteCount;
+		boolean streaming;
+		String lastDatabase;
+		String lastTable;
+		Long lastTimestampMillis;
+
+		TransactionState(BinlogConnectorEvent beginEvent, Long serverId, Long threadId) {
+			this.beginEvent = beginEvent;
+			this.serverId = serverId;
+			this.threadId = threadId;
+		}
+	}
+
+	private TransactionState streamingTransaction;
+
+	/**
+	 * Stream the rows of large transactions to the producer before they commit.
+	 *
+	 * Once a transaction passes either threshold, its rows are handed out as soon as
+	 * they're read instead of being buffered until COMMIT.  Streamed rows don't carry
+	 * an xid; it follows on a {@link TransactionCommitRowMap} at the end of the transaction.
+	 *
+	 * @param rowThreshold number of rows after which to start streaming, or 0
+	 * @param byteThreshold approximate size in bytes after which to start streaming, or 0
+	 */
+	public void enableTransactionStreaming(long rowThreshold, long byteThreshold) {
+		this.streamRowThreshold = rowThreshold;
+		this.streamByteThreshold = byteThreshold;
+	}
+
+	private boolean shouldStream(TransactionState tx) {
+		return (streamRowThreshold > 0 && tx.rowCount >= streamRowThreshold)
+			|| (streamByteThreshold > 0 && tx.byteCount >= streamByteThreshold);
+	}
+
 	/**
 	 * Get a batch of rows for the current transaction.
 	 *
@@ -140,15 +589,19 @@ public class BinlogConnectorReplicator extends AbstractReplicator implements Rep
 	 * and turn them into RowMap objects.  We do this because mysql attaches the
 	 * transaction-id (xid) to the COMMIT event (at the end of the transaction),
 	 * so we process the entire transaction in order to assign each row the same xid.
+	 *
+	 * If the transaction is large enough to stream (see {@link #enableTransactionStreaming}),
+	 * we instead return as soon as we have rows, and pick the transaction up again
+	 * on the next call.
 
 	 * @return A RowMapBuffer of rows; either in-memory or on disk.
 	 */
 
-	private RowMapBuffer getTransactionRows(BinlogConnectorEvent beginEvent) throws Exception {
+	private RowMapBuffer getTransactionRows(TransactionState tx) throws Exception {
 		BinlogConnectorEvent event;
-		RowMapBuffer buffer = new RowMapBuffer(MAX_TX_ELEMENTS);
-
-		String currentQuery = null;
+		RowMapBuffer buffer = new RowMapBuffer(MAX_TX_ELEMENTS, bufferedRowBytes);
+		buffer.setServerId(tx.serverId);
+		buffer.setThreadId(tx.threadId);
 
 		while ( true ) {
 			event = pollEvent();
@@ -160,11 +613,25 @@ public class BinlogConnectorReplicator extends AbstractReplicator implements Rep
 
 			EventType eventType = event.getEvent().getHeader().getEventType();
 			if (event.isCommitEvent()) {
-				if (!buffer.isEmpty()) {
+				streamingTransaction = null;
+
+				if ( tx.streaming ) {
+					// everything but the commit marker has already gone out
+					Position position = lastHeartbeatPosition.withBinlogPosition(event.getNextPosition());
+					buffer.add(new TransactionCommitRowMap(
+						tx.lastDatabase,
+						tx.lastTable,
+						event.getEvent().getHeader().getTimestamp(),
+						position
+					));
+				} else if (!buffer.isEmpty()) {
 					buffer.getLast().setTXCommit();
-					long timeSpent = buffer.getLast().getTimestampMillis() - beginEvent.getEvent().getHeader().getTimestamp();
+				}
+
+				if ( tx.rowCount > 0 ) {
+					long timeSpent = tx.lastTimestampMillis - tx.beginEvent.getEvent().getHeader().getTimestamp();
 					transactionExecutionTime.update(timeSpent);
-					transactionRowCount.update(buffer.size());
+					transactionRowCount.update(tx.rowCount);
 				}
 				if(eventType == EventType.XID) {
 					buffer.setXid(event.xidData().getXid());
@@ -179,15 +646,38 @@ public class BinlogConnectorReplicator extends AbstractReplicator implements Rep
 				case EXT_WRITE_ROWS:
 				case EXT_UPDATE_ROWS:
 				case EXT_DELETE_ROWS:
-					Table table = tableCache.getTable(event.getTableID());
-
-					if ( table != null && shouldOutputEvent(table.getDatabase(), table.getName(), filter) ) {
-						for ( RowMap r : event.jsonMaps(table, lastHeartbeatPosition, currentQuery) )
+					TableCache.Entry cached = tableCache.getEntry(event.getTableID());
+					Table table = cached == null ? null : cached.getTable();
+
+					// the filter decisions were made when the TABLE_MAP was cached
+					if ( table != null
+							&& cached.getDecision().shouldOutput()
+							&& cached.acceptsRowType(BinlogConnectorEvent.rowType(eventType)) ) {
+						Iterator<RowMap> rows = event.jsonMaps(table, lastHeartbeatPosition, tx.currentQuery, excludeColumns);
+						while ( rows.hasNext() ) {
+							RowMap r = rows.next();
 							if (shouldOutputRowMap(table.getDatabase(), table.getName(), r, filter)) {
 								buffer.add(r);
+								tx.rowCount++;
+								tx.byteCount += r.getApproximateSize();
+								tx.lastDatabase = r.getDatabase();
+								tx.lastTable = r.getTable();
+								tx.lastTimestampMillis = r.getTimestampMillis();
 							}
+						}
+					}
+					tx.currentQuery = null;
+
+					if ( !tx.streaming && shouldStream(tx) ) {
+						LOGGER.info("transaction at " + tx.beginEvent.getPosition() + " passed "
+							+ tx.rowCount + " rows, streaming it before commit");
+						tx.streaming = true;
+					}
+
+					if ( tx.streaming && !buffer.isEmpty() ) {
+						streamingTransaction = tx;
+						return buffer;
 					}
-					currentQuery = null;
 					break;
 				case TABLE_MAP:
 					TableMapEventData data = event.tableMapData();
@@ -195,7 +685,7 @@ public class BinlogConnectorReplicator extends AbstractReplicator implements Rep
 					break;
 				case ROWS_QUERY:
 					RowsQueryEventData rqed = event.getEvent().getData();
-					currentQuery = rqed.getQuery();
+					tx.currentQuery = rqed.getQuery();
 					break;
 				case QUERY:
 					QueryEventData qe = event.queryData();
@@ -243,19 +733,24 @@ public class BinlogConnectorReplicator extends AbstractReplicator implements Rep
 			return null;
 
 		while (true) {
-			if (rowBuffer != null && !rowBuffer.isEmpty()) {
-				RowMap row = rowBuffer.removeFirst();
+			if (rowBuffer != null && !rowBuffer.isEmpty())
+				return nextBufferedRow();
 
-				if ( row != null && isMaxwellRow(row) && row.getTable().equals("heartbeats") )
-					return processHeartbeats(row);
-				else
-					return row;
+			if ( streamingTransaction != null ) {
+				rowBuffer = getTransactionRows(streamingTransaction);
+				continue;
 			}
 
 			event = pollEvent();
 
 			if (event == null) {
-				if ( stopOnEOF ) {
+				if ( fileReader != null ) {
+					if ( !isReplayExhausted() )
+						continue;
+
+					this.hitEOF = true;
+					return null;
+				} else if ( stopOnEOF ) {
 					if ( client.isConnected() )
 						continue;
 					else
@@ -276,8 +771,8 @@ public class BinlogConnectorReplicator extends AbstractReplicator implements Rep
 					LOGGER.warn("Started replication stream inside a transaction.  This shouldn't normally happen.");
 					LOGGER.warn("Assuming new transaction at unexpected event:" + event);
 
-					queue.offerFirst(event);
-					rowBuffer = getTransactionRows(event);
+					pushedBackEvent = event;
+					rowBuffer = getTransactionRows(new TransactionState(event, null, null));
 					break;
 				case TABLE_MAP:
 					TableMapEventData data = event.tableMapData();
@@ -287,16 +782,14 @@ public class BinlogConnectorReplicator extends AbstractReplicator implements Rep
 					QueryEventData qe = event.queryData();
 					String sql = qe.getSql();
 					if (BinlogConnectorEvent.BEGIN.equals(sql)) {
-						rowBuffer = getTransactionRows(event);
-						rowBuffer.setServerId(event.getEvent().getHeader().getServerId());
-						rowBuffer.setThreadId(qe.getThreadId());
+						rowBuffer = getTransactionRows(new TransactionState(event, event.getEvent().getHeader().getServerId(), qe.getThreadId()));
 					} else {
 						processQueryEvent(event);
 					}
 					break;
 				case ROTATE:
-					tableCache.clear();
-					if ( stopOnEOF && event.getPosition().getOffset() > 0 ) {
+					// only a server sends us ROTATE at the end of a binlog; files just move on to the next one
+					if ( stopOnEOF && client != null && event.getPosition().getOffset() > 0 ) {
 						this.binlogEventListener.mustStop.set(true);
 						this.client.disconnect();
 						this.hitEOF = true;
@@ -310,7 +803,46 @@ public class BinlogConnectorReplicator extends AbstractReplicator implements Rep
 		}
 	}
 
-	protected BinlogConnectorEvent pollEvent() throws InterruptedException {
+	private RowMap nextBufferedRow() throws Exception {
+		RowMap row = rowBuffer.removeFirst();
+
+		if ( row != null && !(row instanceof TransactionCommitRowMap) && isMaxwellRow(row) && row.getTable().equals("heartbeats") )
+			return processHeartbeats(row);
+		else
+			return row;
+	}
+
+	/**
+	 * Get the next row, plus as many of the rows buffered behind it (in the same
+	 * transaction, or the same streamed slice of one) as `maxRows` allows.
+	 */
+	@Override
+	protected List<RowMap> getRows(int maxRows) throws Exception {
+		RowMap first = getRow();
+		if ( first == null )
+			return Collections.emptyList();
+
+		ArrayList<RowMap> rows = new ArrayList<>();
+		rows.add(first);
+		while ( rows.size() < maxRows && rowBuffer != null && !rowBuffer.isEmpty() ) {
+			RowMap row = nextBufferedRow();
+			if ( row != null )
+				rows.add(row);
+		}
+		return rows;
+	}
+
+	protected BinlogConnectorEvent pollEvent() throws Exception {
+		binlogEventListener.checkError();
+		if ( fileReader != null )
+			fileReader.checkError();
+
+		if ( pushedBackEvent != null ) {
+			BinlogConnectorEvent event = pushedBackEvent;
+			pushedBackEvent = null;
+			return event;
+		}
+
 		return queue.poll(100, TimeUnit.MILLISECONDS);
 	}
 
@@ -0,0 +1,125 @@
+package com.zendesk.maxwell.replication;
+
+import com.github.shyiko.mysql.binlog.event.*;
+import com.github.shyiko.mysql.binlog.event.deserialization.EventDataDeserializer;
+import com.github.shyiko.mysql.binlog.io.ByteArrayInputStream;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Rows-event deserializer that doesn't decode rows for tables maxwell is going to drop.
+ *
+ * Only the table id at the front of the body is read; if the preceding TABLE_MAP
+ * marked the table (or this type of rows event for it) as filtered out, the rest of
+ * the body is skipped and an empty event is returned in place of the rows.  Otherwise
+ * the regular deserializer reads the body from the stream, with the table id put back
+ * in front of it -- the body isn't copied.
+ */
+class FilteringRowsEventDataDeserializer implements EventDataDeserializer<EventData> {
+	private static final int TABLE_ID_LENGTH = 6;
+
+	private final EventType eventType;
+	private final EventDataDeserializer delegate;
+	private final FilteringTableMapEventDataDeserializer tableMapDeserializer;
+
+	FilteringRowsEventDataDeserializer(
+		EventType eventType,
+		EventDataDeserializer delegate,
+		FilteringTableMapEventDataDeserializer tableMapDeserializer
+	) {
+		this.eventType = eventType;
+		this.delegate = delegate;
+		this.tableMapDeserializer = tableMapDeserializer;
+	}
+
+	@Override
+	public EventData deserialize(ByteArrayInputStream inputStream) throws IOException {
+		byte[] prefix = inputStream.read(TABLE_ID_LENGTH);
+		long tableId = RawRowsEventDataDeserializer.readTableId(prefix);
+
+		if ( tableMapDeserializer.shouldSkip(tableId, eventType) ) {
+			inputStream.skip(inputStream.available());
+			return emptyEventData(tableId);
+		}
+
+		// the raw body is kept for decoding elsewhere, so it has to be copied out once
+		if ( delegate instanceof RawRowsEventDataDeserializer ) {
+			byte[] body = new byte[TABLE_ID_LENGTH + inputStream.available()];
+			System.arraycopy(prefix, 0, body, 0, TABLE_ID_LENGTH);
+			readFully(inputStream, body, TABLE_ID_LENGTH);
+			return new RawRowsEventData(tableId, body);
+		}
+
+		return (EventData) delegate.deserialize(new ByteArrayInputStream(new PrefixedInputStream(prefix, inputStream)));
+	}
+
+	private static void readFully(InputStream in, byte[] bytes, int offset) throws IOException {
+		while ( offset < bytes.length ) {
+			int read = in.read(bytes, offset, bytes.length - offset);
+			if ( read < 0 )
+				throw new EOFException();
+			offset += read;
+		}
+	}
+
+	/*
+	   the bytes we've already read, followed by the rest of the event.  available()
+	   has to count both: the rows deserializers read rows until it hits zero.
+	 */
+	private static class PrefixedInputStream extends InputStream {
+		private final byte[] prefix;
+		private final InputStream rest;
+		private int pos = 0;
+
+		PrefixedInputStream(byte[] prefix, InputStream rest) {
+			this.prefix = prefix;
+			this.rest = rest;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if ( pos < prefix.length )
+				return prefix[pos++] & 0xff;
+			return rest.read();
+		}
+
+		@Override
+		public int available() throws IOException {
+			return (prefix.length - pos) + rest.available();
+		}
+	}
+
+	private EventData emptyEventData(long tableId) {
+		switch ( eventType ) {
+			case WRITE_ROWS:
+			case EXT_WRITE_ROWS:
+				WriteRowsEventData write = new WriteRowsEventData();
+				write.setTableId(tableId);
+				write.setIncludedColumns(new BitSet());
+				write.setRows(Collections.<Serializable[]>emptyList());
+				return write;
+			case UPDATE_ROWS:
+			case EXT_UPDATE_ROWS:
+				UpdateRowsEventData update = new UpdateRowsEventData();
+				update.setTableId(tableId);
+				update.setIncludedColumnsBeforeUpdate(new BitSet());
+				update.setIncludedColumns(new BitSet());
+				update.setRows(Collections.<Map.Entry<Serializable[], Serializable[]>>emptyList());
+				return update;
+			case DELETE_ROWS:
+			case EXT_DELETE_ROWS:
+			default:
+				DeleteRowsEventData delete = new DeleteRowsEventData();
+				delete.setTableId(tableId);
+				delete.setIncludedColumns(new BitSet());
+				delete.setRows(Collections.<Serializable[]>emptyList());
+				return delete;
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package com.zendesk.maxwell.replication;
+
+import com.github.shyiko.mysql.binlog.event.EventType;
+import com.github.shyiko.mysql.binlog.event.TableMapEventData;
+import com.github.shyiko.mysql.binlog.event.deserialization.TableMapEventDataDeserializer;
+import com.github.shyiko.mysql.binlog.io.ByteArrayInputStream;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.function.BiPredicate;
+
+/**
+ * Decodes TABLE_MAP events as usual, additionally recording whether the rows
+ * events that follow for each table id are wanted at all.
+ * See {@link FilteringRowsEventDataDeserializer}.
+ */
+class FilteringTableMapEventDataDeserializer extends TableMapEventDataDeserializer {
+	interface RowTypePredicate {
+		boolean test(String database, String table, String rowType);
+	}
+
+	private static class Decision {
+		final String database, table;
+		final boolean skip;
+		final boolean skipInserts, skipUpdates, skipDeletes;
+
+		Decision(String database, String table, boolean skip, boolean skipInserts, boolean skipUpdates, boolean skipDeletes) {
+			this.database = database;
+			this.table = table;
+			this.skip = skip;
+			this.skipInserts = skipInserts;
+			this.skipUpdates = skipUpdates;
+			this.skipDeletes = skipDeletes;
+		}
+	}
+
+	private final BiPredicate<String, String> shouldDecode;
+	private final RowTypePredicate shouldDecodeRowType;
+	private final HashMap<Long, Decision> decisions = new HashMap<>();
+
+	/**
+	 * @param shouldDecode given a database and table name, whether rows for the table should be decoded
+	 */
+	FilteringTableMapEventDataDeserializer(BiPredicate<String, String> shouldDecode) {
+		this(shouldDecode, (database, table, rowType) -> true);
+	}
+
+	/**
+	 * @param shouldDecode given a database and table name, whether rows for the table should be decoded
+	 * @param shouldDecodeRowType given a database, table and row type, whether rows of that type should be decoded
+	 */
+	FilteringTableMapEventDataDeserializer(BiPredicate<String, String> shouldDecode, RowTypePredicate shouldDecodeRowType) {
+		this.shouldDecode = shouldDecode;
+		this.shouldDecodeRowType = shouldDecodeRowType;
+	}
+
+	@Override
+	public TableMapEventData deserialize(ByteArrayInputStream inputStream) throws IOException {
+		TableMapEventData data = super.deserialize(inputStream);
+
+		Decision d = decisions.get(data.getTableId());
+		if ( d == null || !d.database.equals(data.getDatabase()) || !d.table.equals(data.getTable()) ) {
+			String db = data.getDatabase(), table = data.getTable();
+			decisions.put(data.getTableId(), new Decision(
+				db,
+				table,
+				!shouldDecode.test(db, table),
+				!shouldDecodeRowType.test(db, table, "insert"),
+				!shouldDecodeRowType.test(db, table, "update"),
+				!shouldDecodeRowType.test(db, table, "delete")
+			));
+		}
+
+		return data;
+	}
+
+	/**
+	 * @return true if rows events for `tableId` can be discarded without being decoded
+	 */
+	boolean shouldSkip(long tableId) {
+		Decision d = decisions.get(tableId);
+		return d != null && d.skip;
+	}
+
+	/**
+	 * @return true if rows events of `eventType` for `tableId` can be discarded without being decoded
+	 */
+	boolean shouldSkip(long tableId, EventType eventType) {
+		if ( shouldSkip(tableId) )
+			return true;
+
+		Decision d = decisions.get(tableId);
+		if ( d == null )
+			return false;
+
+		switch ( eventType ) {
+			case WRITE_ROWS:
+			case EXT_WRITE_ROWS:
+				return d.skipInserts;
+			case UPDATE_ROWS:
+			case EXT_UPDATE_ROWS:
+				return d.skipUpdates;
+			case DELETE_ROWS:
+			case EXT_DELETE_ROWS:
+				return d.skipDeletes;
+			default:
+				return false;
+		}
+	}
+}
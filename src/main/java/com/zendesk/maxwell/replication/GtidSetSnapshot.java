@@ -0,0 +1,98 @@
+package com.zendesk.maxwell.replication;
+
+import com.github.shyiko.mysql.binlog.GtidSet;
+
+import java.util.ArrayDeque;
+
+/*
+   The executed GTID set as of some binlog event.
+
+   BinaryLogClient#getGtidSet() renders the whole set to a string on every
+   call, which is far too expensive to do for every event once the set spans
+   more than a handful of server UUIDs.  Instead we follow the set ourselves:
+   each GTID event produces a new snapshot that just records its parent and the
+   one GTID it adds, and the string is only rendered (and cached) when somebody
+   actually needs a position out of it -- commits, DDL, heartbeats.
+
+   Snapshots are created on the binlog client's thread and rendered on the
+   replicator's; rendering takes the snapshot's lock and then its ancestors'.
+ */
+class GtidSetSnapshot {
+	// render eagerly past this many unrendered ancestors, so that a long stretch
+	// of filtered-out transactions can't grow the chain without bound
+	private static final int MAX_UNRENDERED_DEPTH = 1000;
+
+	private final String gtid;
+	private final int depth;
+	private GtidSetSnapshot parent;
+	private String gtidSetStr;
+
+	private GtidSetSnapshot(String gtidSetStr) {
+		this.gtid = null;
+		this.depth = 0;
+		this.parent = null;
+		this.gtidSetStr = gtidSetStr;
+	}
+
+	private GtidSetSnapshot(GtidSetSnapshot parent, String gtid) {
+		this.gtid = gtid;
+		this.depth = parent.unrenderedDepth() + 1;
+		this.parent = parent;
+		this.gtidSetStr = null;
+	}
+
+	/**
+	 * @return a snapshot of a rendered GTID set, or null if `gtidSetStr` is null
+	 */
+	static GtidSetSnapshot of(String gtidSetStr) {
+		return gtidSetStr == null ? null : new GtidSetSnapshot(gtidSetStr);
+	}
+
+	/**
+	 * @return a snapshot of this set plus `gtid`; this snapshot is left as is
+	 */
+	GtidSetSnapshot add(String gtid) {
+		GtidSetSnapshot next = new GtidSetSnapshot(this, gtid);
+		if ( next.depth >= MAX_UNRENDERED_DEPTH )
+			next.getGtidSetStr();
+		return next;
+	}
+
+	private synchronized int unrenderedDepth() {
+		return gtidSetStr == null ? depth : 0;
+	}
+
+	private synchronized String renderedOrNull() {
+		return gtidSetStr;
+	}
+
+	private synchronized GtidSetSnapshot getParent() {
+		return parent;
+	}
+
+	synchronized String getGtidSetStr() {
+		if ( gtidSetStr == null ) {
+			// collect GTIDs back to the nearest rendered ancestor, oldest first
+			ArrayDeque<String> gtids = new ArrayDeque<>();
+			GtidSetSnapshot s = this;
+			String base = null;
+			while ( s != null && (base = s.renderedOrNull()) == null ) {
+				gtids.push(s.gtid);
+				s = s.getParent();
+			}
+
+			GtidSet set = new GtidSet(base == null ? "" : base);
+			for ( String gtid : gtids )
+				set.add(gtid);
+
+			gtidSetStr = set.toString();
+			parent = null;
+		}
+		return gtidSetStr;
+	}
+
+	@Override
+	public String toString() {
+		return getGtidSetStr();
+	}
+}
@@ -0,0 +1,291 @@
+package com.zendesk.maxwell.replication;
+
+import com.github.shyiko.mysql.binlog.BinaryLogClient;
+import com.github.shyiko.mysql.binlog.BinaryLogFileReader;
+import com.github.shyiko.mysql.binlog.event.Event;
+import com.github.shyiko.mysql.binlog.event.EventHeaderV4;
+import com.github.shyiko.mysql.binlog.event.EventType;
+import com.github.shyiko.mysql.binlog.event.QueryEventData;
+import com.github.shyiko.mysql.binlog.event.deserialization.ChecksumType;
+import com.github.shyiko.mysql.binlog.event.deserialization.EventDeserializer;
+import com.zendesk.maxwell.util.ByteBufferInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads binlog files from a local directory and hands their events to a listener,
+ * the way a {@link BinaryLogClient} would when streaming from a server.
+ *
+ * Files are memory-mapped and decoded with binlog-connector's {@link BinaryLogFileReader}.
+ * Reading starts at `start` and runs through the files that follow it in the directory;
+ * with a `stop` position it ends at the first transaction boundary at or after that position.
+ */
+class LocalBinlogReader implements Runnable {
+	static final Logger LOGGER = LoggerFactory.getLogger(LocalBinlogReader.class);
+
+	private static final int MAGIC_HEADER_LENGTH = 4;
+	private static final int EVENT_HEADER_LENGTH = 19;
+	private static final int EVENT_LENGTH_OFFSET = 9;
+	// the FORMAT_DESCRIPTION body opens with a 2 byte binlog version, then the null-padded server version
+	private static final int SERVER_VERSION_OFFSET = MAGIC_HEADER_LENGTH + EVENT_HEADER_LENGTH + 2;
+	private static final int SERVER_VERSION_LENGTH = 50;
+	// checksum algorithm byte and CRC32 that trail the FORMAT_DESCRIPTION event
+	private static final int FORMAT_DESCRIPTION_CHECKSUM_TRAILER = 5;
+	private static final long MAX_MAPPING_BYTES = 1024L * 1024 * 1024;
+	private static final Pattern SERVER_VERSION_PATTERN = Pattern.compile("^(\\d+)\\.(\\d+)\\.(\\d+)");
+
+	private final List<File> files;
+	private final BinlogPosition start;
+	private final BinlogPosition stop;
+	private EventDeserializer eventDeserializer;
+	private BinaryLogClient.EventListener listener;
+	private Thread thread;
+
+	private volatile String currentFilename;
+	private volatile boolean mustStop = false;
+	private volatile boolean finished = false;
+	private volatile Exception error;
+	private boolean inTransaction = false;
+	private long mappingBytes = MAX_MAPPING_BYTES;
+
+	/**
+	 * @param directory directory holding the binlog files
+	 * @param start position to start reading at
+	 * @param stop position to stop at, or null to read to the end of the last file
+	 */
+	LocalBinlogReader(File directory, BinlogPosition start, BinlogPosition stop) throws IOException {
+		if ( start.getFile() == null )
+			throw new IOException("reading local binlogs requires a FILE:POSITION start position");
+
+		this.start = start;
+		this.stop = stop;
+		this.files = listBinlogFiles(directory, start.getFile(), stop == null ? null : stop.getFile());
+		this.currentFilename = start.getFile();
+
+		LOGGER.info("reading " + files.size() + " binlog file(s) from " + directory + ", "
+			+ start.getFile() + ":" + start.getOffset() + " to "
+			+ (stop == null ? "the end of " + files.get(files.size() - 1).getName() : stop.getFile() + ":" + stop.getOffset()));
+	}
+
+	/**
+	 * The binlog files in `directory` from `startFile` through `stopFile`, in order.
+	 *
+	 * Only files named like `startFile` (the same basename, followed by a numeric
+	 * extension) are picked up.
+	 */
+	static List<File> listBinlogFiles(File directory, String startFile, String stopFile) throws IOException {
+		if ( !new File(directory, startFile).isFile() )
+			throw new IOException("binlog file " + startFile + " not found in " + directory);
+
+		int dot = startFile.lastIndexOf('.');
+		String basename = startFile.substring(0, dot + 1);
+
+		File[] candidates = directory.listFiles();
+		if ( candidates == null )
+			throw new IOException("couldn't list binlog directory " + directory);
+
+		ArrayList<File> files = new ArrayList<>();
+		for ( File f : candidates ) {
+			String name = f.getName();
+			if ( !f.isFile() || !name.startsWith(basename) || !name.substring(basename.length()).matches("\\d+") )
+				continue;
+
+			if ( name.compareTo(startFile) < 0 || (stopFile != null && name.compareTo(stopFile) > 0) )
+				continue;
+
+			files.add(f);
+		}
+
+		Collections.sort(files);
+		return files;
+	}
+
+	/**
+	 * Map files in pieces of at most this many bytes (1GB by default); for tests.
+	 */
+	void setMappingBytes(long mappingBytes) {
+		this.mappingBytes = mappingBytes;
+	}
+
+	String getCurrentFilename() {
+		return currentFilename;
+	}
+
+	void start(EventDeserializer eventDeserializer, BinaryLogClient.EventListener listener) {
+		this.eventDeserializer = eventDeserializer;
+		this.listener = listener;
+		this.thread = new Thread(this, "maxwell-binlog-file-reader");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	void stop() {
+		mustStop = true;
+		if ( thread != null )
+			thread.interrupt();
+	}
+
+	/**
+	 * Have we handed the last event to the listener (or given up on an error)?
+	 */
+	boolean isFinished() {
+		return finished;
+	}
+
+	void checkError() throws Exception {
+		if ( error != null )
+			throw error;
+	}
+
+	@Override
+	public void run() {
+		try {
+			for ( File file : files ) {
+				if ( mustStop )
+					break;
+
+				currentFilename = file.getName();
+				long from = file.getName().equals(start.getFile()) ? start.getOffset() : MAGIC_HEADER_LENGTH;
+				if ( readFile(file, from) )
+					break;
+			}
+			LOGGER.info("finished reading binlog files at " + currentFilename);
+		} catch ( Exception e ) {
+			LOGGER.error("failed reading binlog file " + currentFilename, e);
+			error = e;
+		} finally {
+			finished = true;
+		}
+	}
+
+	/**
+	 * Pass the events of one file to the listener.
+	 *
+	 * @return true if we reached the stop position
+	 */
+	private boolean readFile(File file, long from) throws IOException {
+		try ( FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ) ) {
+			BinaryLogFileReader reader = new BinaryLogFileReader(open(channel, from), eventDeserializer);
+			try {
+				for ( Event event = reader.readEvent(); event != null; event = reader.readEvent() ) {
+					if ( mustStop )
+						return true;
+
+					listener.onEvent(event);
+					if ( reachedStop(file.getName(), event) )
+						return true;
+				}
+			} finally {
+				reader.close();
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * A stream over the file starting at `from`.
+	 *
+	 * The magic header and the FORMAT_DESCRIPTION event always lead the stream, since
+	 * the file reader needs them to decode anything that follows.
+	 */
+	private InputStream open(FileChannel channel, long from) throws IOException {
+		long size = channel.size();
+		if ( size < SERVER_VERSION_OFFSET + SERVER_VERSION_LENGTH )
+			throw new IOException("binlog file " + currentFilename + " is truncated");
+
+		if ( from > size )
+			throw new IOException("position " + from + " is past the end of " + currentFilename + " (" + size + " bytes)");
+
+		ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, SERVER_VERSION_OFFSET + SERVER_VERSION_LENGTH);
+		header.order(ByteOrder.LITTLE_ENDIAN);
+		long formatDescriptionEnd = MAGIC_HEADER_LENGTH + (header.getInt(MAGIC_HEADER_LENGTH + EVENT_LENGTH_OFFSET) & 0xFFFFFFFFL);
+		if ( formatDescriptionEnd > size || formatDescriptionEnd < SERVER_VERSION_OFFSET + SERVER_VERSION_LENGTH )
+			throw new IOException("binlog file " + currentFilename + " is truncated");
+
+		// BinaryLogClient learns the checksum type from the server; here it's recorded in the FORMAT_DESCRIPTION
+		// event, which only carries the checksum trailer if the server that wrote it knew about checksums.
+		ChecksumType checksumType = ChecksumType.NONE;
+		if ( hasChecksumTrailer(readServerVersion(header)) ) {
+			ByteBuffer trailer = channel.map(FileChannel.MapMode.READ_ONLY, formatDescriptionEnd - FORMAT_DESCRIPTION_CHECKSUM_TRAILER, 1);
+			if ( trailer.get(0) == 1 )
+				checksumType = ChecksumType.CRC32;
+		}
+		eventDeserializer.setChecksumType(checksumType);
+
+		if ( from <= formatDescriptionEnd )
+			return map(channel, 0, size);
+
+		return new SequenceInputStream(map(channel, 0, formatDescriptionEnd), map(channel, from, size));
+	}
+
+	private static String readServerVersion(ByteBuffer header) {
+		StringBuilder version = new StringBuilder();
+		for ( int i = SERVER_VERSION_OFFSET; i < SERVER_VERSION_OFFSET + SERVER_VERSION_LENGTH; i++ ) {
+			byte b = header.get(i);
+			if ( b == 0 )
+				break;
+			version.append((char) b);
+		}
+		return version.toString();
+	}
+
+	/**
+	 * Does a FORMAT_DESCRIPTION event written by this server version end in the checksum
+	 * algorithm and CRC32?  MySQL added them in 5.6.1, MariaDB in 5.3.
+	 */
+	static boolean hasChecksumTrailer(String serverVersion) {
+		Matcher m = SERVER_VERSION_PATTERN.matcher(serverVersion);
+		if ( !m.find() )
+			return false;
+
+		int major = Integer.parseInt(m.group(1));
+		int minor = Integer.parseInt(m.group(2));
+		int patch = Integer.parseInt(m.group(3));
+
+		if ( serverVersion.contains("MariaDB") )
+			return major > 5 || (major == 5 && minor >= 3);
+
+		return major > 5 || (major == 5 && (minor > 6 || (minor == 6 && patch >= 1)));
+	}
+
+	private InputStream map(FileChannel channel, long from, long to) throws IOException {
+		ArrayList<InputStream> chunks = new ArrayList<>();
+		for ( long offset = from; offset < to; offset += mappingBytes ) {
+			long length = Math.min(mappingBytes, to - offset);
+			chunks.add(new ByteBufferInputStream(channel.map(FileChannel.MapMode.READ_ONLY, offset, length)));
+		}
+		return new SequenceInputStream(Collections.enumeration(chunks));
+	}
+
+	private boolean reachedStop(String filename, Event event) {
+		EventType type = event.getHeader().getEventType();
+		if ( type == EventType.QUERY && event.getData() != null ) {
+			String sql = ((QueryEventData) event.getData()).getSql();
+			if ( BinlogConnectorEvent.BEGIN.equals(sql) )
+				inTransaction = true;
+			else if ( BinlogConnectorEvent.COMMIT.equals(sql) )
+				inTransaction = false;
+		} else if ( type == EventType.XID ) {
+			inTransaction = false;
+		}
+
+		if ( stop == null || inTransaction || !filename.equals(stop.getFile()) )
+			return false;
+
+		return ((EventHeaderV4) event.getHeader()).getNextPosition() >= stop.getOffset();
+	}
+}
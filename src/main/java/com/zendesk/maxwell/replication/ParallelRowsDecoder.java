@@ -0,0 +1,223 @@
+package com.zendesk.maxwell.replication;
+
+import com.github.shyiko.mysql.binlog.event.EventData;
+import com.github.shyiko.mysql.binlog.event.EventType;
+import com.github.shyiko.mysql.binlog.event.TableMapEventData;
+import com.github.shyiko.mysql.binlog.event.deserialization.*;
+import com.github.shyiko.mysql.binlog.io.ByteArrayInputStream;
+import com.zendesk.maxwell.util.ByteBoundedRingBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decodes rows-event bodies on a pool of worker threads.
+ *
+ * The binlog client thread only frames rows events (see {@link RawRowsEventDataDeserializer})
+ * and hands them to `submit`, along with a snapshot of the TABLE_MAP that describes them.
+ * Workers decode the bodies in parallel; a sequencer thread collects the results in the
+ * order they were submitted and feeds them to the replicator's event queue.
+ *
+ * Events waiting on the sequencer count against the queue's byte limit: `submit` takes
+ * credit for an event's length before it's decoded, and blocks while the events already
+ * pending would push it over.  Together the queue and the decoder hold about one byte
+ * limit's worth of events, not one plus {@value #MAX_PENDING_EVENTS} decoded events.
+ */
+class ParallelRowsDecoder implements Runnable {
+	static final Logger LOGGER = LoggerFactory.getLogger(ParallelRowsDecoder.class);
+	private static final int MAX_PENDING_EVENTS = 1024;
+
+	private final ByteBoundedRingBuffer<BinlogConnectorEvent> queue;
+	private final AtomicBoolean mustStop;
+	private final ExecutorService workers;
+	private final ArrayBlockingQueue<PendingEvent> pending = new ArrayBlockingQueue<>(MAX_PENDING_EVENTS);
+	private final HashMap<Long, TableMapEventData> tableMaps = new HashMap<>();
+	private final ThreadLocal<Decoder> decoders = ThreadLocal.withInitial(Decoder::new);
+	private final Thread sequencer;
+	// submitted events that haven't yet been offered to the queue
+	private final AtomicInteger outstanding = new AtomicInteger(0);
+	// bytes held by submitted events that haven't yet been offered to the queue
+	private final Object pendingLock = new Object();
+	private long pendingBytes = 0;
+	private volatile Exception error;
+
+	private static class PendingEvent {
+		final Future<BinlogConnectorEvent> event;
+		final long length;
+
+		PendingEvent(Future<BinlogConnectorEvent> event, long length) {
+			this.event = event;
+			this.length = length;
+		}
+	}
+
+	/*
+	   one set of rows deserializers per worker thread, sharing a private table-map.
+	 */
+	private static class Decoder {
+		private final HashMap<Long, TableMapEventData> tableMap = new HashMap<>();
+		private final Map<EventType, EventDataDeserializer> deserializers = new HashMap<>();
+
+		Decoder() {
+			deserializers.put(EventType.WRITE_ROWS, new WriteRowsEventDataDeserializer(tableMap));
+			deserializers.put(EventType.UPDATE_ROWS, new UpdateRowsEventDataDeserializer(tableMap));
+			deserializers.put(EventType.DELETE_ROWS, new DeleteRowsEventDataDeserializer(tableMap));
+			deserializers.put(EventType.EXT_WRITE_ROWS, new WriteRowsEventDataDeserializer(tableMap).setMayContainExtraInformation(true));
+			deserializers.put(EventType.EXT_UPDATE_ROWS, new UpdateRowsEventDataDeserializer(tableMap).setMayContainExtraInformation(true));
+			deserializers.put(EventType.EXT_DELETE_ROWS, new DeleteRowsEventDataDeserializer(tableMap).setMayContainExtraInformation(true));
+
+			// the compatibility flags on rows deserializers can only be set through an EventDeserializer
+			EventDeserializer configurer = new EventDeserializer(
+				new EventHeaderV4Deserializer(),
+				new NullEventDataDeserializer(),
+				deserializers,
+				tableMap
+			);
+			BinlogConnectorReplicator.setCompatibilityMode(configurer);
+		}
+
+		EventData decode(EventType type, TableMapEventData tableMapData, RawRowsEventData raw) throws Exception {
+			tableMap.clear();
+			if ( tableMapData != null )
+				tableMap.put(raw.getTableId(), tableMapData);
+
+			return (EventData) deserializers.get(type).deserialize(new ByteArrayInputStream(raw.getBody()));
+		}
+	}
+
+	ParallelRowsDecoder(int threads, ByteBoundedRingBuffer<BinlogConnectorEvent> queue, AtomicBoolean mustStop) {
+		this.queue = queue;
+		this.mustStop = mustStop;
+
+		AtomicInteger threadCount = new AtomicInteger(0);
+		this.workers = Executors.newFixedThreadPool(threads, (r) -> {
+			Thread t = new Thread(r, "maxwell-rows-decoder-" + threadCount.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+
+		this.sequencer = new Thread(this, "maxwell-rows-sequencer");
+		this.sequencer.setDaemon(true);
+		this.sequencer.start();
+	}
+
+	/**
+	 * Accept the next event from the binlog client thread.
+	 *
+	 * @param ep the event, possibly holding an undecoded rows-event body
+	 * @param length the event's length in bytes
+	 */
+	void submit(BinlogConnectorEvent ep, long length) throws InterruptedException {
+		if ( !reserve(length) )
+			return;
+
+		EventData data = ep.getEvent().getData();
+		Future<BinlogConnectorEvent> future;
+
+		if ( data instanceof TableMapEventData ) {
+			TableMapEventData tableMapData = (TableMapEventData) data;
+			tableMaps.put(tableMapData.getTableId(), tableMapData);
+			future = CompletableFuture.completedFuture(ep);
+		} else if ( data instanceof RawRowsEventData ) {
+			RawRowsEventData raw = (RawRowsEventData) data;
+			TableMapEventData tableMapData = tableMaps.get(raw.getTableId());
+			EventType type = ep.getType();
+			future = workers.submit(() -> ep.withData(decodeRows(type, tableMapData, raw)));
+		} else {
+			if ( ep.getType() == EventType.ROTATE )
+				tableMaps.clear();
+			future = CompletableFuture.completedFuture(ep);
+		}
+
+		PendingEvent p = new PendingEvent(future, length);
+		outstanding.incrementAndGet();
+		while ( !mustStop.get() ) {
+			if ( pending.offer(p, 100, TimeUnit.MILLISECONDS) )
+				return;
+		}
+	}
+
+	EventData decodeRows(EventType type, TableMapEventData tableMapData, RawRowsEventData raw) throws Exception {
+		return decoders.get().decode(type, tableMapData, raw);
+	}
+
+	/*
+	   take credit for `length` bytes, waiting while the events already pending and the ones
+	   in the queue would go over its byte limit.  As with the queue, an event is always
+	   accepted when nothing is pending or queued, so a single oversized event can't wedge us.
+	 */
+	private boolean reserve(long length) throws InterruptedException {
+		synchronized(pendingLock) {
+			while ( queue.getBytes() + pendingBytes > 0 && queue.getBytes() + pendingBytes + length > queue.getMaxBytes() ) {
+				if ( mustStop.get() )
+					return false;
+				pendingLock.wait(10);
+			}
+			pendingBytes += length;
+			return true;
+		}
+	}
+
+	private void release(long length) {
+		synchronized(pendingLock) {
+			pendingBytes -= length;
+			pendingLock.notifyAll();
+		}
+	}
+
+	long getPendingBytes() {
+		synchronized(pendingLock) {
+			return pendingBytes;
+		}
+	}
+
+	/**
+	 * Has every submitted event been handed to the queue?
+	 */
+	boolean isIdle() {
+		return outstanding.get() == 0;
+	}
+
+	@Override
+	public void run() {
+		try {
+			while ( !mustStop.get() ) {
+				PendingEvent p = pending.poll(100, TimeUnit.MILLISECONDS);
+				if ( p == null )
+					continue;
+
+				BinlogConnectorEvent ep = p.event.get();
+				while ( !mustStop.get() ) {
+					if ( queue.offer(ep, p.length, 100, TimeUnit.MILLISECONDS) )
+						break;
+				}
+				release(p.length);
+				outstanding.decrementAndGet();
+			}
+		} catch ( InterruptedException e ) {
+			return;
+		} catch ( ExecutionException e ) {
+			LOGGER.error("failed to decode rows event", e.getCause());
+			error = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+		}
+	}
+
+	/**
+	 * Rethrow any exception raised while decoding rows events.
+	 */
+	void checkError() throws Exception {
+		if ( error != null )
+			throw error;
+	}
+
+	void stop() {
+		mustStop.set(true);
+		sequencer.interrupt();
+		workers.shutdownNow();
+	}
+}
@@ -3,24 +3,45 @@ package com.zendesk.maxwell.replication;
 import java.io.Serializable;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Objects;
 
 public class Position implements Serializable {
 	// LastHeartbeat is the most recent heartbeat seen prior to this position.
 	// For a HeartbeatRow, it is the exact (new) heartbeat value for this position.
 	private final long lastHeartbeatRead;
 	private final BinlogPosition binlogPosition;
+	// in multi-source mode, the client_id of the source this position belongs to
+	private final String source;
 
 	public Position(BinlogPosition binlogPosition, long lastHeartbeatRead) {
+		this(binlogPosition, lastHeartbeatRead, null);
+	}
+
+	private Position(BinlogPosition binlogPosition, long lastHeartbeatRead, String source) {
 		this.binlogPosition = binlogPosition;
 		this.lastHeartbeatRead = lastHeartbeatRead;
+		this.source = source;
 	}
 
 	public Position withBinlogPosition(BinlogPosition position) {
-		return new Position(position, getLastHeartbeatRead());
+		return new Position(position, getLastHeartbeatRead(), source);
 	}
 
 	public Position withHeartbeat(long lastHeartbeatRead) {
-		return new Position(getBinlogPosition(), lastHeartbeatRead);
+		return new Position(getBinlogPosition(), lastHeartbeatRead, source);
+	}
+
+	/**
+	 * Tag this position (and every position derived from it) with the source it was read from.
+	 *
+	 * Lets positions from several servers travel through one producer without being confused.
+	 */
+	public Position withSource(String source) {
+		return new Position(getBinlogPosition(), getLastHeartbeatRead(), source);
+	}
+
+	public String getSource() {
+		return source;
 	}
 
 	public static Position capture(Connection c, boolean gtidMode) throws SQLException {
@@ -37,7 +58,8 @@ public class Position implements Serializable {
 
 	@Override
 	public String toString() {
-		return "Position[" + binlogPosition + ", lastHeartbeat=" + lastHeartbeatRead + "]";
+		String sourceStr = source == null ? "" : ", source=" + source;
+		return "Position[" + binlogPosition + ", lastHeartbeat=" + lastHeartbeatRead + sourceStr + "]";
 	}
 
 	@Override
@@ -48,7 +70,8 @@ public class Position implements Serializable {
 		Position other = (Position) o;
 
 		return lastHeartbeatRead == other.lastHeartbeatRead
-			&& binlogPosition.equals(other.binlogPosition);
+			&& binlogPosition.equals(other.binlogPosition)
+			&& Objects.equals(source, other.source);
 	}
 
 	@Override
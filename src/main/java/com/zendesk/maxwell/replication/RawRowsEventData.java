@@ -0,0 +1,30 @@
+package com.zendesk.maxwell.replication;
+
+import com.github.shyiko.mysql.binlog.event.EventData;
+
+/**
+ * The undecoded body of a rows event, captured on the binlog client thread so
+ * that it can be deserialized elsewhere.  See {@link ParallelRowsDecoder}.
+ */
+class RawRowsEventData implements EventData {
+	private final long tableId;
+	private final byte[] body;
+
+	RawRowsEventData(long tableId, byte[] body) {
+		this.tableId = tableId;
+		this.body = body;
+	}
+
+	long getTableId() {
+		return tableId;
+	}
+
+	byte[] getBody() {
+		return body;
+	}
+
+	@Override
+	public String toString() {
+		return "RawRowsEventData{tableId=" + tableId + ", length=" + body.length + "}";
+	}
+}
@@ -0,0 +1,28 @@
+package com.zendesk.maxwell.replication;
+
+import com.github.shyiko.mysql.binlog.event.deserialization.EventDataDeserializer;
+import com.github.shyiko.mysql.binlog.io.ByteArrayInputStream;
+
+import java.io.IOException;
+
+/**
+ * Frames a rows event without decoding it: the body bytes are copied out as-is
+ * and only the table id is parsed.
+ */
+class RawRowsEventDataDeserializer implements EventDataDeserializer<RawRowsEventData> {
+	@Override
+	public RawRowsEventData deserialize(ByteArrayInputStream inputStream) throws IOException {
+		byte[] body = inputStream.read(inputStream.available());
+		return new RawRowsEventData(readTableId(body), body);
+	}
+
+	/**
+	 * Every rows event body starts with the 6-byte, little-endian table id.
+	 */
+	static long readTableId(byte[] body) {
+		long tableId = 0;
+		for ( int i = 0; i < 6; i++ )
+			tableId |= ((long) (body[i] & 0xff)) << (i << 3);
+		return tableId;
+	}
+}
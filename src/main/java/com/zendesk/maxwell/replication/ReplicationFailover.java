@@ -0,0 +1,234 @@
+package com.zendesk.maxwell.replication;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Timer;
+import com.github.shyiko.mysql.binlog.GtidSet;
+import com.zendesk.maxwell.CaseSensitivity;
+import com.zendesk.maxwell.MaxwellMysqlConfig;
+import com.zendesk.maxwell.monitoring.Metrics;
+import com.zendesk.maxwell.recovery.Recovery;
+import com.zendesk.maxwell.recovery.RecoveryInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import snaq.db.ConnectionPool;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Picks a new server to replicate from when the current one goes away.
+ *
+ * Every candidate is probed at once; the reachable ones are ranked freshest first,
+ * by executed GTID set in GTID mode, or by the last maxwell heartbeat they've seen
+ * otherwise.  The current server wins ties, then the configured order does.
+ *
+ * Without GTIDs a binlog position means nothing on another server, so moving to a
+ * different candidate goes through {@link Recovery}: the candidate's binlogs are
+ * searched for the last heartbeat the replicator read, and streaming resumes there.
+ */
+class ReplicationFailover {
+	static final Logger LOGGER = LoggerFactory.getLogger(ReplicationFailover.class);
+	private static final long PROBE_TIMEOUT_MS = 5000L;
+
+	static class Candidate {
+		final int index;
+		final MaxwellMysqlConfig config;
+		String gtidExecuted;
+		long heartbeat;
+
+		Candidate(int index, MaxwellMysqlConfig config) {
+			this.index = index;
+			this.config = config;
+		}
+
+		@Override
+		public String toString() {
+			return config.host + ":" + config.port;
+		}
+	}
+
+	private final List<MaxwellMysqlConfig> candidates;
+	private final String maxwellDatabaseName;
+	private final String clientID;
+	private final boolean gtidMode;
+	private final CaseSensitivity caseSensitivity;
+	private volatile int current = 0;
+
+	private final Counter attempts;
+	private final Timer reconnectTime;
+
+	ReplicationFailover(
+		List<MaxwellMysqlConfig> candidates,
+		String maxwellDatabaseName,
+		String clientID,
+		boolean gtidMode,
+		CaseSensitivity caseSensitivity,
+		Metrics metrics
+	) {
+		this.candidates = candidates;
+		this.maxwellDatabaseName = maxwellDatabaseName;
+		this.clientID = clientID;
+		this.gtidMode = gtidMode;
+		this.caseSensitivity = caseSensitivity;
+
+		this.attempts = metrics.getRegistry().counter(metrics.metricName("replication", "failover", "attempts"));
+		this.reconnectTime = metrics.getRegistry().timer(metrics.metricName("replication", "failover", "time"));
+		metrics.register(metrics.metricName("replication", "failover", "host"), (Gauge<String>) () -> getCurrent().toString());
+	}
+
+	Candidate getCurrent() {
+		return new Candidate(current, candidates.get(current));
+	}
+
+	boolean isCurrent(Candidate candidate) {
+		return candidate.index == current;
+	}
+
+	void attempted() {
+		attempts.inc();
+	}
+
+	/**
+	 * Record that we're now streaming from `candidate`.
+	 *
+	 * @param startedAt when we noticed the old connection was gone, in nanoseconds
+	 */
+	void connected(Candidate candidate, long startedAt) {
+		long elapsed = System.nanoTime() - startedAt;
+		reconnectTime.update(elapsed, TimeUnit.NANOSECONDS);
+		if ( candidate.index != current )
+			LOGGER.warn("failed over from " + getCurrent() + " to " + candidate + " in " + TimeUnit.NANOSECONDS.toMillis(elapsed) + "ms");
+		current = candidate.index;
+	}
+
+	/**
+	 * Probe every candidate in parallel.
+	 *
+	 * @return the reachable candidates, freshest first
+	 */
+	List<Candidate> probe() throws InterruptedException {
+		AtomicInteger threadCount = new AtomicInteger(0);
+		ExecutorService probes = Executors.newFixedThreadPool(candidates.size(), (r) -> {
+			Thread t = new Thread(r, "maxwell-replication-probe-" + threadCount.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+
+		ArrayList<Future<Candidate>> futures = new ArrayList<>();
+		try {
+			for ( int i = 0; i < candidates.size(); i++ ) {
+				Candidate candidate = new Candidate(i, candidates.get(i));
+				futures.add(probes.submit(() -> probe(candidate)));
+			}
+
+			ArrayList<Candidate> reachable = new ArrayList<>();
+			long deadline = System.currentTimeMillis() + PROBE_TIMEOUT_MS;
+			for ( Future<Candidate> future : futures ) {
+				try {
+					long remaining = Math.max(0, deadline - System.currentTimeMillis());
+					reachable.add(future.get(remaining, TimeUnit.MILLISECONDS));
+				} catch ( InterruptedException e ) {
+					throw e;
+				} catch ( Exception e ) {
+					LOGGER.warn("replication candidate unreachable: " + e.getMessage());
+				}
+			}
+
+			return rank(reachable, current, gtidMode);
+		} finally {
+			probes.shutdownNow();
+		}
+	}
+
+	private Candidate probe(Candidate candidate) throws Exception {
+		MaxwellMysqlConfig config = candidate.config;
+		try ( Connection c = DriverManager.getConnection(config.getConnectionURI(false), config.user, config.password) ) {
+			if ( gtidMode ) {
+				ResultSet rs = c.createStatement().executeQuery("SELECT @@global.gtid_executed");
+				rs.next();
+				candidate.gtidExecuted = rs.getString(1);
+			} else {
+				candidate.heartbeat = lastHeartbeat(c);
+			}
+		}
+		LOGGER.info("replication candidate " + candidate + " is up ("
+			+ (gtidMode ? "gtid_executed: " + candidate.gtidExecuted : "last heartbeat: " + candidate.heartbeat) + ")");
+		return candidate;
+	}
+
+	private long lastHeartbeat(Connection c) {
+		String sql = "SELECT max(`heartbeat`) FROM `" + maxwellDatabaseName + "`.`heartbeats` WHERE `client_id` = ?";
+		try ( PreparedStatement s = c.prepareStatement(sql) ) {
+			s.setString(1, clientID);
+			ResultSet rs = s.executeQuery();
+			return rs.next() ? rs.getLong(1) : 0L;
+		} catch ( SQLException e ) {
+			// no maxwell database on this candidate; it's up, but we can't tell how fresh it is
+			return 0L;
+		}
+	}
+
+	/**
+	 * Order candidates freshest first.  A GTID set is fresher than another
+	 * if it strictly contains it.
+	 */
+	static List<Candidate> rank(List<Candidate> reachable, int current, boolean gtidMode) {
+		ArrayList<Candidate> ranked = new ArrayList<>();
+		for ( Candidate candidate : reachable ) {
+			int i = 0;
+			while ( i < ranked.size() && !fresher(candidate, ranked.get(i), current, gtidMode) )
+				i++;
+			ranked.add(i, candidate);
+		}
+		return ranked;
+	}
+
+	private static boolean fresher(Candidate a, Candidate b, int current, boolean gtidMode) {
+		int compared;
+		if ( gtidMode ) {
+			GtidSet aSet = new GtidSet(a.gtidExecuted == null ? "" : a.gtidExecuted);
+			GtidSet bSet = new GtidSet(b.gtidExecuted == null ? "" : b.gtidExecuted);
+			boolean aInB = aSet.isContainedWithin(bSet);
+			boolean bInA = bSet.isContainedWithin(aSet);
+			compared = aInB == bInA ? 0 : (bInA ? 1 : -1);
+		} else {
+			compared = Long.compare(a.heartbeat, b.heartbeat);
+		}
+
+		if ( compared != 0 )
+			return compared > 0;
+		if ( a.index == current || b.index == current )
+			return a.index == current;
+		return a.index < b.index;
+	}
+
+	/**
+	 * Find where to resume on `candidate`, a server other than the current one,
+	 * by searching its binlogs for the last heartbeat we read.
+	 *
+	 * @return the position of that heartbeat on `candidate`, or null if it isn't there
+	 */
+	Position recoverPosition(Candidate candidate, Position lastPosition) throws Exception {
+		MaxwellMysqlConfig config = candidate.config;
+		ConnectionPool pool = new ConnectionPool("FailoverConnectionPool", 1, 2, 10,
+			config.getConnectionURI(false), config.user, config.password);
+
+		try {
+			RecoveryInfo info = new RecoveryInfo(lastPosition, null, clientID);
+			return new Recovery(config, maxwellDatabaseName, pool, caseSensitivity, info).recover();
+		} finally {
+			pool.release();
+		}
+	}
+}
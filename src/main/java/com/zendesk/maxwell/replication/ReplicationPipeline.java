@@ -0,0 +1,124 @@
+package com.zendesk.maxwell.replication;
+
+import com.zendesk.maxwell.row.RowMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the row-building half of a replicator on its own thread.
+ *
+ * In pipelined mode the binlog client thread decodes events, this thread turns
+ * them into RowMaps (table-map handling, schema changes, heartbeats), and the
+ * replicator's run-loop thread hands the results to the producer.  Rows (and the DDL
+ * rows generated while building them) travel through a single bounded queue, so
+ * binlog order is preserved end to end.
+ */
+class ReplicationPipeline implements Runnable {
+	static final Logger LOGGER = LoggerFactory.getLogger(ReplicationPipeline.class);
+
+	// longest we'll sleep between calls to a replicator that keeps coming back empty-handed
+	static final long MAX_IDLE_BACKOFF_MS = 50;
+
+	private final AbstractReplicator replicator;
+	private final ArrayBlockingQueue<RowMap> queue;
+	private Thread thread;
+	private volatile boolean running;
+	private volatile Exception error;
+
+	ReplicationPipeline(AbstractReplicator replicator, int queueSize) {
+		this.replicator = replicator;
+		this.queue = new ArrayBlockingQueue<>(queueSize);
+	}
+
+	void start() {
+		this.running = true;
+		this.thread = new Thread(this, "maxwell-row-builder");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	@Override
+	public void run() {
+		try {
+			long backoffMs = 0;
+			while ( running ) {
+				RowMap row = replicator.getRow();
+				if ( row != null ) {
+					put(row);
+					backoffMs = 0;
+				} else {
+					/*
+					   a replicator that's hit the end of its binlogs (stopOnEOF, file replay)
+					   returns null straight away; don't spin on it until we're stopped.
+					 */
+					backoffMs = Math.min(Math.max(1, backoffMs * 2), MAX_IDLE_BACKOFF_MS);
+					Thread.sleep(backoffMs);
+				}
+			}
+		} catch ( InterruptedException e ) {
+			if ( running ) {
+				LOGGER.error("row builder interrupted", e);
+				error = e;
+			}
+		} catch ( Exception e ) {
+			LOGGER.error("row builder exited with exception", e);
+			error = e;
+		} finally {
+			running = false;
+		}
+	}
+
+	/**
+	 * Enqueue a row for the output stage, blocking while the queue is full.
+	 */
+	void put(RowMap row) throws InterruptedException {
+		while ( running ) {
+			if ( queue.offer(row, 100, TimeUnit.MILLISECONDS) )
+				return;
+		}
+	}
+
+	/**
+	 * Take the next row for the output stage.
+	 *
+	 * @return the next row in binlog order, or null if none arrived in time
+	 * @throws Exception any exception raised while building rows
+	 */
+	RowMap poll(long timeout, TimeUnit unit) throws Exception {
+		RowMap row = queue.poll(timeout, unit);
+		if ( row == null && error != null )
+			throw error;
+		return row;
+	}
+
+	/**
+	 * Take up to `maxRows` rows for the output stage, waiting only for the first.
+	 *
+	 * @return rows in binlog order; empty if none arrived in time
+	 * @throws Exception any exception raised while building rows
+	 */
+	List<RowMap> poll(int maxRows, long timeout, TimeUnit unit) throws Exception {
+		RowMap first = poll(timeout, unit);
+		if ( first == null )
+			return Collections.emptyList();
+
+		ArrayList<RowMap> rows = new ArrayList<>(Math.min(maxRows, queue.size() + 1));
+		rows.add(first);
+		queue.drainTo(rows, maxRows - 1);
+		return rows;
+	}
+
+	void stop() throws InterruptedException {
+		running = false;
+		if ( thread != null ) {
+			thread.interrupt();
+			thread.join();
+		}
+	}
+}
@@ -1,37 +1,166 @@
 package com.zendesk.maxwell.replication;
 
-import java.util.HashMap;
-
+import com.codahale.metrics.Counter;
 import com.google.code.or.binlog.impl.event.TableMapEvent;
 import com.zendesk.maxwell.MaxwellFilter;
+import com.zendesk.maxwell.monitoring.Metrics;
 import com.zendesk.maxwell.schema.Database;
 import com.zendesk.maxwell.schema.Schema;
 import com.zendesk.maxwell.schema.Table;
+import com.zendesk.maxwell.schema.ddl.ResolvedSchemaChange;
+import com.zendesk.maxwell.schema.ddl.ResolvedTableAlter;
+import com.zendesk.maxwell.util.LongHashMap;
+
+import java.util.List;
 
 public class TableCache {
-	private final HashMap<Long, Table> tableMapCache = new HashMap<>();
-	private final HashMap<Long, String> blacklistedTableCache = new HashMap<>();
+	/**
+	 * What to do with rows events for a table.
+	 */
+	public enum FilterDecision {
+		OUTPUT,
+		SKIP,
+		// writes to `maxwell`.`bootstrap`; always passed through, they drive the bootstrapper
+		BOOTSTRAP_CONTROL;
 
-	public void processEvent(Schema schema, MaxwellFilter filter, Long tableId, String dbName, String tblName) {
-		if ( !tableMapCache.containsKey(tableId) ) {
-			if ( filter != null && filter.isTableBlacklisted(dbName, tblName) ) {
-				blacklistedTableCache.put(tableId, tblName);
-				return;
-			}
+		public boolean shouldOutput() {
+			return this != SKIP;
+		}
+
+		/**
+		 * Run the table filter for a table.
+		 *
+		 * @param maxwellSchemaDatabaseName the name of maxwell's own schema database
+		 * @param filter A table-filter, or null
+		 */
+		public static FilterDecision resolve(String maxwellSchemaDatabaseName, String database, String table, MaxwellFilter filter) {
+			if ( MaxwellFilter.isSystemBlacklisted(database, table) )
+				return SKIP;
+			else if ( maxwellSchemaDatabaseName.equals(database) && "bootstrap".equals(table) )
+				return BOOTSTRAP_CONTROL;
+			else if ( MaxwellFilter.matches(filter, database, table) )
+				return OUTPUT;
+			else
+				return SKIP;
+		}
+	}
+
+	/**
+	 * A table id's table, along with the filter's verdict on it.
+	 */
+	public static class Entry {
+		private final String databaseName;
+		private final String tableName;
+		private final Table table;
+		private final FilterDecision decision;
+		private final boolean acceptsInserts, acceptsUpdates, acceptsDeletes;
+
+		/**
+		 * @param rowTypeFilter the filter to take row-type rules from, or null to accept every row type
+		 */
+		Entry(String databaseName, String tableName, Table table, FilterDecision decision, MaxwellFilter rowTypeFilter) {
+			this.databaseName = databaseName;
+			this.tableName = tableName;
+			this.table = table;
+			this.decision = decision;
+
+			String name = table == null ? tableName : table.getName();
+			this.acceptsInserts = MaxwellFilter.matchesRowType(rowTypeFilter, name, "insert");
+			this.acceptsUpdates = MaxwellFilter.matchesRowType(rowTypeFilter, name, "update");
+			this.acceptsDeletes = MaxwellFilter.matchesRowType(rowTypeFilter, name, "delete");
+		}
 
-			Database db = schema.findDatabase(dbName);
-			if ( db == null )
-				throw new RuntimeException("Couldn't find database " + dbName);
-			else {
-				Table tbl = db.findTable(tblName);
+		/**
+		 * @return the table, or null if the table is blacklisted
+		 */
+		public Table getTable() {
+			return table;
+		}
+
+		public FilterDecision getDecision() {
+			return decision;
+		}
 
-				if (tbl == null)
-					throw new RuntimeException("Couldn't find table " + tblName + " in database " + dbName);
-				else
-					tableMapCache.put(tableId, tbl);
+		/**
+		 * @param rowType "insert", "update" or "delete"
+		 * @return whether the row-type filters let rows of this type through for the table
+		 */
+		public boolean acceptsRowType(String rowType) {
+			switch ( rowType ) {
+				case "insert":
+					return acceptsInserts;
+				case "update":
+					return acceptsUpdates;
+				case "delete":
+					return acceptsDeletes;
+				default:
+					return true;
 			}
 		}
 
+		public boolean isBlacklisted() {
+			return table == null;
+		}
+
+		private boolean isFor(String dbName, String tblName) {
+			return databaseName.equals(dbName) && tableName.equals(tblName);
+		}
+
+		private boolean isIn(String dbName) {
+			return databaseName.equalsIgnoreCase(dbName)
+				|| (table != null && table.getDatabase().equalsIgnoreCase(dbName));
+		}
+
+		private boolean isIn(String dbName, String tblName) {
+			return (databaseName.equalsIgnoreCase(dbName) && tableName.equalsIgnoreCase(tblName))
+				|| (table != null && table.getDatabase().equalsIgnoreCase(dbName) && table.getName().equalsIgnoreCase(tblName));
+		}
+	}
+
+	private final String maxwellSchemaDatabaseName;
+	private final LongHashMap<Entry> entries = new LongHashMap<>();
+	private MaxwellFilter lastFilter;
+	private final Counter hits;
+	private final Counter misses;
+
+	public TableCache(String maxwellSchemaDatabaseName, Metrics metrics) {
+		this.maxwellSchemaDatabaseName = maxwellSchemaDatabaseName;
+		this.hits = metrics.getRegistry().counter(metrics.metricName("replication", "table_cache", "hits"));
+		this.misses = metrics.getRegistry().counter(metrics.metricName("replication", "table_cache", "misses"));
+	}
+
+	public void processEvent(Schema schema, MaxwellFilter filter, long tableId, String dbName, String tblName) {
+		if ( filter != lastFilter ) {
+			// decisions were made against the old filter
+			entries.clear();
+			lastFilter = filter;
+		}
+
+		// table ids can be reused for a different table (eg. after a server restart), so check the names too
+		Entry cached = entries.get(tableId);
+		if ( cached != null && cached.isFor(dbName, tblName) ) {
+			hits.inc();
+			return;
+		}
+		misses.inc();
+
+		if ( filter != null && filter.isTableBlacklisted(dbName, tblName) ) {
+			entries.put(tableId, new Entry(dbName, tblName, null, FilterDecision.SKIP, filter));
+			return;
+		}
+
+		Database db = schema.findDatabase(dbName);
+		if ( db == null )
+			throw new RuntimeException("Couldn't find database " + dbName);
+
+		Table tbl = db.findTable(tblName);
+		if ( tbl == null )
+			throw new RuntimeException("Couldn't find table " + tblName + " in database " + dbName);
+
+		FilterDecision decision = FilterDecision.resolve(maxwellSchemaDatabaseName, tbl.getDatabase(), tbl.getName(), filter);
+		// heartbeats and bootstrap control rows are updates too; row-type filters are for user tables
+		MaxwellFilter rowTypeFilter = maxwellSchemaDatabaseName.equals(tbl.getDatabase()) ? null : filter;
+		entries.put(tableId, new Entry(dbName, tblName, tbl, decision, rowTypeFilter));
 	}
 
 	// open-replicator keeps a very similar cache, but we can't get access to it.
@@ -42,20 +171,58 @@ public class TableCache {
 		processEvent(schema, filter, event.getTableId(), dbName, tblName);
 	}
 
-	public Table getTable(Long tableId) {
-		return tableMapCache.get(tableId);
+	/**
+	 * @return the cached table and filter decision for a table id, or null
+	 */
+	public Entry getEntry(long tableId) {
+		return entries.get(tableId);
 	}
 
-	public boolean isTableBlacklisted(Long tableId) {
-		return blacklistedTableCache.containsKey(tableId);
+	public Table getTable(long tableId) {
+		Entry entry = entries.get(tableId);
+		return entry == null ? null : entry.table;
 	}
 
-	public String getBlacklistedTableName(Long tableId) {
-		return blacklistedTableCache.get(tableId);
+	public boolean isTableBlacklisted(long tableId) {
+		Entry entry = entries.get(tableId);
+		return entry != null && entry.isBlacklisted();
+	}
+
+	public String getBlacklistedTableName(long tableId) {
+		Entry entry = entries.get(tableId);
+		return entry != null && entry.isBlacklisted() ? entry.tableName : null;
+	}
+
+	/**
+	 * Forget the tables touched by a list of schema changes.
+	 *
+	 * A change that names no table (database create/alter/drop) drops every entry in its database.
+	 */
+	public void invalidate(List<ResolvedSchemaChange> changes) {
+		for ( ResolvedSchemaChange change : changes ) {
+			String dbName = change.databaseName();
+			String tblName = change.tableName();
+
+			if ( dbName == null ) {
+				clear();
+				return;
+			}
+
+			if ( tblName == null ) {
+				entries.removeIf((e) -> e.isIn(dbName));
+			} else {
+				entries.removeIf((e) -> e.isIn(dbName, tblName));
+			}
+
+			if ( change instanceof ResolvedTableAlter ) {
+				// a rename or move to another database
+				Table newTable = ((ResolvedTableAlter) change).newTable;
+				entries.removeIf((e) -> e.isIn(newTable.getDatabase(), newTable.getName()));
+			}
+		}
 	}
 
 	public void clear() {
-		tableMapCache.clear();
-		blacklistedTableCache.clear();
+		entries.clear();
 	}
 }
@@ -29,6 +29,11 @@ public class HeartbeatRowMap extends RowMap {
 		return null;
 	}
 
+	@Override
+	protected boolean writeJSON(MaxwellOutputConfig outputConfig) {
+		return false;
+	}
+
 	@Override
 	public boolean isTXCommit() {
 		return true;
@@ -0,0 +1,65 @@
+package com.zendesk.maxwell.row;
+
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.zendesk.maxwell.schema.columndef.ColumnDef;
+
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * JSON field names for one table definition, with `key_case` already applied and
+ * pre-encoded for jackson, so that writing a row doesn't case-convert, allocate or
+ * re-escape a single column name.
+ *
+ * Built by {@link com.zendesk.maxwell.schema.Table#getJSONFieldNames}, which throws
+ * them away whenever the table's columns or primary key change.
+ */
+public class JSONFieldNames {
+	public final String keyCase;
+	private final HashMap<String, SerializableString> columns = new HashMap<>();
+	private final HashMap<String, SerializableString> pkHashFields = new HashMap<>();
+	private final HashMap<String, SerializableString> pkArrayFields = new HashMap<>();
+
+	public JSONFieldNames(List<ColumnDef> columnList, List<String> pkColumns, String keyCase) {
+		this.keyCase = keyCase;
+
+		for ( ColumnDef cd : columnList )
+			columns.put(cd.getName(), new SerializedString(applyKeyCase(cd.getName(), keyCase)));
+
+		for ( String pk : pkColumns ) {
+			pkHashFields.put(pk, new SerializedString("pk." + pk.toLowerCase()));
+			pkArrayFields.put(pk, new SerializedString(pk.toLowerCase()));
+		}
+	}
+
+	/**
+	 * @return the field name for column `name`, or null if the table has no such column
+	 */
+	public SerializableString column(String name) {
+		return columns.get(name);
+	}
+
+	/**
+	 * @return the `pk.name` field of a hash-format key, or null for an unknown column
+	 */
+	public SerializableString pkHashField(String pk) {
+		return pkHashFields.get(pk);
+	}
+
+	/**
+	 * @return the field of an array-format key, or null for an unknown column
+	 */
+	public SerializableString pkArrayField(String pk) {
+		return pkArrayFields.get(pk);
+	}
+
+	public static String applyKeyCase(String name, String keyCase) {
+		if ( "lower".equalsIgnoreCase(keyCase) )
+			return name.toLowerCase();
+		else if ( "upper".equalsIgnoreCase(keyCase) )
+			return name.toUpperCase();
+		else
+			return name;
+	}
+}
@@ -0,0 +1,481 @@
+package com.zendesk.maxwell.row;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.zendesk.maxwell.producer.MaxwellOutputConfig;
+import com.zendesk.maxwell.replication.Position;
+import com.zendesk.maxwell.schema.Table;
+import com.zendesk.maxwell.schema.columndef.ColumnDef;
+
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.security.NoSuchAlgorithmException;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+/**
+ * A RowMap built straight from a binlog row image.
+ *
+ * We hold on to the table definition and the raw before/after images, and only
+ * convert column values (via {@link ColumnDef#asJSON}) when something asks for them.
+ * Single columns read through `getData(key)` are converted one at a time; anything
+ * that needs the whole row (serialization, the map accessors, mutation) converts every
+ * column once.
+ *
+ * Converted values are stored by column position in arrays shared in shape with the
+ * table definition, with a bitset saying which columns the row (or its old image)
+ * actually has -- there's no map entry per column, and column names are the table's.
+ * `getData()`, `putData()` and friends are views onto those arrays; keys that aren't
+ * columns of the table fall through to the plain RowMap maps, and a row that's been
+ * through java serialization is a plain RowMap from then on.
+ *
+ * Changed columns in an update's "old" image are detected by comparing raw values.
+ *
+ * Columns in the `excludedColumns` mask (see {@link Table#getExcludedColumns}) are never
+ * converted into the row's data; until the row is converted they remain readable one at
+ * a time, so value filters and primary keys on excluded columns keep working.
+ */
+public class LazyRowMap extends RowMap {
+	private transient Table table;
+	private transient Serializable[] rawData;
+	private transient BitSet includedColumns;
+	private transient Serializable[] rawOldData;
+	private transient BitSet oldIncludedColumns;
+	private transient BitSet excludedColumns;
+	private transient Object[] convertedColumns;
+	// built on the first single-column read: raw image index by column position
+	private transient int[] imageIndexes;
+	private transient int[] oldImageIndexes;
+
+	// once converted: values by column position, and which positions the row has
+	private transient Object[] values;
+	private transient BitSet present;
+	private transient Object[] oldValues;
+	private transient BitSet oldPresent;
+
+	public LazyRowMap(
+		String type,
+		Table table,
+		Long timestampMillis,
+		Position nextPosition,
+		String rowQuery,
+		Serializable[] data,
+		BitSet includedColumns
+	) {
+		this(type, table, timestampMillis, nextPosition, rowQuery, data, includedColumns, null);
+	}
+
+	public LazyRowMap(
+		String type,
+		Table table,
+		Long timestampMillis,
+		Position nextPosition,
+		String rowQuery,
+		Serializable[] data,
+		BitSet includedColumns,
+		BitSet excludedColumns
+	) {
+		super(type, table.getDatabase(), table.getName(), timestampMillis, table.getPKList(), nextPosition, rowQuery);
+		this.table = table;
+		this.rawData = data;
+		this.includedColumns = includedColumns;
+		this.excludedColumns = excludedColumns;
+		this.approximateSize += approximateImageSize(data, includedColumns);
+	}
+
+	/**
+	 * Attach the before-image of an update.
+	 */
+	public void setOldImage(Serializable[] oldData, BitSet oldIncludedColumns) {
+		if ( isMaterialized() )
+			throw new IllegalStateException("row image already converted");
+
+		this.rawOldData = oldData;
+		this.oldIncludedColumns = oldIncludedColumns;
+		this.approximateSize += approximateImageSize(oldData, oldIncludedColumns);
+	}
+
+	/**
+	 * The definition of the table this row was read from, as of when it was read.
+	 * Null once the row has been through serialization.
+	 */
+	public Table getTableDefinition() {
+		return table;
+	}
+
+	@Override
+	protected JSONFieldNames getJSONFieldNames(String keyCase) {
+		return table == null ? null : table.getJSONFieldNames(keyCase);
+	}
+
+	private boolean isMaterialized() {
+		return this.rawData == null;
+	}
+
+	private long approximateImageSize(Serializable[] image, BitSet included) {
+		long size = 0;
+		int dataIdx = 0, colIdx = 0;
+
+		for ( ColumnDef cd : table.getColumnList() ) {
+			if ( included.get(colIdx) ) {
+				Serializable value = image[dataIdx++];
+				if ( isExcluded(colIdx) ) {
+					colIdx++;
+					continue;
+				}
+
+				// a slot in the raw image and one in the converted values; the name is the table's
+				size += 2 * RowSizeEstimator.REFERENCE;
+				size += RowSizeEstimator.sizeOf(value) + RowSizeEstimator.convertedSizeOf(cd, value);
+			}
+			colIdx++;
+		}
+		return size;
+	}
+
+	/*
+	   index into a raw image for each column position, or -1 where the image doesn't include it.
+	 */
+	private static int[] imageIndexes(BitSet included, int count) {
+		int[] indexes = new int[count];
+		int dataIdx = 0;
+		for ( int colIdx = 0; colIdx < count; colIdx++ )
+			indexes[colIdx] = included.get(colIdx) ? dataIdx++ : -1;
+		return indexes;
+	}
+
+	/*
+	   position of the table column named exactly `key`, or -1.
+	 */
+	private int columnIndex(String key) {
+		if ( table == null )
+			return -1;
+
+		int colIdx = table.findColumnIndex(key);
+		if ( colIdx < 0 || !table.getColumnList().get(colIdx).getName().equals(key) )
+			return -1;
+		return colIdx;
+	}
+
+	private boolean isExcluded(int colIdx) {
+		return excludedColumns != null && excludedColumns.get(colIdx);
+	}
+
+	private static Object convert(ColumnDef cd, Serializable value) {
+		return value == null ? null : cd.asJSON(value);
+	}
+
+	private void materialize() {
+		if ( isMaterialized() )
+			return;
+
+		Serializable[] after = this.rawData, before = this.rawOldData;
+		List<ColumnDef> columns = table.getColumnList();
+		int count = columns.size();
+
+		Object[] converted = convertedColumns != null ? convertedColumns : new Object[count];
+		BitSet has = new BitSet(count);
+
+		int dataIdx = 0, oldIdx = 0;
+		for ( int colIdx = 0; colIdx < count; colIdx++ ) {
+			boolean inAfter = includedColumns.get(colIdx);
+			boolean inBefore = before != null && oldIncludedColumns.get(colIdx);
+			Serializable raw = inAfter ? after[dataIdx++] : null;
+			Serializable oldRaw = inBefore ? before[oldIdx++] : null;
+
+			if ( isExcluded(colIdx) ) {
+				// left out of both sections
+				converted[colIdx] = null;
+				continue;
+			}
+
+			ColumnDef cd = columns.get(colIdx);
+			if ( inAfter ) {
+				if ( converted[colIdx] == null )
+					converted[colIdx] = convert(cd, raw);
+				has.set(colIdx);
+
+				if ( inBefore && !Objects.deepEquals(raw, oldRaw) ) {
+					if ( oldValues == null ) {
+						oldValues = new Object[count];
+						oldPresent = new BitSet(count);
+					}
+					oldValues[colIdx] = convert(cd, oldRaw);
+					oldPresent.set(colIdx);
+				}
+			} else if ( inBefore ) {
+				/*
+				   A column in the BEFORE image that's *not* present in the AFTER image
+				   means binlog_row_image = MINIMAL; the BEFORE image is a sort of WHERE
+				   clause, and belongs in the "data" section, not the "old".
+				 */
+				if ( converted[colIdx] == null )
+					converted[colIdx] = convert(cd, oldRaw);
+				has.set(colIdx);
+			}
+		}
+
+		this.values = converted;
+		this.present = has;
+
+		this.rawData = null;
+		this.rawOldData = null;
+		this.includedColumns = null;
+		this.oldIncludedColumns = null;
+		this.excludedColumns = null;
+		this.convertedColumns = null;
+		this.imageIndexes = null;
+		this.oldImageIndexes = null;
+	}
+
+	private boolean isColumnar() {
+		return this.values != null;
+	}
+
+	private boolean hasOldColumns() {
+		return oldPresent != null && !oldPresent.isEmpty();
+	}
+
+	/*
+	   copy converted columns into the plain RowMap maps, ahead of anything already there,
+	   and stop using the arrays.
+	 */
+	private void detach() {
+		LinkedHashMap<String, Object> otherData = new LinkedHashMap<>(data);
+		LinkedHashMap<String, Object> otherOldData = new LinkedHashMap<>(oldData);
+		data.clear();
+		oldData.clear();
+
+		columnsToMap(values, present, data);
+		data.putAll(otherData);
+		if ( hasOldColumns() )
+			columnsToMap(oldValues, oldPresent, oldData);
+		oldData.putAll(otherOldData);
+
+		this.values = null;
+		this.present = null;
+		this.oldValues = null;
+		this.oldPresent = null;
+	}
+
+	private void columnsToMap(Object[] columnValues, BitSet has, LinkedHashMap<String, Object> map) {
+		List<ColumnDef> columns = table.getColumnList();
+		for ( int colIdx = has.nextSetBit(0); colIdx >= 0; colIdx = has.nextSetBit(colIdx + 1) )
+			map.put(columns.get(colIdx).getName(), columnValues[colIdx]);
+	}
+
+	@Override
+	public Object getData(String key) {
+		if ( isMaterialized() ) {
+			int colIdx = isColumnar() ? columnIndex(key) : -1;
+			return colIdx < 0 ? super.getData(key) : values[colIdx];
+		}
+
+		int colIdx = columnIndex(key);
+		if ( colIdx < 0 )
+			return null;
+
+		if ( convertedColumns != null && convertedColumns[colIdx] != null )
+			return convertedColumns[colIdx];
+
+		List<ColumnDef> columns = table.getColumnList();
+		if ( imageIndexes == null )
+			imageIndexes = imageIndexes(includedColumns, columns.size());
+
+		ColumnDef cd = columns.get(colIdx);
+		Object value;
+		int idx = imageIndexes[colIdx];
+		if ( idx >= 0 ) {
+			value = convert(cd, rawData[idx]);
+		} else {
+			if ( oldIncludedColumns == null )
+				return null;
+			if ( oldImageIndexes == null )
+				oldImageIndexes = imageIndexes(oldIncludedColumns, columns.size());
+
+			idx = oldImageIndexes[colIdx];
+			if ( idx < 0 )
+				return null;
+			value = convert(cd, rawOldData[idx]);
+		}
+
+		if ( convertedColumns == null )
+			convertedColumns = new Object[columns.size()];
+		convertedColumns[colIdx] = value;
+		return value;
+	}
+
+	@Override
+	public boolean hasData(String name) {
+		if ( isMaterialized() ) {
+			int colIdx = isColumnar() ? columnIndex(name) : -1;
+			return colIdx < 0 ? super.hasData(name) : present.get(colIdx);
+		}
+
+		int colIdx = columnIndex(name);
+		if ( colIdx < 0 )
+			return false;
+
+		return includedColumns.get(colIdx) || (oldIncludedColumns != null && oldIncludedColumns.get(colIdx));
+	}
+
+	@Override
+	protected boolean writeJSON(MaxwellOutputConfig outputConfig) throws Exception {
+		if ( !writesFromImages(outputConfig) )
+			materialize();
+		return super.writeJSON(outputConfig);
+	}
+
+	/*
+	   with output_table_serializers on, a row nobody has modified is written straight from
+	   its images by the table's serializer, and stays unconverted.  Columns excluded at
+	   output time rather than when the row was built are skipped as the converted columns
+	   are written.
+	 */
+	private boolean writesFromImages(MaxwellOutputConfig outputConfig) {
+		return outputConfig.tableSerializers && !isMaterialized() && !excludesColumnsOnOutput(outputConfig);
+	}
+
+	@Override
+	protected void writeDataJSON(JsonGenerator g, MaxwellOutputConfig outputConfig) throws IOException, NoSuchAlgorithmException {
+		if ( !isMaterialized() ) {
+			table.getRowSerializer(outputConfig.keyCase).write(
+				g, rawData, includedColumns, rawOldData, oldIncludedColumns,
+				excludedColumns, convertedColumns, outputConfig.includesNulls
+			);
+			return;
+		}
+
+		if ( !isColumnar() ) {
+			super.writeDataJSON(g, outputConfig);
+			return;
+		}
+
+		JSONFieldNames fieldNames = getJSONFieldNames(outputConfig.keyCase);
+		List<Pattern> excluding = excludesColumnsOnOutput(outputConfig) ? outputConfig.excludeColumns : null;
+		g.writeObjectFieldStart(FieldNames.DATA);
+		writeColumnsToJSON(values, present, data, g, outputConfig, fieldNames, excluding);
+		g.writeEndObject();
+
+		if ( hasUnexcludedOldColumn(excluding) ) {
+			g.writeObjectFieldStart(FieldNames.OLD);
+			writeColumnsToJSON(oldValues, oldPresent, oldData, g, outputConfig, fieldNames, excluding);
+			g.writeEndObject();
+		}
+	}
+
+	private boolean hasUnexcludedOldColumn(List<Pattern> excluding) {
+		if ( hasOldColumns() ) {
+			List<ColumnDef> columns = table.getColumnList();
+			for ( int colIdx = oldPresent.nextSetBit(0); colIdx >= 0; colIdx = oldPresent.nextSetBit(colIdx + 1) ) {
+				if ( !isExcludedColumn(columns.get(colIdx).getName(), excluding) )
+					return true;
+			}
+		}
+		return hasUnexcludedKey(oldData, excluding);
+	}
+
+	/*
+	   the columns set in `has` (which may be null), then any other keys.
+	 */
+	private void writeColumnsToJSON(
+		Object[] columnValues,
+		BitSet has,
+		LinkedHashMap<String, Object> others,
+		JsonGenerator g,
+		MaxwellOutputConfig outputConfig,
+		JSONFieldNames fieldNames,
+		List<Pattern> excluding
+	) throws IOException {
+		List<ColumnDef> columns = table.getColumnList();
+		for ( int colIdx = has == null ? -1 : has.nextSetBit(0); colIdx >= 0; colIdx = has.nextSetBit(colIdx + 1) ) {
+			String name = columns.get(colIdx).getName();
+			if ( !isExcludedColumn(name, excluding) )
+				writeFieldToJSON(name, columnValues[colIdx], g, outputConfig.includesNulls, outputConfig.keyCase, fieldNames);
+		}
+
+		for ( Map.Entry<String, Object> entry : others.entrySet() ) {
+			if ( !isExcludedColumn(entry.getKey(), excluding) )
+				writeFieldToJSON(entry.getKey(), entry.getValue(), g, outputConfig.includesNulls, outputConfig.keyCase, fieldNames);
+		}
+	}
+
+	@Override
+	public void putData(String key, Object value) {
+		materialize();
+		int colIdx = isColumnar() ? columnIndex(key) : -1;
+		if ( colIdx < 0 ) {
+			super.putData(key, value);
+			return;
+		}
+
+		values[colIdx] = value;
+		present.set(colIdx);
+		this.approximateSize += RowSizeEstimator.sizeOf(value);
+	}
+
+	@Override
+	public Object getOldData(String key) {
+		materialize();
+		int colIdx = isColumnar() ? columnIndex(key) : -1;
+		if ( colIdx < 0 )
+			return super.getOldData(key);
+
+		return oldValues == null ? null : oldValues[colIdx];
+	}
+
+	@Override
+	public void putOldData(String key, Object value) {
+		materialize();
+		int colIdx = isColumnar() ? columnIndex(key) : -1;
+		if ( colIdx < 0 ) {
+			super.putOldData(key, value);
+			return;
+		}
+
+		if ( oldValues == null ) {
+			oldValues = new Object[values.length];
+			oldPresent = new BitSet(values.length);
+		}
+		oldValues[colIdx] = value;
+		oldPresent.set(colIdx);
+		this.approximateSize += RowSizeEstimator.sizeOf(value);
+	}
+
+	@Override
+	public LinkedHashMap<String, Object> getData() {
+		materialize();
+		if ( !isColumnar() )
+			return super.getData();
+
+		LinkedHashMap<String, Object> map = new LinkedHashMap<>();
+		columnsToMap(values, present, map);
+		map.putAll(data);
+		return map;
+	}
+
+	@Override
+	public LinkedHashMap<String, Object> getOldData() {
+		materialize();
+		if ( !isColumnar() )
+			return super.getOldData();
+
+		LinkedHashMap<String, Object> map = new LinkedHashMap<>();
+		if ( hasOldColumns() )
+			columnsToMap(oldValues, oldPresent, map);
+		map.putAll(oldData);
+		return map;
+	}
+
+	// the table definition isn't serializable; convert everything into the plain maps before we're written out.
+	private Object writeReplace() throws ObjectStreamException {
+		materialize();
+		if ( isColumnar() )
+			detach();
+		return this;
+	}
+}
@@ -0,0 +1,11 @@
+package com.zendesk.maxwell.row;
+
+import java.io.IOException;
+
+/**
+ * Encodes rows in one of the binary `output_format`s.  JSON output doesn't go
+ * through here; it stays on {@link RowMap#toJSON}.
+ */
+public interface RowEncoder {
+	byte[] encode(RowMap r) throws IOException;
+}
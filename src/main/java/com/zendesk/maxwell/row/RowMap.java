@@ -11,13 +11,13 @@ import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.security.NoSuchAlgorithmException;
-import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.UUID;
 import java.util.regex.Pattern;
 
@@ -41,25 +41,49 @@ public class RowMap implements Serializable {
 	private Long serverId;
 	private Long threadId;
 
-	private final LinkedHashMap<String, Object> data;
-	private final LinkedHashMap<String, Object> oldData;
+	protected final LinkedHashMap<String, Object> data;
+	protected final LinkedHashMap<String, Object> oldData;
 
 	private final LinkedHashMap<String, Object> extraAttributes;
 
 	private final List<String> pkColumns;
 
+	// exclude_columns patterns already applied (via a table's column mask) when this row was built
+	private transient List<Pattern> excludedColumnPatterns;
+
 	private static final JsonFactory jsonFactory = new JsonFactory();
 
-	private long approximateSize;
+	// primary key fields are always lower case; any key case's field names will do for them
+	private static final String PK_KEY_CASE = "original";
+
+	protected long approximateSize;
+
+	/*
+	   lets us copy serialized JSON straight into a ByteBuffer.
+	 */
+	private static class JSONByteArrayOutputStream extends ByteArrayOutputStream {
+		void writeTo(ByteBuffer buffer) {
+			buffer.put(buf, 0, count);
+		}
+	}
 
-	private static final ThreadLocal<ByteArrayOutputStream> byteArrayThreadLocal =
-			new ThreadLocal<ByteArrayOutputStream>(){
+	private static final ThreadLocal<JSONByteArrayOutputStream> byteArrayThreadLocal =
+			new ThreadLocal<JSONByteArrayOutputStream>(){
 				@Override
-				protected ByteArrayOutputStream initialValue() {
-					return new ByteArrayOutputStream();
+				protected JSONByteArrayOutputStream initialValue() {
+					return new JSONByteArrayOutputStream();
 				}
 			};
 
+	/**
+	 * The per-thread buffer {@link #writeJSON} serializes into, emptied.
+	 */
+	protected static OutputStream resetJSONStream() {
+		ByteArrayOutputStream b = byteArrayThreadLocal.get();
+		b.reset();
+		return b;
+	}
+
 	private static JsonGenerator resetJsonGenerator() {
 		byteArrayThreadLocal.get().reset();
 		return jsonGeneratorThreadLocal.get();
@@ -142,12 +166,14 @@ public class RowMap implements Serializable {
 		if (pkColumns.isEmpty()) {
 			g.writeStringField(FieldNames.UUID, UUID.randomUUID().toString());
 		} else {
+			JSONFieldNames fieldNames = getJSONFieldNames(PK_KEY_CASE);
 			for (String pk : pkColumns) {
-				Object pkValue = null;
-				if ( data.containsKey(pk) )
-					pkValue = data.get(pk);
-
-				g.writeObjectField("pk." + pk.toLowerCase(), pkValue);
+				SerializableString fieldName = fieldNames == null ? null : fieldNames.pkHashField(pk);
+				if ( fieldName != null )
+					g.writeFieldName(fieldName);
+				else
+					g.writeFieldName("pk." + pk.toLowerCase());
+				g.writeObject(getData(pk));
 			}
 		}
 
@@ -164,13 +190,15 @@ public class RowMap implements Serializable {
 		g.writeString(table);
 
 		g.writeStartArray();
+		JSONFieldNames fieldNames = pkColumns.isEmpty() ? null : getJSONFieldNames(PK_KEY_CASE);
 		for (String pk : pkColumns) {
-			Object pkValue = null;
-			if ( data.containsKey(pk) )
-				pkValue = data.get(pk);
-
 			g.writeStartObject();
-			g.writeObjectField(pk.toLowerCase(), pkValue);
+			SerializableString fieldName = fieldNames == null ? null : fieldNames.pkArrayField(pk);
+			if ( fieldName != null )
+				g.writeFieldName(fieldName);
+			else
+				g.writeFieldName(pk.toLowerCase());
+			g.writeObject(getData(pk));
 			g.writeEndObject();
 		}
 		g.writeEndArray();
@@ -185,9 +213,7 @@ public class RowMap implements Serializable {
 		}
 		StringBuilder keys = new StringBuilder();
 		for (String pk : pkColumns) {
-			Object pkValue = null;
-			if (data.containsKey(pk))
-				pkValue = data.get(pk);
+			Object pkValue = getData(pk);
 			if (pkValue != null)
 				keys.append(pkValue.toString());
 		}
@@ -199,9 +225,7 @@ public class RowMap implements Serializable {
 	public String buildPartitionKey(List<String> partitionColumns) {
 		StringBuilder partitionKey= new StringBuilder();
 		for (String pc : partitionColumns) {
-			Object pcValue = null;
-			if (data.containsKey(pc))
-				pcValue = data.get(pc);
+			Object pcValue = getData(pc);
 			if (pcValue != null)
 				partitionKey.append(pcValue.toString());
 		}
@@ -209,57 +233,68 @@ public class RowMap implements Serializable {
 		return partitionKey.toString();
 	}
 
+	/**
+	 * Pre-encoded field names for this row's columns in `keyCase`, if known;
+	 * rows built from a table definition return that table's.
+	 */
+	protected JSONFieldNames getJSONFieldNames(String keyCase) {
+		return null;
+	}
+
 	private void writeMapToJSON(
 			String jsonMapName,
 			LinkedHashMap<String, Object> data,
 			JsonGenerator g,
 			boolean includeNullField,
-			String keyCase
+			String keyCase,
+			JSONFieldNames fieldNames,
+			List<Pattern> excluding
 	) throws IOException, NoSuchAlgorithmException {
 		g.writeObjectFieldStart(jsonMapName);
 
-		for (String key : data.keySet()) {
-			Object value = data.get(key);
-
-			if (value == null && !includeNullField)
+		for (Map.Entry<String, Object> entry : data.entrySet()) {
+			if ( isExcludedColumn(entry.getKey(), excluding) )
 				continue;
+			writeFieldToJSON(entry.getKey(), entry.getValue(), g, includeNullField, keyCase, fieldNames);
+		}
+
+		g.writeEndObject(); // end of 'jsonMapName: { }'
+	}
 
-			if (value instanceof List) { // sets come back from .asJSON as lists, and jackson can't deal with lists natively.
-				List stringList = (List) value;
+	/**
+	 * Write one column of a "data" or "old" section.
+	 */
+	protected static void writeFieldToJSON(
+			String key,
+			Object value,
+			JsonGenerator g,
+			boolean includeNullField,
+			String keyCase,
+			JSONFieldNames fieldNames
+	) throws IOException {
+		if (value == null && !includeNullField)
+			return;
+
+		SerializableString fieldName = fieldNames == null ? null : fieldNames.column(key);
+		if ( fieldName != null )
+			g.writeFieldName(fieldName);
+		else
+			g.writeFieldName(JSONFieldNames.applyKeyCase(key, keyCase));
 
-				if ("lower".equalsIgnoreCase(keyCase)) {
-					g.writeArrayFieldStart(key.toLowerCase());
-				} else if ("upper".equalsIgnoreCase(keyCase)) {
-					g.writeArrayFieldStart(key.toUpperCase());
-				} else {
-					g.writeArrayFieldStart(key);
-				}
-				for (Object s : stringList) {
-					g.writeObject(s);
-				}
-				g.writeEndArray();
-			} else if (value instanceof RawJSONString) {
-				// JSON column type, using binlog-connector's serializers.
-				if ("lower".equalsIgnoreCase(keyCase)) {
-					g.writeFieldName(key.toLowerCase());
-				} else if ("upper".equalsIgnoreCase(keyCase)) {
-					g.writeFieldName(key.toUpperCase());
-				} else {
-					g.writeFieldName(key);
-				}
-				g.writeRawValue(((RawJSONString) value).json);
-			} else {
-				if ("lower".equalsIgnoreCase(keyCase)) {
-					g.writeObjectField(key.toLowerCase(), value);
-				} if ("upper".equalsIgnoreCase(keyCase)) {
-					g.writeObjectField(key.toUpperCase(), value);
-				} else {
-					g.writeObjectField(key, value);
-				}
+		if (value instanceof List) { // sets come back from .asJSON as lists, and jackson can't deal with lists natively.
+			List stringList = (List) value;
+
+			g.writeStartArray();
+			for (Object s : stringList) {
+				g.writeObject(s);
 			}
+			g.writeEndArray();
+		} else if (value instanceof RawJSONString) {
+			// JSON column type, using binlog-connector's serializers.
+			g.writeRawValue(((RawJSONString) value).json);
+		} else {
+			g.writeObject(value);
 		}
-
-		g.writeEndObject(); // end of 'jsonMapName: { }'
 	}
 
 	public String toJSON() throws Exception {
@@ -267,6 +302,67 @@ public class RowMap implements Serializable {
 	}
 
 	public String toJSON(MaxwellOutputConfig outputConfig) throws Exception {
+		return writeJSON(outputConfig) ? jsonFromStream() : null;
+	}
+
+	/**
+	 * Serialize this row as UTF-8 JSON, without going through a String.
+	 *
+	 * @return the JSON, or null if this row has none (as with {@link #toJSON})
+	 */
+	public byte[] toJSONBytes(MaxwellOutputConfig outputConfig) throws Exception {
+		if ( !writeJSON(outputConfig) )
+			return null;
+
+		ByteArrayOutputStream b = byteArrayThreadLocal.get();
+		byte[] bytes = b.toByteArray();
+		b.reset();
+		return bytes;
+	}
+
+	/**
+	 * Serialize this row as UTF-8 JSON into `out`.
+	 *
+	 * @return the number of bytes written; 0 if this row has no JSON
+	 */
+	public int writeJSONTo(OutputStream out, MaxwellOutputConfig outputConfig) throws Exception {
+		if ( !writeJSON(outputConfig) )
+			return 0;
+
+		ByteArrayOutputStream b = byteArrayThreadLocal.get();
+		int size = b.size();
+		b.writeTo(out);
+		b.reset();
+		return size;
+	}
+
+	/**
+	 * Serialize this row as UTF-8 JSON into `buffer`, from its current position.
+	 *
+	 * @return the number of bytes written; 0 if this row has no JSON
+	 * @throws java.nio.BufferOverflowException if it doesn't fit; `buffer` is left untouched
+	 */
+	public int writeJSONTo(ByteBuffer buffer, MaxwellOutputConfig outputConfig) throws Exception {
+		if ( !writeJSON(outputConfig) )
+			return 0;
+
+		JSONByteArrayOutputStream b = byteArrayThreadLocal.get();
+		int size = b.size();
+		try {
+			b.writeTo(buffer);
+		} finally {
+			b.reset();
+		}
+		return size;
+	}
+
+	/**
+	 * Serialize this row into the per-thread JSON buffer; see {@link #resetJSONStream}.
+	 * Subclasses with their own format override this.
+	 *
+	 * @return false if this row produces no JSON at all
+	 */
+	protected boolean writeJSON(MaxwellOutputConfig outputConfig) throws Exception {
 		JsonGenerator g = resetJsonGenerator();
 
 		g.writeStartObject(); // start of row {
@@ -309,22 +405,6 @@ public class RowMap implements Serializable {
 			g.writeObjectField(entry.getKey(), entry.getValue());
 		}
 
-		if ( outputConfig.excludeColumns.size() > 0 ) {
-			// NOTE: to avoid concurrent modification.
-			Set<String> keys = new HashSet<>();
-			keys.addAll(this.data.keySet());
-			keys.addAll(this.oldData.keySet());
-
-			for ( Pattern p : outputConfig.excludeColumns ) {
-				for ( String key : keys ) {
-					if ( p.matcher(key).matches() ) {
-						this.data.remove(key);
-						this.oldData.remove(key);
-					}
-				}
-			}
-		}
-
 
 		EncryptionContext encryptionContext = null;
 		if (outputConfig.encryptionEnabled()) {
@@ -335,11 +415,7 @@ public class RowMap implements Serializable {
 			? encryptingJsonGeneratorThreadLocal.get()
 			: plaintextDataGeneratorThreadLocal.get();
 
-		JsonGenerator dataGenerator = dataWriter.begin();
-		writeMapToJSON(FieldNames.DATA, this.data, dataGenerator, outputConfig.includesNulls, outputConfig.keyCase);
-		if( !this.oldData.isEmpty() ){
-			writeMapToJSON(FieldNames.OLD, this.oldData, dataGenerator, outputConfig.includesNulls, outputConfig.keyCase);
-		}
+		writeDataJSON(dataWriter.begin(), outputConfig);
 		dataWriter.end(encryptionContext);
 
 		g.writeEndObject(); // end of row
@@ -350,12 +426,61 @@ public class RowMap implements Serializable {
 			encryptingJsonGeneratorThreadLocal.get().writeEncryptedObject(plaintext, encryptionContext);
 			g.flush();
 		}
-		return jsonFromStream();
+		return true;
+	}
+
+	/**
+	 * Write the row's "data" section, and its "old" section if it has one.
+	 */
+	protected void writeDataJSON(JsonGenerator g, MaxwellOutputConfig outputConfig) throws IOException, NoSuchAlgorithmException {
+		JSONFieldNames fieldNames = getJSONFieldNames(outputConfig.keyCase);
+		List<Pattern> excluding = excludesColumnsOnOutput(outputConfig) ? outputConfig.excludeColumns : null;
+		writeMapToJSON(FieldNames.DATA, this.data, g, outputConfig.includesNulls, outputConfig.keyCase, fieldNames, excluding);
+		if( hasUnexcludedKey(this.oldData, excluding) ){
+			writeMapToJSON(FieldNames.OLD, this.oldData, g, outputConfig.includesNulls, outputConfig.keyCase, fieldNames, excluding);
+		}
+	}
+
+	/**
+	 * Does `key` match any of `patterns`?  Columns excluded at output time are skipped
+	 * as the row is written, rather than removed from it, so its key and partitioning
+	 * still see them.
+	 *
+	 * @param patterns the exclusion patterns; null excludes nothing
+	 */
+	protected static boolean isExcludedColumn(String key, List<Pattern> patterns) {
+		if ( patterns == null )
+			return false;
+
+		for ( Pattern p : patterns ) {
+			if ( p.matcher(key).matches() )
+				return true;
+		}
+		return false;
 	}
 
-	private String jsonFromStream() {
+	protected static boolean hasUnexcludedKey(Map<String, Object> map, List<Pattern> patterns) {
+		for ( String key : map.keySet() ) {
+			if ( !isExcludedColumn(key, patterns) )
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Whether writing this row with `outputConfig` has to look for excluded columns
+	 * that weren't already left out when the row was built.
+	 */
+	protected boolean excludesColumnsOnOutput(MaxwellOutputConfig outputConfig) {
+		return outputConfig.excludeColumns.size() > 0 && outputConfig.excludeColumns != this.excludedColumnPatterns;
+	}
+
+	/**
+	 * The contents of the per-thread JSON buffer, which is then emptied.
+	 */
+	protected static String jsonFromStream() throws IOException {
 		ByteArrayOutputStream b = byteArrayThreadLocal.get();
-		String s = b.toString();
+		String s = b.toString("UTF-8");
 		b.reset();
 		return s;
 	}
@@ -374,14 +499,9 @@ public class RowMap implements Serializable {
 
 	private long approximateKVSize(String key, Object value) {
 		long length = 0;
-		length += 40; // overhead.  Whynot.
+		length += RowSizeEstimator.MAP_ENTRY;
 		length += key.length() * 2;
-
-		if ( value instanceof String ) {
-			length += ((String) value).length() * 2;
-		} else {
-			length += 64;
-		}
+		length += RowSizeEstimator.sizeOf(value);
 
 		return length;
 	}
@@ -449,6 +569,14 @@ public class RowMap implements Serializable {
 		this.threadId = threadId;
 	}
 
+	/**
+	 * Record that columns matching `patterns` were left out of this row when it was
+	 * built, so serializing it with the same patterns needn't look for them again.
+	 */
+	public void setExcludedColumnPatterns(List<Pattern> patterns) {
+		this.excludedColumnPatterns = patterns;
+	}
+
 	public String getDatabase() {
 		return database;
 	}
@@ -473,6 +601,10 @@ public class RowMap implements Serializable {
 		return this.rowType;
 	}
 
+	public String getRowQuery() {
+		return this.rowQuery;
+	}
+
 	// determines whether there is anything for the producer to output
 	// override this for extended classes that don't output a value
 	// return false when there is a heartbeat row or other row with suppressed output
@@ -3,6 +3,7 @@ package com.zendesk.maxwell.row;
 import com.zendesk.maxwell.util.ListWithDiskBuffer;
 
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class RowMapBuffer extends ListWithDiskBuffer<RowMap> {
 	private static long FlushOutputStreamBytes = 10000000;
@@ -12,20 +13,39 @@ public class RowMapBuffer extends ListWithDiskBuffer<RowMap> {
 	private long memorySize = 0;
 	private long outputStreamCacheSize = 0;
 	private final long maxMemory;
+	private final AtomicLong bufferedBytes;
 
 	public RowMapBuffer(long maxInMemoryElements) {
-		super(maxInMemoryElements);
-		this.maxMemory = (long) (Runtime.getRuntime().maxMemory() * 0.25);
+		this(maxInMemoryElements, null);
 	}
 
 	public RowMapBuffer(long maxInMemoryElements, long maxMemory) {
+		this(maxInMemoryElements, maxMemory, null);
+	}
+
+	/**
+	 * @param bufferedBytes a running total, shared with whoever reports it, of the
+	 *                      estimated size of rows this buffer holds in memory; may be null
+	 */
+	public RowMapBuffer(long maxInMemoryElements, AtomicLong bufferedBytes) {
+		this(maxInMemoryElements, (long) (Runtime.getRuntime().maxMemory() * 0.25), bufferedBytes);
+	}
+
+	public RowMapBuffer(long maxInMemoryElements, long maxMemory, AtomicLong bufferedBytes) {
 		super(maxInMemoryElements);
 		this.maxMemory = maxMemory;
+		this.bufferedBytes = bufferedBytes;
+	}
+
+	private void addMemorySize(long size) {
+		this.memorySize += size;
+		if ( bufferedBytes != null )
+			bufferedBytes.addAndGet(size);
 	}
 
 	@Override
 	public void add(RowMap rowMap) throws IOException {
-		this.memorySize += rowMap.getApproximateSize();
+		addMemorySize(rowMap.getApproximateSize());
 		super.add(rowMap);
 	}
 
@@ -37,7 +57,7 @@ public class RowMapBuffer extends ListWithDiskBuffer<RowMap> {
 	@Override
 	protected RowMap evict() throws IOException {
 		RowMap r = super.evict();
-		this.memorySize -= r.getApproximateSize();
+		addMemorySize(-r.getApproximateSize());
 
 		/* For performance reasons, the output stream will hold on to cached objects.
 		 * There's probably a smarter thing to do (write our own serdes, maybe?), but
@@ -52,7 +72,13 @@ public class RowMapBuffer extends ListWithDiskBuffer<RowMap> {
 	}
 
 	public RowMap removeFirst() throws IOException, ClassNotFoundException {
+		// rows come back off disk first; only rows still in memory were counted
+		boolean inMemory = size().equals(inMemorySize());
+
 		RowMap r = super.removeFirst(RowMap.class);
+		if ( inMemory )
+			addMemorySize(-r.getApproximateSize());
+
 		r.setXid(this.xid);
 		r.setServerId(this.serverId);
 		r.setThreadId(this.threadId);
@@ -60,6 +86,13 @@ public class RowMapBuffer extends ListWithDiskBuffer<RowMap> {
 		return r;
 	}
 
+	/**
+	 * The estimated size, in bytes, of the rows this buffer holds in memory.
+	 */
+	public long getMemorySize() {
+		return memorySize;
+	}
+
 	public void setXid(Long xid) {
 		this.xid = xid;
 	}
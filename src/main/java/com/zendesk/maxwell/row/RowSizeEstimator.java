@@ -0,0 +1,169 @@
+package com.zendesk.maxwell.row;
+
+import com.zendesk.maxwell.schema.columndef.*;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * Estimates of the heap held by row values, which decide when buffered rows spill
+ * to disk ({@link RowMapBuffer}) and feed the buffered-bytes metrics.
+ *
+ * Sizes are for a 64 bit JVM with compressed references: 12 byte object headers,
+ * 16 byte array headers, 4 byte references, objects padded to 8 bytes.  Strings are
+ * counted at two bytes a character, which is what they cost before java 9 and an
+ * upper bound after.
+ */
+public class RowSizeEstimator {
+	static final long REFERENCE = 4;
+	static final long ARRAY_HEADER = 16;
+	static final long BOXED_INT = 16;
+	static final long BOXED_LONG = 24;
+	static final long DATE = 24;
+	static final long TIMESTAMP = 32;
+	static final long BIG_INTEGER = 40;
+	static final long BIG_DECIMAL = 40;
+	static final long ARRAY_LIST = 24;
+	static final long MAP_ENTRY = 40;
+	static final long UNKNOWN = 64;
+
+	// a formatted date, datetime or time, "2018-01-01 00:00:00.000000" at the longest
+	private static final long FORMATTED_DATE = stringSize(26);
+	// the largest BIGINT UNSIGNED
+	private static final long UNSIGNED_BIGINT = bigIntegerSize(64);
+
+	static long padded(long size) {
+		return (size + 7) & ~7L;
+	}
+
+	static long stringSize(long length) {
+		return 24 + padded(ARRAY_HEADER + length * 2);
+	}
+
+	static long bigIntegerSize(long bitLength) {
+		return BIG_INTEGER + padded(ARRAY_HEADER + 4 * ((bitLength + 31) / 32));
+	}
+
+	/**
+	 * The heap held by `value`, including anything it refers to.
+	 */
+	public static long sizeOf(Object value) {
+		if ( value == null )
+			return 0;
+		else if ( value instanceof String )
+			return stringSize(((String) value).length());
+		else if ( value instanceof byte[] )
+			return padded(ARRAY_HEADER + ((byte[]) value).length);
+		else if ( value instanceof RawJSONString )
+			return 16 + sizeOf(((RawJSONString) value).json);
+		else if ( value instanceof Long || value instanceof Double )
+			return BOXED_LONG;
+		else if ( value instanceof BigInteger || value instanceof BigDecimal )
+			return sizeOfNumber((Number) value);
+		else if ( value instanceof Number || value instanceof Boolean || value instanceof Character )
+			return BOXED_INT;
+		else if ( value instanceof Timestamp )
+			return TIMESTAMP;
+		else if ( value instanceof Date )
+			return DATE;
+		else if ( value instanceof BitSet )
+			return 24 + padded(ARRAY_HEADER + ((BitSet) value).size() / 8);
+		else if ( value instanceof Collection )
+			return sizeOfCollection((Collection<?>) value);
+		else if ( value instanceof Map )
+			return sizeOfMap((Map<?, ?>) value);
+		else if ( value instanceof Object[] )
+			return sizeOfArray((Object[]) value);
+		else
+			return UNKNOWN;
+	}
+
+	private static long sizeOfNumber(Number value) {
+		if ( value instanceof BigInteger )
+			return bigIntegerSize(((BigInteger) value).bitLength());
+
+		// up to 18 digits live in the BigDecimal itself; past that it holds a BigInteger
+		int precision = ((BigDecimal) value).precision();
+		return BIG_DECIMAL + (precision > 18 ? bigIntegerSize((long) Math.ceil(precision * 3.33)) : 0);
+	}
+
+	private static long sizeOfCollection(Collection<?> values) {
+		long size = ARRAY_LIST + padded(ARRAY_HEADER + REFERENCE * values.size());
+		for ( Object v : values )
+			size += sizeOf(v);
+		return size;
+	}
+
+	private static long sizeOfMap(Map<?, ?> map) {
+		long size = 56 + padded(ARRAY_HEADER + REFERENCE * map.size() * 2);
+		for ( Map.Entry<?, ?> entry : map.entrySet() )
+			size += MAP_ENTRY + sizeOf(entry.getKey()) + sizeOf(entry.getValue());
+		return size;
+	}
+
+	private static long sizeOfArray(Object[] values) {
+		long size = padded(ARRAY_HEADER + REFERENCE * values.length);
+		for ( Object v : values )
+			size += sizeOf(v);
+		return size;
+	}
+
+	/**
+	 * The heap that converting `raw`, a binlog value of column `cd`, will add on top of
+	 * the raw value itself (see {@link ColumnDef#asJSON}).  Columns whose conversion
+	 * hands the raw value back cost nothing extra.
+	 */
+	public static long convertedSizeOf(ColumnDef cd, Object raw) {
+		if ( raw == null )
+			return 0;
+
+		if ( cd instanceof StringColumnDef ) {
+			if ( raw instanceof String )
+				return 0;
+			long length = raw instanceof byte[] ? ((byte[]) raw).length : 0;
+			if ( "binary".equals(((StringColumnDef) cd).charset) )
+				length = 4 * ((length + 2) / 3); // base64
+			return stringSize(length);
+		} else if ( cd instanceof JsonColumnDef ) {
+			// JSON text runs about as long as its binary encoding
+			long length = raw instanceof byte[] ? ((byte[]) raw).length : 0;
+			return 16 + stringSize(length);
+		} else if ( cd instanceof IntColumnDef ) {
+			return raw instanceof Long ? 0 : BOXED_LONG;
+		} else if ( cd instanceof BigIntColumnDef ) {
+			return raw instanceof Long && (Long) raw < 0 && !((BigIntColumnDef) cd).isSigned() ? UNSIGNED_BIGINT : 0;
+		} else if ( cd instanceof SetColumnDef ) {
+			// a list of the members; those come from the column definition unless the value was a string
+			if ( raw instanceof String ) {
+				String value = (String) raw;
+				int members = 1;
+				for ( int i = 0; i < value.length(); i++ ) {
+					if ( value.charAt(i) == ',' )
+						members++;
+				}
+				return ARRAY_LIST + padded(ARRAY_HEADER + REFERENCE * members) + members * stringSize(0) + value.length() * 2;
+			}
+			int members = raw instanceof Long ? Long.bitCount((Long) raw) : 0;
+			return ARRAY_LIST + padded(ARRAY_HEADER + REFERENCE * members);
+		} else if ( cd instanceof EnumColumnDef ) {
+			return 0;
+		} else if ( cd instanceof DateColumnDef || cd instanceof DateTimeColumnDef || cd instanceof TimeColumnDef ) {
+			return FORMATTED_DATE;
+		} else if ( cd instanceof GeometryColumnDef ) {
+			// well-known text runs a good deal longer than the binary
+			long length = raw instanceof byte[] ? ((byte[]) raw).length : 0;
+			return stringSize(length * 2);
+		} else if ( cd instanceof YearColumnDef ) {
+			return raw instanceof Date ? BOXED_INT : 0;
+		} else if ( cd instanceof BitColumnDef ) {
+			return BOXED_LONG;
+		} else {
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,190 @@
+package com.zendesk.maxwell.row;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.zendesk.maxwell.schema.columndef.*;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Writes the "data" and "old" sections of a {@link LazyRowMap} straight from its raw
+ * binlog images, for one table definition and key case.
+ *
+ * Everything that's the same from row to row -- each column's pre-encoded field name
+ * and how its converted value gets written -- is resolved into an array of steps,
+ * indexed by column position, when the serializer is built.  Writing a row walks the
+ * images once and switches on each step's kind, rather than building the row's maps
+ * and inspecting every value on the way out.  The output is byte-for-byte what
+ * converting the row and writing its maps would produce.
+ *
+ * Built by {@link com.zendesk.maxwell.schema.Table#getRowSerializer}; used when
+ * `output_table_serializers` is on.
+ */
+public class TableRowSerializer {
+	enum Kind {
+		LONG,        // IntColumnDef converts to Long
+		STRING,      // text, enum, date/time and geometry columns convert to String
+		STRING_LIST, // sets convert to a list of their members
+		RAW_JSON,    // json columns convert to already-serialized JSON
+		OBJECT       // anything else goes through jackson
+	}
+
+	private static class Step {
+		final ColumnDef column;
+		final SerializableString fieldName;
+		final Kind kind;
+
+		Step(ColumnDef column, SerializableString fieldName) {
+			this.column = column;
+			this.fieldName = fieldName;
+			this.kind = kindOf(column);
+		}
+	}
+
+	private final Step[] steps;
+
+	public TableRowSerializer(List<ColumnDef> columnList, JSONFieldNames fieldNames) {
+		this.steps = new Step[columnList.size()];
+		for ( int i = 0; i < steps.length; i++ ) {
+			ColumnDef cd = columnList.get(i);
+			steps[i] = new Step(cd, fieldNames.column(cd.getName()));
+		}
+	}
+
+	static Kind kindOf(ColumnDef cd) {
+		if ( cd instanceof IntColumnDef )
+			return Kind.LONG;
+		else if ( cd instanceof SetColumnDef )
+			return Kind.STRING_LIST;
+		else if ( cd instanceof JsonColumnDef )
+			return Kind.RAW_JSON;
+		else if ( cd instanceof StringColumnDef
+			|| cd instanceof EnumColumnDef
+			|| cd instanceof DateColumnDef
+			|| cd instanceof DateTimeColumnDef
+			|| cd instanceof TimeColumnDef
+			|| cd instanceof GeometryColumnDef )
+			return Kind.STRING;
+		else
+			return Kind.OBJECT;
+	}
+
+	/**
+	 * Write a row's "data" section, and its "old" section if any column changed.
+	 *
+	 * This follows {@link LazyRowMap}'s conversion exactly: before-image columns missing
+	 * from the after image (binlog_row_image=MINIMAL) go to "data", unchanged columns are
+	 * left out of "old", and columns in `excluded` are left out of both.
+	 *
+	 * @param converted values already converted by single-column reads, by column index; may be null
+	 */
+	void write(
+		JsonGenerator g,
+		Serializable[] after,
+		BitSet included,
+		Serializable[] before,
+		BitSet oldIncluded,
+		BitSet excluded,
+		Object[] converted,
+		boolean includeNulls
+	) throws IOException {
+		g.writeObjectFieldStart(FieldNames.DATA);
+
+		int dataIdx = 0, oldIdx = 0;
+		for ( int colIdx = 0; colIdx < steps.length; colIdx++ ) {
+			boolean inAfter = included.get(colIdx);
+			boolean inBefore = before != null && oldIncluded.get(colIdx);
+			Serializable raw = inAfter ? after[dataIdx++] : null;
+			Serializable oldRaw = inBefore ? before[oldIdx++] : null;
+
+			if ( (!inAfter && !inBefore) || (excluded != null && excluded.get(colIdx)) )
+				continue;
+
+			Object value;
+			if ( converted != null && converted[colIdx] != null )
+				value = converted[colIdx];
+			else
+				value = convert(steps[colIdx], inAfter ? raw : oldRaw);
+			writeField(g, steps[colIdx], value, includeNulls);
+		}
+
+		g.writeEndObject();
+
+		if ( before != null )
+			writeOld(g, after, included, before, oldIncluded, excluded, includeNulls);
+	}
+
+	private void writeOld(
+		JsonGenerator g,
+		Serializable[] after,
+		BitSet included,
+		Serializable[] before,
+		BitSet oldIncluded,
+		BitSet excluded,
+		boolean includeNulls
+	) throws IOException {
+		boolean started = false;
+		int dataIdx = 0, oldIdx = 0;
+
+		for ( int colIdx = 0; colIdx < steps.length; colIdx++ ) {
+			boolean inAfter = included.get(colIdx);
+			if ( oldIncluded.get(colIdx) ) {
+				Serializable raw = before[oldIdx++];
+				if ( inAfter
+					&& (excluded == null || !excluded.get(colIdx))
+					&& !Objects.deepEquals(after[dataIdx], raw) ) {
+					if ( !started ) {
+						g.writeObjectFieldStart(FieldNames.OLD);
+						started = true;
+					}
+					writeField(g, steps[colIdx], convert(steps[colIdx], raw), includeNulls);
+				}
+			}
+			if ( inAfter )
+				dataIdx++;
+		}
+
+		if ( started )
+			g.writeEndObject();
+	}
+
+	private static Object convert(Step step, Serializable raw) {
+		return raw == null ? null : step.column.asJSON(raw);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static void writeField(JsonGenerator g, Step step, Object value, boolean includeNulls) throws IOException {
+		if ( value == null ) {
+			if ( includeNulls ) {
+				g.writeFieldName(step.fieldName);
+				g.writeNull();
+			}
+			return;
+		}
+
+		g.writeFieldName(step.fieldName);
+		switch ( step.kind ) {
+			case LONG:
+				g.writeNumber((Long) value);
+				break;
+			case STRING:
+				g.writeString((String) value);
+				break;
+			case STRING_LIST:
+				g.writeStartArray();
+				for ( String s : (List<String>) value )
+					g.writeString(s);
+				g.writeEndArray();
+				break;
+			case RAW_JSON:
+				g.writeRawValue(((RawJSONString) value).json);
+				break;
+			default:
+				g.writeObject(value);
+		}
+	}
+}
@@ -0,0 +1,21 @@
+package com.zendesk.maxwell.row;
+
+import com.zendesk.maxwell.replication.Position;
+
+import java.util.ArrayList;
+
+/**
+ * Marks the end of a transaction whose rows were streamed to the producer before
+ * the transaction committed.  Those rows go out without an xid; this carries the
+ * transaction's xid and "commit: true", and is the only row of the transaction
+ * that moves maxwell's stored position forward.
+ *
+ * It names the last table the transaction wrote rows to.  That may be one of maxwell's
+ * own tables, or one being bootstrapped; the marker goes to the producer regardless.
+ */
+public class TransactionCommitRowMap extends RowMap {
+	public TransactionCommitRowMap(String database, String table, Long timestampMillis, Position position) {
+		super("commit", database, table, timestampMillis, new ArrayList<String>(), position);
+		setTXCommit();
+	}
+}
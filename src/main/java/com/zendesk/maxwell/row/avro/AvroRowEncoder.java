@@ -0,0 +1,463 @@
+package com.zendesk.maxwell.row.avro;
+
+import com.zendesk.maxwell.producer.MaxwellOutputConfig;
+import com.zendesk.maxwell.replication.BinlogPosition;
+import com.zendesk.maxwell.row.FieldNames;
+import com.zendesk.maxwell.row.LazyRowMap;
+import com.zendesk.maxwell.row.RawJSONString;
+import com.zendesk.maxwell.row.RowEncoder;
+import com.zendesk.maxwell.row.RowMap;
+import com.zendesk.maxwell.schema.Table;
+import com.zendesk.maxwell.schema.columndef.BigIntColumnDef;
+import com.zendesk.maxwell.schema.columndef.BitColumnDef;
+import com.zendesk.maxwell.schema.columndef.ColumnDef;
+import com.zendesk.maxwell.schema.columndef.FloatColumnDef;
+import com.zendesk.maxwell.schema.columndef.IntColumnDef;
+import com.zendesk.maxwell.schema.columndef.SetColumnDef;
+import com.zendesk.maxwell.schema.columndef.StringColumnDef;
+import com.zendesk.maxwell.schema.columndef.YearColumnDef;
+import org.apache.avro.JsonProperties;
+import org.apache.avro.LogicalTypes;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.commons.codec.binary.Base64;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Encodes rows as Avro binary, with a writer schema derived from the row's table.
+ *
+ * Each table gets a record with maxwell's usual envelope fields (database, table,
+ * type, ts, xid...) around a `data` record holding one nullable field per column, typed
+ * after the column's {@link ColumnDef}; `old` holds the before-image of an update in the
+ * same record type, with `old_columns` saying which of its fields were actually set.
+ * Rows that no longer know their table (because they've been through the disk buffer,
+ * say) fall back to a generic schema with `data` as a map of strings.
+ *
+ * Schemas are registered with an {@link AvroSchemaRegistry} and cached against the
+ * {@link Table} object they were built from; since DDL replaces a table's definition,
+ * the next row after an ALTER builds, and registers, a new schema.
+ *
+ * Messages are framed the way Confluent's deserializers expect: a zero byte, the
+ * 4 byte big-endian schema id, then the Avro-encoded record.
+ */
+public class AvroRowEncoder implements RowEncoder {
+	public static final byte MAGIC_BYTE = 0;
+
+	static final String EXTRA = "extra";
+	static final String OLD_COLUMNS = "old_columns";
+
+	private final AvroSchemaRegistry registry;
+	private final MaxwellOutputConfig outputConfig;
+	private final Map<Table, TableSchema> tableSchemas = Collections.synchronizedMap(new WeakHashMap<>());
+	private TableSchema genericSchema;
+
+	private static final ThreadLocal<ByteArrayOutputStream> byteArrayThreadLocal =
+		ThreadLocal.withInitial(ByteArrayOutputStream::new);
+	private static final ThreadLocal<BinaryEncoder> encoderThreadLocal = new ThreadLocal<>();
+
+	public AvroRowEncoder(AvroSchemaRegistry registry, MaxwellOutputConfig outputConfig) {
+		this.registry = registry;
+		this.outputConfig = outputConfig;
+	}
+
+	/*
+	   how a column's value (as produced by ColumnDef#asJSON) is written.
+	 */
+	enum Kind {
+		INT, LONG, UNSIGNED_BIGINT, FLOAT, DOUBLE, STRING, BYTES, STRING_ARRAY;
+
+		static Kind forColumn(ColumnDef cd) {
+			if ( cd instanceof IntColumnDef ) {
+				IntColumnDef intColumn = (IntColumnDef) cd;
+				return intColumn.isSigned() || intColumn.bits < 32 ? INT : LONG;
+			} else if ( cd instanceof BigIntColumnDef ) {
+				return ((BigIntColumnDef) cd).isSigned() ? LONG : UNSIGNED_BIGINT;
+			} else if ( cd instanceof BitColumnDef ) {
+				return LONG;
+			} else if ( cd instanceof YearColumnDef ) {
+				return INT;
+			} else if ( cd instanceof FloatColumnDef ) {
+				return "float".equals(cd.getType()) ? FLOAT : DOUBLE;
+			} else if ( cd instanceof SetColumnDef ) {
+				return STRING_ARRAY;
+			} else if ( cd instanceof StringColumnDef && "binary".equals(((StringColumnDef) cd).getCharset()) ) {
+				return BYTES;
+			} else {
+				// decimal carries no precision or scale here, and dates may be zero; both go as strings
+				return STRING;
+			}
+		}
+
+		Schema schema() {
+			switch ( this ) {
+				case INT:
+					return Schema.create(Schema.Type.INT);
+				case LONG:
+					return Schema.create(Schema.Type.LONG);
+				case UNSIGNED_BIGINT:
+					return LogicalTypes.decimal(20, 0).addToSchema(Schema.create(Schema.Type.BYTES));
+				case FLOAT:
+					return Schema.create(Schema.Type.FLOAT);
+				case DOUBLE:
+					return Schema.create(Schema.Type.DOUBLE);
+				case BYTES:
+					return Schema.create(Schema.Type.BYTES);
+				case STRING_ARRAY:
+					return Schema.createArray(Schema.create(Schema.Type.STRING));
+				default:
+					return Schema.create(Schema.Type.STRING);
+			}
+		}
+
+		Object convert(Object value) {
+			switch ( this ) {
+				case INT:
+					return ((Number) value).intValue();
+				case LONG:
+					// a BIT(64) with the top bit set comes through as a BigInteger; keep its bits
+					return ((Number) value).longValue();
+				case UNSIGNED_BIGINT:
+					BigInteger unsigned = value instanceof BigInteger
+						? (BigInteger) value
+						: BigInteger.valueOf(((Number) value).longValue());
+					return ByteBuffer.wrap(unsigned.toByteArray());
+				case FLOAT:
+					return ((Number) value).floatValue();
+				case DOUBLE:
+					return ((Number) value).doubleValue();
+				case BYTES:
+					if ( value instanceof byte[] )
+						return ByteBuffer.wrap((byte[]) value);
+					return ByteBuffer.wrap(Base64.decodeBase64(value.toString()));
+				case STRING_ARRAY:
+					ArrayList<String> strings = new ArrayList<>();
+					if ( value instanceof List ) {
+						for ( Object o : (List<?>) value )
+							strings.add(o.toString());
+					} else {
+						strings.addAll(Arrays.asList(value.toString().split(",")));
+					}
+					return strings;
+				default:
+					return asString(value);
+			}
+		}
+	}
+
+	private static String asString(Object value) {
+		if ( value instanceof RawJSONString )
+			return ((RawJSONString) value).json;
+		else if ( value instanceof BigDecimal )
+			return ((BigDecimal) value).toPlainString();
+		else
+			return value.toString();
+	}
+
+	/*
+	   a registered writer schema, and how to fill it from a row of the table it was built from.
+	 */
+	static class TableSchema {
+		final int id;
+		final Schema schema;
+		final Schema dataSchema;
+		// null for the generic schema
+		final String[] columnNames;
+		final String[] columnTypes;
+		final String[] dataColumns;
+		final String[] fieldNames;
+		final Kind[] kinds;
+		final GenericDatumWriter<GenericRecord> writer;
+
+		TableSchema(int id, Schema schema, Schema dataSchema, String[] columnNames, String[] columnTypes,
+					String[] dataColumns, String[] fieldNames, Kind[] kinds) {
+			this.id = id;
+			this.schema = schema;
+			this.dataSchema = dataSchema;
+			this.columnNames = columnNames;
+			this.columnTypes = columnTypes;
+			this.dataColumns = dataColumns;
+			this.fieldNames = fieldNames;
+			this.kinds = kinds;
+			this.writer = new GenericDatumWriter<>(schema);
+		}
+
+		boolean isGeneric() {
+			return columnNames == null;
+		}
+
+		/*
+		   columns can be renamed or retyped in place; make sure this still describes `table`.
+		 */
+		boolean describes(Table table) {
+			List<ColumnDef> columns = table.getColumnList();
+			if ( columns.size() != columnNames.length )
+				return false;
+
+			for ( int i = 0; i < columnNames.length; i++ ) {
+				ColumnDef cd = columns.get(i);
+				if ( !columnNames[i].equals(cd.getName()) || !columnTypes[i].equals(cd.getType()) )
+					return false;
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Encode a row, registering a new writer schema for its table if need be.
+	 */
+	@Override
+	public byte[] encode(RowMap r) throws IOException {
+		TableSchema tableSchema = schemaFor(r);
+
+		GenericData.Record record = new GenericData.Record(tableSchema.schema);
+		fillEnvelope(record, r);
+
+		Map<String, Object> data = r.getData();
+		Map<String, Object> oldData = r.getOldData();
+		if ( tableSchema.isGeneric() ) {
+			record.put(FieldNames.DATA, stringMap(data));
+			record.put(FieldNames.OLD, oldData.isEmpty() ? null : stringMap(oldData));
+			record.put(OLD_COLUMNS, new ArrayList<>(oldData.keySet()));
+		} else {
+			record.put(FieldNames.DATA, dataRecord(tableSchema, data));
+			ArrayList<String> oldColumns = new ArrayList<>();
+			if ( !oldData.isEmpty() ) {
+				record.put(FieldNames.OLD, dataRecord(tableSchema, oldData));
+				for ( int i = 0; i < tableSchema.dataColumns.length; i++ ) {
+					if ( oldData.containsKey(tableSchema.dataColumns[i]) )
+						oldColumns.add(tableSchema.fieldNames[i]);
+				}
+			}
+			record.put(OLD_COLUMNS, oldColumns);
+		}
+
+		ByteArrayOutputStream out = byteArrayThreadLocal.get();
+		out.reset();
+		out.write(MAGIC_BYTE);
+		out.write(ByteBuffer.allocate(4).putInt(tableSchema.id).array());
+
+		BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(out, encoderThreadLocal.get());
+		encoderThreadLocal.set(encoder);
+		tableSchema.writer.write(record, encoder);
+		encoder.flush();
+
+		return out.toByteArray();
+	}
+
+	/**
+	 * Decode a message written by {@link #encode}, looking its writer schema up in `registry`.
+	 */
+	public static GenericRecord decode(byte[] message, AvroSchemaRegistry registry) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(message);
+		if ( buffer.get() != MAGIC_BYTE )
+			throw new IOException("not an avro-encoded maxwell row");
+
+		Schema schema = registry.getSchema(buffer.getInt());
+		BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(message, 5, message.length - 5, null);
+		return new GenericDatumReader<GenericRecord>(schema).read(null, decoder);
+	}
+
+	private void fillEnvelope(GenericData.Record record, RowMap r) {
+		record.put(FieldNames.DATABASE, r.getDatabase());
+		record.put(FieldNames.TABLE, r.getTable());
+		record.put(FieldNames.TYPE, r.getRowType());
+		record.put(FieldNames.TIMESTAMP, r.getTimestamp());
+
+		if ( outputConfig.includesCommitInfo ) {
+			record.put(FieldNames.TRANSACTION_ID, r.getXid());
+			record.put(FieldNames.COMMIT, r.isTXCommit());
+		} else {
+			record.put(FieldNames.COMMIT, false);
+		}
+
+		BinlogPosition binlogPosition = r.getPosition() == null ? null : r.getPosition().getBinlogPosition();
+		if ( binlogPosition != null ) {
+			if ( outputConfig.includesBinlogPosition )
+				record.put(FieldNames.POSITION, binlogPosition.getFile() + ":" + binlogPosition.getOffset());
+			if ( outputConfig.includesGtidPosition )
+				record.put(FieldNames.GTID, binlogPosition.getGtid());
+		}
+
+		if ( outputConfig.includesServerId )
+			record.put(FieldNames.SERVER_ID, r.getServerId());
+		if ( outputConfig.includesThreadId )
+			record.put(FieldNames.THREAD_ID, r.getThreadId());
+		if ( outputConfig.includesRowQuery )
+			record.put(FieldNames.QUERY, r.getRowQuery());
+
+		Map<String, Object> extra = r.getExtraAttributes();
+		if ( !extra.isEmpty() )
+			record.put(EXTRA, stringMap(extra));
+	}
+
+	private static GenericData.Record dataRecord(TableSchema tableSchema, Map<String, Object> values) {
+		GenericData.Record data = new GenericData.Record(tableSchema.dataSchema);
+		for ( int i = 0; i < tableSchema.dataColumns.length; i++ ) {
+			Object value = values.get(tableSchema.dataColumns[i]);
+			data.put(i, value == null ? null : tableSchema.kinds[i].convert(value));
+		}
+		return data;
+	}
+
+	private static HashMap<String, String> stringMap(Map<String, Object> values) {
+		HashMap<String, String> strings = new HashMap<>();
+		for ( Map.Entry<String, Object> entry : values.entrySet() ) {
+			Object value = entry.getValue();
+			strings.put(entry.getKey(), value == null ? null : asString(value));
+		}
+		return strings;
+	}
+
+	private TableSchema schemaFor(RowMap r) throws IOException {
+		Table table = r instanceof LazyRowMap ? ((LazyRowMap) r).getTableDefinition() : null;
+		if ( table == null )
+			return genericSchema();
+
+		TableSchema tableSchema = tableSchemas.get(table);
+		if ( tableSchema == null || !tableSchema.describes(table) ) {
+			tableSchema = buildTableSchema(table);
+			tableSchemas.put(table, tableSchema);
+		}
+		return tableSchema;
+	}
+
+	private synchronized TableSchema genericSchema() throws IOException {
+		if ( genericSchema == null ) {
+			Schema data = Schema.createMap(nullable(Schema.create(Schema.Type.STRING)));
+			Schema schema = envelope("row", "maxwell", data);
+			int id = registry.register("maxwell", schema);
+			genericSchema = new TableSchema(id, schema, data, null, null, null, null, null);
+		}
+		return genericSchema;
+	}
+
+	private TableSchema buildTableSchema(Table table) throws IOException {
+		List<ColumnDef> columns = table.getColumnList();
+		BitSet excluded = outputConfig.excludeColumns.isEmpty()
+			? new BitSet()
+			: table.getExcludedColumns(outputConfig.excludeColumns);
+
+		String[] columnNames = new String[columns.size()];
+		String[] columnTypes = new String[columns.size()];
+		ArrayList<String> dataColumns = new ArrayList<>();
+		ArrayList<String> fieldNames = new ArrayList<>();
+		ArrayList<Kind> kinds = new ArrayList<>();
+		ArrayList<Schema.Field> fields = new ArrayList<>();
+		HashSet<String> taken = new HashSet<>();
+
+		for ( int i = 0; i < columns.size(); i++ ) {
+			ColumnDef cd = columns.get(i);
+			columnNames[i] = cd.getName();
+			columnTypes[i] = cd.getType();
+			if ( excluded.get(i) )
+				continue;
+
+			String fieldName = uniqueName(avroName(applyKeyCase(cd.getName())), taken);
+			Kind kind = Kind.forColumn(cd);
+			Schema.Field field = new Schema.Field(fieldName, nullable(kind.schema()), null, JsonProperties.NULL_VALUE);
+			field.addProp("mysql.column", cd.getName());
+			field.addProp("mysql.type", cd.getType());
+
+			fields.add(field);
+			dataColumns.add(cd.getName());
+			fieldNames.add(fieldName);
+			kinds.add(kind);
+		}
+
+		String namespace = "maxwell." + avroName(table.getDatabase());
+		String name = avroName(table.getName());
+		Schema data = Schema.createRecord(name + "_data", null, namespace, false, fields);
+		Schema schema = envelope(name, namespace, data);
+
+		int id = registry.register(table.getDatabase() + "." + table.getName(), schema);
+		return new TableSchema(
+			id,
+			schema,
+			data,
+			columnNames,
+			columnTypes,
+			dataColumns.toArray(new String[0]),
+			fieldNames.toArray(new String[0]),
+			kinds.toArray(new Kind[0])
+		);
+	}
+
+	private static Schema envelope(String name, String namespace, Schema data) {
+		Schema string = Schema.create(Schema.Type.STRING);
+		Schema nullableString = nullable(Schema.create(Schema.Type.STRING));
+		Schema nullableLong = nullable(Schema.create(Schema.Type.LONG));
+
+		ArrayList<Schema.Field> fields = new ArrayList<>();
+		fields.add(new Schema.Field(FieldNames.DATABASE, nullableString, null, JsonProperties.NULL_VALUE));
+		fields.add(new Schema.Field(FieldNames.TABLE, nullableString, null, JsonProperties.NULL_VALUE));
+		fields.add(new Schema.Field(FieldNames.TYPE, string, null, (Object) null));
+		fields.add(new Schema.Field(FieldNames.TIMESTAMP, Schema.create(Schema.Type.LONG), null, (Object) null));
+		fields.add(new Schema.Field(FieldNames.TRANSACTION_ID, nullableLong, null, JsonProperties.NULL_VALUE));
+		fields.add(new Schema.Field(FieldNames.COMMIT, Schema.create(Schema.Type.BOOLEAN), null, false));
+		fields.add(new Schema.Field(FieldNames.POSITION, nullableString, null, JsonProperties.NULL_VALUE));
+		fields.add(new Schema.Field(FieldNames.GTID, nullableString, null, JsonProperties.NULL_VALUE));
+		fields.add(new Schema.Field(FieldNames.SERVER_ID, nullableLong, null, JsonProperties.NULL_VALUE));
+		fields.add(new Schema.Field(FieldNames.THREAD_ID, nullableLong, null, JsonProperties.NULL_VALUE));
+		fields.add(new Schema.Field(FieldNames.QUERY, nullableString, null, JsonProperties.NULL_VALUE));
+		fields.add(new Schema.Field(EXTRA, nullable(Schema.createMap(nullableString)), null, JsonProperties.NULL_VALUE));
+		fields.add(new Schema.Field(FieldNames.DATA, data, null, (Object) null));
+		fields.add(new Schema.Field(FieldNames.OLD, nullable(data), null, JsonProperties.NULL_VALUE));
+		fields.add(new Schema.Field(OLD_COLUMNS, Schema.createArray(string), null, (Object) null));
+		return Schema.createRecord(name, null, namespace, false, fields);
+	}
+
+	private static Schema nullable(Schema schema) {
+		return Schema.createUnion(Arrays.asList(Schema.create(Schema.Type.NULL), schema));
+	}
+
+	private String applyKeyCase(String name) {
+		if ( "lower".equalsIgnoreCase(outputConfig.keyCase) )
+			return name.toLowerCase();
+		else if ( "upper".equalsIgnoreCase(outputConfig.keyCase) )
+			return name.toUpperCase();
+		else
+			return name;
+	}
+
+	/*
+	   avro names are [A-Za-z_][A-Za-z0-9_]*; mysql's are rather more liberal.
+	 */
+	static String avroName(String name) {
+		StringBuilder sb = new StringBuilder(name.length() + 1);
+		for ( char c : name.toCharArray() ) {
+			boolean ok = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+			sb.append(ok ? c : '_');
+		}
+		if ( sb.length() == 0 || Character.isDigit(sb.charAt(0)) )
+			sb.insert(0, '_');
+		return sb.toString();
+	}
+
+	private static String uniqueName(String name, HashSet<String> taken) {
+		String unique = name;
+		for ( int i = 2; !taken.add(unique); i++ )
+			unique = name + "_" + i;
+		return unique;
+	}
+}
@@ -0,0 +1,21 @@
+package com.zendesk.maxwell.row.avro;
+
+import org.apache.avro.Schema;
+
+import java.io.IOException;
+
+/**
+ * Hands out ids for Avro writer schemas, so that each message carries a 4 byte
+ * id instead of its whole schema.  Consumers look the schema back up by id.
+ *
+ * Set with `avro_schema_registry`; implementations need a public no-argument constructor.
+ */
+public interface AvroSchemaRegistry {
+	/**
+	 * Register `schema` under `subject` (generally "database.table").
+	 * Registering an identical schema again must return the same id.
+	 */
+	int register(String subject, Schema schema) throws IOException;
+
+	Schema getSchema(int id) throws IOException;
+}
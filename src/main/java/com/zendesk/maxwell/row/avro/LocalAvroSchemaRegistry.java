@@ -0,0 +1,34 @@
+package com.zendesk.maxwell.row.avro;
+
+import org.apache.avro.Schema;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * A schema registry that lives and dies with the process.  Fine for tests, and for
+ * consumers that share a JVM with maxwell; anything else wants a real registry.
+ */
+public class LocalAvroSchemaRegistry implements AvroSchemaRegistry {
+	private final HashMap<Schema, Integer> ids = new HashMap<>();
+	private final ArrayList<Schema> schemas = new ArrayList<>();
+
+	@Override
+	public synchronized int register(String subject, Schema schema) {
+		Integer id = ids.get(schema);
+		if ( id == null ) {
+			schemas.add(schema);
+			id = schemas.size();
+			ids.put(schema, id);
+		}
+		return id;
+	}
+
+	@Override
+	public synchronized Schema getSchema(int id) throws IOException {
+		if ( id < 1 || id > schemas.size() )
+			throw new IOException("unknown avro schema id: " + id);
+		return schemas.get(id - 1);
+	}
+}
@@ -0,0 +1,27 @@
+package com.zendesk.maxwell.row.protobuf;
+
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+
+import java.io.IOException;
+import java.util.HashMap;
+
+/**
+ * A schema registry that lives and dies with the process.  Fine for tests, and for
+ * consumers that share a JVM with maxwell; anything else wants a real registry.
+ */
+public class LocalProtobufSchemaRegistry implements ProtobufSchemaRegistry {
+	private final HashMap<Long, FileDescriptorProto> schemas = new HashMap<>();
+
+	@Override
+	public synchronized void register(String subject, long schemaID, FileDescriptorProto schema) {
+		schemas.putIfAbsent(schemaID, schema);
+	}
+
+	@Override
+	public synchronized FileDescriptorProto getSchema(long schemaID) throws IOException {
+		FileDescriptorProto schema = schemas.get(schemaID);
+		if ( schema == null )
+			throw new IOException("unknown protobuf schema id: " + Long.toUnsignedString(schemaID));
+		return schema;
+	}
+}
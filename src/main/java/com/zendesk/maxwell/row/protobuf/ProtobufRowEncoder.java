@@ -0,0 +1,527 @@
+package com.zendesk.maxwell.row.protobuf;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.DescriptorProtos.DescriptorProto;
+import com.google.protobuf.DescriptorProtos.FieldDescriptorProto;
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+import com.google.protobuf.DescriptorProtos.MessageOptions;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Descriptors.FileDescriptor;
+import com.google.protobuf.DynamicMessage;
+import com.zendesk.maxwell.producer.MaxwellOutputConfig;
+import com.zendesk.maxwell.replication.BinlogPosition;
+import com.zendesk.maxwell.row.FieldNames;
+import com.zendesk.maxwell.row.LazyRowMap;
+import com.zendesk.maxwell.row.RawJSONString;
+import com.zendesk.maxwell.row.RowEncoder;
+import com.zendesk.maxwell.row.RowMap;
+import com.zendesk.maxwell.schema.Table;
+import com.zendesk.maxwell.schema.columndef.BigIntColumnDef;
+import com.zendesk.maxwell.schema.columndef.BitColumnDef;
+import com.zendesk.maxwell.schema.columndef.ColumnDef;
+import com.zendesk.maxwell.schema.columndef.FloatColumnDef;
+import com.zendesk.maxwell.schema.columndef.IntColumnDef;
+import com.zendesk.maxwell.schema.columndef.SetColumnDef;
+import com.zendesk.maxwell.schema.columndef.StringColumnDef;
+import com.zendesk.maxwell.schema.columndef.YearColumnDef;
+import org.apache.commons.codec.binary.Base64;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Encodes rows as protobuf.
+ *
+ * Every row is a `maxwell.Row` envelope ({@link #ROW}) with maxwell's usual fields.
+ * The row's columns go in `data` (and an update's before-image in `old`) as a
+ * serialized message of a type built for the row's table, with one optional field per
+ * column numbered after the column's position.  The envelope carries a fingerprint of
+ * the table message's FileDescriptorProto in `schema_id`; the descriptor itself is
+ * published once, through a {@link ProtobufSchemaRegistry}, rather than sent with
+ * every row.  With `protobuf_inline_schema` it also goes in each row's `schema`, for
+ * consumers that can't reach the registry.
+ *
+ * Table messages are built once per {@link Table} definition; DDL replaces a table's
+ * definition, and so gets a new message type and fingerprint.  Rows that no longer
+ * know their table are written with a `maxwell.Values` string map, and no schema.
+ */
+public class ProtobufRowEncoder implements RowEncoder {
+	static final String PACKAGE = "maxwell";
+
+	public static final Descriptor ROW;
+	public static final Descriptor VALUES;
+
+	private static final FieldDescriptor ROW_DATABASE, ROW_TABLE, ROW_TYPE, ROW_TS, ROW_XID, ROW_COMMIT,
+		ROW_POSITION, ROW_GTID, ROW_SERVER_ID, ROW_THREAD_ID, ROW_QUERY, ROW_DATA, ROW_OLD, ROW_OLD_COLUMNS,
+		ROW_SCHEMA_ID, ROW_SCHEMA, ROW_EXTRA;
+
+	static {
+		DescriptorProto mapEntry = DescriptorProto.newBuilder()
+			.setName("StringMapEntry")
+			.setOptions(MessageOptions.newBuilder().setMapEntry(true))
+			.addField(field("key", 1, FieldDescriptorProto.Type.TYPE_STRING))
+			.addField(field("value", 2, FieldDescriptorProto.Type.TYPE_STRING))
+			.build();
+
+		DescriptorProto row = DescriptorProto.newBuilder()
+			.setName("Row")
+			.addNestedType(mapEntry)
+			.addField(field(FieldNames.DATABASE, 1, FieldDescriptorProto.Type.TYPE_STRING))
+			.addField(field(FieldNames.TABLE, 2, FieldDescriptorProto.Type.TYPE_STRING))
+			.addField(field(FieldNames.TYPE, 3, FieldDescriptorProto.Type.TYPE_STRING))
+			.addField(field(FieldNames.TIMESTAMP, 4, FieldDescriptorProto.Type.TYPE_INT64))
+			.addField(field(FieldNames.TRANSACTION_ID, 5, FieldDescriptorProto.Type.TYPE_INT64))
+			.addField(field(FieldNames.COMMIT, 6, FieldDescriptorProto.Type.TYPE_BOOL))
+			.addField(field(FieldNames.POSITION, 7, FieldDescriptorProto.Type.TYPE_STRING))
+			.addField(field(FieldNames.GTID, 8, FieldDescriptorProto.Type.TYPE_STRING))
+			.addField(field(FieldNames.SERVER_ID, 9, FieldDescriptorProto.Type.TYPE_INT64))
+			.addField(field(FieldNames.THREAD_ID, 10, FieldDescriptorProto.Type.TYPE_INT64))
+			.addField(field(FieldNames.QUERY, 11, FieldDescriptorProto.Type.TYPE_STRING))
+			.addField(field(FieldNames.DATA, 12, FieldDescriptorProto.Type.TYPE_BYTES))
+			.addField(field(FieldNames.OLD, 13, FieldDescriptorProto.Type.TYPE_BYTES))
+			.addField(repeated(field("old_columns", 14, FieldDescriptorProto.Type.TYPE_STRING)))
+			.addField(field("schema_id", 15, FieldDescriptorProto.Type.TYPE_FIXED64))
+			.addField(field("schema", 16, FieldDescriptorProto.Type.TYPE_BYTES))
+			.addField(repeated(mapField("extra", 17, ".maxwell.Row.StringMapEntry")))
+			.build();
+
+		DescriptorProto values = DescriptorProto.newBuilder()
+			.setName("Values")
+			.addNestedType(mapEntry)
+			.addField(repeated(mapField("values", 1, ".maxwell.Values.StringMapEntry")))
+			.build();
+
+		FileDescriptor file = buildFile(FileDescriptorProto.newBuilder()
+			.setName("maxwell/row.proto")
+			.setPackage(PACKAGE)
+			.addMessageType(row)
+			.addMessageType(values)
+			.build());
+
+		ROW = file.findMessageTypeByName("Row");
+		VALUES = file.findMessageTypeByName("Values");
+
+		ROW_DATABASE = ROW.findFieldByNumber(1);
+		ROW_TABLE = ROW.findFieldByNumber(2);
+		ROW_TYPE = ROW.findFieldByNumber(3);
+		ROW_TS = ROW.findFieldByNumber(4);
+		ROW_XID = ROW.findFieldByNumber(5);
+		ROW_COMMIT = ROW.findFieldByNumber(6);
+		ROW_POSITION = ROW.findFieldByNumber(7);
+		ROW_GTID = ROW.findFieldByNumber(8);
+		ROW_SERVER_ID = ROW.findFieldByNumber(9);
+		ROW_THREAD_ID = ROW.findFieldByNumber(10);
+		ROW_QUERY = ROW.findFieldByNumber(11);
+		ROW_DATA = ROW.findFieldByNumber(12);
+		ROW_OLD = ROW.findFieldByNumber(13);
+		ROW_OLD_COLUMNS = ROW.findFieldByNumber(14);
+		ROW_SCHEMA_ID = ROW.findFieldByNumber(15);
+		ROW_SCHEMA = ROW.findFieldByNumber(16);
+		ROW_EXTRA = ROW.findFieldByNumber(17);
+	}
+
+	private static FieldDescriptorProto.Builder field(String name, int number, FieldDescriptorProto.Type type) {
+		return FieldDescriptorProto.newBuilder()
+			.setName(name)
+			.setNumber(number)
+			.setType(type)
+			.setLabel(FieldDescriptorProto.Label.LABEL_OPTIONAL);
+	}
+
+	private static FieldDescriptorProto.Builder mapField(String name, int number, String entryType) {
+		return field(name, number, FieldDescriptorProto.Type.TYPE_MESSAGE).setTypeName(entryType);
+	}
+
+	private static FieldDescriptorProto.Builder repeated(FieldDescriptorProto.Builder field) {
+		return field.setLabel(FieldDescriptorProto.Label.LABEL_REPEATED);
+	}
+
+	private static FileDescriptor buildFile(FileDescriptorProto proto) {
+		try {
+			return FileDescriptor.buildFrom(proto, new FileDescriptor[0]);
+		} catch ( Descriptors.DescriptorValidationException e ) {
+			throw new IllegalStateException("invalid protobuf descriptor for " + proto.getName(), e);
+		}
+	}
+
+	/*
+	   how a column's value (as produced by ColumnDef#asJSON) is written.
+	 */
+	enum Kind {
+		SINT32(FieldDescriptorProto.Type.TYPE_SINT32),
+		UINT32(FieldDescriptorProto.Type.TYPE_UINT32),
+		SINT64(FieldDescriptorProto.Type.TYPE_SINT64),
+		UINT64(FieldDescriptorProto.Type.TYPE_UINT64),
+		FLOAT(FieldDescriptorProto.Type.TYPE_FLOAT),
+		DOUBLE(FieldDescriptorProto.Type.TYPE_DOUBLE),
+		STRING(FieldDescriptorProto.Type.TYPE_STRING),
+		BYTES(FieldDescriptorProto.Type.TYPE_BYTES),
+		STRING_LIST(FieldDescriptorProto.Type.TYPE_STRING);
+
+		final FieldDescriptorProto.Type type;
+
+		Kind(FieldDescriptorProto.Type type) {
+			this.type = type;
+		}
+
+		static Kind forColumn(ColumnDef cd) {
+			if ( cd instanceof IntColumnDef ) {
+				return ((IntColumnDef) cd).isSigned() ? SINT32 : UINT32;
+			} else if ( cd instanceof BigIntColumnDef ) {
+				return ((BigIntColumnDef) cd).isSigned() ? SINT64 : UINT64;
+			} else if ( cd instanceof BitColumnDef ) {
+				return UINT64;
+			} else if ( cd instanceof YearColumnDef ) {
+				return SINT32;
+			} else if ( cd instanceof FloatColumnDef ) {
+				return "float".equals(cd.getType()) ? FLOAT : DOUBLE;
+			} else if ( cd instanceof SetColumnDef ) {
+				return STRING_LIST;
+			} else if ( cd instanceof StringColumnDef && "binary".equals(((StringColumnDef) cd).getCharset()) ) {
+				return BYTES;
+			} else {
+				// decimals have no protobuf type that fits, and dates may be zero; both go as strings
+				return STRING;
+			}
+		}
+
+		Object convert(Object value) {
+			switch ( this ) {
+				case SINT32:
+				case UINT32:
+					// unsigned values keep their bit pattern
+					return ((Number) value).intValue();
+				case SINT64:
+				case UINT64:
+					return ((Number) value).longValue();
+				case FLOAT:
+					return ((Number) value).floatValue();
+				case DOUBLE:
+					return ((Number) value).doubleValue();
+				case BYTES:
+					if ( value instanceof byte[] )
+						return ByteString.copyFrom((byte[]) value);
+					return ByteString.copyFrom(Base64.decodeBase64(value.toString()));
+				default:
+					return asString(value);
+			}
+		}
+	}
+
+	private static String asString(Object value) {
+		if ( value instanceof RawJSONString )
+			return ((RawJSONString) value).json;
+		else if ( value instanceof BigDecimal )
+			return ((BigDecimal) value).toPlainString();
+		else
+			return value.toString();
+	}
+
+	/*
+	   the message type built for one table definition.
+	 */
+	static class TableMessage {
+		final Descriptor descriptor;
+		final long schemaID;
+		final ByteString schema;
+		final String[] columnNames;
+		final String[] columnTypes;
+		final String[] dataColumns;
+		final FieldDescriptor[] fields;
+		final Kind[] kinds;
+
+		TableMessage(Descriptor descriptor, long schemaID, ByteString schema, String[] columnNames,
+					 String[] columnTypes, String[] dataColumns, FieldDescriptor[] fields, Kind[] kinds) {
+			this.descriptor = descriptor;
+			this.schemaID = schemaID;
+			this.schema = schema;
+			this.columnNames = columnNames;
+			this.columnTypes = columnTypes;
+			this.dataColumns = dataColumns;
+			this.fields = fields;
+			this.kinds = kinds;
+		}
+
+		/*
+		   columns can be renamed or retyped in place; make sure this still describes `table`.
+		 */
+		boolean describes(Table table) {
+			List<ColumnDef> columns = table.getColumnList();
+			if ( columns.size() != columnNames.length )
+				return false;
+
+			for ( int i = 0; i < columnNames.length; i++ ) {
+				ColumnDef cd = columns.get(i);
+				if ( !columnNames[i].equals(cd.getName()) || !columnTypes[i].equals(cd.getType()) )
+					return false;
+			}
+			return true;
+		}
+	}
+
+	private final ProtobufSchemaRegistry registry;
+	private final MaxwellOutputConfig outputConfig;
+	private final boolean inlineSchema;
+	private final Map<Table, TableMessage> tableMessages = Collections.synchronizedMap(new WeakHashMap<>());
+
+	/**
+	 * @param registry where table message descriptors are published
+	 * @param inlineSchema also put the descriptor in every row
+	 */
+	public ProtobufRowEncoder(ProtobufSchemaRegistry registry, MaxwellOutputConfig outputConfig, boolean inlineSchema) {
+		this.registry = registry;
+		this.outputConfig = outputConfig;
+		this.inlineSchema = inlineSchema;
+	}
+
+	@Override
+	public byte[] encode(RowMap r) throws IOException {
+		DynamicMessage.Builder row = DynamicMessage.newBuilder(ROW);
+		fillEnvelope(row, r);
+
+		Map<String, Object> data = r.getData();
+		Map<String, Object> oldData = r.getOldData();
+		TableMessage message = messageFor(r);
+		if ( message == null ) {
+			row.setField(ROW_DATA, values(data).toByteString());
+			if ( !oldData.isEmpty() )
+				row.setField(ROW_OLD, values(oldData).toByteString());
+			for ( String column : oldData.keySet() )
+				row.addRepeatedField(ROW_OLD_COLUMNS, column);
+		} else {
+			row.setField(ROW_SCHEMA_ID, message.schemaID);
+			if ( inlineSchema )
+				row.setField(ROW_SCHEMA, message.schema);
+			row.setField(ROW_DATA, tableMessage(message, data).toByteString());
+			if ( !oldData.isEmpty() ) {
+				row.setField(ROW_OLD, tableMessage(message, oldData).toByteString());
+				for ( int i = 0; i < message.dataColumns.length; i++ ) {
+					if ( oldData.containsKey(message.dataColumns[i]) )
+						row.addRepeatedField(ROW_OLD_COLUMNS, message.fields[i].getName());
+				}
+			}
+		}
+
+		return row.build().toByteArray();
+	}
+
+	/**
+	 * Decode the `data` (or `old`) of a row written by {@link #encode}, using the schema
+	 * it carries or, failing that, the one registered under its `schema_id`.
+	 *
+	 * @param row a parsed `maxwell.Row`
+	 * @param old decode `old` rather than `data`
+	 */
+	public static DynamicMessage decodeData(DynamicMessage row, boolean old, ProtobufSchemaRegistry registry) throws IOException {
+		ByteString bytes = (ByteString) row.getField(old ? ROW_OLD : ROW_DATA);
+		FileDescriptorProto proto;
+		if ( row.hasField(ROW_SCHEMA) )
+			proto = FileDescriptorProto.parseFrom((ByteString) row.getField(ROW_SCHEMA));
+		else if ( row.hasField(ROW_SCHEMA_ID) )
+			proto = registry.getSchema((Long) row.getField(ROW_SCHEMA_ID));
+		else
+			return DynamicMessage.parseFrom(VALUES, bytes);
+
+		Descriptor descriptor = buildFile(proto).getMessageTypes().get(0);
+		return DynamicMessage.parseFrom(descriptor, bytes);
+	}
+
+	private void fillEnvelope(DynamicMessage.Builder row, RowMap r) {
+		setIfPresent(row, ROW_DATABASE, r.getDatabase());
+		setIfPresent(row, ROW_TABLE, r.getTable());
+		setIfPresent(row, ROW_TYPE, r.getRowType());
+		setIfPresent(row, ROW_TS, r.getTimestamp());
+
+		if ( outputConfig.includesCommitInfo ) {
+			setIfPresent(row, ROW_XID, r.getXid());
+			if ( r.isTXCommit() )
+				row.setField(ROW_COMMIT, true);
+		}
+
+		BinlogPosition binlogPosition = r.getPosition() == null ? null : r.getPosition().getBinlogPosition();
+		if ( binlogPosition != null ) {
+			if ( outputConfig.includesBinlogPosition )
+				row.setField(ROW_POSITION, binlogPosition.getFile() + ":" + binlogPosition.getOffset());
+			if ( outputConfig.includesGtidPosition )
+				setIfPresent(row, ROW_GTID, binlogPosition.getGtid());
+		}
+
+		if ( outputConfig.includesServerId )
+			setIfPresent(row, ROW_SERVER_ID, r.getServerId());
+		if ( outputConfig.includesThreadId )
+			setIfPresent(row, ROW_THREAD_ID, r.getThreadId());
+		if ( outputConfig.includesRowQuery )
+			setIfPresent(row, ROW_QUERY, r.getRowQuery());
+
+		for ( Map.Entry<String, Object> entry : r.getExtraAttributes().entrySet() ) {
+			if ( entry.getValue() != null )
+				row.addRepeatedField(ROW_EXTRA, mapEntry(ROW_EXTRA, entry.getKey(), asString(entry.getValue())));
+		}
+	}
+
+	private static void setIfPresent(DynamicMessage.Builder message, FieldDescriptor field, Object value) {
+		if ( value != null )
+			message.setField(field, value);
+	}
+
+	private static DynamicMessage mapEntry(FieldDescriptor mapField, String key, String value) {
+		Descriptor entry = mapField.getMessageType();
+		return DynamicMessage.newBuilder(entry)
+			.setField(entry.findFieldByNumber(1), key)
+			.setField(entry.findFieldByNumber(2), value)
+			.build();
+	}
+
+	// a NULL is left out of the map altogether
+	private static DynamicMessage values(Map<String, Object> values) {
+		FieldDescriptor field = VALUES.findFieldByNumber(1);
+		DynamicMessage.Builder message = DynamicMessage.newBuilder(VALUES);
+		for ( Map.Entry<String, Object> entry : values.entrySet() ) {
+			if ( entry.getValue() != null )
+				message.addRepeatedField(field, mapEntry(field, entry.getKey(), asString(entry.getValue())));
+		}
+		return message.build();
+	}
+
+	private static DynamicMessage tableMessage(TableMessage tableMessage, Map<String, Object> values) {
+		DynamicMessage.Builder message = DynamicMessage.newBuilder(tableMessage.descriptor);
+		for ( int i = 0; i < tableMessage.dataColumns.length; i++ ) {
+			Object value = values.get(tableMessage.dataColumns[i]);
+			if ( value == null )
+				continue;
+
+			Kind kind = tableMessage.kinds[i];
+			if ( kind == Kind.STRING_LIST ) {
+				List<?> items = value instanceof List ? (List<?>) value : Arrays.asList(value.toString().split(","));
+				for ( Object o : items )
+					message.addRepeatedField(tableMessage.fields[i], o.toString());
+			} else {
+				message.setField(tableMessage.fields[i], kind.convert(value));
+			}
+		}
+		return message.build();
+	}
+
+	private TableMessage messageFor(RowMap r) throws IOException {
+		Table table = r instanceof LazyRowMap ? ((LazyRowMap) r).getTableDefinition() : null;
+		if ( table == null )
+			return null;
+
+		TableMessage message = tableMessages.get(table);
+		if ( message == null || !message.describes(table) ) {
+			message = buildTableMessage(table);
+			tableMessages.put(table, message);
+		}
+		return message;
+	}
+
+	private TableMessage buildTableMessage(Table table) throws IOException {
+		List<ColumnDef> columns = table.getColumnList();
+		BitSet excluded = outputConfig.excludeColumns.isEmpty()
+			? new BitSet()
+			: table.getExcludedColumns(outputConfig.excludeColumns);
+
+		String[] columnNames = new String[columns.size()];
+		String[] columnTypes = new String[columns.size()];
+		ArrayList<String> dataColumns = new ArrayList<>();
+		ArrayList<Kind> kinds = new ArrayList<>();
+		HashSet<String> taken = new HashSet<>();
+
+		String name = identifier(table.getName());
+		DescriptorProto.Builder message = DescriptorProto.newBuilder().setName(name);
+		for ( int i = 0; i < columns.size(); i++ ) {
+			ColumnDef cd = columns.get(i);
+			columnNames[i] = cd.getName();
+			columnTypes[i] = cd.getType();
+			if ( excluded.get(i) )
+				continue;
+
+			Kind kind = Kind.forColumn(cd);
+			FieldDescriptorProto.Builder field = field(uniqueName(identifier(applyKeyCase(cd.getName())), taken), i + 1, kind.type);
+			if ( kind == Kind.STRING_LIST )
+				repeated(field);
+
+			message.addField(field);
+			dataColumns.add(cd.getName());
+			kinds.add(kind);
+		}
+
+		FileDescriptorProto proto = FileDescriptorProto.newBuilder()
+			.setName(PACKAGE + "/" + table.getDatabase() + "/" + table.getName() + ".proto")
+			.setPackage(PACKAGE + "." + identifier(table.getDatabase()))
+			.addMessageType(message)
+			.build();
+		Descriptor descriptor = buildFile(proto).getMessageTypes().get(0);
+
+		FieldDescriptor[] fields = new FieldDescriptor[dataColumns.size()];
+		for ( int i = 0; i < fields.length; i++ )
+			fields[i] = descriptor.getFields().get(i);
+
+		ByteString schema = proto.toByteString();
+		long schemaID = fingerprint(schema);
+		registry.register(table.getDatabase() + "." + table.getName(), schemaID, proto);
+
+		return new TableMessage(
+			descriptor,
+			schemaID,
+			schema,
+			columnNames,
+			columnTypes,
+			dataColumns.toArray(new String[0]),
+			fields,
+			kinds.toArray(new Kind[0])
+		);
+	}
+
+	private static long fingerprint(ByteString schema) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-1").digest(schema.toByteArray());
+			return ByteBuffer.wrap(digest).getLong();
+		} catch ( NoSuchAlgorithmException e ) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private String applyKeyCase(String name) {
+		if ( "lower".equalsIgnoreCase(outputConfig.keyCase) )
+			return name.toLowerCase();
+		else if ( "upper".equalsIgnoreCase(outputConfig.keyCase) )
+			return name.toUpperCase();
+		else
+			return name;
+	}
+
+	/*
+	   protobuf names are [A-Za-z_][A-Za-z0-9_]*; mysql's are rather more liberal.
+	 */
+	static String identifier(String name) {
+		StringBuilder sb = new StringBuilder(name.length() + 1);
+		for ( char c : name.toCharArray() ) {
+			boolean ok = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+			sb.append(ok ? c : '_');
+		}
+		if ( sb.length() == 0 || Character.isDigit(sb.charAt(0)) )
+			sb.insert(0, '_');
+		return sb.toString();
+	}
+
+	private static String uniqueName(String name, HashSet<String> taken) {
+		String unique = name;
+		for ( int i = 2; !taken.add(unique); i++ )
+			unique = name + "_" + i;
+		return unique;
+	}
+}
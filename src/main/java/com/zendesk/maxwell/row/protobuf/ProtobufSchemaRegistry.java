@@ -0,0 +1,21 @@
+package com.zendesk.maxwell.row.protobuf;
+
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+
+import java.io.IOException;
+
+/**
+ * Publishes the descriptors of table messages, so that each row carries only the
+ * 8 byte `schema_id` of its table's message.  Consumers look the descriptor back up by id.
+ *
+ * Set with `protobuf_schema_registry`; implementations need a public no-argument constructor.
+ */
+public interface ProtobufSchemaRegistry {
+	/**
+	 * Register `schema` under `subject` (generally "database.table").  `schemaID` is a
+	 * fingerprint of the schema, so registering it again must be harmless.
+	 */
+	void register(String subject, long schemaID, FileDescriptorProto schema) throws IOException;
+
+	FileDescriptorProto getSchema(long schemaID) throws IOException;
+}
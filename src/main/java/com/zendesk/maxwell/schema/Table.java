@@ -1,7 +1,10 @@
 package com.zendesk.maxwell.schema;
 
 import java.util.*;
+import java.util.regex.Pattern;
 
+import com.zendesk.maxwell.row.JSONFieldNames;
+import com.zendesk.maxwell.row.TableRowSerializer;
 import com.zendesk.maxwell.schema.ddl.InvalidSchemaError;
 import com.zendesk.maxwell.schema.ddl.ColumnPosition;
 
@@ -29,6 +32,11 @@ public class Table {
 	@JsonIgnore
 	public int pkIndex;
 
+	private List<Pattern> excludedColumnPatterns;
+	private BitSet excludedColumns;
+	private HashMap<String, JSONFieldNames> jsonFieldNames;
+	private HashMap<String, TableRowSerializer> rowSerializers;
+
 	public Table() { }
 	public Table(String database, String name, String charset, List<ColumnDef> list, List<String> pks) {
 		this.database = database;
@@ -50,6 +58,76 @@ public class Table {
 	@JsonProperty("columns")
 	public void setColumnList(List<ColumnDef> list) {
 		this.columns = new TableColumnList(list);
+		resetExcludedColumns();
+	}
+
+	/**
+	 * Which columns of this table match any of the `exclude_columns` patterns,
+	 * as a bitmap of column positions.  The patterns are only run once per
+	 * table definition; any change to the column list throws the result away.
+	 *
+	 * @param patterns the exclusion patterns, generally {@link com.zendesk.maxwell.producer.MaxwellOutputConfig#excludeColumns}
+	 * @return a bitmap of excluded column positions.  Callers must not modify it.
+	 */
+	public synchronized BitSet getExcludedColumns(List<Pattern> patterns) {
+		if ( this.excludedColumns == null || this.excludedColumnPatterns != patterns ) {
+			BitSet excluded = new BitSet();
+			int i = 0;
+			for ( ColumnDef c : columns ) {
+				for ( Pattern p : patterns ) {
+					if ( p.matcher(c.getName()).matches() ) {
+						excluded.set(i);
+						break;
+					}
+				}
+				i++;
+			}
+
+			this.excludedColumns = excluded;
+			this.excludedColumnPatterns = patterns;
+		}
+		return this.excludedColumns;
+	}
+
+	private synchronized void resetExcludedColumns() {
+		this.excludedColumns = null;
+		this.jsonFieldNames = null;
+		this.rowSerializers = null;
+	}
+
+	/**
+	 * JSON field names for this table's columns and primary key, in `keyCase`.
+	 * Built once per table definition and key case; any change to the column list
+	 * or primary key throws them away.
+	 *
+	 * @param keyCase generally {@link com.zendesk.maxwell.producer.MaxwellOutputConfig#keyCase}
+	 */
+	public synchronized JSONFieldNames getJSONFieldNames(String keyCase) {
+		if ( this.jsonFieldNames == null )
+			this.jsonFieldNames = new HashMap<>();
+
+		JSONFieldNames names = this.jsonFieldNames.get(keyCase);
+		if ( names == null ) {
+			names = new JSONFieldNames(getColumnList(), getPKList(), keyCase);
+			this.jsonFieldNames.put(keyCase, names);
+		}
+		return names;
+	}
+
+	/**
+	 * A serializer for rows of this table definition, written in `keyCase`; thrown away
+	 * along with the field names it writes.
+	 */
+	public synchronized TableRowSerializer getRowSerializer(String keyCase) {
+		if ( this.rowSerializers == null )
+			this.rowSerializers = new HashMap<>();
+
+		TableRowSerializer serializer = this.rowSerializers.get(keyCase);
+		if ( serializer == null ) {
+			serializer = new TableRowSerializer(getColumnList(), getJSONFieldNames(keyCase));
+			this.rowSerializers.put(keyCase, serializer);
+		}
+		return serializer;
 	}
 
 	@JsonIgnore
@@ -215,16 +293,19 @@ public class Table {
 
 	public void addColumn(int index, ColumnDef definition) {
 		columns.add(index, definition);
+		resetExcludedColumns();
 	}
 
 	public void addColumn(ColumnDef definition) {
 		columns.add(columns.size(), definition);
+		resetExcludedColumns();
 	}
 
 	public void removeColumn(int idx) {
 		ColumnDef toRemove = columns.get(idx);
 		removePKColumn(toRemove.getName());
 		columns.remove(idx);
+		resetExcludedColumns();
 	}
 
 	public void changeColumn(int idx, ColumnPosition position, ColumnDef definition) throws InvalidSchemaError {
@@ -235,6 +316,7 @@ public class Table {
 
 		columns.remove(idx);
 		columns.add(position.index(this, idx), definition);
+		resetExcludedColumns();
 	}
 
 	public void setDatabase(String database) {
@@ -262,6 +344,8 @@ public class Table {
 	public synchronized void setPKList(List<String> pkColumnNames) {
 		this.pkColumnNames = pkColumnNames;
 		this.normalizedPKColumnNames = null;
+		this.jsonFieldNames = null;
+		this.rowSerializers = null;
 	}
 
 	private synchronized void removePKColumn(String name) {
@@ -269,6 +353,8 @@ public class Table {
 		if ( pkIndex != -1 ) {
 			this.pkColumnNames.remove(pkIndex);
 			this.normalizedPKColumnNames = null;
+			this.jsonFieldNames = null;
+			this.rowSerializers = null;
 		}
 	}
 
@@ -277,6 +363,8 @@ public class Table {
 		if ( pkIndex != -1 ) {
 			this.pkColumnNames.set(pkIndex, newName);
 			this.normalizedPKColumnNames = null;
+			this.jsonFieldNames = null;
+			this.rowSerializers = null;
 		}
 	}
 	private synchronized List<String> normalizedColumnNames() {
@@ -40,9 +40,13 @@ public class DDLMap extends RowMap {
 
 	@Override
 	public String toJSON(MaxwellOutputConfig outputConfig) throws IOException {
+		return writeJSON(outputConfig) ? jsonFromStream() : null;
+	}
 
+	@Override
+	protected boolean writeJSON(MaxwellOutputConfig outputConfig) throws IOException {
 		if(!outputConfig.outputDDL)
-		return null;
+			return false;
 
 		ObjectMapper mapper = new ObjectMapper();
 
@@ -56,7 +60,8 @@ public class DDLMap extends RowMap {
 		if ( outputConfig.includesGtidPosition) {
 			changeMixin.put("gtid", binlogPosition.getGtid());
 		}
-		return mapper.writeValueAsString(changeMixin);
+		mapper.writeValue(resetJSONStream(), changeMixin);
+		return true;
 	}
 
 	@Override
@@ -0,0 +1,192 @@
+package com.zendesk.maxwell.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+   a single-producer, single-consumer ring buffer bounded by the total size
+   (in bytes, as reported by the producer) of the elements it holds, as well
+   as by a fixed number of slots.  An element is always accepted into an empty
+   buffer, so a single element bigger than the byte limit can't wedge it.
+
+   Exactly one thread may call offer() and exactly one thread may call poll().
+ */
+public class ByteBoundedRingBuffer<T> {
+	public enum WaitStrategy {
+		BLOCKING, YIELDING, BUSY_SPIN;
+
+		public static WaitStrategy fromString(String s) {
+			return valueOf(s.trim().toUpperCase());
+		}
+	}
+
+	private final Object[] slots;
+	private final long[] sizes;
+	private final int mask;
+	private final long maxBytes;
+	private final WaitStrategy waitStrategy;
+
+	// next slot to read; written only by the consumer
+	private final AtomicLong head = new AtomicLong(0);
+	// next slot to write; written only by the producer
+	private final AtomicLong tail = new AtomicLong(0);
+	private final AtomicLong bytes = new AtomicLong(0);
+	private final AtomicLong offerBlockedNanos = new AtomicLong(0);
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition changed = lock.newCondition();
+	private volatile int waiters = 0;
+
+	public ByteBoundedRingBuffer(int slots, long maxBytes, WaitStrategy waitStrategy) {
+		if ( slots < 1 || maxBytes < 1 )
+			throw new IllegalArgumentException("slots and maxBytes must be positive");
+
+		int capacity = Integer.highestOneBit(slots);
+		if ( capacity < slots )
+			capacity <<= 1;
+
+		this.slots = new Object[capacity];
+		this.sizes = new long[capacity];
+		this.mask = capacity - 1;
+		this.maxBytes = maxBytes;
+		this.waitStrategy = waitStrategy;
+	}
+
+	/**
+	 * Add an element to the tail of the buffer, waiting up to `timeout` for room.
+	 *
+	 * @param element the element to add
+	 * @param size the element's size in bytes
+	 * @return true if the element was added, false if the timeout elapsed first
+	 */
+	public boolean offer(T element, long size, long timeout, TimeUnit unit) throws InterruptedException {
+		if ( !hasRoomFor(size) ) {
+			long start = System.nanoTime();
+			boolean hasRoom = await(() -> hasRoomFor(size), unit.toNanos(timeout));
+			offerBlockedNanos.addAndGet(System.nanoTime() - start);
+
+			if ( !hasRoom )
+				return false;
+		}
+
+		long t = tail.get();
+		int index = (int) (t & mask);
+		slots[index] = element;
+		sizes[index] = size;
+		bytes.addAndGet(size);
+		tail.set(t + 1);
+
+		signal();
+		return true;
+	}
+
+	/**
+	 * Remove the element at the head of the buffer, waiting up to `timeout` for one to arrive.
+	 *
+	 * @return the head element, or null if the timeout elapsed first
+	 */
+	@SuppressWarnings("unchecked")
+	public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+		if ( isEmpty() && !await(() -> !isEmpty(), unit.toNanos(timeout)) )
+			return null;
+
+		long h = head.get();
+		int index = (int) (h & mask);
+		T element = (T) slots[index];
+		long size = sizes[index];
+		slots[index] = null;
+		head.set(h + 1);
+		bytes.addAndGet(-size);
+
+		signal();
+		return element;
+	}
+
+	public boolean isEmpty() {
+		return head.get() == tail.get();
+	}
+
+	public int size() {
+		return (int) (tail.get() - head.get());
+	}
+
+	public long getBytes() {
+		return bytes.get();
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * @return the total time, in nanoseconds, that offer() has spent waiting for room
+	 */
+	public long getOfferBlockedNanos() {
+		return offerBlockedNanos.get();
+	}
+
+	private boolean hasRoomFor(long size) {
+		long used = tail.get() - head.get();
+		if ( used == 0 )
+			return true;
+
+		return used < slots.length && bytes.get() + size <= maxBytes;
+	}
+
+	private interface Check {
+		boolean ready();
+	}
+
+	private boolean await(Check check, long timeoutNanos) throws InterruptedException {
+		long deadline = System.nanoTime() + timeoutNanos;
+
+		switch ( waitStrategy ) {
+			case BLOCKING:
+				lock.lock();
+				try {
+					waiters++;
+					long remaining = timeoutNanos;
+					while ( !check.ready() ) {
+						if ( remaining <= 0 )
+							return false;
+						remaining = changed.awaitNanos(remaining);
+					}
+					return true;
+				} finally {
+					waiters--;
+					lock.unlock();
+				}
+			case YIELDING:
+				while ( !check.ready() ) {
+					if ( System.nanoTime() >= deadline )
+						return false;
+					if ( Thread.interrupted() )
+						throw new InterruptedException();
+					Thread.yield();
+				}
+				return true;
+			case BUSY_SPIN:
+			default:
+				while ( !check.ready() ) {
+					if ( System.nanoTime() >= deadline )
+						return false;
+					if ( Thread.interrupted() )
+						throw new InterruptedException();
+				}
+				return true;
+		}
+	}
+
+	private void signal() {
+		if ( waiters > 0 ) {
+			lock.lock();
+			try {
+				changed.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+}
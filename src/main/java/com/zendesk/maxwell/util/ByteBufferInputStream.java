@@ -0,0 +1,54 @@
+package com.zendesk.maxwell.util;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An InputStream over a ByteBuffer, typically a memory-mapped file.
+ *
+ * Reads go straight to the buffer without an intermediate copy; the buffer's
+ * position is advanced as bytes are consumed.
+ */
+public class ByteBufferInputStream extends InputStream {
+	private final ByteBuffer buffer;
+
+	public ByteBufferInputStream(ByteBuffer buffer) {
+		this.buffer = buffer;
+	}
+
+	@Override
+	public int read() {
+		if ( !buffer.hasRemaining() )
+			return -1;
+
+		return buffer.get() & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) {
+		if ( len == 0 )
+			return 0;
+
+		if ( !buffer.hasRemaining() )
+			return -1;
+
+		int n = Math.min(len, buffer.remaining());
+		buffer.get(b, off, n);
+		return n;
+	}
+
+	@Override
+	public long skip(long n) {
+		if ( n <= 0 )
+			return 0;
+
+		int skipped = (int) Math.min(n, buffer.remaining());
+		buffer.position(buffer.position() + skipped);
+		return skipped;
+	}
+
+	@Override
+	public int available() {
+		return buffer.remaining();
+	}
+}
@@ -0,0 +1,188 @@
+package com.zendesk.maxwell.util;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+/*
+   a map from primitive longs to objects; open addressing with linear probing,
+   so lookups don't box the key or chase a chain of entry objects.
+
+   null values aren't allowed -- a null slot is an empty slot.
+   Not thread-safe.
+ */
+public class LongHashMap<V> {
+	private static final int MIN_CAPACITY = 16;
+
+	private long[] keys;
+	private Object[] values;
+	private int mask;
+	private int shift;
+	private int size;
+
+	public LongHashMap() {
+		this(MIN_CAPACITY);
+	}
+
+	public LongHashMap(int expectedSize) {
+		allocate(capacityFor(expectedSize));
+	}
+
+	private static int capacityFor(int expectedSize) {
+		int capacity = MIN_CAPACITY;
+		// keep the table at most half full
+		while ( capacity < expectedSize * 2 )
+			capacity <<= 1;
+		return capacity;
+	}
+
+	private void allocate(int capacity) {
+		this.keys = new long[capacity];
+		this.values = new Object[capacity];
+		this.mask = capacity - 1;
+		this.shift = 64 - Integer.numberOfTrailingZeros(capacity);
+	}
+
+	private int slotFor(long key) {
+		return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+	}
+
+	private int indexOf(long key) {
+		int i = slotFor(key);
+		while ( values[i] != null ) {
+			if ( keys[i] == key )
+				return i;
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		int i = indexOf(key);
+		return i < 0 ? null : (V) values[i];
+	}
+
+	public boolean containsKey(long key) {
+		return indexOf(key) >= 0;
+	}
+
+	/**
+	 * @return the previous value for `key`, or null
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value) {
+		if ( value == null )
+			throw new IllegalArgumentException("null values are not supported");
+
+		int i = slotFor(key);
+		while ( values[i] != null ) {
+			if ( keys[i] == key ) {
+				V old = (V) values[i];
+				values[i] = value;
+				return old;
+			}
+			i = (i + 1) & mask;
+		}
+
+		keys[i] = key;
+		values[i] = value;
+		if ( ++size * 2 > keys.length )
+			resize(keys.length << 1);
+		return null;
+	}
+
+	/**
+	 * @return the removed value, or null if `key` wasn't present
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(long key) {
+		int i = indexOf(key);
+		if ( i < 0 )
+			return null;
+
+		V old = (V) values[i];
+		removeAt(i);
+		return old;
+	}
+
+	/*
+	   remove the entry at `i`, shifting later members of the probe run back so
+	   lookups never stop early at the hole we leave behind.
+	 */
+	private void removeAt(int i) {
+		int hole = i;
+		int j = (i + 1) & mask;
+
+		while ( values[j] != null ) {
+			int home = slotFor(keys[j]);
+			// move j into the hole unless its home slot lies cyclically in (hole, j]
+			boolean between = hole <= j ? (hole < home && home <= j) : (hole < home || home <= j);
+			if ( !between ) {
+				keys[hole] = keys[j];
+				values[hole] = values[j];
+				hole = j;
+			}
+			j = (j + 1) & mask;
+		}
+
+		values[hole] = null;
+		size--;
+	}
+
+	/**
+	 * Remove every entry whose value matches `predicate`.
+	 *
+	 * @return the number of entries removed
+	 */
+	@SuppressWarnings("unchecked")
+	public int removeIf(Predicate<? super V> predicate) {
+		int removed = 0;
+		int i = 0;
+		while ( i < values.length ) {
+			// removal can shift an unvisited entry into slot i, so look at it again
+			if ( values[i] != null && predicate.test((V) values[i]) ) {
+				removeAt(i);
+				removed++;
+			} else {
+				i++;
+			}
+		}
+		return removed;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		if ( size == 0 )
+			return;
+
+		if ( keys.length > MIN_CAPACITY * 4 )
+			allocate(MIN_CAPACITY);
+		else
+			Arrays.fill(values, null);
+		size = 0;
+	}
+
+	private void resize(int capacity) {
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		allocate(capacity);
+
+		for ( int i = 0; i < oldKeys.length; i++ ) {
+			if ( oldValues[i] == null )
+				continue;
+
+			int j = slotFor(oldKeys[i]);
+			while ( values[j] != null )
+				j = (j + 1) & mask;
+			keys[j] = oldKeys[i];
+			values[j] = oldValues[i];
+		}
+	}
+}
@@ -9,9 +9,12 @@ import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 
 public class BootstrapIntegrationTest extends MaxwellTestWithIsolatedServer {
 	@Test
@@ -51,6 +54,39 @@ public class BootstrapIntegrationTest extends MaxwellTestWithIsolatedServer {
 		runJSON("json/bootstrap-null-values");
 	}
 
+	@Test
+	public void testBootstrapKeepsExcludedPrimaryKey() throws Exception {
+		String input[] = {
+			"CREATE TABLE shard_1.excluded_pk (id int unsigned NOT NULL primary key, secret varchar(255), name varchar(255))",
+			"INSERT INTO shard_1.excluded_pk SET id = 1, secret = 'hush', name = 'bob'",
+			"INSERT INTO maxwell.bootstrap set database_name = 'shard_1', table_name = 'excluded_pk'"
+		};
+
+		MaxwellOutputConfig outputConfig = new MaxwellOutputConfig();
+		outputConfig.excludeColumns.add(Pattern.compile("id"));
+		outputConfig.excludeColumns.add(Pattern.compile("secret"));
+
+		List<RowMap> rows = getRowsForSQLTransactional(input, null, outputConfig);
+
+		int found = 0;
+		for ( RowMap r : rows ) {
+			if ( !r.getTable().equals("excluded_pk") || r.getData().isEmpty() )
+				continue;
+
+			found++;
+			String json = r.toJSON(outputConfig);
+			assertFalse(json.contains("\"id\""));
+			assertFalse(json.contains("hush"));
+			assertTrue(json.contains("\"name\":\"bob\""));
+
+			// the key is the same for the binlog row and the bootstrapped one
+			assertTrue(r.pkToJson(RowMap.KeyFormat.HASH).contains("\"pk.id\":1"));
+		}
+
+		// the insert, and the row bootstrapped from it
+		assertThat(found, is(2));
+	}
+
 	@Test
 	public void testBool() throws Exception {
 		testColumnType("bool", "0", 0);
@@ -50,6 +50,43 @@ public class MaxwellConfigTest
 		assertEquals("bar", config.customProducerProperties.getProperty("foo"));
 	}
 	
+	@Test
+	public void testSourcesFromConfigFile() throws Exception {
+		config = new MaxwellConfig(new String[] { "--config=" + getTestConfigDir() + "sources-config.properties" });
+		assertEquals(2, config.sources.size());
+
+		MaxwellConfig east = config.forSource(config.sources.get(0));
+		assertEquals("east", east.clientID);
+		assertEquals("east.example.com", east.replicationMysql.host);
+		assertEquals("maxwell", east.replicationMysql.user);
+		assertEquals(Long.valueOf(1001L), east.replicaServerID);
+		assertEquals("none", east.bootstrapperType);
+		assertTrue(east.sources.isEmpty());
+
+		MaxwellConfig west = config.forSource(config.sources.get(1));
+		assertEquals("maxwell_west", west.clientID);
+		assertEquals(3307, (int) west.replicationMysql.port);
+		assertEquals("west_user", west.replicationMysql.user);
+		assertEquals(config.replicaServerID, west.replicaServerID);
+		assertEquals(config.maxwellMysql, west.maxwellMysql);
+	}
+
+	@Test
+	public void testReplicationHostCandidates() {
+		config = new MaxwellConfig(new String[] {
+			"--replication_host=db1, db2:3307,db3",
+			"--replication_user=maxwell",
+			"--replication_password=maxwell"
+		});
+
+		assertEquals(3, config.replicationCandidates.size());
+		assertEquals("db1", config.replicationMysql.host);
+		assertEquals("db2", config.replicationCandidates.get(1).host);
+		assertEquals(3307, (int) config.replicationCandidates.get(1).port);
+		assertEquals(3306, (int) config.replicationCandidates.get(2).port);
+		assertEquals("maxwell", config.replicationCandidates.get(2).user);
+	}
+
 	private String getTestConfigDir() {
 		return System.getProperty("user.dir") + "/src/test/resources/config/";
 	}
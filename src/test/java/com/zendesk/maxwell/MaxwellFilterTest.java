@@ -0,0 +1,43 @@
+package com.zendesk.maxwell;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MaxwellFilterTest {
+	@Test
+	public void testRowTypesUnfiltered() throws Exception {
+		MaxwellFilter filter = new MaxwellFilter();
+		assertTrue(filter.matchesRowType("users", "insert"));
+		assertTrue(filter.matchesRowType("users", "update"));
+		assertTrue(filter.matchesRowType("users", "delete"));
+		assertTrue(MaxwellFilter.matchesRowType(null, "users", "update"));
+	}
+
+	@Test
+	public void testExcludeRowTypes() throws Exception {
+		MaxwellFilter filter = new MaxwellFilter(null, null, null, null, null, null, null, null, "delete, /audit_.*/:update");
+
+		assertFalse(filter.matchesRowType("users", "delete"));
+		assertTrue(filter.matchesRowType("users", "update"));
+		assertFalse(filter.matchesRowType("audit_log", "update"));
+		assertTrue(filter.matchesRowType("audit_log", "insert"));
+	}
+
+	@Test
+	public void testIncludeRowTypesArePerTable() throws Exception {
+		MaxwellFilter filter = new MaxwellFilter(null, null, null, null, null, null, null, "orders:insert,orders:delete", null);
+
+		assertTrue(filter.matchesRowType("orders", "insert"));
+		assertTrue(filter.matchesRowType("orders", "delete"));
+		assertFalse(filter.matchesRowType("orders", "update"));
+
+		// no include rule names `users`, so it keeps every row type
+		assertTrue(filter.matchesRowType("users", "update"));
+	}
+
+	@Test(expected = MaxwellInvalidFilterException.class)
+	public void testInvalidRowType() throws Exception {
+		new MaxwellFilter().excludeRowType("orders:upsert");
+	}
+}
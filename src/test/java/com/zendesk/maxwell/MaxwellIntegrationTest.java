@@ -4,12 +4,16 @@ import com.google.common.collect.Lists;
 import com.zendesk.maxwell.producer.EncryptionMode;
 import com.zendesk.maxwell.producer.MaxwellOutputConfig;
 import com.zendesk.maxwell.row.RowMap;
+import com.zendesk.maxwell.row.TransactionCommitRowMap;
 import com.zendesk.maxwell.schema.SchemaStoreSchema;
 import org.apache.commons.lang3.ArrayUtils;
 import org.junit.Test;
 
+import java.sql.Connection;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -592,4 +596,121 @@ public class MaxwellIntegrationTest extends MaxwellTestWithIsolatedServer {
 
 		runJSON("/json/test_row_query_log_is_on", outputConfig);
 	}
+
+	private List<RowMap> getRowsForStreamedTransaction(
+		final String[] ddl,
+		final String[] input,
+		final long streamRows,
+		final long streamBytes
+	) throws Exception {
+		MaxwellTestSupportCallback callback = new MaxwellTestSupportCallback() {
+			@Override
+			public void configure(MaxwellConfig config) {
+				config.transactionStreamRows = streamRows;
+				config.transactionStreamBytes = streamBytes;
+			}
+
+			@Override
+			public void afterReplicatorStart(MysqlIsolatedServer mysql) throws SQLException {
+				if ( ddl != null )
+					mysql.executeList(Arrays.asList(ddl));
+
+				Connection c = mysql.getNewConnection();
+				c.setAutoCommit(false);
+				for ( String sql : input )
+					c.createStatement().execute(sql);
+				c.commit();
+			}
+		};
+		return MaxwellTestSupport.getRowsWithReplicator(server, null, callback, null);
+	}
+
+	private static String[] minimalInserts(int count, String text) {
+		String[] sql = new String[count];
+		for ( int i = 0; i < count; i++ )
+			sql[i] = "insert into shard_1.minimal set account_id = " + i + ", text_field = '" + text + i + "'";
+		return sql;
+	}
+
+	private void assertStreamedTransaction(List<RowMap> list, int rowCount) throws Exception {
+		List<RowMap> rows = new ArrayList<>();
+		for ( RowMap r : list ) {
+			if ( r.getTable().equals("minimal") )
+				rows.add(r);
+		}
+
+		assertThat(rows.size(), is(rowCount + 1));
+		for ( RowMap r : rows.subList(0, rowCount) ) {
+			Map<String, Object> output = MaxwellTestJSON.parseJSON(r.toJSON());
+			assertThat(output.get("type"), is((Object) "insert"));
+			assertFalse(output.containsKey("xid"));
+			assertFalse(output.containsKey("commit"));
+		}
+
+		RowMap commit = rows.get(rowCount);
+		assertTrue(commit instanceof TransactionCommitRowMap);
+
+		Map<String, Object> output = MaxwellTestJSON.parseJSON(commit.toJSON());
+		assertThat(output.get("database"), is((Object) "shard_1"));
+		assertThat(output.get("table"), is((Object) "minimal"));
+		assertThat(output.get("type"), is((Object) "commit"));
+		assertTrue(Pattern.matches("\\d+", output.get("xid").toString()));
+		assertThat(output.get("commit"), is((Object) true));
+		assertTrue(((Map) output.get("data")).isEmpty());
+	}
+
+	@Test
+	public void testStreamsTransactionPastRowThreshold() throws Exception {
+		List<RowMap> list = getRowsForStreamedTransaction(null, minimalInserts(5, "row"), 3, 0);
+		assertStreamedTransaction(list, 5);
+	}
+
+	@Test
+	public void testStreamsTransactionPastByteThreshold() throws Exception {
+		String text = new String(new char[80]).replace('\0', 'x');
+		List<RowMap> list = getRowsForStreamedTransaction(null, minimalInserts(10, text), 0, 1000);
+		assertStreamedTransaction(list, 10);
+	}
+
+	@Test
+	public void testSmallTransactionsAreNotStreamed() throws Exception {
+		List<RowMap> list = getRowsForStreamedTransaction(null, minimalInserts(2, "row"), 3, 0);
+
+		List<RowMap> rows = new ArrayList<>();
+		for ( RowMap r : list ) {
+			assertFalse(r instanceof TransactionCommitRowMap);
+			if ( r.getTable().equals("minimal") )
+				rows.add(r);
+		}
+
+		assertThat(rows.size(), is(2));
+		assertNotNull(rows.get(0).getXid());
+		assertThat(rows.get(1).getXid(), is(rows.get(0).getXid()));
+		assertFalse(rows.get(0).isTXCommit());
+		assertTrue(rows.get(1).isTXCommit());
+	}
+
+	@Test
+	public void testStreamedCommitNamingMaxwellTableReachesProducer() throws Exception {
+		String ddl[] = { "CREATE TABLE maxwell.stream_scratch (id int auto_increment primary key, i int)" };
+		String input[] = ArrayUtils.addAll(minimalInserts(3, "row"), "insert into maxwell.stream_scratch set i = 1");
+
+		List<RowMap> list = getRowsForStreamedTransaction(ddl, input, 2, 0);
+
+		RowMap commit = null;
+		int minimalRows = 0;
+		for ( RowMap r : list ) {
+			if ( r instanceof TransactionCommitRowMap )
+				commit = r;
+			else if ( r.getTable().equals("minimal") )
+				minimalRows++;
+		}
+
+		assertThat(minimalRows, is(3));
+		// the last row the transaction wrote went to the bootstrapper, but its commit marker mustn't
+		assertNotNull(commit);
+		assertThat(commit.getDatabase(), is("maxwell"));
+		assertThat(commit.getTable(), is("stream_scratch"));
+		assertNotNull(commit.getXid());
+	}
 }
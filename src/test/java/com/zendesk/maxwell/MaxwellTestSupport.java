@@ -164,6 +164,7 @@ public class MaxwellTestSupport {
 		if (outputConfig == null) {
 			outputConfig = new MaxwellOutputConfig();
 		}
+		config.outputConfig = outputConfig;
 
 		if ( filter != null ) {
 			if ( filter.isDatabaseWhitelist() )
@@ -174,6 +175,7 @@ public class MaxwellTestSupport {
 
 		config.filter = filter;
 		config.bootstrapperType = "sync";
+		callback.configure(config);
 
 		callback.beforeReplicatorStart(mysql);
 
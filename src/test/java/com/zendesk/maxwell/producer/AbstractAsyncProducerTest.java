@@ -0,0 +1,73 @@
+package com.zendesk.maxwell.producer;
+
+import com.zendesk.maxwell.MaxwellConfig;
+import com.zendesk.maxwell.MaxwellContext;
+import com.zendesk.maxwell.monitoring.NoOpMetrics;
+import com.zendesk.maxwell.replication.BinlogPosition;
+import com.zendesk.maxwell.replication.Position;
+import com.zendesk.maxwell.row.RowMap;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.*;
+
+public class AbstractAsyncProducerTest {
+	/* holds on to every callback so the test can complete them in whatever order it likes */
+	private static class CapturingProducer extends AbstractAsyncProducer {
+		final List<CallbackCompleter> callbacks = new ArrayList<>();
+
+		CapturingProducer(MaxwellContext context) {
+			super(context);
+		}
+
+		@Override
+		public void sendAsync(RowMap r, CallbackCompleter cc) {
+			callbacks.add(cc);
+		}
+	}
+
+	private static Position position(String source, String file, long offset) {
+		return new Position(BinlogPosition.at(offset, file), 0L).withSource(source);
+	}
+
+	private static RowMap commit(Position position) {
+		RowMap r = new RowMap("insert", "db", "t", 0L, Arrays.asList("id"), position);
+		r.putData("id", position.getBinlogPosition().getOffset());
+		r.setTXCommit();
+		return r;
+	}
+
+	@Test
+	public void testInterleavedAcksFromTwoSources() throws Exception {
+		MaxwellContext context = mock(MaxwellContext.class);
+		when(context.getConfig()).thenReturn(new MaxwellConfig());
+		when(context.getMetrics()).thenReturn(new NoOpMetrics());
+
+		Position a1 = position("a", "a-bin.000001", 100);
+		Position b1 = position("b", "b-bin.000001", 100);
+		Position a2 = position("a", "a-bin.000001", 200);
+
+		CapturingProducer producer = new CapturingProducer(context);
+		producer.push(commit(a1));
+		producer.push(commit(b1));
+		producer.push(commit(a2));
+		assertEquals(3, producer.callbacks.size());
+
+		// a2, then b1, then a1: a2 has to wait for a1, b1 waits on nothing from source a
+		producer.callbacks.get(2).markCompleted();
+		verify(context, never()).setPosition(any(Position.class));
+
+		producer.callbacks.get(1).markCompleted();
+		producer.callbacks.get(0).markCompleted();
+
+		InOrder inOrder = inOrder(context);
+		inOrder.verify(context).setPosition(b1);
+		inOrder.verify(context).setPosition(a2);
+		verify(context, never()).setPosition(a1);
+	}
+}
@@ -0,0 +1,247 @@
+package com.zendesk.maxwell.producer;
+
+import com.zendesk.maxwell.MaxwellConfig;
+import com.zendesk.maxwell.MaxwellContext;
+import com.zendesk.maxwell.monitoring.NoOpMetrics;
+import com.zendesk.maxwell.replication.BinlogPosition;
+import com.zendesk.maxwell.replication.Position;
+import com.zendesk.maxwell.row.RowMap;
+import com.zendesk.maxwell.schema.ddl.DDLMap;
+import com.zendesk.maxwell.schema.ddl.ResolvedTableDrop;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class ShardedProducerTest {
+	/* holds on to every callback so the test can complete them in whatever order it likes */
+	private static class CapturingProducer extends AbstractAsyncProducer {
+		final List<RowMap> rows = new ArrayList<>();
+		final List<CallbackCompleter> callbacks = new ArrayList<>();
+
+		CapturingProducer(MaxwellContext context) {
+			super(context);
+		}
+
+		@Override
+		public synchronized void sendAsync(RowMap r, CallbackCompleter cc) {
+			rows.add(r);
+			callbacks.add(cc);
+		}
+
+		synchronized CallbackCompleter callbackFor(String table) {
+			for ( int i = 0; i < rows.size(); i++ )
+				if ( rows.get(i).getTable().equals(table) )
+					return callbacks.get(i);
+			return null;
+		}
+	}
+
+	private static Position position(long offset) {
+		return new Position(BinlogPosition.at(offset, "f"), 0L);
+	}
+
+	private static RowMap row(String table, long offset, boolean commit) {
+		return row(table, position(offset), commit);
+	}
+
+	private static RowMap row(String table, Position position, boolean commit) {
+		RowMap r = new RowMap("insert", "db", table, 0L, Arrays.asList("id"), position);
+		long offset = position.getBinlogPosition().getOffset();
+		r.putData("id", offset);
+		if ( commit )
+			r.setTXCommit();
+		return r;
+	}
+
+	private MaxwellContext buildContext() {
+		return buildContext(new MaxwellConfig());
+	}
+
+	private MaxwellContext buildContext(MaxwellConfig config) {
+		MaxwellContext context = mock(MaxwellContext.class);
+		when(context.getConfig()).thenReturn(config);
+		when(context.getMetrics()).thenReturn(new NoOpMetrics());
+		return context;
+	}
+
+	private AbstractAsyncProducer.CallbackCompleter awaitCallback(List<CapturingProducer> lanes, String table) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while ( System.currentTimeMillis() < deadline ) {
+			for ( CapturingProducer lane : lanes ) {
+				AbstractAsyncProducer.CallbackCompleter cc = lane.callbackFor(table);
+				if ( cc != null )
+					return cc;
+			}
+			Thread.sleep(5);
+		}
+		throw new AssertionError("row for " + table + " was never sent");
+	}
+
+	private int sentCount(List<CapturingProducer> lanes) {
+		int count = 0;
+		for ( CapturingProducer lane : lanes ) {
+			synchronized ( lane ) {
+				count += lane.rows.size();
+			}
+		}
+		return count;
+	}
+
+	@Test
+	public void testPositionWaitsForEveryLane() throws Exception {
+		MaxwellContext context = buildContext();
+		List<CapturingProducer> lanes = new ArrayList<>();
+		ShardedProducer producer = new ShardedProducer(context, 4, "table", () -> {
+			CapturingProducer p = new CapturingProducer(context);
+			synchronized ( lanes ) {
+				lanes.add(p);
+			}
+			return p;
+		});
+
+		// two transactions, spread over several tables
+		producer.push(row("a", 1, false));
+		producer.push(row("b", 2, false));
+		producer.push(row("c", 3, true));
+		producer.push(row("d", 4, false));
+		producer.push(row("e", 5, true));
+
+		// acknowledge the second transaction first, then the first one out of order
+		awaitCallback(lanes, "e").markCompleted();
+		awaitCallback(lanes, "d").markCompleted();
+		awaitCallback(lanes, "c").markCompleted();
+		awaitCallback(lanes, "a").markCompleted();
+		verify(context, never()).setPosition(any(Position.class));
+
+		awaitCallback(lanes, "b").markCompleted();
+		verify(context).setPosition(position(5));
+		verify(context, never()).setPosition(position(3));
+
+		producer.requestStop();
+		producer.awaitStop(1000L);
+	}
+
+	@Test
+	public void testInterleavedTransactionsFromTwoSources() throws Exception {
+		MaxwellContext context = buildContext();
+		List<CapturingProducer> lanes = new ArrayList<>();
+		ShardedProducer producer = new ShardedProducer(context, 2, "table", () -> {
+			CapturingProducer p = new CapturingProducer(context);
+			synchronized ( lanes ) {
+				lanes.add(p);
+			}
+			return p;
+		});
+
+		Position a2 = position(2).withSource("a");
+		Position b2 = position(2).withSource("b");
+		Position b3 = position(3).withSource("b");
+
+		// source a opens a transaction, source b commits two in the middle of it, then a commits
+		producer.push(row("a1", position(1).withSource("a"), false));
+		producer.push(row("b1", position(1).withSource("b"), false));
+		producer.push(row("b2", b2, true));
+		producer.push(row("b3", b3, true));
+		producer.push(row("a2", a2, true));
+
+		awaitCallback(lanes, "b1").markCompleted();
+		awaitCallback(lanes, "b2").markCompleted();
+		awaitCallback(lanes, "b3").markCompleted();
+		awaitCallback(lanes, "a2").markCompleted();
+		verify(context).setPosition(b3);
+		// a1 belongs to a's transaction, not to either of b's
+		verify(context, never()).setPosition(a2);
+
+		awaitCallback(lanes, "a1").markCompleted();
+		verify(context).setPosition(a2);
+
+		producer.requestStop();
+		producer.awaitStop(1000L);
+	}
+
+	@Test
+	public void testTableStaysOnOneLane() throws Exception {
+		MaxwellContext context = buildContext();
+		List<CapturingProducer> lanes = new ArrayList<>();
+		ShardedProducer producer = new ShardedProducer(context, 3, "table", () -> {
+			CapturingProducer p = new CapturingProducer(context);
+			synchronized ( lanes ) {
+				lanes.add(p);
+			}
+			return p;
+		});
+
+		for ( long i = 1; i <= 30; i++ )
+			producer.push(row("t" + (i % 5), i, true));
+
+		long deadline = System.currentTimeMillis() + 5000;
+		while ( sentCount(lanes) < 30 && System.currentTimeMillis() < deadline )
+			Thread.sleep(5);
+		assertEquals(30, sentCount(lanes));
+
+		HashMap<String, CapturingProducer> laneForTable = new HashMap<>();
+		for ( CapturingProducer lane : lanes ) {
+			long last = 0;
+			for ( RowMap r : lane.rows ) {
+				assertEquals(lane, laneForTable.computeIfAbsent(r.getTable(), (t) -> lane));
+				long offset = r.getPosition().getBinlogPosition().getOffset();
+				assert(offset > last);
+				last = offset;
+			}
+		}
+		assertEquals(5, laneForTable.size());
+
+		producer.requestStop();
+		producer.awaitStop(1000L);
+	}
+
+	@Test
+	public void testDDLWaitsForRowsToBeAcknowledged() throws Exception {
+		MaxwellConfig config = new MaxwellConfig();
+		config.outputConfig.outputDDL = true;
+		MaxwellContext context = buildContext(config);
+		List<CapturingProducer> lanes = new ArrayList<>();
+		ShardedProducer producer = new ShardedProducer(context, 2, "table", () -> {
+			CapturingProducer p = new CapturingProducer(context);
+			synchronized ( lanes ) {
+				lanes.add(p);
+			}
+			return p;
+		});
+
+		producer.push(row("a", 1, true));
+		AbstractAsyncProducer.CallbackCompleter rowCallback = awaitCallback(lanes, "a");
+
+		DDLMap ddl = new DDLMap(new ResolvedTableDrop("db", "a"), 0L, "drop table a", position(2));
+		Thread pusher = new Thread(() -> {
+			try {
+				producer.push(ddl);
+			} catch ( Exception e ) {
+				throw new RuntimeException(e);
+			}
+		});
+		pusher.start();
+
+		// the row has been handed to its lane's producer, but not acknowledged
+		Thread.sleep(200);
+		assertTrue(pusher.isAlive());
+		assertEquals(1, sentCount(lanes));
+
+		rowCallback.markCompleted();
+		pusher.join(5000);
+		assertFalse(pusher.isAlive());
+		assertEquals(2, sentCount(lanes));
+
+		producer.requestStop();
+		producer.awaitStop(1000L);
+	}
+}
@@ -0,0 +1,73 @@
+package com.zendesk.maxwell.producer;
+
+import com.zendesk.maxwell.MaxwellConfig;
+import com.zendesk.maxwell.MaxwellContext;
+import com.zendesk.maxwell.monitoring.NoOpMetrics;
+import com.zendesk.maxwell.row.RowMap;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.*;
+
+public class SynchronizedProducerTest {
+	/* writes each row in two parts, like FileProducer */
+	private static class TwoPartProducer extends AbstractProducer {
+		final List<String> output = Collections.synchronizedList(new ArrayList<>());
+
+		TwoPartProducer(MaxwellContext context) {
+			super(context);
+		}
+
+		@Override
+		public void push(RowMap r) throws Exception {
+			output.add(r.getTable());
+			Thread.sleep(1);
+			output.add("\n");
+		}
+	}
+
+	private static RowMap row(String table) {
+		return new RowMap("insert", "db", table, 0L, Arrays.asList("id"), null);
+	}
+
+	@Test
+	public void testPushesFromSeveralThreadsDontInterleave() throws Exception {
+		MaxwellContext context = mock(MaxwellContext.class);
+		when(context.getConfig()).thenReturn(new MaxwellConfig());
+		when(context.getMetrics()).thenReturn(new NoOpMetrics());
+
+		TwoPartProducer inner = new TwoPartProducer(context);
+		SynchronizedProducer producer = new SynchronizedProducer(context, inner);
+
+		List<Thread> threads = new ArrayList<>();
+		for ( String source : Arrays.asList("a", "b", "c") ) {
+			threads.add(new Thread(() -> {
+				try {
+					for ( int i = 0; i < 20; i++ ) {
+						if ( i % 2 == 0 )
+							producer.push(row(source));
+						else
+							producer.pushBatch(Arrays.asList(row(source), row(source)));
+					}
+				} catch ( Exception e ) {
+					throw new RuntimeException(e);
+				}
+			}));
+		}
+		for ( Thread thread : threads )
+			thread.start();
+		for ( Thread thread : threads )
+			thread.join();
+
+		assertEquals(3 * 30 * 2, inner.output.size());
+		for ( int i = 0; i < inner.output.size(); i += 2 ) {
+			assertEquals(1, inner.output.get(i).length());
+			assertEquals("\n", inner.output.get(i + 1));
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package com.zendesk.maxwell.replication;
+
+import com.github.shyiko.mysql.binlog.event.EventType;
+import com.github.shyiko.mysql.binlog.event.deserialization.EventDeserializer;
+import com.zendesk.maxwell.MaxwellContext;
+import com.zendesk.maxwell.MaxwellTestSupport;
+import com.zendesk.maxwell.MaxwellTestWithIsolatedServer;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BinlogCatchupReaderTest extends MaxwellTestWithIsolatedServer {
+	private BinlogCatchupReader buildReader(MaxwellContext context, Position start) {
+		return new BinlogCatchupReader(
+			context.getConfig().replicationMysql,
+			context.getReplicationConnectionPool(),
+			start.getBinlogPosition(),
+			2,
+			1024 * 1024,
+			EventDeserializer::new
+		);
+	}
+
+	@Test
+	public void testPassesFilesOnInOrder() throws Exception {
+		Position start = MaxwellTestSupport.capture(server.getConnection());
+		for ( int i = 0; i < 5; i++ ) {
+			server.execute("INSERT INTO shard_1.minimal SET account_id = " + i + ", text_field = 'hello'");
+			if ( i == 2 )
+				server.execute("ALTER TABLE shard_1.minimal ADD COLUMN extra int");
+			server.execute("FLUSH LOGS");
+		}
+
+		MaxwellContext context = buildContext(start);
+		BinlogCatchupReader reader = buildReader(context, start);
+
+		final List<String> writes = Collections.synchronizedList(new ArrayList<>());
+		assertTrue(reader.start(event -> {
+			EventType type = event.getHeader().getEventType();
+			if ( type == EventType.WRITE_ROWS || type == EventType.EXT_WRITE_ROWS )
+				writes.add(reader.getCurrentFilename());
+		}));
+
+		while ( !reader.isFinished() )
+			Thread.sleep(10);
+		reader.checkError();
+
+		assertEquals(5, writes.size());
+		ArrayList<String> sorted = new ArrayList<>(writes);
+		Collections.sort(sorted);
+		assertEquals(sorted, writes);
+		assertEquals(5, new HashSet<>(writes).size());
+
+		Position head = MaxwellTestSupport.capture(server.getConnection());
+		assertEquals(head.getBinlogPosition().getFile(), reader.getHandoffPosition().getFile());
+	}
+
+	@Test
+	public void testDoesNothingWhenCaughtUp() throws Exception {
+		Position start = MaxwellTestSupport.capture(server.getConnection());
+		server.execute("INSERT INTO shard_1.minimal SET account_id = 1, text_field = 'hello'");
+
+		BinlogCatchupReader reader = buildReader(buildContext(start), start);
+		assertFalse(reader.start(event -> fail("no events expected")));
+	}
+}
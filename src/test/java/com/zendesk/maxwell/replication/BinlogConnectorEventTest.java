@@ -0,0 +1,109 @@
+package com.zendesk.maxwell.replication;
+
+import com.github.shyiko.mysql.binlog.event.DeleteRowsEventData;
+import com.github.shyiko.mysql.binlog.event.Event;
+import com.github.shyiko.mysql.binlog.event.EventHeaderV4;
+import com.github.shyiko.mysql.binlog.event.EventType;
+import com.zendesk.maxwell.row.RowMap;
+import com.zendesk.maxwell.row.RowMapBuffer;
+import com.zendesk.maxwell.schema.Table;
+import com.zendesk.maxwell.schema.columndef.ColumnDef;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class BinlogConnectorEventTest {
+	private static final Position POSITION = new Position(new BinlogPosition(4L, "binlog.000001"), 0L);
+
+	/* a list of rows that counts how many have been read out of it */
+	private static class CountingRows extends ArrayList<Serializable[]> {
+		final AtomicInteger read = new AtomicInteger();
+
+		@Override
+		public Serializable[] get(int index) {
+			read.incrementAndGet();
+			return super.get(index);
+		}
+
+		@Override
+		public Iterator<Serializable[]> iterator() {
+			Iterator<Serializable[]> it = super.iterator();
+			return new Iterator<Serializable[]>() {
+				@Override
+				public boolean hasNext() {
+					return it.hasNext();
+				}
+
+				@Override
+				public Serializable[] next() {
+					read.incrementAndGet();
+					return it.next();
+				}
+			};
+		}
+	}
+
+	private BinlogConnectorEvent bulkDelete(CountingRows rows, int rowCount) {
+		EventHeaderV4 header = new EventHeaderV4();
+		header.setEventType(EventType.EXT_DELETE_ROWS);
+		header.setTimestamp(1000L);
+		header.setEventLength(100);
+		header.setNextPosition(200L);
+
+		BitSet columns = new BitSet();
+		columns.set(0, 2);
+
+		for ( int i = 0; i < rowCount; i++ )
+			rows.add(new Serializable[] { i, "row number " + i });
+
+		DeleteRowsEventData data = new DeleteRowsEventData();
+		data.setTableId(1L);
+		data.setIncludedColumns(columns);
+		data.setRows(rows);
+
+		return new BinlogConnectorEvent(new Event(header, data), "binlog.000001", (String) null, null);
+	}
+
+	private Table buildTable() {
+		ArrayList<ColumnDef> columns = new ArrayList<>();
+		columns.add(ColumnDef.build("id", null, "int", 0, true, null, null));
+		columns.add(ColumnDef.build("name", "utf8", "varchar", 1, false, null, 255L));
+		return new Table("shard_1", "big_table", "utf8", columns, Arrays.asList("id"));
+	}
+
+	@Test
+	public void testRowsAreBuiltAsTheyAreRead() throws Exception {
+		CountingRows source = new CountingRows();
+		BinlogConnectorEvent event = bulkDelete(source, 10000);
+		Iterator<RowMap> rows = event.jsonMaps(buildTable(), POSITION, null, new ArrayList<>());
+
+		// nothing is read out of the event until the rows are asked for
+		assertEquals(0, source.read.get());
+
+		// a buffer that can only keep a handful of rows in memory
+		RowMapBuffer buffer = new RowMapBuffer(10000, 10000);
+		long maxInMemory = 0;
+		int built = 0;
+		while ( rows.hasNext() ) {
+			buffer.add(rows.next());
+			built++;
+			assertEquals(built, source.read.get());
+			maxInMemory = Math.max(maxInMemory, buffer.inMemorySize());
+		}
+
+		assertEquals(10000L, (long) buffer.size());
+		assertTrue(maxInMemory < 1000);
+
+		RowMap first = buffer.removeFirst();
+		assertEquals("delete", first.getRowType());
+		assertEquals(0L, first.getData("id"));
+		assertEquals(200L, first.getPosition().getBinlogPosition().getOffset());
+	}
+}
@@ -0,0 +1,62 @@
+package com.zendesk.maxwell.replication;
+
+import com.github.shyiko.mysql.binlog.BinaryLogClient;
+import com.zendesk.maxwell.MaxwellContext;
+import com.zendesk.maxwell.MaxwellTestSupport;
+import com.zendesk.maxwell.MaxwellTestWithIsolatedServer;
+import com.zendesk.maxwell.schema.MysqlSchemaStore;
+import com.zendesk.maxwell.schema.SchemaStoreSchema;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BinlogConnectorReplicatorFailoverTest extends MaxwellTestWithIsolatedServer {
+	@Test
+	public void testFailoverDetachesTheOldClient() throws Exception {
+		Position start = MaxwellTestSupport.capture(server.getConnection());
+		MaxwellContext context = buildContext(start);
+		// two candidates, both this server; the current one wins the tie
+		context.getConfig().replicationCandidates = Arrays.asList(context.getConfig().replicationMysql, context.getConfig().replicationMysql);
+		SchemaStoreSchema.ensureMaxwellSchema(server.getConnection(), context.getConfig().databaseName);
+
+		BinlogConnectorReplicator replicator = new BinlogConnectorReplicator(
+			new MysqlSchemaStore(context, start),
+			context.getProducer(),
+			context.getBootstrapper(),
+			context,
+			start
+		);
+
+		BinaryLogClient old = replicator.getClient();
+		assertFalse(old.isKeepAlive());
+		List<BinaryLogClient.EventListener> listeners = new ArrayList<>(old.getEventListeners());
+		List<BinaryLogClient.LifecycleListener> lifecycleListeners = new ArrayList<>(old.getLifecycleListeners());
+		assertFalse(listeners.isEmpty());
+
+		replicator.startReplicator();
+		old.disconnect();
+
+		long deadline = System.currentTimeMillis() + 10000;
+		while ( replicator.getClient() == old && System.currentTimeMillis() < deadline )
+			replicator.getRow();
+
+		BinaryLogClient next = replicator.getClient();
+		assertNotSame(old, next);
+		assertTrue(next.isConnected());
+		assertFalse(next.isKeepAlive());
+
+		assertFalse(old.isConnected());
+		for ( BinaryLogClient.EventListener listener : listeners ) {
+			assertFalse(old.getEventListeners().contains(listener));
+			assertTrue(next.getEventListeners().contains(listener));
+		}
+		for ( BinaryLogClient.LifecycleListener listener : lifecycleListeners )
+			assertFalse(old.getLifecycleListeners().contains(listener));
+
+		next.disconnect();
+	}
+}
@@ -0,0 +1,71 @@
+package com.zendesk.maxwell.replication;
+
+import com.github.shyiko.mysql.binlog.event.EventData;
+import com.github.shyiko.mysql.binlog.event.EventType;
+import com.github.shyiko.mysql.binlog.event.WriteRowsEventData;
+import com.github.shyiko.mysql.binlog.event.deserialization.EventDataDeserializer;
+import com.github.shyiko.mysql.binlog.io.ByteArrayInputStream;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+public class FilteringRowsEventDataDeserializerTest {
+	private static final byte[] BODY = { 0x05, 0x00, 0x00, 0x00, 0x00, 0x00, 0x01, 0x00, 0x02 };
+
+	private class SkipTable extends FilteringTableMapEventDataDeserializer {
+		private final long skippedTableId;
+
+		SkipTable(long skippedTableId) {
+			super((db, table) -> true);
+			this.skippedTableId = skippedTableId;
+		}
+
+		@Override
+		boolean shouldSkip(long tableId) {
+			return tableId == skippedTableId;
+		}
+	}
+
+	private final EventDataDeserializer<EventData> failing = (in) -> {
+		throw new AssertionError("should not have decoded the event");
+	};
+
+	@Test
+	public void testSkipsFilteredTables() throws Exception {
+		FilteringRowsEventDataDeserializer d = new FilteringRowsEventDataDeserializer(EventType.EXT_WRITE_ROWS, failing, new SkipTable(5));
+
+		ByteArrayInputStream in = new ByteArrayInputStream(BODY);
+		EventData data = d.deserialize(in);
+		assertThat(in.available(), is(0));
+		assertThat(data, instanceOf(WriteRowsEventData.class));
+		assertThat(((WriteRowsEventData) data).getTableId(), is(5L));
+		assertThat(((WriteRowsEventData) data).getRows().isEmpty(), is(true));
+	}
+
+	@Test
+	public void testDelegatesOtherTables() throws Exception {
+		WriteRowsEventData decoded = new WriteRowsEventData();
+		FilteringRowsEventDataDeserializer d = new FilteringRowsEventDataDeserializer(
+			EventType.WRITE_ROWS,
+			(in) -> {
+				assertThat(in.available(), is(BODY.length));
+				assertThat(in.read(BODY.length), is(BODY));
+				assertThat(in.available(), is(0));
+				return decoded;
+			},
+			new SkipTable(6)
+		);
+
+		assertThat(d.deserialize(new ByteArrayInputStream(BODY)), sameInstance((EventData) decoded));
+	}
+
+	@Test
+	public void testKeepsRawBodyForParallelDecoding() throws Exception {
+		FilteringRowsEventDataDeserializer d = new FilteringRowsEventDataDeserializer(EventType.WRITE_ROWS, new RawRowsEventDataDeserializer(), new SkipTable(6));
+
+		RawRowsEventData raw = (RawRowsEventData) d.deserialize(new ByteArrayInputStream(BODY));
+		assertThat(raw.getTableId(), is(5L));
+		assertThat(raw.getBody(), is(BODY));
+	}
+}
@@ -0,0 +1,90 @@
+package com.zendesk.maxwell.replication;
+
+import com.github.shyiko.mysql.binlog.GtidSet;
+import com.github.shyiko.mysql.binlog.event.Event;
+import com.github.shyiko.mysql.binlog.event.EventHeaderV4;
+import com.github.shyiko.mysql.binlog.event.EventType;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares what tracking the GTID set costs per binlog event: rendering the client's
+ * set and building both positions for every event, as the listener used to, against
+ * sharing a {@link GtidSetSnapshot} and building positions on demand.  Each operation
+ * replays one transaction -- a GTID, 10 rows events and a commit -- against a set
+ * spanning 50 servers.  Not a unit test; run it, with the allocation profiler, with
+ *
+ *   mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test \
+ *     -Dexec.args="-classpath %classpath org.openjdk.jmh.Main GtidSetSnapshotBenchmark -prof gc"
+ *
+ * and compare gc.alloc.rate.norm, the bytes allocated per transaction.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class GtidSetSnapshotBenchmark {
+	private static final String SERVER_UUID = "de278ad0-2106-11e4-9f8e-6edd0ca20947";
+	private static final int EVENTS_PER_TRANSACTION = 12;
+
+	private String start;
+	private GtidSet clientSet;
+	private GtidSetSnapshot snapshot;
+	private long transaction;
+	private Event[] events;
+
+	@Setup(Level.Iteration)
+	public void setup() {
+		StringBuilder sb = new StringBuilder();
+		for ( int i = 0; i < 50; i++ )
+			sb.append(new UUID(i + 1, i + 1).toString()).append(":1-").append(1000 + i).append(",");
+		start = sb.append(SERVER_UUID).append(":1-100").toString();
+
+		clientSet = new GtidSet(start);
+		snapshot = GtidSetSnapshot.of(start);
+		transaction = 101;
+
+		events = new Event[EVENTS_PER_TRANSACTION];
+		for ( int e = 0; e < EVENTS_PER_TRANSACTION; e++ ) {
+			EventHeaderV4 header = new EventHeaderV4();
+			header.setEventType(EventType.WRITE_ROWS);
+			header.setEventLength(100);
+			header.setNextPosition(e * 100 + 100);
+			events[e] = new Event(header, null);
+		}
+	}
+
+	@Benchmark
+	public long renderSetPerEvent() {
+		String gtid = SERVER_UUID + ":" + transaction++;
+		clientSet.add(gtid);
+
+		long sink = 0;
+		for ( int e = 0; e < EVENTS_PER_TRANSACTION; e++ ) {
+			String gtidSetStr = clientSet.toString();
+			BinlogPosition p = new BinlogPosition(gtidSetStr, gtid, e * 100, "binlog.000001");
+			BinlogPosition next = new BinlogPosition(gtidSetStr, gtid, e * 100 + 100, "binlog.000001");
+			sink += p.getOffset() + next.getOffset();
+		}
+		return sink;
+	}
+
+	@Benchmark
+	public long shareSnapshot() {
+		String gtid = SERVER_UUID + ":" + transaction++;
+		snapshot = snapshot.add(gtid);
+
+		long sink = 0;
+		for ( int e = 0; e < EVENTS_PER_TRANSACTION; e++ ) {
+			BinlogConnectorEvent ev = new BinlogConnectorEvent(events[e], "binlog.000001", snapshot, gtid);
+			// only the commit asks for its position
+			if ( e == EVENTS_PER_TRANSACTION - 1 )
+				sink += ev.getNextPosition().getOffset();
+		}
+		return sink;
+	}
+}
@@ -0,0 +1,59 @@
+package com.zendesk.maxwell.replication;
+
+import com.github.shyiko.mysql.binlog.GtidSet;
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class GtidSetSnapshotTest {
+	private static final String SERVER_UUID = "de278ad0-2106-11e4-9f8e-6edd0ca20947";
+
+	private static String manyServers(int count) {
+		StringBuilder sb = new StringBuilder();
+		for ( int i = 0; i < count; i++ ) {
+			if ( i > 0 )
+				sb.append(",");
+			sb.append(new UUID(i + 1, i + 1).toString()).append(":1-").append(1000 + i);
+		}
+		return sb.append(",").append(SERVER_UUID).append(":1-100").toString();
+	}
+
+	@Test
+	public void testMatchesGtidSet() {
+		String start = manyServers(3);
+		GtidSet expected = new GtidSet(start);
+		GtidSetSnapshot snapshot = GtidSetSnapshot.of(start);
+
+		GtidSetSnapshot first = null;
+		for ( int i = 101; i <= 110; i++ ) {
+			expected.add(SERVER_UUID + ":" + i);
+			snapshot = snapshot.add(SERVER_UUID + ":" + i);
+			if ( first == null )
+				first = snapshot;
+		}
+
+		assertEquals(expected.toString(), snapshot.getGtidSetStr());
+		assertEquals(snapshot.getGtidSetStr(), snapshot.getGtidSetStr());
+
+		// earlier snapshots don't see later GTIDs, even once the later ones are rendered
+		GtidSet firstExpected = new GtidSet(start);
+		firstExpected.add(SERVER_UUID + ":101");
+		assertEquals(firstExpected.toString(), first.getGtidSetStr());
+	}
+
+	@Test
+	public void testLongChainsAreRenderedEagerly() {
+		GtidSetSnapshot snapshot = GtidSetSnapshot.of("");
+		for ( int i = 1; i <= 5000; i++ )
+			snapshot = snapshot.add(SERVER_UUID + ":" + i);
+
+		assertEquals(SERVER_UUID + ":1-5000", snapshot.getGtidSetStr());
+	}
+
+	@Test
+	public void testNullSet() {
+		assertNull(GtidSetSnapshot.of(null));
+	}
+}
@@ -0,0 +1,60 @@
+package com.zendesk.maxwell.replication;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LocalBinlogReaderTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private List<String> names(List<File> files) {
+		ArrayList<String> names = new ArrayList<>();
+		for ( File f : files )
+			names.add(f.getName());
+		return names;
+	}
+
+	private void touch(String... names) throws IOException {
+		for ( String name : names )
+			folder.newFile(name);
+	}
+
+	@Test
+	public void testListsFilesFromStartToStop() throws Exception {
+		touch("mysql-bin.000003", "mysql-bin.000001", "mysql-bin.000002", "mysql-bin.000004", "mysql-bin.index", "other-bin.000002");
+
+		List<File> files = LocalBinlogReader.listBinlogFiles(folder.getRoot(), "mysql-bin.000002", "mysql-bin.000003");
+		assertEquals("[mysql-bin.000002, mysql-bin.000003]", names(files).toString());
+
+		files = LocalBinlogReader.listBinlogFiles(folder.getRoot(), "mysql-bin.000002", null);
+		assertEquals("[mysql-bin.000002, mysql-bin.000003, mysql-bin.000004]", names(files).toString());
+	}
+
+	@Test(expected = IOException.class)
+	public void testMissingStartFile() throws Exception {
+		touch("mysql-bin.000001");
+		LocalBinlogReader.listBinlogFiles(folder.getRoot(), "mysql-bin.000002", null);
+	}
+
+	@Test
+	public void testChecksumTrailerByServerVersion() {
+		assertFalse(LocalBinlogReader.hasChecksumTrailer("5.5.62-log"));
+		assertFalse(LocalBinlogReader.hasChecksumTrailer("5.6.0-m4"));
+		assertTrue(LocalBinlogReader.hasChecksumTrailer("5.6.1-m5"));
+		assertTrue(LocalBinlogReader.hasChecksumTrailer("5.6.40-log"));
+		assertTrue(LocalBinlogReader.hasChecksumTrailer("5.7.22"));
+		assertTrue(LocalBinlogReader.hasChecksumTrailer("8.0.11"));
+		assertTrue(LocalBinlogReader.hasChecksumTrailer("5.5.60-MariaDB-log"));
+		assertTrue(LocalBinlogReader.hasChecksumTrailer("10.2.14-MariaDB-log"));
+		assertFalse(LocalBinlogReader.hasChecksumTrailer("5.1.73-MariaDB"));
+		assertFalse(LocalBinlogReader.hasChecksumTrailer(""));
+	}
+}
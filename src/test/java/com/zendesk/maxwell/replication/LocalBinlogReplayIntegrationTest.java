@@ -0,0 +1,192 @@
+package com.zendesk.maxwell.replication;
+
+import com.github.shyiko.mysql.binlog.event.Event;
+import com.github.shyiko.mysql.binlog.event.EventHeaderV4;
+import com.github.shyiko.mysql.binlog.event.EventType;
+import com.github.shyiko.mysql.binlog.event.WriteRowsEventData;
+import com.github.shyiko.mysql.binlog.event.deserialization.EventDeserializer;
+import com.github.shyiko.mysql.binlog.network.SSLMode;
+import com.zendesk.maxwell.BufferedMaxwell;
+import com.zendesk.maxwell.MaxwellConfig;
+import com.zendesk.maxwell.MaxwellTestSupport;
+import com.zendesk.maxwell.MaxwellTestWithIsolatedServer;
+import com.zendesk.maxwell.row.RowMap;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Replays binlog files copied out of the test server's data directory.
+ */
+public class LocalBinlogReplayIntegrationTest extends MaxwellTestWithIsolatedServer {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private BinlogPosition start;
+	private BinlogPosition afterFirst;
+	private BinlogPosition afterSecond;
+
+	/*
+	   three transactions: one row (id 1), three rows (ids 2-4), one row (id 5).
+	   positions are captured before, between the first two and after the second.
+	 */
+	@Before
+	public void writeTransactions() throws Exception {
+		server.execute("CREATE TABLE shard_1.replay (id int primary key, v varchar(255))");
+		start = MaxwellTestSupport.capture(server.getConnection()).getBinlogPosition();
+
+		server.execute("INSERT INTO shard_1.replay SET id = 1, v = 'one'");
+		afterFirst = MaxwellTestSupport.capture(server.getConnection()).getBinlogPosition();
+
+		Connection c = server.getNewConnection();
+		c.setAutoCommit(false);
+		for ( int id = 2; id <= 4; id++ )
+			c.createStatement().execute("INSERT INTO shard_1.replay SET id = " + id + ", v = 'row " + id + "'");
+		c.commit();
+		c.close();
+		afterSecond = MaxwellTestSupport.capture(server.getConnection()).getBinlogPosition();
+
+		server.execute("INSERT INTO shard_1.replay SET id = 5, v = 'five'");
+	}
+
+	/*
+	   close the current binlog and copy every binlog file into a scratch directory
+	 */
+	private File copyBinlogs() throws Exception {
+		server.execute("FLUSH LOGS");
+
+		Connection c = server.getConnection();
+		ResultSet rs = c.createStatement().executeQuery("SELECT @@datadir");
+		rs.next();
+		File datadir = new File(rs.getString(1));
+
+		File binlogs = folder.newFolder("binlogs");
+		rs = c.createStatement().executeQuery("SHOW BINARY LOGS");
+		while ( rs.next() ) {
+			String name = rs.getString("Log_name");
+			Files.copy(new File(datadir, name).toPath(), new File(binlogs, name).toPath());
+		}
+		return binlogs;
+	}
+
+	private List<Event> readEvents(LocalBinlogReader reader) throws Exception {
+		List<Event> events = Collections.synchronizedList(new ArrayList<>());
+		reader.start(new EventDeserializer(), events::add);
+
+		long deadline = System.currentTimeMillis() + 10000;
+		while ( !reader.isFinished() && System.currentTimeMillis() < deadline )
+			Thread.sleep(10);
+
+		assertTrue(reader.isFinished());
+		reader.checkError();
+		return events;
+	}
+
+	private static long positionOf(Event event) {
+		EventHeaderV4 header = event.getHeader();
+		return header.getNextPosition() - header.getEventLength();
+	}
+
+	private static List<Integer> insertedIds(List<Event> events) {
+		ArrayList<Integer> ids = new ArrayList<>();
+		for ( Event e : events ) {
+			if ( !(e.getData() instanceof WriteRowsEventData) )
+				continue;
+			for ( Serializable[] row : ((WriteRowsEventData) e.getData()).getRows() )
+				ids.add((Integer) row[0]);
+		}
+		return ids;
+	}
+
+	@Test
+	public void testSplicesFormatDescriptionBeforeAMidFileStart() throws Exception {
+		File binlogs = copyBinlogs();
+		List<Event> events = readEvents(new LocalBinlogReader(binlogs, afterFirst, null));
+
+		assertEquals(EventType.FORMAT_DESCRIPTION, events.get(0).getHeader().getEventType());
+		// everything between the FORMAT_DESCRIPTION event and the start position is skipped
+		assertEquals(afterFirst.getOffset(), positionOf(events.get(1)));
+		assertEquals("[2, 3, 4, 5]", insertedIds(events).toString());
+	}
+
+	@Test
+	public void testEventsSpanningMappedChunks() throws Exception {
+		File binlogs = copyBinlogs();
+		List<Event> whole = readEvents(new LocalBinlogReader(binlogs, start, null));
+
+		// small enough that most events, and the FORMAT_DESCRIPTION splice, cross a chunk boundary
+		LocalBinlogReader chunked = new LocalBinlogReader(binlogs, start, null);
+		chunked.setMappingBytes(7);
+		List<Event> events = readEvents(chunked);
+
+		assertEquals(whole.size(), events.size());
+		for ( int i = 0; i < whole.size(); i++ ) {
+			assertEquals(whole.get(i).getHeader().getEventType(), events.get(i).getHeader().getEventType());
+			assertEquals(positionOf(whole.get(i)), positionOf(events.get(i)));
+		}
+		assertEquals("[1, 2, 3, 4, 5]", insertedIds(events).toString());
+
+		chunked = new LocalBinlogReader(binlogs, afterFirst, null);
+		chunked.setMappingBytes(7);
+		assertEquals("[2, 3, 4, 5]", insertedIds(readEvents(chunked)).toString());
+	}
+
+	@Test
+	public void testStopsAtTheNextTransactionBoundary() throws Exception {
+		File binlogs = copyBinlogs();
+		// a stop position inside the second transaction
+		BinlogPosition stop = new BinlogPosition(afterFirst.getOffset() + 1, afterFirst.getFile());
+		List<Event> events = readEvents(new LocalBinlogReader(binlogs, start, stop));
+
+		Event last = events.get(events.size() - 1);
+		assertEquals(EventType.XID, last.getHeader().getEventType());
+		assertEquals(afterSecond.getOffset(), ((EventHeaderV4) last.getHeader()).getNextPosition());
+		assertEquals("[1, 2, 3, 4]", insertedIds(events).toString());
+	}
+
+	@Test
+	public void testReplicatorStopsByItselfOnceReplayed() throws Exception {
+		File binlogs = copyBinlogs();
+		server.execute("DROP DATABASE IF EXISTS maxwell");
+
+		MaxwellConfig config = new MaxwellConfig();
+		config.maxwellMysql.user = "maxwell";
+		config.maxwellMysql.password = "maxwell";
+		config.maxwellMysql.host = "localhost";
+		config.maxwellMysql.port = server.getPort();
+		config.maxwellMysql.sslMode = SSLMode.DISABLED;
+		config.replicationMysql = config.maxwellMysql;
+		config.bootstrapperType = "sync";
+		config.initPosition = new Position(start, 0L);
+		config.replayBinlogDir = binlogs.getAbsolutePath();
+		config.replayStopPosition = new BinlogPosition(afterFirst.getOffset() + 1, afterFirst.getFile());
+
+		BufferedMaxwell maxwell = new BufferedMaxwell(config);
+		Thread thread = new Thread(maxwell);
+		thread.start();
+
+		// BinlogConnectorReplicator ends its run-loop when the replay is exhausted; nothing terminates it here
+		thread.join(30000);
+		assertFalse(thread.isAlive());
+		assertNull(maxwell.getContext().getError());
+
+		List<Long> ids = new ArrayList<>();
+		for ( RowMap row = maxwell.poll(500); row != null; row = maxwell.poll(500) ) {
+			if ( "replay".equals(row.getTable()) )
+				ids.add((Long) row.getData("id"));
+		}
+		assertEquals("[1, 2, 3, 4]", ids.toString());
+	}
+}
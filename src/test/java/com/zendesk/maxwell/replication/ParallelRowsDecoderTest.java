@@ -0,0 +1,145 @@
+package com.zendesk.maxwell.replication;
+
+import com.github.shyiko.mysql.binlog.event.*;
+import com.zendesk.maxwell.util.ByteBoundedRingBuffer;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+public class ParallelRowsDecoderTest {
+	private final AtomicBoolean mustStop = new AtomicBoolean(false);
+	private ParallelRowsDecoder decoder;
+
+	@After
+	public void tearDown() {
+		if ( decoder != null )
+			decoder.stop();
+	}
+
+	/*
+	   decodes a raw event into a WriteRowsEventData carrying its table id, after sleeping
+	   for as many milliseconds as the first byte of its body says.
+	 */
+	private static class StubDecoder extends ParallelRowsDecoder {
+		private final CountDownLatch gate;
+
+		StubDecoder(int threads, ByteBoundedRingBuffer<BinlogConnectorEvent> queue, AtomicBoolean mustStop, CountDownLatch gate) {
+			super(threads, queue, mustStop);
+			this.gate = gate;
+		}
+
+		@Override
+		EventData decodeRows(EventType type, TableMapEventData tableMapData, RawRowsEventData raw) throws Exception {
+			gate.await();
+			Thread.sleep(raw.getBody()[0]);
+			if ( raw.getTableId() < 0 )
+				throw new IllegalStateException("bad rows event");
+
+			WriteRowsEventData data = new WriteRowsEventData();
+			data.setTableId(raw.getTableId());
+			return data;
+		}
+	}
+
+	private static BinlogConnectorEvent rawEvent(long tableId, int decodeMillis) {
+		EventHeaderV4 header = new EventHeaderV4();
+		header.setEventType(EventType.EXT_WRITE_ROWS);
+		RawRowsEventData data = new RawRowsEventData(tableId, new byte[] { (byte) decodeMillis });
+		return new BinlogConnectorEvent(new Event(header, data), "mysql-bin.000001", (String) null, null);
+	}
+
+	private static long tableIdOf(BinlogConnectorEvent ep) {
+		return ((WriteRowsEventData) ep.getEvent().getData()).getTableId();
+	}
+
+	@Test
+	public void testKeepsSubmissionOrderWhenLaterEventsFinishFirst() throws Exception {
+		ByteBoundedRingBuffer<BinlogConnectorEvent> queue =
+			new ByteBoundedRingBuffer<>(64, 1000000, ByteBoundedRingBuffer.WaitStrategy.BLOCKING);
+		decoder = new StubDecoder(4, queue, mustStop, new CountDownLatch(0));
+
+		// the first event takes longest to decode, the last finishes first
+		for ( int i = 0; i < 8; i++ )
+			decoder.submit(rawEvent(i, 80 - i * 10), 10);
+
+		List<Long> tableIds = new ArrayList<>();
+		while ( tableIds.size() < 8 ) {
+			BinlogConnectorEvent ep = queue.poll(5, TimeUnit.SECONDS);
+			assertNotNull(ep);
+			tableIds.add(tableIdOf(ep));
+		}
+
+		for ( int i = 0; i < 8; i++ )
+			assertThat(tableIds.get(i), is((long) i));
+		decoder.checkError();
+	}
+
+	@Test
+	public void testRethrowsDecodeErrors() throws Exception {
+		ByteBoundedRingBuffer<BinlogConnectorEvent> queue =
+			new ByteBoundedRingBuffer<>(64, 1000000, ByteBoundedRingBuffer.WaitStrategy.BLOCKING);
+		decoder = new StubDecoder(2, queue, mustStop, new CountDownLatch(0));
+
+		decoder.submit(rawEvent(1, 0), 10);
+		decoder.submit(rawEvent(-1, 0), 10);
+		decoder.submit(rawEvent(2, 0), 10);
+
+		assertThat(tableIdOf(queue.poll(5, TimeUnit.SECONDS)), is(1L));
+
+		Exception error = null;
+		long deadline = System.currentTimeMillis() + 5000;
+		while ( error == null && System.currentTimeMillis() < deadline ) {
+			try {
+				decoder.checkError();
+				Thread.sleep(10);
+			} catch ( IllegalStateException e ) {
+				error = e;
+			}
+		}
+
+		assertNotNull(error);
+		assertThat(error.getMessage(), is("bad rows event"));
+		// nothing past the failed event is handed on
+		assertNull(queue.poll(100, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void testPendingEventsCountAgainstTheQueueByteLimit() throws Exception {
+		ByteBoundedRingBuffer<BinlogConnectorEvent> queue =
+			new ByteBoundedRingBuffer<>(64, 100, ByteBoundedRingBuffer.WaitStrategy.BLOCKING);
+		CountDownLatch gate = new CountDownLatch(1);
+		decoder = new StubDecoder(2, queue, mustStop, gate);
+
+		Thread submitter = new Thread(() -> {
+			try {
+				for ( int i = 0; i < 3; i++ )
+					decoder.submit(rawEvent(i, 0), 60);
+			} catch ( InterruptedException e ) { }
+		});
+		submitter.start();
+
+		// the first event is always taken; the second would put 120 bytes in flight
+		Thread.sleep(200);
+		assertTrue(submitter.isAlive());
+		assertThat(decoder.getPendingBytes(), is(60L));
+
+		gate.countDown();
+		for ( int i = 0; i < 3; i++ ) {
+			BinlogConnectorEvent ep = queue.poll(5, TimeUnit.SECONDS);
+			assertThat(tableIdOf(ep), is((long) i));
+			// an event is counted twice for a moment while it's handed to the queue
+			assertTrue(decoder.getPendingBytes() + queue.getBytes() <= 120);
+		}
+
+		submitter.join(5000);
+		assertFalse(submitter.isAlive());
+	}
+}
@@ -0,0 +1,19 @@
+package com.zendesk.maxwell.replication;
+
+import com.github.shyiko.mysql.binlog.io.ByteArrayInputStream;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class RawRowsEventDataDeserializerTest {
+	@Test
+	public void testCapturesBodyAndTableId() throws Exception {
+		byte[] body = { 0x2a, 0x01, 0x00, 0x00, 0x00, 0x01, 0x01, 0x00, 0x02, 0x03 };
+
+		RawRowsEventData data = new RawRowsEventDataDeserializer().deserialize(new ByteArrayInputStream(body));
+
+		assertThat(data.getTableId(), is(0x010000000000L + 0x012aL));
+		assertThat(data.getBody(), is(body));
+	}
+}
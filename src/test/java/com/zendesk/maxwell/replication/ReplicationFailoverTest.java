@@ -0,0 +1,61 @@
+package com.zendesk.maxwell.replication;
+
+import com.zendesk.maxwell.MaxwellMysqlConfig;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ReplicationFailoverTest {
+	private static final String UUID = "de278ad0-2106-11e4-9f8e-6edd0ca20947";
+
+	private ReplicationFailover.Candidate candidate(int index, String gtidExecuted, long heartbeat) {
+		ReplicationFailover.Candidate c = new ReplicationFailover.Candidate(index, new MaxwellMysqlConfig("host" + index, 3306, null, "maxwell", "maxwell", null));
+		c.gtidExecuted = gtidExecuted;
+		c.heartbeat = heartbeat;
+		return c;
+	}
+
+	private List<Integer> indexes(List<ReplicationFailover.Candidate> ranked) {
+		ArrayList<Integer> indexes = new ArrayList<>();
+		for ( ReplicationFailover.Candidate c : ranked )
+			indexes.add(c.index);
+		return indexes;
+	}
+
+	@Test
+	public void testRanksByGtidSet() {
+		List<ReplicationFailover.Candidate> ranked = ReplicationFailover.rank(Arrays.asList(
+			candidate(0, UUID + ":1-10", 0),
+			candidate(1, UUID + ":1-12", 0),
+			candidate(2, UUID + ":1-11", 0)
+		), 0, true);
+
+		assertEquals(Arrays.asList(1, 2, 0), indexes(ranked));
+	}
+
+	@Test
+	public void testRanksByHeartbeat() {
+		List<ReplicationFailover.Candidate> ranked = ReplicationFailover.rank(Arrays.asList(
+			candidate(0, null, 100),
+			candidate(1, null, 300),
+			candidate(2, null, 200)
+		), 0, false);
+
+		assertEquals(Arrays.asList(1, 2, 0), indexes(ranked));
+	}
+
+	@Test
+	public void testPrefersCurrentThenConfiguredOrderOnTies() {
+		List<ReplicationFailover.Candidate> ranked = ReplicationFailover.rank(Arrays.asList(
+			candidate(0, UUID + ":1-10", 0),
+			candidate(1, UUID + ":1-10", 0),
+			candidate(2, UUID + ":1-10", 0)
+		), 2, true);
+
+		assertEquals(Arrays.asList(2, 0, 1), indexes(ranked));
+	}
+}
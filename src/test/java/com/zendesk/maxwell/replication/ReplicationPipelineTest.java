@@ -0,0 +1,132 @@
+package com.zendesk.maxwell.replication;
+
+import com.zendesk.maxwell.monitoring.NoOpMetrics;
+import com.zendesk.maxwell.row.RowMap;
+import com.zendesk.maxwell.schema.Schema;
+import com.zendesk.maxwell.schema.SchemaStoreException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ReplicationPipelineTest {
+	private class ListReplicator extends AbstractReplicator {
+		private final LinkedList<RowMap> rows = new LinkedList<>();
+		private Exception failure;
+		private int calls;
+
+		ListReplicator() {
+			super("maxwell", null, "maxwell", null, new NoOpMetrics(), null, null);
+		}
+
+		@Override
+		public synchronized RowMap getRow() throws Exception {
+			calls++;
+			if ( rows.isEmpty() ) {
+				if ( failure != null )
+					throw failure;
+				return null;
+			}
+			return rows.removeFirst();
+		}
+
+		@Override
+		public void startReplicator() throws Exception { }
+
+		@Override
+		public Schema getSchema() throws SchemaStoreException {
+			return null;
+		}
+	}
+
+	// tagged with `i` seconds as its timestamp, which getTimestamp() reads back
+	private RowMap row(long i) {
+		return new RowMap("insert", "db", "tbl", i * 1000, new ArrayList<String>(), null);
+	}
+
+	@Test
+	public void testPreservesOrderThroughSmallQueue() throws Exception {
+		ListReplicator replicator = new ListReplicator();
+		for ( long i = 0; i < 100; i++ )
+			replicator.rows.add(row(i));
+
+		ReplicationPipeline pipeline = new ReplicationPipeline(replicator, 3);
+		pipeline.start();
+
+		for ( long i = 0; i < 100; i++ ) {
+			RowMap r = pipeline.poll(5, TimeUnit.SECONDS);
+			assertNotNull(r);
+			assertEquals(i, (long) r.getTimestamp());
+		}
+
+		pipeline.stop();
+	}
+
+	@Test
+	public void testPollsBoundedBatchesInOrder() throws Exception {
+		ListReplicator replicator = new ListReplicator();
+		for ( long i = 0; i < 100; i++ )
+			replicator.rows.add(row(i));
+
+		ReplicationPipeline pipeline = new ReplicationPipeline(replicator, 20);
+		pipeline.start();
+
+		long next = 0;
+		while ( next < 100 ) {
+			List<RowMap> batch = pipeline.poll(4, 5, TimeUnit.SECONDS);
+			assertFalse(batch.isEmpty());
+			assertTrue(batch.size() <= 4);
+			for ( RowMap r : batch )
+				assertEquals(next++, (long) r.getTimestamp());
+		}
+
+		pipeline.stop();
+	}
+
+	@Test
+	public void testRethrowsRowBuilderExceptionAfterDraining() throws Exception {
+		ListReplicator replicator = new ListReplicator();
+		replicator.rows.add(row(1));
+		replicator.failure = new RuntimeException("boom");
+
+		ReplicationPipeline pipeline = new ReplicationPipeline(replicator, 10);
+		pipeline.start();
+
+		assertEquals(1L, (long) pipeline.poll(5, TimeUnit.SECONDS).getTimestamp());
+
+		Exception thrown = null;
+		for ( int i = 0; i < 50 && thrown == null; i++ ) {
+			try {
+				pipeline.poll(100, TimeUnit.MILLISECONDS);
+			} catch ( Exception e ) {
+				thrown = e;
+			}
+		}
+
+		assertNotNull(thrown);
+		assertEquals("boom", thrown.getMessage());
+		pipeline.stop();
+	}
+
+	@Test
+	public void testBacksOffWhileReplicatorIsEmpty() throws Exception {
+		ListReplicator replicator = new ListReplicator();
+		ReplicationPipeline pipeline = new ReplicationPipeline(replicator, 10);
+		pipeline.start();
+
+		assertNull(pipeline.poll(500, TimeUnit.MILLISECONDS));
+		synchronized ( replicator ) {
+			// about 15 calls with the backoff; millions without it
+			assertTrue("called " + replicator.calls + " times", replicator.calls < 100);
+			replicator.rows.add(row(1));
+		}
+
+		// still picks rows up once there are some
+		assertEquals(1L, (long) pipeline.poll(5, TimeUnit.SECONDS).getTimestamp());
+		pipeline.stop();
+	}
+}
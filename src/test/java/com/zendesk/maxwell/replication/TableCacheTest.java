@@ -0,0 +1,116 @@
+package com.zendesk.maxwell.replication;
+
+import com.zendesk.maxwell.CaseSensitivity;
+import com.zendesk.maxwell.monitoring.NoOpMetrics;
+import com.zendesk.maxwell.schema.Database;
+import com.zendesk.maxwell.schema.Schema;
+import com.zendesk.maxwell.schema.Table;
+import com.zendesk.maxwell.schema.columndef.ColumnDef;
+import com.zendesk.maxwell.schema.ddl.*;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+public class TableCacheTest {
+	private Schema schema;
+	private TableCache cache;
+
+	private static Table buildTable(String database, String name) {
+		List<ColumnDef> columns = new ArrayList<>();
+		columns.add(ColumnDef.build("id", null, "int", 0, true, null, null));
+		return new Table(database, name, "utf8", columns, Arrays.asList("id"));
+	}
+
+	@Before
+	public void setUp() {
+		Database shard1 = new Database("shard_1", "utf8");
+		shard1.addTable(buildTable("shard_1", "users"));
+		shard1.addTable(buildTable("shard_1", "orders"));
+		shard1.addTable(buildTable("shard_1", "accounts"));
+
+		Database shard2 = new Database("shard_2", "utf8");
+		shard2.addTable(buildTable("shard_2", "users"));
+
+		schema = new Schema(new ArrayList<>(Arrays.asList(shard1, shard2)), "utf8", CaseSensitivity.CASE_SENSITIVE);
+		cache = new TableCache("maxwell", new NoOpMetrics());
+
+		cache.processEvent(schema, null, 1, "shard_1", "users");
+		cache.processEvent(schema, null, 2, "shard_1", "orders");
+		cache.processEvent(schema, null, 3, "shard_2", "users");
+	}
+
+	private void invalidate(ResolvedSchemaChange change) {
+		cache.invalidate(Collections.singletonList(change));
+	}
+
+	@Test
+	public void testAlterForgetsTheTable() {
+		Table users = schema.findDatabase("shard_1").findTable("users");
+		invalidate(new ResolvedTableAlter("shard_1", "users", users, buildTable("shard_1", "users")));
+
+		assertThat(cache.getEntry(1), nullValue());
+		assertThat(cache.getEntry(2), notNullValue());
+		assertThat(cache.getEntry(3), notNullValue());
+	}
+
+	@Test
+	public void testDropForgetsTheTable() {
+		invalidate(new ResolvedTableDrop("shard_1", "orders"));
+
+		assertThat(cache.getEntry(1), notNullValue());
+		assertThat(cache.getEntry(2), nullValue());
+	}
+
+	@Test
+	public void testRenameForgetsBothNames() {
+		// a stale entry for the rename's target, eg. from before it was dropped
+		cache.processEvent(schema, null, 4, "shard_1", "accounts");
+
+		Table users = schema.findDatabase("shard_1").findTable("users");
+		invalidate(new ResolvedTableAlter("shard_1", "users", users, buildTable("shard_1", "accounts")));
+
+		assertThat(cache.getEntry(1), nullValue());
+		assertThat(cache.getEntry(4), nullValue());
+		assertThat(cache.getEntry(2), notNullValue());
+	}
+
+	@Test
+	public void testDatabaseDropForgetsItsTables() {
+		invalidate(new ResolvedDatabaseDrop("shard_1"));
+
+		assertThat(cache.getEntry(1), nullValue());
+		assertThat(cache.getEntry(2), nullValue());
+		assertThat(cache.getEntry(3), notNullValue());
+		assertThat(cache.getTable(3).getDatabase(), is("shard_2"));
+	}
+
+	@Test
+	public void testUnrelatedChangesKeepEntries() {
+		invalidate(new ResolvedTableDrop("shard_2", "orders"));
+		invalidate(new ResolvedTableDrop("other", "users"));
+
+		Table cached = cache.getTable(1);
+		cache.processEvent(schema, null, 1, "shard_1", "users");
+
+		assertThat(cache.getTable(1), sameInstance(cached));
+		assertThat(cache.getEntry(2), notNullValue());
+		assertThat(cache.getEntry(3), notNullValue());
+	}
+
+	@Test
+	public void testTableIdReusedForAnotherTable() {
+		// after a ROTATE (eg. a server restart) the same id can map to a different table
+		cache.processEvent(schema, null, 1, "shard_1", "accounts");
+
+		assertThat(cache.getTable(1).getName(), is("accounts"));
+		assertThat(cache.getTable(1), sameInstance(schema.findDatabase("shard_1").findTable("accounts")));
+		assertThat(cache.getTable(2).getName(), is("orders"));
+	}
+}
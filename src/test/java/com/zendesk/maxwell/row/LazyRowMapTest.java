@@ -0,0 +1,199 @@
+package com.zendesk.maxwell.row;
+
+import com.zendesk.maxwell.producer.MaxwellOutputConfig;
+import com.zendesk.maxwell.replication.BinlogPosition;
+import com.zendesk.maxwell.replication.Position;
+import com.zendesk.maxwell.schema.Table;
+import com.zendesk.maxwell.schema.columndef.ColumnDef;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.regex.Pattern;
+
+public class LazyRowMapTest {
+	private static final Position POSITION = new Position(new BinlogPosition(1L, "binlog-0001"), 0L);
+
+	private Table buildTable() {
+		ArrayList<ColumnDef> columns = new ArrayList<>();
+		columns.add(ColumnDef.build("id", null, "int", 0, true, null, null));
+		columns.add(ColumnDef.build("name", "utf8", "varchar", 1, false, null, 255L));
+		columns.add(ColumnDef.build("email", "utf8", "varchar", 2, false, null, 255L));
+		return new Table("MyDatabase", "MyTable", "utf8", columns, Arrays.asList("id"));
+	}
+
+	private BitSet bits(int... indexes) {
+		BitSet b = new BitSet();
+		for ( int i : indexes )
+			b.set(i);
+		return b;
+	}
+
+	@Test
+	public void testConvertsSingleColumns() throws Exception {
+		LazyRowMap row = new LazyRowMap("insert", buildTable(), 1234L, POSITION, null,
+			new Serializable[] { 1, "bob", "bob@example.com" }, bits(0, 1, 2));
+
+		Assert.assertEquals(1L, row.getData("id"));
+		Assert.assertEquals("bob", row.getData("name"));
+		Assert.assertTrue(row.hasData("email"));
+		Assert.assertFalse(row.hasData("missing"));
+		Assert.assertNull(row.getData("missing"));
+		Assert.assertEquals("1", row.pkAsConcatString());
+
+		Assert.assertEquals(Arrays.asList("id", "name", "email"), new ArrayList<>(row.getData().keySet()));
+		Assert.assertEquals("bob@example.com", row.getData().get("email"));
+	}
+
+	@Test
+	public void testUpdateOnlyKeepsChangedOldColumns() throws Exception {
+		LazyRowMap row = new LazyRowMap("update", buildTable(), 1234L, POSITION, null,
+			new Serializable[] { 1, "robert", "bob@example.com" }, bits(0, 1, 2));
+		row.setOldImage(new Serializable[] { 1, "bob", "bob@example.com" }, bits(0, 1, 2));
+
+		Assert.assertEquals("robert", row.getData("name"));
+		Assert.assertEquals("bob", row.getOldData("name"));
+		Assert.assertEquals(1, row.getOldData().size());
+		Assert.assertEquals(3, row.getData().size());
+	}
+
+	@Test
+	public void testMinimalBeforeImageGoesToData() throws Exception {
+		LazyRowMap row = new LazyRowMap("update", buildTable(), 1234L, POSITION, null,
+			new Serializable[] { "robert" }, bits(1));
+		row.setOldImage(new Serializable[] { 1 }, bits(0));
+
+		Assert.assertEquals(1L, row.getData("id"));
+		Assert.assertTrue(row.hasData("id"));
+		Assert.assertEquals(2, row.getData().size());
+		Assert.assertTrue(row.getOldData().isEmpty());
+	}
+
+	@Test
+	public void testMutationAfterLazyReads() throws Exception {
+		LazyRowMap row = new LazyRowMap("insert", buildTable(), 1234L, POSITION, null,
+			new Serializable[] { 1, "bob", null }, bits(0, 1, 2));
+
+		Assert.assertEquals("bob", row.getData("name"));
+		row.putData("name", "alice");
+
+		Assert.assertEquals("alice", row.getData("name"));
+		Assert.assertTrue(row.hasData("email"));
+		Assert.assertNull(row.getData("email"));
+	}
+
+	@Test
+	public void testExcludedColumns() throws Exception {
+		Table table = buildTable();
+		List<Pattern> patterns = Arrays.asList(Pattern.compile("e.*"));
+		BitSet excluded = table.getExcludedColumns(patterns);
+		Assert.assertEquals(bits(2), excluded);
+		Assert.assertSame(excluded, table.getExcludedColumns(patterns));
+
+		LazyRowMap row = new LazyRowMap("update", table, 1234L, POSITION, null,
+			new Serializable[] { 1, "robert", "robert@example.com" }, bits(0, 1, 2), excluded);
+		row.setOldImage(new Serializable[] { 1, "bob", "bob@example.com" }, bits(0, 1, 2));
+		row.setExcludedColumnPatterns(patterns);
+
+		// still readable on its own, for filters and keys
+		Assert.assertEquals("robert@example.com", row.getData("email"));
+
+		MaxwellOutputConfig outputConfig = new MaxwellOutputConfig();
+		outputConfig.excludeColumns = patterns;
+		String json = row.toJSON(outputConfig);
+
+		Assert.assertFalse(json.contains("email"));
+		Assert.assertEquals(Arrays.asList("id", "name"), new ArrayList<>(row.getData().keySet()));
+		Assert.assertEquals(Arrays.asList("name"), new ArrayList<>(row.getOldData().keySet()));
+	}
+
+	@Test
+	public void testExcludedColumnsRecomputedOnAlter() throws Exception {
+		Table table = buildTable();
+		List<Pattern> patterns = Arrays.asList(Pattern.compile("e.*"));
+		Assert.assertEquals(bits(2), table.getExcludedColumns(patterns));
+
+		table.addColumn(0, ColumnDef.build("extra", "utf8", "varchar", 0, false, null, 255L));
+		Assert.assertEquals(bits(0, 3), table.getExcludedColumns(patterns));
+	}
+
+	@Test
+	public void testKeyCaseUsesTableFieldNames() throws Exception {
+		Table table = buildTable();
+		LazyRowMap row = new LazyRowMap("update", table, 1234L, POSITION, null,
+			new Serializable[] { 1, "robert", "bob@example.com" }, bits(0, 1, 2));
+		row.setOldImage(new Serializable[] { 1, "bob", "bob@example.com" }, bits(0, 1, 2));
+
+		MaxwellOutputConfig outputConfig = new MaxwellOutputConfig();
+		outputConfig.keyCase = "upper";
+		String json = row.toJSON(outputConfig);
+		Assert.assertTrue(json.contains("\"data\":{\"ID\":1,\"NAME\":\"robert\",\"EMAIL\":\"bob@example.com\"}"));
+		Assert.assertTrue(json.contains("\"old\":{\"NAME\":\"bob\"}"));
+		Assert.assertTrue(row.pkToJson(RowMap.KeyFormat.HASH).contains("\"pk.id\":1"));
+
+		outputConfig.keyCase = "lower";
+		Assert.assertSame(table.getJSONFieldNames("lower"), table.getJSONFieldNames("lower"));
+		Assert.assertTrue(row.toJSON(outputConfig).contains("\"data\":{\"id\":1,\"name\":\"robert\",\"email\":\"bob@example.com\"}"));
+	}
+
+	@Test
+	public void testFieldNamesRecomputedOnAlter() throws Exception {
+		Table table = buildTable();
+		JSONFieldNames names = table.getJSONFieldNames("upper");
+		Assert.assertNull(names.column("extra"));
+
+		table.addColumn(0, ColumnDef.build("extra", "utf8", "varchar", 0, false, null, 255L));
+		Assert.assertEquals("EXTRA", table.getJSONFieldNames("upper").column("extra").getValue());
+	}
+
+	@Test
+	public void testColumnarViews() throws Exception {
+		LazyRowMap row = new LazyRowMap("update", buildTable(), 1234L, POSITION, null,
+			new Serializable[] { 1, "robert" }, bits(0, 1));
+		row.setOldImage(new Serializable[] { 1, "bob" }, bits(0, 1));
+
+		row.putData("extra", "value");
+		row.putData("email", "bob@example.com");
+		row.putOldData("email", null);
+
+		Assert.assertEquals(Arrays.asList("id", "name", "email", "extra"), new ArrayList<>(row.getData().keySet()));
+		Assert.assertEquals(Arrays.asList("name", "email"), new ArrayList<>(row.getOldData().keySet()));
+		Assert.assertTrue(row.hasData("extra"));
+		Assert.assertEquals("value", row.getData("extra"));
+		Assert.assertNull(row.getOldData("email"));
+
+		String json = row.toJSON();
+		Assert.assertTrue(json.contains("\"data\":{\"id\":1,\"name\":\"robert\",\"email\":\"bob@example.com\",\"extra\":\"value\"}"));
+		Assert.assertTrue(json.contains("\"old\":{\"name\":\"bob\",\"email\":null}"));
+	}
+
+	@Test
+	public void testJavaSerializationKeepsConvertedColumns() throws Exception {
+		LazyRowMap row = new LazyRowMap("update", buildTable(), 1234L, POSITION, null,
+			new Serializable[] { 1, "robert", "bob@example.com" }, bits(0, 1, 2));
+		row.setOldImage(new Serializable[] { 1, "bob", "bob@example.com" }, bits(0, 1, 2));
+		row.putData("extra", "value");
+		String json = row.toJSON();
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try ( ObjectOutputStream out = new ObjectOutputStream(bytes) ) {
+			out.writeObject(row);
+		}
+		RowMap copy;
+		try ( ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())) ) {
+			copy = (RowMap) in.readObject();
+		}
+
+		Assert.assertEquals(json, copy.toJSON());
+		Assert.assertEquals(json, row.toJSON());
+		Assert.assertEquals("bob", copy.getOldData("name"));
+	}
+}
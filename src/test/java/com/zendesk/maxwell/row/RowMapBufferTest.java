@@ -6,6 +6,7 @@ import com.zendesk.maxwell.replication.Position;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.hamcrest.CoreMatchers.*;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -27,4 +28,26 @@ public class RowMapBufferTest extends TestWithNameLogging {
 		assertThat(buffer.removeFirst().getTimestamp(), is(2L));
 		assertThat(buffer.removeFirst().getTimestamp(), is(3L));
 	}
+
+	@Test
+	public void TestCountsBufferedBytes() throws Exception {
+		AtomicLong bufferedBytes = new AtomicLong();
+		RowMapBuffer buffer = new RowMapBuffer(100, 1024 * 1024, bufferedBytes);
+
+		for ( int i = 0; i < 3; i++ ) {
+			RowMap r = new RowMap("insert", "foo", "bar", 1000L * i, new ArrayList<String>(), new Position(new BinlogPosition(3, "mysql.1"), 0L));
+			r.putData("blob", new byte[400 * 1024]);
+			buffer.add(r);
+		}
+
+		// well under 100 rows, but not under a megabyte
+		assertThat(buffer.inMemorySize(), is(2L));
+		assertThat(bufferedBytes.get(), is(buffer.getMemorySize()));
+		assertThat(buffer.getMemorySize() > 700 * 1024, is(true));
+
+		buffer.removeFirst();
+		buffer.removeFirst();
+		buffer.removeFirst();
+		assertThat(bufferedBytes.get(), is(0L));
+	}
 }
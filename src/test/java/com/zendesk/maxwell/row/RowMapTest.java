@@ -8,7 +8,11 @@ import com.zendesk.maxwell.replication.Position;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.regex.Pattern;
 
@@ -251,6 +255,56 @@ public class RowMapTest {
 				"\"interests\":[\"hiking\",\"programming\"]}}", rowMap.toJSON(outputConfig));
 	}
 
+	@Test
+	public void testExcludedColumnsStayInRow() throws Exception {
+		RowMap rowMap = new RowMap("update", "MyDatabase", "MyTable", TIMESTAMP_MILLISECONDS,
+				Arrays.asList("id"), POSITION);
+
+		rowMap.putData("id", "9001");
+		rowMap.putData("name", "foo");
+		rowMap.putOldData("id", "9000");
+
+		MaxwellOutputConfig outputConfig = new MaxwellOutputConfig();
+		outputConfig.excludeColumns = Arrays.asList(Pattern.compile("id"));
+
+		Assert.assertEquals("{\"database\":\"MyDatabase\",\"table\":\"MyTable\",\"type\":\"update\"," +
+				"\"ts\":1496712943,\"data\":{\"name\":\"foo\"}}", rowMap.toJSON(outputConfig));
+
+		// the key is unchanged by writing the row
+		Assert.assertEquals("{\"database\":\"MyDatabase\",\"table\":\"MyTable\",\"pk.id\":\"9001\"}",
+				rowMap.pkToJson(RowMap.KeyFormat.HASH));
+	}
+
+	@Test
+	public void testToJSONBytesMatchesToJSON() throws Exception {
+		RowMap rowMap = new RowMap("insert", "MyDatabase", "MyTable", TIMESTAMP_MILLISECONDS,
+				new ArrayList<String>(), POSITION);
+		rowMap.putData("name", "J\u00f6rg \u2603");
+
+		MaxwellOutputConfig outputConfig = getMaxwellOutputConfig();
+		String json = rowMap.toJSON(outputConfig);
+		byte[] expected = json.getBytes(StandardCharsets.UTF_8);
+
+		Assert.assertArrayEquals(expected, rowMap.toJSONBytes(outputConfig));
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Assert.assertEquals(expected.length, rowMap.writeJSONTo(out, outputConfig));
+		Assert.assertArrayEquals(expected, out.toByteArray());
+
+		ByteBuffer buffer = ByteBuffer.allocate(expected.length + 10);
+		buffer.put((byte) 1);
+		Assert.assertEquals(expected.length, rowMap.writeJSONTo(buffer, outputConfig));
+		Assert.assertEquals(expected.length + 1, buffer.position());
+
+		try {
+			rowMap.writeJSONTo(ByteBuffer.allocate(4), outputConfig);
+			Assert.fail("expected an overflow");
+		} catch ( BufferOverflowException e ) { }
+
+		// the per-thread buffer mustn't leak into the next row
+		Assert.assertEquals(json, rowMap.toJSON(outputConfig));
+	}
+
 	private MaxwellOutputConfig getMaxwellOutputConfig(Pattern... patterns) {
 		MaxwellOutputConfig outputConfig = new MaxwellOutputConfig();
 
@@ -0,0 +1,78 @@
+package com.zendesk.maxwell.row;
+
+import com.zendesk.maxwell.producer.MaxwellOutputConfig;
+import com.zendesk.maxwell.replication.BinlogPosition;
+import com.zendesk.maxwell.replication.Position;
+import com.zendesk.maxwell.schema.Table;
+import com.zendesk.maxwell.schema.columndef.ColumnDef;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares writing rows with the generic row writer against the per-table serializers
+ * (output_table_serializers).  Not a unit test; run it with
+ *
+ *   mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test \
+ *     -Dexec.args="-classpath %classpath org.openjdk.jmh.Main RowSerializerBenchmark"
+ *
+ * JMH forks a fresh JVM for each run, which only sees the test classpath if it's
+ * on the command line that started JMH; exec:java would leave it out.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class RowSerializerBenchmark {
+	private static final Position POSITION = new Position(new BinlogPosition(1L, "binlog-0001"), 0L);
+
+	@Param({ "false", "true" })
+	public boolean tableSerializers;
+
+	private Table table;
+	private BitSet included;
+	private MaxwellOutputConfig outputConfig;
+
+	@Setup
+	public void setup() {
+		ArrayList<ColumnDef> columns = new ArrayList<>();
+		columns.add(ColumnDef.build("id", null, "int", 0, true, null, null));
+		columns.add(ColumnDef.build("account_id", null, "int", 1, true, null, null));
+		columns.add(ColumnDef.build("name", "utf8", "varchar", 2, false, null, 255L));
+		columns.add(ColumnDef.build("email", "utf8", "varchar", 3, false, null, 255L));
+		columns.add(ColumnDef.build("status", null, "enum", 4, false, new String[] { "new", "open", "closed" }, null));
+		columns.add(ColumnDef.build("tags", null, "set", 5, false, new String[] { "a", "b", "c" }, null));
+		columns.add(ColumnDef.build("counter", null, "bigint", 6, false, null, null));
+		columns.add(ColumnDef.build("score", null, "double", 7, false, null, null));
+		columns.add(ColumnDef.build("notes", "utf8", "text", 8, false, null, null));
+		table = new Table("shop", "orders", "utf8", columns, Arrays.asList("id"));
+
+		included = new BitSet();
+		included.set(0, columns.size());
+
+		outputConfig = new MaxwellOutputConfig();
+		outputConfig.tableSerializers = tableSerializers;
+	}
+
+	private LazyRowMap buildRow() {
+		LazyRowMap row = new LazyRowMap("update", table, 1234000L, POSITION, null,
+			new Serializable[] { 1, 42, "bob", "bob@example.com", 2, 5L, 10L, 1.5d, "a longer run of text for a text column" },
+			included);
+		row.setOldImage(
+			new Serializable[] { 1, 42, "bob", "robert@example.com", 1, 5L, 9L, 1.5d, "a longer run of text for a text column" },
+			included
+		);
+		return row;
+	}
+
+	@Benchmark
+	public byte[] toJSONBytes() throws Exception {
+		return buildRow().toJSONBytes(outputConfig);
+	}
+}
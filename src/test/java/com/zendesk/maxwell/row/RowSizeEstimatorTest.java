@@ -0,0 +1,68 @@
+package com.zendesk.maxwell.row;
+
+import com.zendesk.maxwell.replication.BinlogPosition;
+import com.zendesk.maxwell.replication.Position;
+import com.zendesk.maxwell.schema.Table;
+import com.zendesk.maxwell.schema.columndef.ColumnDef;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import static org.junit.Assert.*;
+
+public class RowSizeEstimatorTest {
+	private static final Position POSITION = new Position(new BinlogPosition(1L, "binlog-0001"), 0L);
+
+	@Test
+	public void testValueSizes() {
+		assertEquals(0, RowSizeEstimator.sizeOf(null));
+		assertEquals(24, RowSizeEstimator.sizeOf(1L));
+		assertEquals(16, RowSizeEstimator.sizeOf(1));
+		assertEquals(24 + 24, RowSizeEstimator.sizeOf("abcd"));
+		assertEquals(1024 * 1024 + 16, RowSizeEstimator.sizeOf(new byte[1024 * 1024]));
+		assertEquals(16 + RowSizeEstimator.sizeOf("{\"a\":1}"), RowSizeEstimator.sizeOf(new RawJSONString("{\"a\":1}")));
+
+		assertEquals(40, RowSizeEstimator.sizeOf(new BigDecimal("12.5")));
+		assertTrue(RowSizeEstimator.sizeOf(new BigDecimal("1234567890123456789012345.5")) > 40);
+
+		assertEquals(
+			24 + 24 + 2 * RowSizeEstimator.sizeOf("a"),
+			RowSizeEstimator.sizeOf(Arrays.asList("a", "b"))
+		);
+	}
+
+	@Test
+	public void testConvertedSizes() {
+		ColumnDef text = ColumnDef.build("t", "utf8", "text", 0, false, null, null);
+		ColumnDef blob = ColumnDef.build("b", "binary", "blob", 0, false, null, null);
+		ColumnDef json = ColumnDef.build("j", null, "json", 0, false, null, null);
+		ColumnDef decimal = ColumnDef.build("d", null, "decimal", 0, false, null, null);
+
+		assertEquals(RowSizeEstimator.sizeOf("abcdef"), RowSizeEstimator.convertedSizeOf(text, "abcdef".getBytes()));
+		assertEquals(0, RowSizeEstimator.convertedSizeOf(text, "abcdef"));
+		// blobs come out base64-encoded
+		assertEquals(RowSizeEstimator.sizeOf("AAAAAAAA"), RowSizeEstimator.convertedSizeOf(blob, new byte[6]));
+		assertTrue(RowSizeEstimator.convertedSizeOf(json, new byte[1000]) > 2000);
+		assertEquals(0, RowSizeEstimator.convertedSizeOf(decimal, new BigDecimal("1.5")));
+	}
+
+	@Test
+	public void testCountsBlobsInRowSize() {
+		ArrayList<ColumnDef> columns = new ArrayList<>();
+		columns.add(ColumnDef.build("id", null, "int", 0, true, null, null));
+		columns.add(ColumnDef.build("payload", "binary", "blob", 1, false, null, null));
+		Table table = new Table("shop", "files", "utf8", columns, Arrays.asList("id"));
+
+		BitSet included = new BitSet();
+		included.set(0, 2);
+		LazyRowMap row = new LazyRowMap("insert", table, 1234L, POSITION, null,
+			new Serializable[] { 1, new byte[1024 * 1024] }, included);
+
+		// the raw bytes, plus their base64 text once converted
+		assertTrue(row.getApproximateSize() > 1024 * 1024 * 3);
+	}
+}
@@ -0,0 +1,123 @@
+package com.zendesk.maxwell.row;
+
+import com.zendesk.maxwell.producer.MaxwellOutputConfig;
+import com.zendesk.maxwell.replication.BinlogPosition;
+import com.zendesk.maxwell.replication.Position;
+import com.zendesk.maxwell.schema.Table;
+import com.zendesk.maxwell.schema.columndef.ColumnDef;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+public class TableRowSerializerTest {
+	private static final Position POSITION = new Position(new BinlogPosition(1L, "binlog-0001"), 0L);
+
+	private Table buildTable() {
+		ArrayList<ColumnDef> columns = new ArrayList<>();
+		columns.add(ColumnDef.build("id", null, "int", 0, true, null, null));
+		columns.add(ColumnDef.build("Name", "utf8", "varchar", 1, false, null, 255L));
+		columns.add(ColumnDef.build("counter", null, "bigint", 2, false, null, null));
+		columns.add(ColumnDef.build("tags", null, "set", 3, false, new String[] { "a", "b", "c" }, null));
+		columns.add(ColumnDef.build("doc", null, "json", 4, false, null, null));
+		columns.add(ColumnDef.build("score", null, "double", 5, false, null, null));
+		columns.add(ColumnDef.build("note", "utf8", "varchar", 6, false, null, 255L));
+		return new Table("shop", "orders", "utf8", columns, Arrays.asList("id"));
+	}
+
+	private BitSet bits(int... indexes) {
+		BitSet b = new BitSet();
+		for ( int i : indexes )
+			b.set(i);
+		return b;
+	}
+
+	private LazyRowMap buildUpdate(Table table, BitSet excluded) {
+		LazyRowMap row = new LazyRowMap("update", table, 1234L, POSITION, null,
+			new Serializable[] { 1, "bob \"the builder\"", -1L, 5L, new byte[0], 1.5d, null },
+			bits(0, 1, 2, 3, 4, 5, 6), excluded);
+		row.setOldImage(
+			new Serializable[] { 1, "bob", -1L, 1L, new byte[0], 1.5d, "gone" },
+			bits(0, 1, 2, 3, 4, 5, 6)
+		);
+		return row;
+	}
+
+	private void assertSameJSON(MaxwellOutputConfig outputConfig, LazyRowMap generic, LazyRowMap tableSerialized) throws Exception {
+		outputConfig.tableSerializers = false;
+		String expected = generic.toJSON(outputConfig);
+		outputConfig.tableSerializers = true;
+		assertEquals(expected, tableSerialized.toJSON(outputConfig));
+	}
+
+	@Test
+	public void testMatchesGenericOutput() throws Exception {
+		Table table = buildTable();
+		MaxwellOutputConfig outputConfig = new MaxwellOutputConfig();
+
+		assertSameJSON(outputConfig, buildUpdate(table, null), buildUpdate(table, null));
+
+		outputConfig.includesNulls = false;
+		outputConfig.keyCase = "upper";
+		assertSameJSON(outputConfig, buildUpdate(table, null), buildUpdate(table, null));
+	}
+
+	@Test
+	public void testMatchesGenericOutputForMinimalImages() throws Exception {
+		Table table = buildTable();
+		LazyRowMap[] rows = new LazyRowMap[2];
+		for ( int i = 0; i < rows.length; i++ ) {
+			rows[i] = new LazyRowMap("update", table, 1234L, POSITION, null,
+				new Serializable[] { "robert" }, bits(1));
+			rows[i].setOldImage(new Serializable[] { 1 }, bits(0));
+		}
+
+		assertSameJSON(new MaxwellOutputConfig(), rows[0], rows[1]);
+	}
+
+	@Test
+	public void testSkipsExcludedColumnsAndUsesConvertedValues() throws Exception {
+		Table table = buildTable();
+		List<Pattern> patterns = Arrays.asList(Pattern.compile("n.*", Pattern.CASE_INSENSITIVE));
+		MaxwellOutputConfig outputConfig = new MaxwellOutputConfig();
+		outputConfig.excludeColumns = patterns;
+
+		LazyRowMap generic = buildUpdate(table, table.getExcludedColumns(patterns));
+		LazyRowMap tableSerialized = buildUpdate(table, table.getExcludedColumns(patterns));
+		generic.setExcludedColumnPatterns(patterns);
+		tableSerialized.setExcludedColumnPatterns(patterns);
+		assertEquals(Arrays.asList("a", "c"), tableSerialized.getData("tags"));
+
+		assertSameJSON(outputConfig, generic, tableSerialized);
+		assertFalse(tableSerialized.toJSON(outputConfig).contains("Name"));
+	}
+
+	@Test
+	public void testRowStaysUsableAfterSerializing() throws Exception {
+		MaxwellOutputConfig outputConfig = new MaxwellOutputConfig();
+		outputConfig.tableSerializers = true;
+
+		LazyRowMap row = buildUpdate(buildTable(), null);
+		String json = row.toJSON(outputConfig);
+
+		assertEquals(1L, row.getData("id"));
+		assertEquals(json, row.toJSON(outputConfig));
+		assertEquals("bob", row.getOldData("Name"));
+	}
+
+	@Test
+	public void testKinds() throws Exception {
+		Table table = buildTable();
+		assertEquals(TableRowSerializer.Kind.LONG, TableRowSerializer.kindOf(table.findColumn("id")));
+		assertEquals(TableRowSerializer.Kind.STRING, TableRowSerializer.kindOf(table.findColumn("Name")));
+		assertEquals(TableRowSerializer.Kind.OBJECT, TableRowSerializer.kindOf(table.findColumn("counter")));
+		assertEquals(TableRowSerializer.Kind.STRING_LIST, TableRowSerializer.kindOf(table.findColumn("tags")));
+		assertEquals(TableRowSerializer.Kind.RAW_JSON, TableRowSerializer.kindOf(table.findColumn("doc")));
+	}
+}
@@ -0,0 +1,100 @@
+package com.zendesk.maxwell.row.avro;
+
+import com.zendesk.maxwell.producer.MaxwellOutputConfig;
+import com.zendesk.maxwell.replication.BinlogPosition;
+import com.zendesk.maxwell.replication.Position;
+import com.zendesk.maxwell.row.LazyRowMap;
+import com.zendesk.maxwell.row.RowMap;
+import com.zendesk.maxwell.schema.Table;
+import com.zendesk.maxwell.schema.columndef.ColumnDef;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericRecord;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class AvroRowEncoderTest {
+	private static final Position POSITION = new Position(new BinlogPosition(1L, "binlog-0001"), 0L);
+
+	private Table buildTable(String... extraColumns) {
+		ArrayList<ColumnDef> columns = new ArrayList<>();
+		columns.add(ColumnDef.build("id", null, "int", 0, true, null, null));
+		columns.add(ColumnDef.build("user name", "utf8", "varchar", 1, false, null, 255L));
+		columns.add(ColumnDef.build("counter", null, "bigint", 2, false, null, null));
+		columns.add(ColumnDef.build("tags", null, "set", 3, false, new String[] { "a", "b", "c" }, null));
+		for ( String name : extraColumns )
+			columns.add(ColumnDef.build(name, "utf8", "varchar", columns.size(), false, null, 255L));
+		return new Table("shop", "orders", "utf8", columns, Arrays.asList("id"));
+	}
+
+	private LazyRowMap buildRow(Table table) {
+		BitSet included = new BitSet();
+		included.set(0, 4);
+		return new LazyRowMap("insert", table, 1234000L, POSITION, null,
+			new Serializable[] { 1, "bob", -1L, 5L }, included);
+	}
+
+	@Test
+	public void testRoundTripsTypedColumns() throws Exception {
+		LocalAvroSchemaRegistry registry = new LocalAvroSchemaRegistry();
+		AvroRowEncoder encoder = new AvroRowEncoder(registry, new MaxwellOutputConfig());
+
+		GenericRecord record = AvroRowEncoder.decode(encoder.encode(buildRow(buildTable())), registry);
+		assertEquals("shop", record.get("database").toString());
+		assertEquals("orders", record.get("table").toString());
+		assertEquals("insert", record.get("type").toString());
+		assertEquals(1234L, record.get("ts"));
+
+		GenericRecord data = (GenericRecord) record.get("data");
+		assertEquals(1, data.get("id"));
+		assertEquals("bob", data.get("user_name").toString());
+		assertEquals(new BigInteger("18446744073709551615"), new BigInteger(((ByteBuffer) data.get("counter")).array()));
+		assertEquals("[a, c]", data.get("tags").toString());
+		assertNull(record.get("old"));
+
+		Schema.Field field = data.getSchema().getField("user_name");
+		assertEquals("user name", field.getProp("mysql.column"));
+	}
+
+	@Test
+	public void testReusesSchemaUntilTableChanges() throws Exception {
+		LocalAvroSchemaRegistry registry = new LocalAvroSchemaRegistry();
+		AvroRowEncoder encoder = new AvroRowEncoder(registry, new MaxwellOutputConfig());
+		Table table = buildTable();
+
+		byte[] first = encoder.encode(buildRow(table));
+		byte[] second = encoder.encode(buildRow(table));
+		assertEquals(ByteBuffer.wrap(first).getInt(1), ByteBuffer.wrap(second).getInt(1));
+
+		// what an ALTER TABLE leaves behind: a new definition with another column
+		byte[] altered = encoder.encode(buildRow(buildTable("note")));
+		assertNotEquals(ByteBuffer.wrap(first).getInt(1), ByteBuffer.wrap(altered).getInt(1));
+
+		GenericRecord record = AvroRowEncoder.decode(altered, registry);
+		assertNull(((GenericRecord) record.get("data")).get("note"));
+	}
+
+	@Test
+	public void testFallsBackToGenericSchemaWithoutTable() throws Exception {
+		LocalAvroSchemaRegistry registry = new LocalAvroSchemaRegistry();
+		AvroRowEncoder encoder = new AvroRowEncoder(registry, new MaxwellOutputConfig());
+
+		RowMap row = new RowMap("update", "shop", "orders", 1234000L, Arrays.asList("id"), POSITION);
+		row.putData("id", 1L);
+		row.putOldData("id", 2L);
+
+		GenericRecord record = AvroRowEncoder.decode(encoder.encode(row), registry);
+		assertEquals("1", ((Map<?, ?>) record.get("data")).values().iterator().next().toString());
+		List<?> oldColumns = (List<?>) record.get("old_columns");
+		assertEquals("id", oldColumns.get(0).toString());
+	}
+}
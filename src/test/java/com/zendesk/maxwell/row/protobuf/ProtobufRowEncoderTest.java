@@ -0,0 +1,127 @@
+package com.zendesk.maxwell.row.protobuf;
+
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.DynamicMessage;
+import com.zendesk.maxwell.producer.MaxwellOutputConfig;
+import com.zendesk.maxwell.replication.BinlogPosition;
+import com.zendesk.maxwell.replication.Position;
+import com.zendesk.maxwell.row.LazyRowMap;
+import com.zendesk.maxwell.row.RowMap;
+import com.zendesk.maxwell.schema.Table;
+import com.zendesk.maxwell.schema.columndef.ColumnDef;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import static org.junit.Assert.*;
+
+public class ProtobufRowEncoderTest {
+	private static final Position POSITION = new Position(new BinlogPosition(1L, "binlog-0001"), 0L);
+	private final LocalProtobufSchemaRegistry registry = new LocalProtobufSchemaRegistry();
+
+	private Table buildTable(String... extraColumns) {
+		ArrayList<ColumnDef> columns = new ArrayList<>();
+		columns.add(ColumnDef.build("id", null, "int", 0, true, null, null));
+		columns.add(ColumnDef.build("user name", "utf8", "varchar", 1, false, null, 255L));
+		columns.add(ColumnDef.build("counter", null, "bigint", 2, false, null, null));
+		columns.add(ColumnDef.build("tags", null, "set", 3, false, new String[] { "a", "b", "c" }, null));
+		for ( String name : extraColumns )
+			columns.add(ColumnDef.build(name, "utf8", "varchar", columns.size(), false, null, 255L));
+		return new Table("shop", "orders", "utf8", columns, Arrays.asList("id"));
+	}
+
+	private LazyRowMap buildRow(Table table) {
+		BitSet included = new BitSet();
+		included.set(0, 4);
+		return new LazyRowMap("update", table, 1234000L, POSITION, null,
+			new Serializable[] { 1, "bob", -1L, 5L }, included);
+	}
+
+	private DynamicMessage parse(byte[] bytes) throws Exception {
+		return DynamicMessage.parseFrom(ProtobufRowEncoder.ROW, bytes);
+	}
+
+	private Object field(DynamicMessage message, String name) {
+		return message.getField(message.getDescriptorForType().findFieldByName(name));
+	}
+
+	@Test
+	public void testRoundTripsTypedColumns() throws Exception {
+		ProtobufRowEncoder encoder = new ProtobufRowEncoder(registry, new MaxwellOutputConfig(), false);
+		LazyRowMap row = buildRow(buildTable());
+		BitSet oldIncluded = new BitSet();
+		oldIncluded.set(0, 4);
+		row.setOldImage(new Serializable[] { 1, "robert", -1L, 5L }, oldIncluded);
+
+		DynamicMessage message = parse(encoder.encode(row));
+		assertEquals("shop", field(message, "database"));
+		assertEquals("orders", field(message, "table"));
+		assertEquals("update", field(message, "type"));
+		assertEquals(1234L, field(message, "ts"));
+
+		DynamicMessage data = ProtobufRowEncoder.decodeData(message, false, registry);
+		Descriptor descriptor = data.getDescriptorForType();
+		assertEquals("maxwell.shop.orders", descriptor.getFullName());
+		assertEquals(1, field(data, "id"));
+		assertEquals("bob", field(data, "user_name"));
+		assertEquals("18446744073709551615", Long.toUnsignedString((Long) field(data, "counter")));
+		assertEquals(Arrays.asList("a", "c"), field(data, "tags"));
+
+		DynamicMessage old = ProtobufRowEncoder.decodeData(message, true, registry);
+		assertEquals("robert", field(old, "user_name"));
+		assertEquals(Arrays.asList("user_name"), field(message, "old_columns"));
+	}
+
+	@Test
+	public void testNewSchemaAfterTableChanges() throws Exception {
+		ProtobufRowEncoder encoder = new ProtobufRowEncoder(registry, new MaxwellOutputConfig(), false);
+		Table table = buildTable();
+
+		Object first = field(parse(encoder.encode(buildRow(table))), "schema_id");
+		Object second = field(parse(encoder.encode(buildRow(table))), "schema_id");
+		assertEquals(first, second);
+
+		DynamicMessage altered = parse(encoder.encode(buildRow(buildTable("note"))));
+		assertNotEquals(first, field(altered, "schema_id"));
+		assertNotNull(ProtobufRowEncoder.decodeData(altered, false, registry).getDescriptorForType().findFieldByName("note"));
+	}
+
+	@Test
+	public void testFallsBackToValuesWithoutTable() throws Exception {
+		ProtobufRowEncoder encoder = new ProtobufRowEncoder(registry, new MaxwellOutputConfig(), false);
+
+		RowMap row = new RowMap("insert", "shop", "orders", 1234000L, Arrays.asList("id"), POSITION);
+		row.putData("id", 1L);
+
+		DynamicMessage message = parse(encoder.encode(row));
+		assertFalse(message.hasField(ProtobufRowEncoder.ROW.findFieldByName("schema")));
+
+		DynamicMessage values = ProtobufRowEncoder.decodeData(message, false, registry);
+		assertEquals(ProtobufRowEncoder.VALUES, values.getDescriptorForType());
+		assertEquals(1, values.getRepeatedFieldCount(ProtobufRowEncoder.VALUES.findFieldByName("values")));
+	}
+
+	@Test
+	public void testPublishesSchemaInsteadOfSendingIt() throws Exception {
+		ProtobufRowEncoder encoder = new ProtobufRowEncoder(registry, new MaxwellOutputConfig(), false);
+		DynamicMessage message = parse(encoder.encode(buildRow(buildTable())));
+
+		assertFalse(message.hasField(ProtobufRowEncoder.ROW.findFieldByName("schema")));
+		long schemaID = (Long) field(message, "schema_id");
+		assertEquals("orders", registry.getSchema(schemaID).getMessageType(0).getName());
+	}
+
+	@Test
+	public void testInlineSchema() throws Exception {
+		ProtobufRowEncoder encoder = new ProtobufRowEncoder(registry, new MaxwellOutputConfig(), true);
+		DynamicMessage message = parse(encoder.encode(buildRow(buildTable())));
+
+		assertTrue(message.hasField(ProtobufRowEncoder.ROW.findFieldByName("schema")));
+		// decodes without asking a registry
+		DynamicMessage data = ProtobufRowEncoder.decodeData(message, false, null);
+		assertEquals("bob", field(data, "user_name"));
+	}
+}
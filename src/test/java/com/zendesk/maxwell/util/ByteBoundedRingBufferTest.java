@@ -0,0 +1,81 @@
+package com.zendesk.maxwell.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ByteBoundedRingBufferTest {
+
+	@Test
+	public void testBoundedByBytes() throws Exception {
+		ByteBoundedRingBuffer<String> buffer = new ByteBoundedRingBuffer<>(16, 100, ByteBoundedRingBuffer.WaitStrategy.BLOCKING);
+
+		assertThat(buffer.offer("a", 60, 0, TimeUnit.MILLISECONDS), is(true));
+		assertThat(buffer.offer("b", 50, 10, TimeUnit.MILLISECONDS), is(false));
+		assertThat(buffer.offer("c", 40, 0, TimeUnit.MILLISECONDS), is(true));
+		assertThat(buffer.getBytes(), is(100L));
+		assertThat(buffer.size(), is(2));
+
+		assertThat(buffer.poll(0, TimeUnit.MILLISECONDS), is("a"));
+		assertThat(buffer.getBytes(), is(40L));
+		assertThat(buffer.offer("b", 50, 0, TimeUnit.MILLISECONDS), is(true));
+	}
+
+	@Test
+	public void testBoundedBySlots() throws Exception {
+		ByteBoundedRingBuffer<Integer> buffer = new ByteBoundedRingBuffer<>(3, 1000, ByteBoundedRingBuffer.WaitStrategy.YIELDING);
+
+		// rounded up to 4 slots
+		for ( int i = 0; i < 4; i++ )
+			assertThat(buffer.offer(i, 1, 0, TimeUnit.MILLISECONDS), is(true));
+
+		assertThat(buffer.offer(4, 1, 10, TimeUnit.MILLISECONDS), is(false));
+	}
+
+	@Test
+	public void testOversizedElementAcceptedWhenEmpty() throws Exception {
+		ByteBoundedRingBuffer<String> buffer = new ByteBoundedRingBuffer<>(16, 100, ByteBoundedRingBuffer.WaitStrategy.BUSY_SPIN);
+
+		assertThat(buffer.offer("huge", 1000, 0, TimeUnit.MILLISECONDS), is(true));
+		assertThat(buffer.offer("small", 1, 10, TimeUnit.MILLISECONDS), is(false));
+		assertThat(buffer.poll(0, TimeUnit.MILLISECONDS), is("huge"));
+		assertThat(buffer.poll(10, TimeUnit.MILLISECONDS), nullValue());
+	}
+
+	@Test
+	public void testPreservesOrderAcrossThreads() throws Exception {
+		// busy-spin is left out; it can starve the other thread on a single-core test box
+		ByteBoundedRingBuffer.WaitStrategy[] strategies = {
+			ByteBoundedRingBuffer.WaitStrategy.BLOCKING, ByteBoundedRingBuffer.WaitStrategy.YIELDING
+		};
+
+		for ( ByteBoundedRingBuffer.WaitStrategy strategy : strategies ) {
+			final ByteBoundedRingBuffer<Integer> buffer = new ByteBoundedRingBuffer<>(8, 64, strategy);
+			final int count = 10000;
+
+			Thread producer = new Thread(() -> {
+				try {
+					for ( int i = 0; i < count; i++ )
+						while ( !buffer.offer(i, i % 20, 100, TimeUnit.MILLISECONDS) ) { }
+				} catch ( InterruptedException e ) {
+					return;
+				}
+			});
+			producer.start();
+
+			for ( int i = 0; i < count; i++ ) {
+				Integer next = null;
+				while ( next == null )
+					next = buffer.poll(100, TimeUnit.MILLISECONDS);
+				assertThat(next, is(i));
+			}
+
+			producer.join();
+			assertThat(buffer.getBytes(), is(0L));
+		}
+	}
+}
@@ -0,0 +1,66 @@
+package com.zendesk.maxwell.util;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LongHashMapTest {
+	@Test
+	public void testPutGetRemove() {
+		LongHashMap<String> map = new LongHashMap<>();
+
+		assertNull(map.put(1L, "one"));
+		assertNull(map.put(1L << 40, "big"));
+		assertEquals("one", map.put(1L, "uno"));
+
+		assertEquals("uno", map.get(1L));
+		assertEquals("big", map.get(1L << 40));
+		assertNull(map.get(2L));
+		assertEquals(2, map.size());
+
+		assertEquals("uno", map.remove(1L));
+		assertNull(map.remove(1L));
+		assertFalse(map.containsKey(1L));
+		assertEquals(1, map.size());
+
+		map.clear();
+		assertTrue(map.isEmpty());
+		assertNull(map.get(1L << 40));
+	}
+
+	@Test
+	public void testMatchesHashMapUnderChurn() {
+		LongHashMap<Long> map = new LongHashMap<>();
+		HashMap<Long, Long> expected = new HashMap<>();
+		Random random = new Random(42);
+
+		for ( int i = 0; i < 200000; i++ ) {
+			long key = random.nextInt(2000);
+			if ( random.nextBoolean() ) {
+				assertEquals(expected.put(key, key * 3), map.put(key, key * 3));
+			} else {
+				assertEquals(expected.remove(key), map.remove(key));
+			}
+			assertEquals(expected.size(), map.size());
+		}
+
+		for ( long key = 0; key < 2000; key++ )
+			assertEquals(expected.get(key), map.get(key));
+	}
+
+	@Test
+	public void testRemoveIf() {
+		LongHashMap<Long> map = new LongHashMap<>();
+		for ( long i = 0; i < 1000; i++ )
+			map.put(i, i);
+
+		assertEquals(500, map.removeIf((v) -> v % 2 == 0));
+		assertEquals(500, map.size());
+
+		for ( long i = 0; i < 1000; i++ )
+			assertEquals(i % 2 == 0 ? null : (Long) i, map.get(i));
+	}
+}